@@ -0,0 +1,83 @@
+package vatika.benchmarks;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.UnstructuredGridView;
+import vatika.writer.DataFormat;
+import vatika.writer.UnstructuredGridLegacyVtkWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes meshes as legacy .vtk files. The legacy writer only writes to files, so the file
+ * system is part of the measurement; a file in a tmpfs directory, given by
+ * {@code -Djava.io.tmpdir}, keeps it small.
+ * <pre>
+ * java -jar target/benchmarks.jar LegacyWriterBenchmark -p cells=100000 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LegacyWriterBenchmark {
+    @Param({"HEXAHEDRON", "TETRAHEDRON"})
+    public Meshes.CellType cellType;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int cells;
+
+    @Param({"UNSTRUCTURED_GRID", "PACKED_GRID", "GRID_VIEW"})
+    public Meshes.Representation representation;
+
+    @Param({"ASCII", "BINARY"})
+    public DataFormat format;
+
+    private PackedUnstructuredGrid grid;
+    private UnstructuredGridLegacyVtkWriter writer;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        grid = Meshes.cube(cellType, cells);
+        switch (representation) {
+            case UNSTRUCTURED_GRID:
+                writer = new UnstructuredGridLegacyVtkWriter(grid.toUnstructuredGrid(), "benchmark");
+                break;
+            case PACKED_GRID:
+                writer = new UnstructuredGridLegacyVtkWriter(grid, "benchmark");
+                break;
+            default:
+                writer = new UnstructuredGridLegacyVtkWriter((UnstructuredGridView) grid, "benchmark");
+        }
+        writer.setDataFormat(format);
+        file = File.createTempFile("benchmark", ".vtk");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void write(WriteCounters counters) throws IOException {
+        writer.write(file);
+        counters.bytes += file.length();
+        counters.cells += grid.numberOfCells();
+    }
+}
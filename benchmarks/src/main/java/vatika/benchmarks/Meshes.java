@@ -0,0 +1,116 @@
+package vatika.benchmarks;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.PackedVectorData;
+import vatika.data.ScalarData;
+import vatika.data.VTKType;
+
+/**
+ * Synthetic meshes of a unit cube, split into hexahedra or into tetrahedra, with a scalar and
+ * a vector of point data and a scalar of cell data.
+ */
+public final class Meshes {
+    public enum CellType {
+        HEXAHEDRON, TETRAHEDRON
+    }
+
+    /**
+     * How the mesh is given to the writers: as an {@code UnstructuredGrid} of points and cells,
+     * as a {@code PackedUnstructuredGrid}, or through the {@code UnstructuredGridView} accessors
+     * as the arrays of a solver are.
+     */
+    public enum Representation {
+        UNSTRUCTURED_GRID, PACKED_GRID, GRID_VIEW
+    }
+
+    // the six tetrahedra of a hexahedron sharing its diagonal from corner 0 to corner 6
+    private static final int[][] TETRAHEDRA = {
+            {0, 1, 2, 6}, {0, 2, 3, 6}, {0, 3, 7, 6}, {0, 7, 4, 6}, {0, 4, 5, 6}, {0, 5, 1, 6}
+    };
+
+    private Meshes() {
+    }
+
+    /**
+     * @param numberOfCells approximate number of cells of the mesh
+     */
+    static PackedUnstructuredGrid cube(CellType cellType, int numberOfCells) {
+        int cellsPerHexahedron = cellType == CellType.HEXAHEDRON ? 1 : TETRAHEDRA.length;
+        int n = Math.max(1, (int) Math.round(Math.cbrt((double) numberOfCells / cellsPerHexahedron)));
+
+        int numberOfPoints = (n + 1) * (n + 1) * (n + 1);
+        double[] points = new double[3 * numberOfPoints];
+        double[] temperature = new double[numberOfPoints];
+        double[] velocity = new double[3 * numberOfPoints];
+        for (int k = 0; k <= n; k++) {
+            for (int j = 0; j <= n; j++) {
+                for (int i = 0; i <= n; i++) {
+                    int p = pointIndex(n, i, j, k);
+                    double x = (double) i / n;
+                    double y = (double) j / n;
+                    double z = (double) k / n;
+                    points[3 * p] = x;
+                    points[3 * p + 1] = y;
+                    points[3 * p + 2] = z;
+                    temperature[p] = 300 + 50 * Math.sin(x * 7) * Math.cos(y * 5) + 10 * z;
+                    velocity[3 * p] = -Math.sin(Math.PI * y);
+                    velocity[3 * p + 1] = Math.sin(Math.PI * x);
+                    velocity[3 * p + 2] = 0.1 * z * z;
+                }
+            }
+        }
+
+        int cells = n * n * n * cellsPerHexahedron;
+        int pointsPerCell = cellType == CellType.HEXAHEDRON ? 8 : 4;
+        byte type = (byte) (cellType == CellType.HEXAHEDRON ? VTKType.VTK_HEXAHEDRON : VTKType.VTK_TETRA).ID;
+        int[] connectivity = new int[cells * pointsPerCell];
+        int[] offsets = new int[cells + 1];
+        byte[] types = new byte[cells];
+        double[] pressure = new double[cells];
+        int[] corners = new int[8];
+        int c = 0;
+        for (int k = 0; k < n; k++) {
+            for (int j = 0; j < n; j++) {
+                for (int i = 0; i < n; i++) {
+                    corners[0] = pointIndex(n, i, j, k);
+                    corners[1] = pointIndex(n, i + 1, j, k);
+                    corners[2] = pointIndex(n, i + 1, j + 1, k);
+                    corners[3] = pointIndex(n, i, j + 1, k);
+                    corners[4] = pointIndex(n, i, j, k + 1);
+                    corners[5] = pointIndex(n, i + 1, j, k + 1);
+                    corners[6] = pointIndex(n, i + 1, j + 1, k + 1);
+                    corners[7] = pointIndex(n, i, j + 1, k + 1);
+                    if (cellType == CellType.HEXAHEDRON) {
+                        System.arraycopy(corners, 0, connectivity, 8 * c, 8);
+                        c = addCell(c, offsets, types, pressure, type, pointsPerCell, temperature[corners[0]]);
+                    } else {
+                        for (int[] tetrahedron : TETRAHEDRA) {
+                            for (int v = 0; v < 4; v++) {
+                                connectivity[4 * c + v] = corners[tetrahedron[v]];
+                            }
+                            c = addCell(c, offsets, types, pressure, type, pointsPerCell, temperature[corners[0]]);
+                        }
+                    }
+                }
+            }
+        }
+
+        return new PackedUnstructuredGrid(points, connectivity, offsets, types,
+                new ScalarData[]{new ScalarData("Temperature", temperature)},
+                new PackedVectorData[]{new PackedVectorData("Velocity", velocity)},
+                new ScalarData[]{new ScalarData("Pressure", pressure)},
+                null);
+    }
+
+    private static int addCell(int c, int[] offsets, byte[] types, double[] pressure, byte type,
+                               int pointsPerCell, double value) {
+        offsets[c + 1] = offsets[c] + pointsPerCell;
+        types[c] = type;
+        pressure[c] = 1e5 + value;
+        return c + 1;
+    }
+
+    private static int pointIndex(int n, int i, int j, int k) {
+        return (k * (n + 1) + j) * (n + 1) + i;
+    }
+}
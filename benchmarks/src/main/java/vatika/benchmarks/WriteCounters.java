@@ -0,0 +1,24 @@
+package vatika.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Bytes and cells written, reported by JMH as rates next to the score: bytes/s (divided by
+ * 10<sup>6</sup> for MB/s) and cells/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class WriteCounters {
+    public long bytes;
+    public long cells;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        cells = 0;
+    }
+}
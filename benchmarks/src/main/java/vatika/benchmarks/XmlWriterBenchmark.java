@@ -0,0 +1,98 @@
+package vatika.benchmarks;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.UnstructuredGridView;
+import vatika.writer.DataFormat;
+import vatika.writer.UnstructuredGridXmlVtKWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes meshes as .vtu documents to a stream that only counts the bytes, so that the
+ * encoding is measured without the disk.
+ * <pre>
+ * java -jar target/benchmarks.jar XmlWriterBenchmark -p cells=100000 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class XmlWriterBenchmark {
+    @Param({"HEXAHEDRON", "TETRAHEDRON"})
+    public Meshes.CellType cellType;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int cells;
+
+    @Param({"UNSTRUCTURED_GRID", "PACKED_GRID", "GRID_VIEW"})
+    public Meshes.Representation representation;
+
+    @Param({"ASCII", "BINARY", "APPENDED"})
+    public DataFormat format;
+
+    @Param({"true", "false"})
+    public boolean compressed;
+
+    @Param({"LITTLE_ENDIAN", "BIG_ENDIAN"})
+    public String byteOrder;
+
+    private PackedUnstructuredGrid grid;
+    private UnstructuredGridXmlVtKWriter writer;
+
+    @Setup
+    public void setUp() {
+        grid = Meshes.cube(cellType, cells);
+        switch (representation) {
+            case UNSTRUCTURED_GRID:
+                writer = new UnstructuredGridXmlVtKWriter(grid.toUnstructuredGrid());
+                break;
+            case PACKED_GRID:
+                writer = new UnstructuredGridXmlVtKWriter(grid);
+                break;
+            default:
+                writer = new UnstructuredGridXmlVtKWriter((UnstructuredGridView) grid);
+        }
+        writer.setFormat(format)
+                .setCompressed(compressed)
+                .setByteOrder(byteOrder.equals("BIG_ENDIAN") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Benchmark
+    public void write(WriteCounters counters) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        writer.write(out);
+        counters.bytes += out.count;
+        counters.cells += grid.numberOfCells();
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
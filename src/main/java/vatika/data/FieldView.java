@@ -0,0 +1,72 @@
+package vatika.data;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Read-only access to the values of point or cell data, wherever they are stored.
+ * The value of every point or cell is a scalar or a vector of 3 components.
+ */
+public interface FieldView {
+    String name();
+
+    /**
+     * @return 1 for scalars, 3 for vectors
+     */
+    int numberOfComponents();
+
+    /**
+     * Values are stored in arrays or buffers indexed by int, so a field holds at most
+     * {@link Integer#MAX_VALUE} components; reading beyond throws {@link ArithmeticException}.
+     *
+     * @return component {@code component} of the value of point or cell {@code index}
+     */
+    double value(int index, int component);
+
+    /**
+     * @param values components of all the values, one value after the other: x0, y0, z0, x1, ...
+     *               for vectors; the array is read, not copied
+     */
+    static FieldView of(String name, double[] values, int numberOfComponents) {
+        return new FieldView() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public int numberOfComponents() {
+                return numberOfComponents;
+            }
+
+            @Override
+            public double value(int index, int component) {
+                return values[Math.toIntExact((long) index * numberOfComponents + component)];
+            }
+        };
+    }
+
+    /**
+     * @param values buffer of the components of all the values, from its position, as in
+     *               {@link #of(String, double[], int)}; the buffer may be direct or mapped and is
+     *               read, not copied
+     */
+    static FieldView of(String name, DoubleBuffer values, int numberOfComponents) {
+        DoubleBuffer slice = values.slice();
+        return new FieldView() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public int numberOfComponents() {
+                return numberOfComponents;
+            }
+
+            @Override
+            public double value(int index, int component) {
+                return slice.get(Math.toIntExact((long) index * numberOfComponents + component));
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package vatika.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lists and selections of the point and cell data, shared by the grid classes.
+ */
+final class Fields {
+    private Fields() {
+    }
+
+    /**
+     * @return the scalars then the vectors, either may be {@code null}
+     */
+    static List<FieldView> of(FieldView[] scalars, FieldView[] vectors) {
+        List<FieldView> fields = new ArrayList<>();
+        if (scalars != null) {
+            Collections.addAll(fields, scalars);
+        }
+        if (vectors != null) {
+            Collections.addAll(fields, vectors);
+        }
+        return fields;
+    }
+
+    /**
+     * @return the values of the points or cells of the indices, in their order
+     */
+    static double[] select(double[] values, int numberOfComponents, int[] indices) {
+        double[] selected = new double[numberOfComponents * indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            System.arraycopy(values, numberOfComponents * indices[i], selected, numberOfComponents * i,
+                    numberOfComponents);
+        }
+        return selected;
+    }
+
+    static ScalarData[] selectScalars(ScalarData[] allScalarsData, int[] indices) {
+        if (allScalarsData == null) {
+            return null;
+        }
+
+        ScalarData[] selected = new ScalarData[allScalarsData.length];
+        for (int i = 0; i < allScalarsData.length; i++) {
+            selected[i] = new ScalarData(allScalarsData[i].dataName, select(allScalarsData[i].scalars, 1, indices));
+        }
+        return selected;
+    }
+
+    static PackedVectorData[] selectVectors(PackedVectorData[] allVectorsData, int[] indices) {
+        if (allVectorsData == null) {
+            return null;
+        }
+
+        PackedVectorData[] selected = new PackedVectorData[allVectorsData.length];
+        for (int i = 0; i < allVectorsData.length; i++) {
+            selected[i] = new PackedVectorData(allVectorsData[i].dataName,
+                    select(allVectorsData[i].components, 3, indices));
+        }
+        return selected;
+    }
+
+    static VectorData[] selectVectors(VectorData[] allVectorsData, int[] indices) {
+        if (allVectorsData == null) {
+            return null;
+        }
+
+        VectorData[] selected = new VectorData[allVectorsData.length];
+        for (int i = 0; i < allVectorsData.length; i++) {
+            Vector[] vectors = new Vector[indices.length];
+            for (int j = 0; j < indices.length; j++) {
+                vectors[j] = allVectorsData[i].vectors[indices[j]];
+            }
+            selected[i] = new VectorData(allVectorsData[i].dataName, vectors);
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,82 @@
+package vatika.data;
+
+import java.util.Arrays;
+
+/**
+ * An order of the points and cells of a grid, for {@link UnstructuredGrid#reorder(GridOrder)} and
+ * {@link PackedUnstructuredGrid#reorder(GridOrder)}. Ordering a grid along a space filling curve puts
+ * points and cells close in space close in the arrays, which compresses better and is faster to
+ * render.
+ * <p>
+ * {@code points[i]} and {@code cells[i]} are the indices in the original grid of point and cell
+ * {@code i} of the reordered grid, so values computed on the reordered grid map back through them.
+ */
+public class GridOrder {
+    public final int[] points;
+    public final int[] cells;
+
+    public GridOrder(int[] points, int[] cells) {
+        this.points = points;
+        this.cells = cells;
+    }
+
+    /**
+     * Orders the points along the curve, and the cells by the mean of the coordinates of their
+     * points. The coordinates are scaled to the lattice of the curve, the same for all axes, from the
+     * bounding box of the points. The keys are computed and sorted in parallel; points and cells
+     * at the same place on the curve keep their order.
+     */
+    public static GridOrder of(UnstructuredGridView grid, SpaceFillingCurve curve) {
+        int numberOfPoints = grid.numberOfPoints();
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double extent = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int point = 0; point < numberOfPoints; point++) {
+                double coordinate = grid.coordinate(point, axis);
+                min[axis] = Math.min(min[axis], coordinate);
+                max = Math.max(max, coordinate);
+            }
+            extent = Math.max(extent, max - min[axis]);
+        }
+        double scale = extent > 0 ? ((1 << SpaceFillingCurve.BITS) - 1) / extent : 0;
+
+        long[] pointKeys = new long[numberOfPoints];
+        Arrays.parallelSetAll(pointKeys, point -> curve.key(
+                (int) ((grid.coordinate(point, 0) - min[0]) * scale),
+                (int) ((grid.coordinate(point, 1) - min[1]) * scale),
+                (int) ((grid.coordinate(point, 2) - min[2]) * scale)));
+
+        long[] cellKeys = new long[grid.numberOfCells()];
+        Arrays.parallelSetAll(cellKeys, cell -> {
+            int numberOfCellPoints = grid.numberOfCellPoints(cell);
+            int[] lattice = new int[3];
+            for (int axis = 0; axis < 3; axis++) {
+                double sum = 0;
+                for (int i = 0; i < numberOfCellPoints; i++) {
+                    sum += grid.coordinate(grid.cellPoint(cell, i), axis);
+                }
+                lattice[axis] = numberOfCellPoints > 0 ? (int) ((sum / numberOfCellPoints - min[axis]) * scale) : 0;
+            }
+            return curve.key(lattice[0], lattice[1], lattice[2]);
+        });
+
+        return new GridOrder(RadixSort.sortedIndices(pointKeys), RadixSort.sortedIndices(cellKeys));
+    }
+
+    /**
+     * @return the new index of every point, the inverse of {@link #points}
+     */
+    int[] newPointIndices() {
+        int[] newIndices = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            newIndices[points[i]] = i;
+        }
+        return newIndices;
+    }
+
+    void check(int numberOfPoints, int numberOfCells) {
+        GridValidation.checkLength("Order of the points", points.length, numberOfPoints);
+        GridValidation.checkLength("Order of the cells", cells.length, numberOfCells);
+    }
+}
@@ -0,0 +1,84 @@
+package vatika.data;
+
+import java.util.stream.IntStream;
+
+/**
+ * Checks and compaction shared by {@link UnstructuredGrid} and {@link PackedUnstructuredGrid}.
+ */
+final class GridValidation {
+    private GridValidation() {
+    }
+
+    /**
+     * @param connectivity array holding the point indices of the cell at {@code [from, to)}
+     * @return the problem of the cell, {@code null} if it is valid
+     */
+    static String cellError(int cell, VTKType type, int[] connectivity, int from, int to, int numberOfPoints) {
+        if (type == null) {
+            return "Cell " + cell + " has no type";
+        }
+        if (!type.isValidNumberOfPoints(to - from)) {
+            return "Cell " + cell + " of type " + type + " has " + (to - from) + " points";
+        }
+        for (int i = from; i < to; i++) {
+            if (connectivity[i] < 0 || connectivity[i] >= numberOfPoints) {
+                return "Cell " + cell + " refers to point " + connectivity[i] + " of " + numberOfPoints;
+            }
+        }
+        return null;
+    }
+
+    static void checkLength(String name, int length, int expected) {
+        if (length != expected) {
+            throw new IllegalArgumentException(name + " has " + length + " values instead of " + expected);
+        }
+    }
+
+    static void checkScalarData(ScalarData[] allScalarsData, int numberOfValues) {
+        if (allScalarsData != null) {
+            for (ScalarData scalarData : allScalarsData) {
+                checkLength(scalarData.dataName, scalarData.scalars.length, numberOfValues);
+            }
+        }
+    }
+
+    /**
+     * @param referencedPoints indices of the points referenced by the cells, all valid,
+     *                         with repetitions
+     * @return the new index of every point, after the points not referenced are removed,
+     * -1 for those
+     */
+    static int[] renumbering(int numberOfPoints, IntStream referencedPoints) {
+        int[] newIndices = new int[numberOfPoints];
+        // the same value may be written concurrently, which is harmless
+        referencedPoints.parallel().forEach(point -> newIndices[point] = 1);
+        int next = 0;
+        for (int i = 0; i < numberOfPoints; i++) {
+            newIndices[i] = newIndices[i] != 0 ? next++ : -1;
+        }
+        return newIndices;
+    }
+
+    /**
+     * @param newIndices new index of every point, increasing over the points kept; -1 for points
+     *                   removed, or the new index of a point of lower index for points merged into it
+     * @return the old indices of the points kept, the first of every new index, in order,
+     * {@code null} if all are kept
+     */
+    static int[] keptPoints(int[] newIndices) {
+        int kept = 0;
+        for (int newIndex : newIndices) {
+            kept = Math.max(kept, newIndex + 1);
+        }
+        if (kept == newIndices.length) {
+            return null;
+        }
+        int[] keptPoints = new int[kept];
+        for (int i = newIndices.length - 1; i >= 0; i--) {
+            if (newIndices[i] >= 0) {
+                keptPoints[newIndices[i]] = i;
+            }
+        }
+        return keptPoints;
+    }
+}
@@ -0,0 +1,42 @@
+package vatika.data;
+
+/**
+ * Points on a regular lattice, with the same spacing between them along each axis, and the
+ * hexahedra between them. Only the numbers of points and their spacing are stored, none of
+ * the points nor the cells.
+ * <ul>
+ * <li>{@code dimensions}: numbers of points along x, y and z</li>
+ * <li>{@code origin}: coordinates of the first point</li>
+ * <li>{@code spacing}: distance between points along x, y and z</li>
+ * </ul>
+ * Point and cell data are ordered with x varying fastest, then y, then z.
+ */
+public class ImageData {
+    public final int[] dimensions;
+    public final double[] origin;
+    public final double[] spacing;
+    public final ScalarData[] pointScalarData;
+    public final ScalarData[] cellScalarData;
+    public final PackedVectorData[] pointVectorData;
+    public final PackedVectorData[] cellVectorData;
+
+    public ImageData(int[] dimensions, double[] origin, double[] spacing,
+                     ScalarData[] pointScalarData, PackedVectorData[] pointVectorData,
+                     ScalarData[] cellScalarData, PackedVectorData[] cellVectorData) {
+        this.dimensions = dimensions;
+        this.origin = origin;
+        this.spacing = spacing;
+        this.pointScalarData = pointScalarData;
+        this.cellScalarData = cellScalarData;
+        this.pointVectorData = pointVectorData;
+        this.cellVectorData = cellVectorData;
+    }
+
+    public int numberOfPoints() {
+        return StructuredData.numberOfPoints(dimensions);
+    }
+
+    public int numberOfCells() {
+        return StructuredData.numberOfCells(dimensions);
+    }
+}
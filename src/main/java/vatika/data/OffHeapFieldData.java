@@ -0,0 +1,37 @@
+package vatika.data;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Point or cell data stored in a buffer of doubles, from index 0 to its limit: the components
+ * of every value one after the other, x0, y0, z0, x1, ... for vectors.
+ */
+public class OffHeapFieldData implements FieldView {
+    public final String dataName;
+    public final DoubleBuffer values;
+    public final int numberOfComponents;
+
+    public OffHeapFieldData(String dataName, DoubleBuffer values, int numberOfComponents) {
+        if (numberOfComponents != 1 && numberOfComponents != 3) {
+            throw new IllegalArgumentException("Number of components must be 1 or 3: " + numberOfComponents);
+        }
+        this.dataName = dataName;
+        this.values = values;
+        this.numberOfComponents = numberOfComponents;
+    }
+
+    @Override
+    public String name() {
+        return dataName;
+    }
+
+    @Override
+    public int numberOfComponents() {
+        return numberOfComponents;
+    }
+
+    @Override
+    public double value(int index, int component) {
+        return values.get(Math.toIntExact((long) index * numberOfComponents + component));
+    }
+}
@@ -0,0 +1,86 @@
+package vatika.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Allocates the buffers of {@link OffHeapUnstructuredGrid}s outside the Java heap, either in
+ * direct memory or in memory mapped regions of a temporary file, so that the garbage collector
+ * never scans or copies them and the operating system may page them out to the file. The
+ * buffers use the native byte order and hold at most {@link Integer#MAX_VALUE} bytes each.
+ * <p>
+ * Closing the storage deletes its file; the buffers must not be used after that. Mappings
+ * cannot be released explicitly, they are released once garbage collected.
+ */
+public class OffHeapStorage implements Closeable {
+    private final FileChannel file;
+    private long fileSize;
+
+    private OffHeapStorage(FileChannel file) {
+        this.file = file;
+    }
+
+    /**
+     * @return a storage allocating direct buffers
+     */
+    public static OffHeapStorage direct() {
+        return new OffHeapStorage(null);
+    }
+
+    /**
+     * @param directory directory of the temporary file, {@code null} for the default one
+     * @return a storage mapping the buffers from a temporary file, deleted when it is closed
+     */
+    public static OffHeapStorage mapped(File directory) throws IOException {
+        Path path = directory == null
+                ? Files.createTempFile("vatika-", ".tmp")
+                : Files.createTempFile(directory.toPath(), "vatika-", ".tmp");
+        return new OffHeapStorage(FileChannel.open(path, READ, WRITE, DELETE_ON_CLOSE));
+    }
+
+    public DoubleBuffer doubles(int count) throws IOException {
+        return allocate(count, Double.BYTES).asDoubleBuffer();
+    }
+
+    public IntBuffer ints(int count) throws IOException {
+        return allocate(count, Integer.BYTES).asIntBuffer();
+    }
+
+    public ByteBuffer bytes(int count) throws IOException {
+        return allocate(count, Byte.BYTES);
+    }
+
+    private ByteBuffer allocate(int count, int valueBytes) throws IOException {
+        if (count < 0 || (long) count * valueBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid number of values: " + count);
+        }
+        int bytes = count * valueBytes;
+        if (file == null) {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+        // regions one after the other, each aligned to 8 bytes
+        ByteBuffer region = file.map(READ_WRITE, fileSize, bytes);
+        fileSize += (bytes + 7) & ~7L;
+        return region.order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package vatika.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * Unstructured grid stored as {@link PackedUnstructuredGrid} is, but in buffers that may live
+ * outside the Java heap, for instance those of an {@link OffHeapStorage}. The values of every
+ * buffer go from index 0 to its limit. The writers copy the buffers in bulk.
+ * <ul>
+ * <li>{@code points}: coordinates x0, y0, z0, x1, y1, z1, ...</li>
+ * <li>{@code connectivity}: point indices of all the cells, one cell after the other</li>
+ * <li>{@code offsets}: start of every cell in {@code connectivity}, followed by the length of
+ * {@code connectivity}</li>
+ * <li>{@code types}: {@link VTKType#ID} of every cell</li>
+ * </ul>
+ */
+public class OffHeapUnstructuredGrid implements UnstructuredGridView {
+    public final DoubleBuffer points;
+    public final IntBuffer connectivity;
+    public final IntBuffer offsets;
+    public final ByteBuffer types;
+    public final OffHeapFieldData[] pointFieldData;
+    public final OffHeapFieldData[] cellFieldData;
+
+    public OffHeapUnstructuredGrid(DoubleBuffer points, IntBuffer connectivity, IntBuffer offsets, ByteBuffer types,
+                                   OffHeapFieldData[] pointFieldData, OffHeapFieldData[] cellFieldData) {
+        this.points = points;
+        this.connectivity = connectivity;
+        this.offsets = offsets;
+        this.types = types;
+        this.pointFieldData = pointFieldData;
+        this.cellFieldData = cellFieldData;
+    }
+
+    /**
+     * Copies the grid into buffers of the storage.
+     */
+    public static OffHeapUnstructuredGrid of(PackedUnstructuredGrid grid, OffHeapStorage storage) throws IOException {
+        DoubleBuffer points = storage.doubles(grid.points.length).put(grid.points);
+        IntBuffer connectivity = storage.ints(grid.connectivity.length).put(grid.connectivity);
+        IntBuffer offsets = storage.ints(grid.offsets.length).put(grid.offsets);
+        ByteBuffer types = storage.bytes(grid.types.length).put(grid.types);
+        return new OffHeapUnstructuredGrid(points, connectivity, offsets, types,
+                copy(grid.pointScalarData, grid.pointVectorData, storage),
+                copy(grid.cellScalarData, grid.cellVectorData, storage));
+    }
+
+    private static OffHeapFieldData[] copy(ScalarData[] allScalarsData, PackedVectorData[] allVectorsData,
+                                           OffHeapStorage storage) throws IOException {
+        List<FieldView> fields = Fields.of(allScalarsData, allVectorsData);
+        OffHeapFieldData[] copies = new OffHeapFieldData[fields.size()];
+        for (int i = 0; i < copies.length; i++) {
+            FieldView field = fields.get(i);
+            double[] values = field instanceof ScalarData
+                    ? ((ScalarData) field).scalars
+                    : ((PackedVectorData) field).components;
+            copies[i] = new OffHeapFieldData(field.name(), storage.doubles(values.length).put(values),
+                    field.numberOfComponents());
+        }
+        return copies;
+    }
+
+    @Override
+    public int numberOfPoints() {
+        return points.limit() / 3;
+    }
+
+    @Override
+    public double coordinate(int point, int axis) {
+        return points.get(Math.toIntExact(3L * point + axis));
+    }
+
+    @Override
+    public int numberOfCells() {
+        return types.limit();
+    }
+
+    @Override
+    public VTKType cellType(int cell) {
+        return VTKType.get(types.get(cell) & 0xFF);
+    }
+
+    @Override
+    public int numberOfCellPoints(int cell) {
+        return offsets.get(cell + 1) - offsets.get(cell);
+    }
+
+    @Override
+    public int cellPoint(int cell, int i) {
+        return connectivity.get(offsets.get(cell) + i);
+    }
+
+    @Override
+    public List<FieldView> pointData() {
+        return Fields.of(pointFieldData, null);
+    }
+
+    @Override
+    public List<FieldView> cellData() {
+        return Fields.of(cellFieldData, null);
+    }
+}
@@ -0,0 +1,329 @@
+package vatika.data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Unstructured grid stored in flat primitive arrays instead of one object per point and cell.
+ * <ul>
+ * <li>{@code points}: coordinates x0, y0, z0, x1, y1, z1, ...</li>
+ * <li>{@code connectivity}: point indices of all the cells, one cell after the other</li>
+ * <li>{@code offsets}: start of every cell in {@code connectivity}, followed by the length of
+ * {@code connectivity}; the points of cell {@code i} are at {@code [offsets[i], offsets[i + 1])}</li>
+ * <li>{@code types}: {@link VTKType#ID} of every cell</li>
+ * </ul>
+ */
+public class PackedUnstructuredGrid implements UnstructuredGridView {
+    public final double[] points;
+    public final int[] connectivity;
+    public final int[] offsets;
+    public final byte[] types;
+    public final ScalarData[] pointScalarData;
+    public final ScalarData[] cellScalarData;
+    public final PackedVectorData[] pointVectorData;
+    public final PackedVectorData[] cellVectorData;
+
+    public PackedUnstructuredGrid(double[] points, int[] connectivity, int[] offsets, byte[] types,
+                                  ScalarData[] pointScalarData, PackedVectorData[] pointVectorData,
+                                  ScalarData[] cellScalarData, PackedVectorData[] cellVectorData) {
+        this.points = points;
+        this.connectivity = connectivity;
+        this.offsets = offsets;
+        this.types = types;
+        this.pointScalarData = pointScalarData;
+        this.cellScalarData = cellScalarData;
+        this.pointVectorData = pointVectorData;
+        this.cellVectorData = cellVectorData;
+    }
+
+    @Override
+    public int numberOfPoints() {
+        return points.length / 3;
+    }
+
+    @Override
+    public double coordinate(int point, int axis) {
+        return points[Math.toIntExact(3L * point + axis)];
+    }
+
+    @Override
+    public int numberOfCells() {
+        return types.length;
+    }
+
+    @Override
+    public VTKType cellType(int cell) {
+        return VTKType.get(types[cell] & 0xFF);
+    }
+
+    @Override
+    public int numberOfCellPoints(int cell) {
+        return offsets[cell + 1] - offsets[cell];
+    }
+
+    @Override
+    public int cellPoint(int cell, int i) {
+        return connectivity[offsets[cell] + i];
+    }
+
+    @Override
+    public List<FieldView> pointData() {
+        return Fields.of(pointScalarData, pointVectorData);
+    }
+
+    @Override
+    public List<FieldView> cellData() {
+        return Fields.of(cellScalarData, cellVectorData);
+    }
+
+    public static PackedUnstructuredGrid of(UnstructuredGrid grid) {
+        double[] points = new double[3 * grid.points.length];
+        for (int i = 0; i < grid.points.length; i++) {
+            points[3 * i] = grid.points[i].x;
+            points[3 * i + 1] = grid.points[i].y;
+            points[3 * i + 2] = grid.points[i].z;
+        }
+
+        int[] offsets = new int[grid.cells.length + 1];
+        byte[] types = new byte[grid.cells.length];
+        for (int i = 0; i < grid.cells.length; i++) {
+            offsets[i + 1] = offsets[i] + grid.cells[i].connectivity.length;
+            types[i] = (byte) grid.cells[i].vtkType.ID;
+        }
+        int[] connectivity = new int[offsets[grid.cells.length]];
+        for (int i = 0; i < grid.cells.length; i++) {
+            int[] cellConnectivity = grid.cells[i].connectivity;
+            System.arraycopy(cellConnectivity, 0, connectivity, offsets[i], cellConnectivity.length);
+        }
+
+        return new PackedUnstructuredGrid(points, connectivity, offsets, types,
+                grid.pointScalarData, pack(grid.pointVectorData),
+                grid.cellScalarData, pack(grid.cellVectorData));
+    }
+
+    public UnstructuredGrid toUnstructuredGrid() {
+        Point[] points = new Point[numberOfPoints()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(this.points[3 * i], this.points[3 * i + 1], this.points[3 * i + 2]);
+        }
+
+        Cell[] cells = new Cell[numberOfCells()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell(Arrays.copyOfRange(connectivity, offsets[i], offsets[i + 1]),
+                    VTKType.get(types[i] & 0xFF));
+        }
+
+        return new UnstructuredGrid(points, cells,
+                pointScalarData, unpack(pointVectorData),
+                cellScalarData, unpack(cellVectorData));
+    }
+
+    /**
+     * Returns the cells from {@code fromCell} (inclusive) to {@code toCell} (exclusive) as a grid
+     * of their own, with only the points they use. The points keep their relative order and
+     * are renumbered from 0; the point and cell data is copied for the points and cells kept.
+     */
+    public PackedUnstructuredGrid piece(int fromCell, int toCell) {
+        if (fromCell < 0 || toCell > numberOfCells() || fromCell > toCell) {
+            throw new IllegalArgumentException("Invalid range of cells: [" + fromCell + ", " + toCell
+                    + ") of " + numberOfCells());
+        }
+
+        int[] pieceOffsets = new int[toCell - fromCell + 1];
+        for (int i = 0; i < pieceOffsets.length; i++) {
+            pieceOffsets[i] = offsets[fromCell + i] - offsets[fromCell];
+        }
+        int[] pieceConnectivity = Arrays.copyOfRange(connectivity, offsets[fromCell], offsets[toCell]);
+
+        // indices of the points used, sorted, then each index of the connectivity replaced by its position
+        int[] pointIndices = pieceConnectivity.clone();
+        Arrays.sort(pointIndices);
+        int numberOfPiecePoints = 0;
+        for (int i = 0; i < pointIndices.length; i++) {
+            if (i == 0 || pointIndices[i] != pointIndices[i - 1]) {
+                pointIndices[numberOfPiecePoints++] = pointIndices[i];
+            }
+        }
+        pointIndices = Arrays.copyOf(pointIndices, numberOfPiecePoints);
+        for (int i = 0; i < pieceConnectivity.length; i++) {
+            pieceConnectivity[i] = Arrays.binarySearch(pointIndices, pieceConnectivity[i]);
+        }
+
+        return new PackedUnstructuredGrid(Fields.select(points, 3, pointIndices), pieceConnectivity, pieceOffsets,
+                Arrays.copyOfRange(types, fromCell, toCell),
+                Fields.selectScalars(pointScalarData, pointIndices),
+                Fields.selectVectors(pointVectorData, pointIndices),
+                sliceScalars(cellScalarData, fromCell, toCell), sliceVectors(cellVectorData, fromCell, toCell));
+    }
+
+    /**
+     * Checks the structure of the grid: the offsets of the cells, the number of points of every
+     * cell for its {@link VTKType}, the point indices against the number of points and the
+     * lengths of the point and cell data. The cells are checked in parallel.
+     *
+     * @return this grid
+     * @throws IllegalArgumentException describing the first problem found
+     */
+    public PackedUnstructuredGrid validate() {
+        if (points.length % 3 != 0) {
+            throw new IllegalArgumentException("Points have " + points.length + " coordinates, not a multiple of 3");
+        }
+        GridValidation.checkLength("Offsets", offsets.length, types.length + 1);
+        if (offsets[0] != 0 || offsets[types.length] != connectivity.length) {
+            throw new IllegalArgumentException("Offsets must go from 0 to " + connectivity.length + ": "
+                    + offsets[0] + " to " + offsets[types.length]);
+        }
+        int numberOfPoints = numberOfPoints();
+        IntStream.range(0, numberOfCells()).parallel()
+                .filter(cell -> cellError(cell, numberOfPoints) != null)
+                .findFirst()
+                .ifPresent(cell -> {
+                    throw new IllegalArgumentException(cellError(cell, numberOfPoints));
+                });
+        GridValidation.checkScalarData(pointScalarData, numberOfPoints);
+        checkVectorData(pointVectorData, numberOfPoints);
+        GridValidation.checkScalarData(cellScalarData, numberOfCells());
+        checkVectorData(cellVectorData, numberOfCells());
+        return this;
+    }
+
+    private String cellError(int cell, int numberOfPoints) {
+        if (offsets[cell] > offsets[cell + 1]) {
+            return "Cell " + cell + " ends at " + offsets[cell + 1] + " before its start at " + offsets[cell];
+        }
+        return GridValidation.cellError(cell, VTKType.find(types[cell] & 0xFF), connectivity,
+                offsets[cell], offsets[cell + 1], numberOfPoints);
+    }
+
+    private static void checkVectorData(PackedVectorData[] allVectorsData, int numberOfVectors) {
+        if (allVectorsData != null) {
+            for (PackedVectorData vectorData : allVectorsData) {
+                GridValidation.checkLength(vectorData.dataName, vectorData.components.length, 3 * numberOfVectors);
+            }
+        }
+    }
+
+    /**
+     * Removes the points no cell refers to, in one pass over the connectivity. The points kept
+     * keep their relative order and the connectivity is renumbered in parallel; the point data
+     * is copied for the points kept. The offsets, types and cell data are shared with this grid.
+     * The point indices must be valid, see {@link #validate()}.
+     *
+     * @return the grid without unreferenced points, this grid if every point is referenced
+     */
+    public PackedUnstructuredGrid compact() {
+        int[] newIndices = GridValidation.renumbering(numberOfPoints(),
+                IntStream.range(0, connectivity.length).map(i -> connectivity[i]));
+        int[] keptPoints = GridValidation.keptPoints(newIndices);
+        if (keptPoints == null) {
+            return this;
+        }
+        return renumbered(newIndices, keptPoints);
+    }
+
+    /**
+     * Merges the points within the tolerance of each other, as
+     * {@link UnstructuredGrid#mergePoints(double)} does. The offsets, types and cell data are
+     * shared with this grid.
+     *
+     * @param tolerance largest distance between merged points, 0 to merge identical points only
+     * @return the grid with merged points, this grid if no points are merged
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public PackedUnstructuredGrid mergePoints(double tolerance) {
+        int[] newIndices = PointMerging.newIndices(this, tolerance);
+        int[] keptPoints = GridValidation.keptPoints(newIndices);
+        if (keptPoints == null) {
+            return this;
+        }
+        return renumbered(newIndices, keptPoints);
+    }
+
+    /**
+     * Puts the points and cells in the order, as {@link UnstructuredGrid#reorder(GridOrder)} does.
+     *
+     * @throws IllegalArgumentException if the order is not for as many points and cells
+     */
+    public PackedUnstructuredGrid reorder(GridOrder order) {
+        order.check(numberOfPoints(), numberOfCells());
+        int[] newIndices = order.newPointIndices();
+        int[] orderedOffsets = new int[offsets.length];
+        byte[] orderedTypes = new byte[types.length];
+        for (int i = 0; i < types.length; i++) {
+            int cell = order.cells[i];
+            orderedOffsets[i + 1] = orderedOffsets[i] + offsets[cell + 1] - offsets[cell];
+            orderedTypes[i] = types[cell];
+        }
+        int[] orderedConnectivity = new int[connectivity.length];
+        IntStream.range(0, types.length).parallel().forEach(i -> {
+            int from = offsets[order.cells[i]];
+            for (int j = orderedOffsets[i]; j < orderedOffsets[i + 1]; j++) {
+                orderedConnectivity[j] = newIndices[connectivity[from++]];
+            }
+        });
+        return new PackedUnstructuredGrid(Fields.select(points, 3, order.points), orderedConnectivity,
+                orderedOffsets, orderedTypes,
+                Fields.selectScalars(pointScalarData, order.points),
+                Fields.selectVectors(pointVectorData, order.points),
+                Fields.selectScalars(cellScalarData, order.cells), Fields.selectVectors(cellVectorData, order.cells));
+    }
+
+    private PackedUnstructuredGrid renumbered(int[] newIndices, int[] keptPoints) {
+        int[] compactConnectivity = new int[connectivity.length];
+        Arrays.parallelSetAll(compactConnectivity, i -> newIndices[connectivity[i]]);
+        return new PackedUnstructuredGrid(Fields.select(points, 3, keptPoints), compactConnectivity, offsets, types,
+                Fields.selectScalars(pointScalarData, keptPoints), Fields.selectVectors(pointVectorData, keptPoints),
+                cellScalarData, cellVectorData);
+    }
+
+    private static ScalarData[] sliceScalars(ScalarData[] allScalarsData, int from, int to) {
+        if (allScalarsData == null) {
+            return null;
+        }
+
+        ScalarData[] sliced = new ScalarData[allScalarsData.length];
+        for (int i = 0; i < allScalarsData.length; i++) {
+            sliced[i] = new ScalarData(allScalarsData[i].dataName,
+                    Arrays.copyOfRange(allScalarsData[i].scalars, from, to));
+        }
+        return sliced;
+    }
+
+    private static PackedVectorData[] sliceVectors(PackedVectorData[] allVectorsData, int from, int to) {
+        if (allVectorsData == null) {
+            return null;
+        }
+
+        PackedVectorData[] sliced = new PackedVectorData[allVectorsData.length];
+        for (int i = 0; i < allVectorsData.length; i++) {
+            sliced[i] = new PackedVectorData(allVectorsData[i].dataName,
+                    Arrays.copyOfRange(allVectorsData[i].components, 3 * from, 3 * to));
+        }
+        return sliced;
+    }
+
+    private static PackedVectorData[] pack(VectorData[] allVectorsData) {
+        if (allVectorsData == null) {
+            return null;
+        }
+
+        PackedVectorData[] packed = new PackedVectorData[allVectorsData.length];
+        for (int i = 0; i < allVectorsData.length; i++) {
+            packed[i] = PackedVectorData.of(allVectorsData[i]);
+        }
+        return packed;
+    }
+
+    private static VectorData[] unpack(PackedVectorData[] allPackedVectorsData) {
+        if (allPackedVectorsData == null) {
+            return null;
+        }
+
+        VectorData[] unpacked = new VectorData[allPackedVectorsData.length];
+        for (int i = 0; i < allPackedVectorsData.length; i++) {
+            unpacked[i] = allPackedVectorsData[i].toVectorData();
+        }
+        return unpacked;
+    }
+}
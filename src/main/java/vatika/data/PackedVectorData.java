@@ -0,0 +1,54 @@
+package vatika.data;
+
+/**
+ * Vector data stored as a flat array of components: x0, y0, z0, x1, y1, z1, ...
+ */
+public class PackedVectorData implements FieldView {
+    public final String dataName;
+    public final double[] components;
+
+    public PackedVectorData(String dataName, double[] components) {
+        this.dataName = dataName;
+        this.components = components;
+    }
+
+    @Override
+    public String name() {
+        return dataName;
+    }
+
+    @Override
+    public int numberOfComponents() {
+        return 3;
+    }
+
+    @Override
+    public double value(int index, int component) {
+        return components[Math.toIntExact(3L * index + component)];
+    }
+
+    public int numberOfVectors() {
+        return components.length / 3;
+    }
+
+    public static PackedVectorData of(VectorData vectorData) {
+        Vector[] vectors = vectorData.vectors;
+        double[] components = new double[3 * vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            components[3 * i] = vectors[i].x;
+            components[3 * i + 1] = vectors[i].y;
+            components[3 * i + 2] = vectors[i].z;
+        }
+
+        return new PackedVectorData(vectorData.dataName, components);
+    }
+
+    public VectorData toVectorData() {
+        Vector[] vectors = new Vector[numberOfVectors()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = new Vector(components[3 * i], components[3 * i + 1], components[3 * i + 2]);
+        }
+
+        return new VectorData(dataName, vectors);
+    }
+}
@@ -0,0 +1,162 @@
+package vatika.data;
+
+import java.util.Arrays;
+
+/**
+ * Finds coincident points with a spatial hash, for {@link UnstructuredGrid#mergePoints(double)} and
+ * {@link PackedUnstructuredGrid#mergePoints(double)}.
+ * <p>
+ * Space is divided into cubes twice the size of the tolerance, so that the points within the
+ * tolerance of a point are in its cube or in the 7 others on the sides of the cube it is closest to.
+ * Every point is keyed by the hash of its cube and its index, and the keys are sorted in parallel;
+ * an open addressing table then gives where the keys of every hash start. With a tolerance of 0,
+ * the cubes are single positions.
+ */
+final class PointMerging {
+    private final UnstructuredGridView grid;
+    private final double tolerance;
+    private final long[] keys;
+    private final int[] tableHashes;
+    private final int[] tableStarts;
+
+    private PointMerging(UnstructuredGridView grid, double tolerance) {
+        this.grid = grid;
+        this.tolerance = tolerance;
+        int numberOfPoints = grid.numberOfPoints();
+        this.keys = new long[numberOfPoints];
+        Arrays.parallelSetAll(keys, point -> key(hash(cube(point, 0), cube(point, 1), cube(point, 2)), point));
+        Arrays.parallelSort(keys);
+
+        int numberOfHashes = 0;
+        for (int n = 0; n < numberOfPoints; n++) {
+            if (n == 0 || hash(keys[n]) != hash(keys[n - 1])) {
+                numberOfHashes++;
+            }
+        }
+        int tableSize = Integer.highestOneBit(Math.max(numberOfHashes, 1)) * 4;
+        this.tableHashes = new int[tableSize];
+        this.tableStarts = new int[tableSize];
+        Arrays.fill(tableStarts, -1);
+        for (int n = 0; n < numberOfPoints; n++) {
+            if (n == 0 || hash(keys[n]) != hash(keys[n - 1])) {
+                int slot = slot(hash(keys[n]));
+                while (tableStarts[slot] >= 0) {
+                    slot = (slot + 1) & (tableSize - 1);
+                }
+                tableHashes[slot] = hash(keys[n]);
+                tableStarts[slot] = n;
+            }
+        }
+    }
+
+    /**
+     * @return the new index of every point, that of the point it is merged into for merged points,
+     * as {@link GridValidation#keptPoints(int[])} takes them
+     */
+    static int[] newIndices(UnstructuredGridView grid, double tolerance) {
+        int[] representatives = representatives(grid, tolerance);
+        int[] newIndices = GridValidation.renumbering(representatives.length, Arrays.stream(representatives));
+        // representatives are merged into themselves, so their new index is read unchanged
+        Arrays.parallelSetAll(newIndices, point -> newIndices[representatives[point]]);
+        return newIndices;
+    }
+
+    /**
+     * @return the point every point is merged into: the point of lowest index within the tolerance,
+     * possibly itself, and so on transitively
+     */
+    static int[] representatives(UnstructuredGridView grid, double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        }
+        PointMerging merging = new PointMerging(grid, tolerance);
+        int[] representatives = new int[grid.numberOfPoints()];
+        Arrays.parallelSetAll(representatives, merging::lowestWithinTolerance);
+        // a point is only merged into a point of lower index, whose representative is then final
+        for (int point = 0; point < representatives.length; point++) {
+            representatives[point] = representatives[representatives[point]];
+        }
+        return representatives;
+    }
+
+    private int lowestWithinTolerance(int point) {
+        double x = grid.coordinate(point, 0);
+        double y = grid.coordinate(point, 1);
+        double z = grid.coordinate(point, 2);
+        long i = cube(x);
+        long j = cube(y);
+        long k = cube(z);
+        // the cube and, on every axis, the other one on the side of its closest face
+        long ni = tolerance > 0 ? neighbor(x, i) : i;
+        long nj = tolerance > 0 ? neighbor(y, j) : j;
+        long nk = tolerance > 0 ? neighbor(z, k) : k;
+        int numberOfCubes = tolerance > 0 ? 8 : 1;
+        double squaredTolerance = tolerance * tolerance;
+
+        int lowest = point;
+        for (int c = 0; c < numberOfCubes; c++) {
+            int hash = hash((c & 1) == 0 ? i : ni, (c & 2) == 0 ? j : nj, (c & 4) == 0 ? k : nk);
+            for (int n = start(hash); n >= 0 && n < keys.length && hash(keys[n]) == hash; n++) {
+                int other = (int) keys[n];
+                if (other >= lowest) {
+                    // sorted by index within a hash
+                    break;
+                }
+                double dx = grid.coordinate(other, 0) - x;
+                double dy = grid.coordinate(other, 1) - y;
+                double dz = grid.coordinate(other, 2) - z;
+                if (dx * dx + dy * dy + dz * dz <= squaredTolerance) {
+                    lowest = other;
+                }
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * @return index of the first key of the hash, -1 if there is none
+     */
+    private int start(int hash) {
+        int mask = tableStarts.length - 1;
+        for (int slot = slot(hash); tableStarts[slot] >= 0; slot = (slot + 1) & mask) {
+            if (tableHashes[slot] == hash) {
+                return tableStarts[slot];
+            }
+        }
+        return -1;
+    }
+
+    private int slot(int hash) {
+        return hash & (tableStarts.length - 1);
+    }
+
+    private long cube(int point, int axis) {
+        return cube(grid.coordinate(point, axis));
+    }
+
+    private long cube(double coordinate) {
+        // adding 0.0 turns -0.0 into 0.0, which coincide
+        return tolerance > 0
+                ? (long) Math.floor(coordinate / (2 * tolerance))
+                : Double.doubleToLongBits(coordinate + 0.0);
+    }
+
+    private long neighbor(double coordinate, long cube) {
+        return coordinate / (2 * tolerance) - cube < 0.5 ? cube - 1 : cube + 1;
+    }
+
+    private static long key(int hash, int point) {
+        return (long) hash << 32 | point;
+    }
+
+    private static int hash(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int hash(long i, long j, long k) {
+        long h = i * 0x9E3779B97F4A7C15L;
+        h = (h ^ j) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ k) * 0x165667B19E3779F9L;
+        return (int) (h >>> 32) ^ (int) h;
+    }
+}
@@ -0,0 +1,72 @@
+package vatika.data;
+
+/**
+ * Surface data: points with vertices, lines, triangle strips and polygons between them,
+ * each stored in flat primitive arrays as the cells of {@link PackedUnstructuredGrid}.
+ * <ul>
+ * <li>{@code points}: coordinates x0, y0, z0, x1, y1, z1, ...</li>
+ * <li>{@code vertices}, {@code lines}, {@code strips}, {@code polygons}: the cells of each
+ * kind, {@code null} for none</li>
+ * </ul>
+ * Cell data is ordered as the cells are numbered: the vertices first, then the lines, the
+ * strips and the polygons.
+ */
+public class PolyData {
+    /**
+     * Cells of one kind.
+     * <ul>
+     * <li>{@code connectivity}: point indices of all the cells, one cell after the other</li>
+     * <li>{@code offsets}: start of every cell in {@code connectivity}, followed by the length of
+     * {@code connectivity}; the points of cell {@code i} are at {@code [offsets[i], offsets[i + 1])}</li>
+     * </ul>
+     */
+    public static class Cells {
+        public final int[] connectivity;
+        public final int[] offsets;
+
+        public Cells(int[] connectivity, int[] offsets) {
+            this.connectivity = connectivity;
+            this.offsets = offsets;
+        }
+
+        public int numberOfCells() {
+            return offsets.length - 1;
+        }
+    }
+
+    public final double[] points;
+    public final Cells vertices;
+    public final Cells lines;
+    public final Cells strips;
+    public final Cells polygons;
+    public final ScalarData[] pointScalarData;
+    public final ScalarData[] cellScalarData;
+    public final PackedVectorData[] pointVectorData;
+    public final PackedVectorData[] cellVectorData;
+
+    public PolyData(double[] points, Cells vertices, Cells lines, Cells strips, Cells polygons,
+                    ScalarData[] pointScalarData, PackedVectorData[] pointVectorData,
+                    ScalarData[] cellScalarData, PackedVectorData[] cellVectorData) {
+        this.points = points;
+        this.vertices = vertices;
+        this.lines = lines;
+        this.strips = strips;
+        this.polygons = polygons;
+        this.pointScalarData = pointScalarData;
+        this.cellScalarData = cellScalarData;
+        this.pointVectorData = pointVectorData;
+        this.cellVectorData = cellVectorData;
+    }
+
+    public int numberOfPoints() {
+        return points.length / 3;
+    }
+
+    public int numberOfCells() {
+        return numberOfCells(vertices) + numberOfCells(lines) + numberOfCells(strips) + numberOfCells(polygons);
+    }
+
+    private static int numberOfCells(Cells cells) {
+        return cells == null ? 0 : cells.numberOfCells();
+    }
+}
@@ -0,0 +1,78 @@
+package vatika.data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel least significant digit radix sort of indices by 64 bit keys, one byte at a time.
+ * Every pass counts the bytes of slices of the keys in parallel, then moves the slices to their
+ * places in parallel. Bytes equal in all the keys are skipped.
+ */
+final class RadixSort {
+    private static final int MIN_SLICE = 1 << 16;
+
+    private RadixSort() {
+    }
+
+    /**
+     * @return the indices of the keys in the order of the keys, as unsigned numbers; the indices
+     * of equal keys stay in increasing order
+     */
+    static int[] sortedIndices(long[] keys) {
+        int size = keys.length;
+        int numberOfSlices = Math.max(1, Math.min(4 * ForkJoinPool.getCommonPoolParallelism(), size / MIN_SLICE));
+        int sliceSize = (size + numberOfSlices - 1) / numberOfSlices;
+
+        long[] sortedKeys = keys.clone();
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        long differentBits = 0;
+        for (long key : keys) {
+            differentBits |= key ^ keys[0];
+        }
+
+        long[] otherKeys = new long[size];
+        int[] otherIndices = new int[size];
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            if ((differentBits >>> shift & 0xFF) == 0) {
+                continue;
+            }
+            int digitShift = shift;
+            long[] fromKeys = sortedKeys;
+            int[] fromIndices = indices;
+            int[][] starts = new int[numberOfSlices][256];
+            IntStream.range(0, numberOfSlices).parallel().forEach(slice -> {
+                int[] counts = starts[slice];
+                for (int i = slice * sliceSize, end = Math.min(size, i + sliceSize); i < end; i++) {
+                    counts[(int) (fromKeys[i] >>> digitShift) & 0xFF]++;
+                }
+            });
+            // every slice moves its keys of a digit after those of the slices before it
+            int start = 0;
+            for (int digit = 0; digit < 256; digit++) {
+                for (int slice = 0; slice < numberOfSlices; slice++) {
+                    int count = starts[slice][digit];
+                    starts[slice][digit] = start;
+                    start += count;
+                }
+            }
+            long[] toKeys = otherKeys;
+            int[] toIndices = otherIndices;
+            IntStream.range(0, numberOfSlices).parallel().forEach(slice -> {
+                int[] next = starts[slice];
+                for (int i = slice * sliceSize, end = Math.min(size, i + sliceSize); i < end; i++) {
+                    int position = next[(int) (fromKeys[i] >>> digitShift) & 0xFF]++;
+                    toKeys[position] = fromKeys[i];
+                    toIndices[position] = fromIndices[i];
+                }
+            });
+            otherKeys = sortedKeys;
+            otherIndices = indices;
+            sortedKeys = toKeys;
+            indices = toIndices;
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,47 @@
+package vatika.data;
+
+/**
+ * Points on a lattice with varying spacing, given by their coordinates along each axis,
+ * and the hexahedra between them.
+ * <ul>
+ * <li>{@code xCoordinates}, {@code yCoordinates}, {@code zCoordinates}: coordinates of the
+ * points along each axis, increasing</li>
+ * </ul>
+ * Point and cell data are ordered with x varying fastest, then y, then z.
+ */
+public class RectilinearGrid {
+    public final double[] xCoordinates;
+    public final double[] yCoordinates;
+    public final double[] zCoordinates;
+    public final ScalarData[] pointScalarData;
+    public final ScalarData[] cellScalarData;
+    public final PackedVectorData[] pointVectorData;
+    public final PackedVectorData[] cellVectorData;
+
+    public RectilinearGrid(double[] xCoordinates, double[] yCoordinates, double[] zCoordinates,
+                           ScalarData[] pointScalarData, PackedVectorData[] pointVectorData,
+                           ScalarData[] cellScalarData, PackedVectorData[] cellVectorData) {
+        this.xCoordinates = xCoordinates;
+        this.yCoordinates = yCoordinates;
+        this.zCoordinates = zCoordinates;
+        this.pointScalarData = pointScalarData;
+        this.cellScalarData = cellScalarData;
+        this.pointVectorData = pointVectorData;
+        this.cellVectorData = cellVectorData;
+    }
+
+    /**
+     * @return numbers of points along x, y and z
+     */
+    public int[] dimensions() {
+        return new int[]{xCoordinates.length, yCoordinates.length, zCoordinates.length};
+    }
+
+    public int numberOfPoints() {
+        return StructuredData.numberOfPoints(dimensions());
+    }
+
+    public int numberOfCells() {
+        return StructuredData.numberOfCells(dimensions());
+    }
+}
@@ -1,6 +1,6 @@
 package vatika.data;
 
-public class ScalarData {
+public class ScalarData implements FieldView {
     public final String dataName;
     public final double[] scalars;
 
@@ -8,4 +8,19 @@ public class ScalarData {
         this.dataName = dataName;
         this.scalars = scalars;
     }
+
+    @Override
+    public String name() {
+        return dataName;
+    }
+
+    @Override
+    public int numberOfComponents() {
+        return 1;
+    }
+
+    @Override
+    public double value(int index, int component) {
+        return scalars[index];
+    }
 }
@@ -0,0 +1,89 @@
+package vatika.data;
+
+/**
+ * Curves through the cells of a 3D lattice of 2<sup>21</sup> positions per axis, along which
+ * points close in space mostly stay close, used to order grids by {@link GridOrder}.
+ */
+public enum SpaceFillingCurve {
+    /**
+     * Z-order: the bits of the coordinates interleaved. Cheap, with jumps between the octants.
+     */
+    MORTON {
+        @Override
+        long key(int x, int y, int z) {
+            return spread(x) << 2 | spread(y) << 1 | spread(z);
+        }
+    },
+    /**
+     * Hilbert curve: consecutive positions are always neighbors, which keeps more locality.
+     */
+    HILBERT {
+        @Override
+        long key(int x, int y, int z) {
+            return hilbert(x, y, z, BITS);
+        }
+    };
+
+    static final int BITS = 21;
+
+    /**
+     * @param x coordinates on the lattice, from 0 to 2<sup>21</sup> - 1
+     * @return position on the curve, a 63 bit number
+     */
+    abstract long key(int x, int y, int z);
+
+    /**
+     * @return the bits of the value, 21 at most, two zeros apart
+     */
+    private static long spread(int value) {
+        long v = value & 0x1FFFFFL;
+        v = (v | v << 32) & 0x1F00000000FFFFL;
+        v = (v | v << 16) & 0x1F0000FF0000FFL;
+        v = (v | v << 8) & 0x100F00F00F00F00FL;
+        v = (v | v << 4) & 0x10C30C30C30C30C3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+
+    /**
+     * Position on the Hilbert curve through a lattice of 2<sup>bits</sup> positions per axis,
+     * with the transposition of J. Skilling, "Programming the Hilbert curve" (2004).
+     */
+    static long hilbert(int x, int y, int z, int bits) {
+        // inverse undo
+        for (int q = 1 << (bits - 1); q > 1; q >>= 1) {
+            int p = q - 1;
+            if ((x & q) != 0) {
+                x ^= p;
+            }
+            if ((y & q) != 0) {
+                x ^= p;
+            } else {
+                int t = (x ^ y) & p;
+                x ^= t;
+                y ^= t;
+            }
+            if ((z & q) != 0) {
+                x ^= p;
+            } else {
+                int t = (x ^ z) & p;
+                x ^= t;
+                z ^= t;
+            }
+        }
+        // Gray encode
+        y ^= x;
+        z ^= y;
+        int t = 0;
+        for (int q = 1 << (bits - 1); q > 1; q >>= 1) {
+            if ((z & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        x ^= t;
+        y ^= t;
+        z ^= t;
+        // the transposed index: bit b of the index spread over bit b / 3 of x, y and z
+        return spread(x) << 2 | spread(y) << 1 | spread(z);
+    }
+}
@@ -0,0 +1,33 @@
+package vatika.data;
+
+/**
+ * Sizes of structured data sets, whose points are given along three axes.
+ */
+final class StructuredData {
+    private StructuredData() {
+    }
+
+    /**
+     * @return number of points of a structured data set with the numbers of points along its axes
+     */
+    static int numberOfPoints(int[] dimensions) {
+        return dimensions[0] * dimensions[1] * dimensions[2];
+    }
+
+    /**
+     * @return number of cells between the points; an axis with a single point adds no dimension
+     * to the cells, so that a slice of a block is made of quads and a line of segments
+     */
+    static int numberOfCells(int[] dimensions) {
+        int cells = 1;
+        for (int dimension : dimensions) {
+            if (dimension <= 0) {
+                return 0;
+            }
+            if (dimension > 1) {
+                cells *= dimension - 1;
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,39 @@
+package vatika.data;
+
+/**
+ * Points of a curvilinear block, with the topology of a lattice, and the hexahedra between
+ * them. The cells are implied by the order of the points, so no connectivity is stored.
+ * <ul>
+ * <li>{@code dimensions}: numbers of points along the i, j and k directions of the block</li>
+ * <li>{@code points}: coordinates x0, y0, z0, x1, y1, z1, ... with i varying fastest,
+ * then j, then k</li>
+ * </ul>
+ * Point and cell data are ordered as the points.
+ */
+public class StructuredGrid {
+    public final int[] dimensions;
+    public final double[] points;
+    public final ScalarData[] pointScalarData;
+    public final ScalarData[] cellScalarData;
+    public final PackedVectorData[] pointVectorData;
+    public final PackedVectorData[] cellVectorData;
+
+    public StructuredGrid(int[] dimensions, double[] points,
+                          ScalarData[] pointScalarData, PackedVectorData[] pointVectorData,
+                          ScalarData[] cellScalarData, PackedVectorData[] cellVectorData) {
+        this.dimensions = dimensions;
+        this.points = points;
+        this.pointScalarData = pointScalarData;
+        this.cellScalarData = cellScalarData;
+        this.pointVectorData = pointVectorData;
+        this.cellVectorData = cellVectorData;
+    }
+
+    public int numberOfPoints() {
+        return StructuredData.numberOfPoints(dimensions);
+    }
+
+    public int numberOfCells() {
+        return StructuredData.numberOfCells(dimensions);
+    }
+}
@@ -1,6 +1,10 @@
 package vatika.data;
 
-public class UnstructuredGrid {
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class UnstructuredGrid implements UnstructuredGridView {
     public final Cell[] cells;
     public final Point[] points;
     public final ScalarData[] pointScalarData;
@@ -18,4 +22,165 @@ public class UnstructuredGrid {
         this.pointVectorData = pointVectorData;
         this.cellVectorData = cellVectorData;
     }
+
+    @Override
+    public int numberOfPoints() {
+        return points.length;
+    }
+
+    @Override
+    public double coordinate(int point, int axis) {
+        Point p = points[point];
+        return axis == 0 ? p.x : axis == 1 ? p.y : p.z;
+    }
+
+    @Override
+    public int numberOfCells() {
+        return cells.length;
+    }
+
+    @Override
+    public VTKType cellType(int cell) {
+        return cells[cell].vtkType;
+    }
+
+    @Override
+    public int numberOfCellPoints(int cell) {
+        return cells[cell].connectivity.length;
+    }
+
+    @Override
+    public int cellPoint(int cell, int i) {
+        return cells[cell].connectivity[i];
+    }
+
+    @Override
+    public List<FieldView> pointData() {
+        return Fields.of(pointScalarData, pointVectorData);
+    }
+
+    @Override
+    public List<FieldView> cellData() {
+        return Fields.of(cellScalarData, cellVectorData);
+    }
+
+    /**
+     * Checks the structure of the grid: the number of points of every cell for its
+     * {@link VTKType}, the point indices against the number of points and the lengths of the
+     * point and cell data. The cells are checked in parallel.
+     *
+     * @return this grid
+     * @throws IllegalArgumentException describing the first problem found
+     */
+    public UnstructuredGrid validate() {
+        IntStream.range(0, cells.length).parallel()
+                .filter(cell -> cellError(cell) != null)
+                .findFirst()
+                .ifPresent(cell -> {
+                    throw new IllegalArgumentException(cellError(cell));
+                });
+        GridValidation.checkScalarData(pointScalarData, points.length);
+        checkVectorData(pointVectorData, points.length);
+        GridValidation.checkScalarData(cellScalarData, cells.length);
+        checkVectorData(cellVectorData, cells.length);
+        return this;
+    }
+
+    private String cellError(int cell) {
+        int[] connectivity = cells[cell].connectivity;
+        return GridValidation.cellError(cell, cells[cell].vtkType, connectivity, 0, connectivity.length,
+                points.length);
+    }
+
+    private static void checkVectorData(VectorData[] allVectorsData, int numberOfVectors) {
+        if (allVectorsData != null) {
+            for (VectorData vectorData : allVectorsData) {
+                GridValidation.checkLength(vectorData.dataName, vectorData.vectors.length, numberOfVectors);
+            }
+        }
+    }
+
+    /**
+     * Removes the points no cell refers to, in one pass over the cells. The points kept keep
+     * their relative order and the cells are renumbered in parallel; the point data is copied
+     * for the points kept. The cell data is shared with this grid. The point indices must be
+     * valid, see {@link #validate()}.
+     *
+     * @return the grid without unreferenced points, this grid if every point is referenced
+     */
+    public UnstructuredGrid compact() {
+        int[] newIndices = GridValidation.renumbering(points.length,
+                Arrays.stream(cells).flatMapToInt(cell -> Arrays.stream(cell.connectivity)));
+        int[] keptPoints = GridValidation.keptPoints(newIndices);
+        if (keptPoints == null) {
+            return this;
+        }
+        return renumbered(newIndices, keptPoints);
+    }
+
+    /**
+     * Merges the points within the tolerance of each other, which cells assembled from separate
+     * blocks of points often share. Every point is merged into the point of lowest index within
+     * the tolerance, and so on transitively. The points are found with a spatial hash, in
+     * parallel. The points kept keep their relative order and their point data; the cells are
+     * renumbered in parallel, keeping the indices repeated by merged points, and the cell data is
+     * shared with this grid.
+     *
+     * @param tolerance largest distance between merged points, 0 to merge identical points only
+     * @return the grid with merged points, this grid if no points are merged
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public UnstructuredGrid mergePoints(double tolerance) {
+        int[] newIndices = PointMerging.newIndices(this, tolerance);
+        int[] keptPoints = GridValidation.keptPoints(newIndices);
+        if (keptPoints == null) {
+            return this;
+        }
+        return renumbered(newIndices, keptPoints);
+    }
+
+    /**
+     * Puts the points and cells in the order, typically along a space filling curve, see
+     * {@link GridOrder#of(UnstructuredGridView, SpaceFillingCurve)}. The cells are renumbered and
+     * the point and cell data is permuted with them, in parallel.
+     *
+     * @throws IllegalArgumentException if the order is not for as many points and cells
+     */
+    public UnstructuredGrid reorder(GridOrder order) {
+        order.check(points.length, cells.length);
+        int[] newIndices = order.newPointIndices();
+        Cell[] orderedCells = new Cell[cells.length];
+        Arrays.parallelSetAll(orderedCells, i -> {
+            Cell cell = cells[order.cells[i]];
+            int[] connectivity = new int[cell.connectivity.length];
+            for (int j = 0; j < connectivity.length; j++) {
+                connectivity[j] = newIndices[cell.connectivity[j]];
+            }
+            return new Cell(connectivity, cell.vtkType);
+        });
+        Point[] orderedPoints = new Point[points.length];
+        Arrays.parallelSetAll(orderedPoints, i -> points[order.points[i]]);
+        return new UnstructuredGrid(orderedPoints, orderedCells,
+                Fields.selectScalars(pointScalarData, order.points),
+                Fields.selectVectors(pointVectorData, order.points),
+                Fields.selectScalars(cellScalarData, order.cells),
+                Fields.selectVectors(cellVectorData, order.cells));
+    }
+
+    private UnstructuredGrid renumbered(int[] newIndices, int[] keptPoints) {
+        Cell[] compactCells = new Cell[cells.length];
+        Arrays.parallelSetAll(compactCells, i -> {
+            int[] connectivity = cells[i].connectivity.clone();
+            for (int j = 0; j < connectivity.length; j++) {
+                connectivity[j] = newIndices[connectivity[j]];
+            }
+            return new Cell(connectivity, cells[i].vtkType);
+        });
+        Point[] compactPoints = new Point[keptPoints.length];
+        Arrays.setAll(compactPoints, i -> points[keptPoints[i]]);
+        return new UnstructuredGrid(compactPoints, compactCells,
+                Fields.selectScalars(pointScalarData, keptPoints),
+                Fields.selectVectors(pointVectorData, keptPoints),
+                cellScalarData, cellVectorData);
+    }
 }
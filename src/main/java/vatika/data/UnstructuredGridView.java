@@ -0,0 +1,44 @@
+package vatika.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only access to an unstructured grid, wherever it is stored: the arrays of a solver,
+ * direct or mapped buffers, or the classes of this package. The writers read the values
+ * through these methods while they write, so the grid is never copied.
+ * Points and cells are numbered from 0.
+ */
+public interface UnstructuredGridView {
+    int numberOfPoints();
+
+    /**
+     * @param axis 0, 1 or 2 for the x, y or z coordinate
+     */
+    double coordinate(int point, int axis);
+
+    int numberOfCells();
+
+    VTKType cellType(int cell);
+
+    int numberOfCellPoints(int cell);
+
+    /**
+     * @return index of point {@code i} of the cell, {@code 0 <= i < numberOfCellPoints(cell)}
+     */
+    int cellPoint(int cell, int i);
+
+    /**
+     * @return the point data, every field with a value for every point; default: none
+     */
+    default List<FieldView> pointData() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the cell data, every field with a value for every cell; default: none
+     */
+    default List<FieldView> cellData() {
+        return Collections.emptyList();
+    }
+}
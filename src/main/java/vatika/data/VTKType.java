@@ -1,37 +1,77 @@
 package vatika.data;
 
-import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 public enum VTKType {
-    VTK_VERTEX(1),
-    VTK_POLY_VERTEX(2),
-    VTK_LINE(3),
-    VTK_POLY_LINE(4),
-    VTK_TRIANGLE(5),
-    VTK_TRIANGLE_STRIP(6),
-    VTK_POLYGON(7),
-    VTK_PIXEL(8),
-    VTK_QUAD(9),
-    VTK_TETRA(10),
-    VTK_VOXEL(11),
-    VTK_HEXAHEDRON(12),
-    VTK_WEDGE(13),
-    VTK_PYRAMID(14),
-    VTK_QUADRATIC_EDGE(21),
-    VTK_QUADRATIC_TRIANGLE(22),
-    VTK_QUADRATIC_QUAD(23),
-    VTK_QUADRATIC_TETRA(24),
-    VTK_QUADRATIC_HEXAHEDRON(25);
+    VTK_VERTEX(1, 1),
+    VTK_POLY_VERTEX(2, 1, Integer.MAX_VALUE),
+    VTK_LINE(3, 2),
+    VTK_POLY_LINE(4, 2, Integer.MAX_VALUE),
+    VTK_TRIANGLE(5, 3),
+    VTK_TRIANGLE_STRIP(6, 3, Integer.MAX_VALUE),
+    VTK_POLYGON(7, 3, Integer.MAX_VALUE),
+    VTK_PIXEL(8, 4),
+    VTK_QUAD(9, 4),
+    VTK_TETRA(10, 4),
+    VTK_VOXEL(11, 8),
+    VTK_HEXAHEDRON(12, 8),
+    VTK_WEDGE(13, 6),
+    VTK_PYRAMID(14, 5),
+    VTK_QUADRATIC_EDGE(21, 3),
+    VTK_QUADRATIC_TRIANGLE(22, 6),
+    VTK_QUADRATIC_QUAD(23, 8),
+    VTK_QUADRATIC_TETRA(24, 10),
+    VTK_QUADRATIC_HEXAHEDRON(25, 20);
+
+    private static final VTKType[] BY_ID = new VTKType[26];
+
+    static {
+        for (VTKType type : values()) {
+            BY_ID[type.ID] = type;
+        }
+    }
 
     public final int ID;
 
-    VTKType(int id) {
+    /**
+     * Fewest and most points a cell of the type has; the same for the types with a fixed
+     * number of points.
+     */
+    public final int minNumberOfPoints;
+    public final int maxNumberOfPoints;
+
+    VTKType(int id, int numberOfPoints) {
+        this(id, numberOfPoints, numberOfPoints);
+    }
+
+    VTKType(int id, int minNumberOfPoints, int maxNumberOfPoints) {
         this.ID = id;
+        this.minNumberOfPoints = minNumberOfPoints;
+        this.maxNumberOfPoints = maxNumberOfPoints;
+    }
+
+    /**
+     * @return whether a cell of the type may have the number of points
+     */
+    public boolean isValidNumberOfPoints(int numberOfPoints) {
+        return numberOfPoints >= minNumberOfPoints && numberOfPoints <= maxNumberOfPoints;
     }
 
+    /**
+     * @throws NoSuchElementException if no type has the id
+     */
     public static VTKType get(int id) {
-        return Arrays.stream(VTKType.values())
-                .filter(e -> e.ID == id)
-                .findAny().orElseThrow();
+        VTKType type = find(id);
+        if (type == null) {
+            throw new NoSuchElementException("No VTK cell type " + id);
+        }
+        return type;
+    }
+
+    /**
+     * @return the type of the id, {@code null} if there is none
+     */
+    static VTKType find(int id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
     }
 }
@@ -1,6 +1,6 @@
 package vatika.data;
 
-public class VectorData {
+public class VectorData implements FieldView {
     public final String dataName;
     public final Vector[] vectors;
 
@@ -8,4 +8,20 @@ public class VectorData {
         this.dataName = dataName;
         this.vectors = vectors;
     }
+
+    @Override
+    public String name() {
+        return dataName;
+    }
+
+    @Override
+    public int numberOfComponents() {
+        return 3;
+    }
+
+    @Override
+    public double value(int index, int component) {
+        Vector vector = vectors[index];
+        return component == 0 ? vector.x : component == 1 ? vector.y : vector.z;
+    }
 }
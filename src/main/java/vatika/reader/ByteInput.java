@@ -0,0 +1,149 @@
+package vatika.reader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Binary data of a file, read either raw from the mapping or decoded from Base64 text.
+ */
+abstract class ByteInput {
+    private static final int DECODED_BUFFER_SIZE = 48 * 1024;
+
+    final ByteOrder byteOrder;
+
+    private ByteInput(ByteOrder byteOrder) {
+        this.byteOrder = byteOrder;
+    }
+
+    /**
+     * Returns at least one and at most {@code maxLength} of the next bytes, in the byte order
+     * of the input, and moves past them. The buffer is only valid until the next call.
+     */
+    abstract ByteBuffer next(long maxLength) throws IOException;
+
+    void readFully(byte[] bytes, int length) throws IOException {
+        for (int count = 0; count < length; ) {
+            ByteBuffer next = next(length - count);
+            int n = next.remaining();
+            next.get(bytes, count, n);
+            count += n;
+        }
+    }
+
+    /**
+     * Reads the next {@code length} bytes as packed values of the array.
+     */
+    void read(ValueArray array, long length) throws IOException {
+        if (length != array.remainingBytes()) {
+            throw new IOException("Size of the data, " + length + " bytes, does not match the "
+                    + array.remainingBytes() + " bytes expected");
+        }
+        while (length > 0) {
+            ByteBuffer next = next(length);
+            length -= next.remaining();
+            array.read(next);
+        }
+    }
+
+    long readUnsigned(ValueType type) throws IOException {
+        byte[] bytes = new byte[type.bytes];
+        readFully(bytes, bytes.length);
+        long value = type.getLong(ByteBuffer.wrap(bytes).order(byteOrder));
+        if (value < 0) {
+            throw new IOException("Size out of range: " + Long.toUnsignedString(value));
+        }
+        return value;
+    }
+
+    /**
+     * Reads the bytes mapped from the current position of the file on.
+     */
+    static ByteInput raw(MappedFile file, ByteOrder byteOrder) {
+        return new ByteInput(byteOrder) {
+            @Override
+            ByteBuffer next(long maxLength) throws IOException {
+                return file.next(maxLength, byteOrder);
+            }
+        };
+    }
+
+    /**
+     * Decodes the Base64 text from the current position of the file on, ignoring whitespace.
+     * The text may be a sequence of separately encoded parts, each ending with its own padding.
+     */
+    static ByteInput base64(MappedFile file, ByteOrder byteOrder) {
+        return new ByteInput(byteOrder) {
+            private final ByteBuffer decoded = ByteBuffer.allocate(DECODED_BUFFER_SIZE).order(byteOrder).flip();
+
+            @Override
+            ByteBuffer next(long maxLength) throws IOException {
+                if (!decoded.hasRemaining()) {
+                    decode();
+                }
+                ByteBuffer next = decoded.slice().order(byteOrder);
+                next.limit((int) Math.min(next.remaining(), maxLength));
+                decoded.position(decoded.position() + next.remaining());
+                return next;
+            }
+
+            private void decode() throws IOException {
+                decoded.clear();
+                byte[] bytes = decoded.array();
+                int length = 0;
+                int[] quad = new int[4];
+                while (length + 3 <= bytes.length && readQuad(quad)) {
+                    int bits = quad[0] << 18 | quad[1] << 12 | Math.max(quad[2], 0) << 6 | Math.max(quad[3], 0);
+                    bytes[length++] = (byte) (bits >> 16);
+                    if (quad[2] >= 0) {
+                        bytes[length++] = (byte) (bits >> 8);
+                    }
+                    if (quad[3] >= 0) {
+                        bytes[length++] = (byte) bits;
+                    }
+                }
+                if (length == 0) {
+                    throw new EOFException("Unexpected end of Base64 data at " + file.position());
+                }
+                decoded.limit(length);
+            }
+
+            /**
+             * Reads the next four characters as 6-bit values, -1 for padding.
+             *
+             * @return {@code false} at the end of the text
+             */
+            private boolean readQuad(int[] quad) throws IOException {
+                for (int i = 0; i < 4; i++) {
+                    file.skipWhitespace();
+                    int c = file.peek();
+                    if (c == -1 || c == '<') {
+                        if (i == 0) {
+                            return false;
+                        }
+                        throw new IOException("Truncated Base64 data at " + file.position());
+                    }
+                    file.read();
+                    quad[i] = c == '=' && i >= 2 ? -1 : DECODE[c];
+                    if (quad[i] == INVALID || (i == 3 && quad[2] == -1 && quad[3] != -1)) {
+                        throw new IOException("Invalid Base64 data at " + (file.position() - 1));
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    private static final int INVALID = -2;
+    private static final int[] DECODE = new int[256];
+
+    static {
+        Arrays.fill(DECODE, INVALID);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = i;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package vatika.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static vatika.reader.ValueArray.toInt;
+
+/**
+ * Decodes the binary data of DataArray elements of VTK XML files: a header with the size
+ * of the data followed by the packed values or, in compressed files, a header with the
+ * sizes of the blocks followed by the compressed blocks. Blocks are decompressed one at
+ * a time straight into the array being read.
+ */
+class DataArrayDecoder {
+    private final ValueType headerType;
+    private final Decompressor decompressor;
+
+    /**
+     * @param decompressor decompressor of the data blocks, {@code null} for uncompressed data
+     */
+    DataArrayDecoder(ValueType headerType, Decompressor decompressor) {
+        this.headerType = headerType;
+        this.decompressor = decompressor;
+    }
+
+    void decode(ByteInput in, ValueArray array) throws IOException {
+        if (decompressor == null) {
+            in.read(array, in.readUnsigned(headerType));
+            return;
+        }
+
+        // header: number of blocks, block size, size of the last partial block (0 if it is full),
+        // followed by the compressed size of every block
+        int numberOfBlocks = toInt(in.readUnsigned(headerType));
+        int blockSize = toInt(in.readUnsigned(headerType));
+        int lastBlockSize = toInt(in.readUnsigned(headerType));
+        int[] compressedSizes = new int[numberOfBlocks];
+        int maxCompressedSize = 0;
+        for (int i = 0; i < numberOfBlocks; i++) {
+            compressedSizes[i] = toInt(in.readUnsigned(headerType));
+            maxCompressedSize = Math.max(maxCompressedSize, compressedSizes[i]);
+        }
+
+        long size = numberOfBlocks == 0 ? 0
+                : (numberOfBlocks - 1L) * blockSize + (lastBlockSize == 0 ? blockSize : lastBlockSize);
+        if (size != array.remainingBytes()) {
+            throw new IOException("Size of the data, " + size + " bytes, does not match the "
+                    + array.remainingBytes() + " bytes expected");
+        }
+
+        byte[] compressed = new byte[maxCompressedSize];
+        byte[] block = new byte[blockSize];
+        for (int i = 0; i < numberOfBlocks; i++) {
+            int expectedLength = (i == numberOfBlocks - 1 && lastBlockSize != 0) ? lastBlockSize : blockSize;
+            in.readFully(compressed, compressedSizes[i]);
+            int length = decompressor.decompress(compressed, compressedSizes[i], block, expectedLength);
+            if (length != expectedLength) {
+                throw new IOException("Block " + i + " decompressed to " + length
+                        + " bytes instead of " + expectedLength);
+            }
+            array.read(ByteBuffer.wrap(block, 0, length).order(in.byteOrder));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package vatika.reader;
+
+import java.io.IOException;
+
+/**
+ * Decompresses the blocks of compressed data arrays in VTK XML files.
+ */
+interface Decompressor {
+    /**
+     * Decompresses {@code compressedLength} bytes of {@code compressed} into {@code block}.
+     *
+     * @return number of bytes decompressed
+     */
+    int decompress(byte[] compressed, int compressedLength, byte[] block, int blockLength) throws IOException;
+
+    /**
+     * @param vtkClassName the {@code compressor} attribute of the file
+     */
+    static Decompressor of(String vtkClassName) throws IOException {
+        switch (vtkClassName) {
+            case "vtkZLibDataCompressor":
+                return new ZLibDecompressor();
+            case "vtkLZ4DataCompressor":
+                return new LZ4Decompressor();
+            case "vtkLZMADataCompressor":
+                return new LZMADecompressor();
+            default:
+                throw new IOException("Unsupported compressor: " + vtkClassName);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package vatika.reader;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+
+/**
+ * Requires {@code org.lz4:lz4-java} on the class path.
+ */
+class LZ4Decompressor implements Decompressor {
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    @Override
+    public int decompress(byte[] compressed, int compressedLength, byte[] block, int blockLength) throws IOException {
+        try {
+            return decompressor.decompress(compressed, 0, compressedLength, block, 0, blockLength);
+        } catch (LZ4Exception e) {
+            throw new IOException("Invalid compressed data", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package vatika.reader;
+
+import org.tukaani.xz.XZInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Requires {@code org.tukaani:xz} on the class path.
+ */
+class LZMADecompressor implements Decompressor {
+    @Override
+    public int decompress(byte[] compressed, int compressedLength, byte[] block, int blockLength) throws IOException {
+        try (XZInputStream xz = new XZInputStream(new ByteArrayInputStream(compressed, 0, compressedLength))) {
+            int length = 0;
+            for (int count; length < blockLength && (count = xz.read(block, length, blockLength - length)) > 0; ) {
+                length += count;
+            }
+            return length;
+        }
+    }
+}
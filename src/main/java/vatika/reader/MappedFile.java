@@ -0,0 +1,191 @@
+package vatika.reader;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Read-only view of a file through a memory mapped window. Only a window of the file
+ * is mapped at a time and it is moved along as the file is read, so files of any size
+ * can be read without loading them into the heap. Binary data is read straight from
+ * the mapping, text is read byte by byte.
+ * <p>
+ * Mappings cannot be released explicitly, they are released once garbage collected.
+ */
+class MappedFile implements Closeable {
+    static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedFile(File file, long windowSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), READ);
+        this.size = channel.size();
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+        map(0);
+    }
+
+    long size() {
+        return size;
+    }
+
+    long position() {
+        return windowStart + window.position();
+    }
+
+    void position(long position) throws IOException {
+        if (position < windowStart || position > windowStart + window.limit()) {
+            map(position);
+        } else {
+            window.position((int) (position - windowStart));
+        }
+    }
+
+    boolean hasRemaining() {
+        return position() < size;
+    }
+
+    /**
+     * @return the next byte, or -1 at the end of the file
+     */
+    int read() throws IOException {
+        if (!window.hasRemaining()) {
+            if (!hasRemaining()) {
+                return -1;
+            }
+            map(position());
+        }
+        return window.get() & 0xFF;
+    }
+
+    /**
+     * @return the next byte without moving past it, or -1 at the end of the file
+     */
+    int peek() throws IOException {
+        int b = read();
+        if (b != -1) {
+            window.position(window.position() - 1);
+        }
+        return b;
+    }
+
+    /**
+     * Returns the mapped bytes from the current position on, at most {@code maxLength},
+     * and moves past them.
+     */
+    ByteBuffer next(long maxLength, ByteOrder byteOrder) throws IOException {
+        if (!window.hasRemaining()) {
+            if (!hasRemaining()) {
+                throw new EOFException("Unexpected end of file");
+            }
+            map(position());
+        }
+        ByteBuffer next = window.slice().order(byteOrder);
+        next.limit((int) Math.min(next.remaining(), maxLength));
+        window.position(window.position() + next.remaining());
+        return next;
+    }
+
+    /**
+     * Moves to the next occurrence of the byte.
+     *
+     * @return {@code false} if the end of the file was reached instead
+     */
+    boolean skipTo(int b) throws IOException {
+        while (true) {
+            for (int i = window.position(); i < window.limit(); i++) {
+                if ((window.get(i) & 0xFF) == b) {
+                    window.position(i);
+                    return true;
+                }
+            }
+            window.position(window.limit());
+            if (!hasRemaining()) {
+                return false;
+            }
+            map(position());
+        }
+    }
+
+    void skipWhitespace() throws IOException {
+        while (isWhitespace(peek())) {
+            read();
+        }
+    }
+
+    /**
+     * Reads the next line, without the line terminator.
+     *
+     * @return the line, or {@code null} at the end of the file
+     */
+    String line() throws IOException {
+        int b = read();
+        if (b == -1) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (b != -1 && b != '\n') {
+            line.append((char) b);
+            b = read();
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        return new String(line.toString().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next whitespace separated token, which also ends at the start of markup.
+     *
+     * @return the token, or {@code null} at the end of the file or of the character data
+     */
+    String token() throws IOException {
+        skipWhitespace();
+        StringBuilder token = new StringBuilder();
+        for (int b = peek(); b != -1 && b != '<' && !isWhitespace(b); b = peek()) {
+            token.append((char) read());
+        }
+        return token.length() == 0 ? null : token.toString();
+    }
+
+    /**
+     * Reads the next token, which must exist.
+     */
+    String requireToken() throws IOException {
+        String token = token();
+        if (token == null) {
+            throw new EOFException("Unexpected end of data at " + position());
+        }
+        return token;
+    }
+
+    static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private void map(long position) throws IOException {
+        if (position > size) {
+            throw new EOFException("Position " + position + " is past the end of the file: " + size);
+        }
+        windowStart = position;
+        window = channel.map(READ_ONLY, position, Math.min(windowSize, size - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,331 @@
+package vatika.reader;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.PackedVectorData;
+import vatika.data.ScalarData;
+import vatika.data.UnstructuredGrid;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static vatika.reader.ValueArray.toInt;
+
+/**
+ * Reads an unstructured grid from a legacy VTK (.vtk) file, in the ASCII or BINARY format.
+ * The file is read through a memory mapping and every array is read directly into the
+ * arrays of the grid. Both the cell list of files up to version 4.2 and the offsets and
+ * connectivity arrays of version 5 are supported.
+ * <p>
+ * Point and cell data is read from SCALARS of one component, VECTORS, NORMALS and
+ * the arrays of FIELD data of one or three components.
+ */
+public class UnstructuredGridLegacyVtkReader {
+    private final File file;
+    private long windowSize = MappedFile.DEFAULT_WINDOW_SIZE;
+
+    public UnstructuredGridLegacyVtkReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Sets the size in bytes of the part of the file mapped into memory at a time; default: 256 MiB.
+     */
+    public UnstructuredGridLegacyVtkReader setWindowSize(long windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public UnstructuredGrid read() throws IOException {
+        return readPacked().toUnstructuredGrid();
+    }
+
+    public PackedUnstructuredGrid readPacked() throws IOException {
+        try (MappedFile in = new MappedFile(file, windowSize)) {
+            return new Reading(in).readGrid();
+        }
+    }
+
+    private static class Reading {
+        private final MappedFile in;
+        private boolean binary;
+
+        private double[] points = new double[0];
+        private int[] connectivity = new int[0];
+        private int[] offsets = {0};
+        private byte[] types = new byte[0];
+        private final List<ScalarData> pointScalarData = new ArrayList<>();
+        private final List<PackedVectorData> pointVectorData = new ArrayList<>();
+        private final List<ScalarData> cellScalarData = new ArrayList<>();
+        private final List<PackedVectorData> cellVectorData = new ArrayList<>();
+
+        Reading(MappedFile in) {
+            this.in = in;
+        }
+
+        PackedUnstructuredGrid readGrid() throws IOException {
+            String version = in.line();
+            if (version == null || !version.startsWith("# vtk DataFile Version ")) {
+                throw new IOException("Not a legacy VTK file");
+            }
+            boolean cellArrays = atLeast(version.substring("# vtk DataFile Version ".length()).trim(), 5, 0);
+            in.line(); // title
+            String format = in.line();
+            if ("BINARY".equalsIgnoreCase(trim(format))) {
+                binary = true;
+            } else if (!"ASCII".equalsIgnoreCase(trim(format))) {
+                throw new IOException("Unknown file format: " + format);
+            }
+            String[] dataset = keywordLine();
+            if (dataset == null || dataset.length != 2 || !dataset[0].equalsIgnoreCase("DATASET")
+                    || !dataset[1].equalsIgnoreCase("UNSTRUCTURED_GRID")) {
+                throw new IOException("Not an unstructured grid file");
+            }
+
+            List<ScalarData> scalarData = null;
+            List<PackedVectorData> vectorData = null;
+            int numberOfTuples = 0;
+            for (String[] keyword = keywordLine(); keyword != null; keyword = keywordLine()) {
+                switch (keyword[0].toUpperCase()) {
+                    case "POINTS":
+                        int numberOfPoints = toInt(3 * parseLong(keyword, 1));
+                        points = new double[numberOfPoints];
+                        read(ValueArray.doubles(type(keyword, 2), points, 0, points.length));
+                        break;
+                    case "CELLS":
+                        if (cellArrays) {
+                            readCellArrays(parseInt(keyword, 1), parseInt(keyword, 2));
+                        } else {
+                            readCellList(parseInt(keyword, 1), parseInt(keyword, 2));
+                        }
+                        break;
+                    case "CELL_TYPES":
+                        types = new byte[parseInt(keyword, 1)];
+                        read(ValueArray.unsignedBytes(ValueType.Int32, types));
+                        break;
+                    case "POINT_DATA":
+                        numberOfTuples = requireCount(parseInt(keyword, 1), points.length / 3, "points");
+                        scalarData = pointScalarData;
+                        vectorData = pointVectorData;
+                        break;
+                    case "CELL_DATA":
+                        numberOfTuples = requireCount(parseInt(keyword, 1), types.length, "cells");
+                        scalarData = cellScalarData;
+                        vectorData = cellVectorData;
+                        break;
+                    case "SCALARS":
+                        requireData(scalarData, keyword);
+                        if (keyword.length > 3 && parseInt(keyword, 3) != 1) {
+                            throw new IOException("Unsupported number of components of scalars " + keyword[1]
+                                    + ": " + keyword[3]);
+                        }
+                        skipLookupTable();
+                        scalarData.add(readScalars(keyword[1], type(keyword, 2), numberOfTuples));
+                        break;
+                    case "VECTORS":
+                    case "NORMALS":
+                        requireData(vectorData, keyword);
+                        vectorData.add(readVectors(keyword[1], type(keyword, 2), numberOfTuples));
+                        break;
+                    case "FIELD":
+                        if (scalarData == null) {
+                            // field data of the whole data set, not part of the grid
+                            readField(parseInt(keyword, 2), -1, new ArrayList<>(), new ArrayList<>());
+                        } else {
+                            readField(parseInt(keyword, 2), numberOfTuples, scalarData, vectorData);
+                        }
+                        break;
+                    case "METADATA":
+                        skipMetadata();
+                        break;
+                    default:
+                        throw new IOException("Unsupported section: " + keyword[0]);
+                }
+            }
+
+            if (types.length != offsets.length - 1) {
+                throw new IOException("Number of cell types, " + types.length
+                        + ", does not match the number of cells: " + (offsets.length - 1));
+            }
+            return new PackedUnstructuredGrid(points, connectivity, offsets, types,
+                    pointScalarData.toArray(new ScalarData[0]), pointVectorData.toArray(new PackedVectorData[0]),
+                    cellScalarData.toArray(new ScalarData[0]), cellVectorData.toArray(new PackedVectorData[0]));
+        }
+
+        /**
+         * Reads the number of points of every cell followed by its point indices.
+         */
+        private void readCellList(int numberOfCells, int size) throws IOException {
+            offsets = new int[numberOfCells + 1];
+            connectivity = new int[size - numberOfCells];
+            read(ValueArray.legacyCells(ValueType.Int32, connectivity, offsets));
+        }
+
+        /**
+         * Reads the offsets and connectivity arrays of version 5 files.
+         */
+        private void readCellArrays(int numberOfOffsets, int size) throws IOException {
+            String[] keyword = requireKeywordLine("OFFSETS");
+            offsets = new int[numberOfOffsets];
+            read(ValueArray.ints(type(keyword, 1), offsets, 0, offsets.length));
+            keyword = requireKeywordLine("CONNECTIVITY");
+            connectivity = new int[size];
+            read(ValueArray.ints(type(keyword, 1), connectivity, 0, connectivity.length));
+            if (offsets.length == 0 || offsets[0] != 0 || offsets[offsets.length - 1] != size) {
+                throw new IOException("Offsets of the cells do not match the connectivity");
+            }
+        }
+
+        private ScalarData readScalars(String name, ValueType type, int numberOfTuples) throws IOException {
+            double[] scalars = new double[numberOfTuples];
+            read(ValueArray.doubles(type, scalars, 0, scalars.length));
+            return new ScalarData(name, scalars);
+        }
+
+        private PackedVectorData readVectors(String name, ValueType type, int numberOfTuples) throws IOException {
+            double[] components = new double[3 * numberOfTuples];
+            read(ValueArray.doubles(type, components, 0, components.length));
+            return new PackedVectorData(name, components);
+        }
+
+        /**
+         * @param numberOfTuples expected number of tuples of the arrays, -1 for any
+         */
+        private void readField(int numberOfArrays, int numberOfTuples,
+                               List<ScalarData> scalarData, List<PackedVectorData> vectorData) throws IOException {
+            for (int i = 0; i < numberOfArrays; i++) {
+                // name numberOfComponents numberOfTuples type, after the metadata of the previous array
+                String[] array = keywordLine();
+                while (array != null && array[0].equals("METADATA")) {
+                    skipMetadata();
+                    array = keywordLine();
+                }
+                if (array == null || array.length < 4) {
+                    throw new IOException("Missing field data array");
+                }
+                int arrayTuples = parseInt(array, 2);
+                if (numberOfTuples != -1) {
+                    requireCount(arrayTuples, numberOfTuples, "tuples of field data array " + array[0]);
+                }
+                int numberOfComponents = parseInt(array, 1);
+                if (numberOfComponents == 1) {
+                    scalarData.add(readScalars(array[0], type(array, 3), arrayTuples));
+                } else if (numberOfComponents == 3) {
+                    vectorData.add(readVectors(array[0], type(array, 3), arrayTuples));
+                } else {
+                    throw new IOException("Unsupported number of components of field data array " + array[0]
+                            + ": " + numberOfComponents);
+                }
+            }
+        }
+
+        private void read(ValueArray array) throws IOException {
+            if (binary) {
+                // legacy binary files are always big-endian
+                ByteInput.raw(in, BIG_ENDIAN).read(array, array.remainingBytes());
+            } else {
+                array.parse(in);
+            }
+        }
+
+        private void skipLookupTable() throws IOException {
+            long position = in.position();
+            String[] keyword = keywordLine();
+            if (keyword == null || !keyword[0].equalsIgnoreCase("LOOKUP_TABLE")) {
+                in.position(position);
+            }
+        }
+
+        /**
+         * Skips the information of the arrays, ending with an empty line.
+         */
+        private void skipMetadata() throws IOException {
+            for (String line = in.line(); line != null && !line.trim().isEmpty(); line = in.line()) {
+                // skip
+            }
+        }
+
+        /**
+         * Reads the next line that is not empty.
+         *
+         * @return the words of the line, or {@code null} at the end of the file
+         */
+        private String[] keywordLine() throws IOException {
+            for (String line = in.line(); line != null; line = in.line()) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty()) {
+                    return trimmed.split("\\s+");
+                }
+            }
+            return null;
+        }
+
+        private String[] requireKeywordLine(String keyword) throws IOException {
+            String[] line = keywordLine();
+            if (line == null || !line[0].equalsIgnoreCase(keyword) || line.length < 2) {
+                throw new IOException("Expected " + keyword);
+            }
+            return line;
+        }
+
+        private static void requireData(List<?> data, String[] keyword) throws IOException {
+            if (data == null) {
+                throw new IOException(keyword[0] + " outside of POINT_DATA or CELL_DATA");
+            }
+        }
+
+        private static int requireCount(int count, int expected, String what) throws IOException {
+            if (count != expected) {
+                throw new IOException("Number of " + what + ", " + count + ", does not match " + expected);
+            }
+            return count;
+        }
+
+        private static ValueType type(String[] keyword, int index) throws IOException {
+            requireWord(keyword, index);
+            return ValueType.ofLegacy(keyword[index]);
+        }
+
+        private static int parseInt(String[] keyword, int index) throws IOException {
+            return toInt(parseLong(keyword, index));
+        }
+
+        private static long parseLong(String[] keyword, int index) throws IOException {
+            requireWord(keyword, index);
+            try {
+                return Long.parseLong(keyword[index]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number in " + keyword[0] + ": " + keyword[index]);
+            }
+        }
+
+        private static void requireWord(String[] keyword, int index) throws IOException {
+            if (keyword.length <= index) {
+                throw new IOException("Incomplete " + keyword[0] + " line");
+            }
+        }
+
+        /**
+         * @return whether the version, as major.minor, is at least the other version
+         */
+        private static boolean atLeast(String version, int major, int minor) throws IOException {
+            int dot = version.indexOf('.');
+            try {
+                int versionMajor = Integer.parseInt(dot < 0 ? version : version.substring(0, dot));
+                int versionMinor = dot < 0 ? 0 : Integer.parseInt(version.substring(dot + 1));
+                return versionMajor != major ? versionMajor > major : versionMinor >= minor;
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid file version: " + version);
+            }
+        }
+
+        private static String trim(String line) {
+            return line == null ? null : line.trim();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package vatika.reader;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.PackedVectorData;
+import vatika.data.ScalarData;
+import vatika.data.UnstructuredGrid;
+import vatika.reader.XmlDocument.DataArrayElement;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A VTK XML (.vtu) file opened to read only the data arrays needed.
+ * When the file is opened only its markup is parsed, indexing the data arrays; an array
+ * is decoded on its first access and kept for the following ones. With appended data,
+ * opening a file reads just the markup at its start, and every array read touches only
+ * its own bytes.
+ * <p>
+ * The arrays returned are shared by all the accesses, not copied.
+ */
+public class UnstructuredGridXmlVtkFile implements Closeable {
+    private final MappedFile in;
+    private final XmlDocument document;
+    private final Map<String, Object> pointData = new HashMap<>();
+    private final Map<String, Object> cellData = new HashMap<>();
+    private double[] points;
+    private int[] offsets;
+    private int[] connectivity;
+    private byte[] types;
+
+    public UnstructuredGridXmlVtkFile(File file) throws IOException {
+        this.in = new MappedFile(file, MappedFile.DEFAULT_WINDOW_SIZE);
+        try {
+            this.document = new XmlDocument(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public int numberOfPoints() {
+        return document.numberOfPoints();
+    }
+
+    public int numberOfCells() {
+        return document.numberOfCells();
+    }
+
+    /**
+     * @return names of the point data arrays, in the order of the file
+     */
+    public List<String> pointDataNames() {
+        return names(document.dataArrays("PointData"));
+    }
+
+    /**
+     * @return names of the cell data arrays, in the order of the file
+     */
+    public List<String> cellDataNames() {
+        return names(document.dataArrays("CellData"));
+    }
+
+    /**
+     * @return number of components of the named point data array, 1 for scalars and 3 for vectors
+     */
+    public int pointDataComponents(String name) {
+        return find("PointData", name).numberOfComponents;
+    }
+
+    /**
+     * @return number of components of the named cell data array, 1 for scalars and 3 for vectors
+     */
+    public int cellDataComponents(String name) {
+        return find("CellData", name).numberOfComponents;
+    }
+
+    /**
+     * @return coordinates of the points: x0, y0, z0, x1, y1, z1, ...
+     */
+    public synchronized double[] points() throws IOException {
+        if (points == null) {
+            points = document.readPoints();
+        }
+        return points;
+    }
+
+    /**
+     * @return offsets of the cells as in {@link PackedUnstructuredGrid#offsets}, starting with 0
+     */
+    public synchronized int[] offsets() throws IOException {
+        if (offsets == null) {
+            offsets = document.readOffsets();
+        }
+        return offsets;
+    }
+
+    public synchronized int[] connectivity() throws IOException {
+        if (connectivity == null) {
+            connectivity = document.readConnectivity(offsets());
+        }
+        return connectivity;
+    }
+
+    public synchronized byte[] types() throws IOException {
+        if (types == null) {
+            types = document.readTypes();
+        }
+        return types;
+    }
+
+    public synchronized ScalarData pointScalarData(String name) throws IOException {
+        return (ScalarData) readFieldData("PointData", name, 1, numberOfPoints(), pointData);
+    }
+
+    public synchronized PackedVectorData pointVectorData(String name) throws IOException {
+        return (PackedVectorData) readFieldData("PointData", name, 3, numberOfPoints(), pointData);
+    }
+
+    public synchronized ScalarData cellScalarData(String name) throws IOException {
+        return (ScalarData) readFieldData("CellData", name, 1, numberOfCells(), cellData);
+    }
+
+    public synchronized PackedVectorData cellVectorData(String name) throws IOException {
+        return (PackedVectorData) readFieldData("CellData", name, 3, numberOfCells(), cellData);
+    }
+
+    /**
+     * Reads the grid with only the named point and cell data arrays.
+     */
+    public PackedUnstructuredGrid readPacked(List<String> pointDataNames, List<String> cellDataNames)
+            throws IOException {
+        List<ScalarData> pointScalarData = new ArrayList<>();
+        List<PackedVectorData> pointVectorData = new ArrayList<>();
+        for (String name : pointDataNames) {
+            if (pointDataComponents(name) == 1) {
+                pointScalarData.add(pointScalarData(name));
+            } else {
+                pointVectorData.add(pointVectorData(name));
+            }
+        }
+        List<ScalarData> cellScalarData = new ArrayList<>();
+        List<PackedVectorData> cellVectorData = new ArrayList<>();
+        for (String name : cellDataNames) {
+            if (cellDataComponents(name) == 1) {
+                cellScalarData.add(cellScalarData(name));
+            } else {
+                cellVectorData.add(cellVectorData(name));
+            }
+        }
+
+        return new PackedUnstructuredGrid(points(), connectivity(), offsets(), types(),
+                pointScalarData.toArray(new ScalarData[0]), pointVectorData.toArray(new PackedVectorData[0]),
+                cellScalarData.toArray(new ScalarData[0]), cellVectorData.toArray(new PackedVectorData[0]));
+    }
+
+    /**
+     * Reads the grid with only the named point and cell data arrays.
+     */
+    public UnstructuredGrid read(List<String> pointDataNames, List<String> cellDataNames) throws IOException {
+        return readPacked(pointDataNames, cellDataNames).toUnstructuredGrid();
+    }
+
+    private Object readFieldData(String section, String name, int numberOfComponents, int numberOfTuples,
+                                 Map<String, Object> cache) throws IOException {
+        Object fieldData = cache.get(name);
+        DataArrayElement array = find(section, name);
+        if (array.numberOfComponents != numberOfComponents) {
+            throw new IllegalArgumentException(section + " array " + name + " has "
+                    + array.numberOfComponents + " components, not " + numberOfComponents);
+        }
+        if (fieldData == null) {
+            fieldData = numberOfComponents == 1
+                    ? document.readScalarData(array, numberOfTuples)
+                    : document.readVectorData(array, numberOfTuples);
+            cache.put(name, fieldData);
+        }
+        return fieldData;
+    }
+
+    private DataArrayElement find(String section, String name) {
+        for (DataArrayElement array : document.dataArrays(section)) {
+            if (name.equals(array.name)) {
+                return array;
+            }
+        }
+        throw new IllegalArgumentException("No " + section + " array named " + name);
+    }
+
+    private static List<String> names(List<DataArrayElement> arrays) {
+        List<String> names = new ArrayList<>();
+        for (DataArrayElement array : arrays) {
+            names.add(array.name);
+        }
+        return names;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,47 @@
+package vatika.reader;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.UnstructuredGrid;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads an unstructured grid from a VTK XML (.vtu) file, with data arrays in the ascii,
+ * binary (compressed or not) or appended (raw or Base64) format.
+ * The markup is parsed straight from a memory mapping of the file and every data array
+ * is decoded directly into the arrays of the grid, so apart from the grid itself at most
+ * one compressed block is held in memory.
+ * <p>
+ * Only data arrays of one or three components are supported, read as scalar and vector data.
+ * To read only some of the data arrays, see {@link UnstructuredGridXmlVtkFile}.
+ */
+public class UnstructuredGridXmlVtkReader {
+    private final File file;
+    private long windowSize = MappedFile.DEFAULT_WINDOW_SIZE;
+
+    public UnstructuredGridXmlVtkReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Sets the size in bytes of the part of the file mapped into memory at a time; default: 256 MiB.
+     */
+    public UnstructuredGridXmlVtkReader setWindowSize(long windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public UnstructuredGrid read() throws IOException {
+        return readPacked().toUnstructuredGrid();
+    }
+
+    public PackedUnstructuredGrid readPacked() throws IOException {
+        try (MappedFile in = new MappedFile(file, windowSize)) {
+            return new XmlDocument(in).readGrid();
+        }
+    }
+}
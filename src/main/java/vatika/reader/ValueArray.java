@@ -0,0 +1,230 @@
+package vatika.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Values of a data array being read into a primitive array, converted from the type
+ * they are stored with. Packed values are read from consecutive chunks of bytes, which
+ * may end in the middle of a value; printed values are read as whitespace separated text.
+ */
+abstract class ValueArray {
+    final ValueType type;
+    private final long length;
+    private long count = 0;
+    private final ByteBuffer partialValue;
+
+    private ValueArray(ValueType type, long length) {
+        this.type = type;
+        this.length = length;
+        this.partialValue = ByteBuffer.allocate(type.bytes);
+    }
+
+    /**
+     * @return number of bytes of the packed values still to be read
+     */
+    long remainingBytes() {
+        return (length - count) * type.bytes - partialValue.position();
+    }
+
+    boolean isComplete() {
+        return count == length;
+    }
+
+    /**
+     * Reads all the bytes of the chunk as packed values in the byte order of the chunk.
+     */
+    void read(ByteBuffer chunk) throws IOException {
+        if (chunk.remaining() > remainingBytes()) {
+            throw new IOException("More data than the " + length + " values expected");
+        }
+        if (partialValue.position() > 0) {
+            while (partialValue.hasRemaining() && chunk.hasRemaining()) {
+                partialValue.put(chunk.get());
+            }
+            if (partialValue.hasRemaining()) {
+                return;
+            }
+            partialValue.flip();
+            readPacked(partialValue.order(chunk.order()), 1);
+            count++;
+            partialValue.clear();
+        }
+        int n = chunk.remaining() / type.bytes;
+        readPacked(chunk, n);
+        count += n;
+        partialValue.put(chunk);
+    }
+
+    /**
+     * Reads all the values as text.
+     */
+    void parse(MappedFile text) throws IOException {
+        for (; count < length; count++) {
+            String token = text.requireToken();
+            try {
+                parseValue(token);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid " + type + " value: " + token);
+            }
+        }
+    }
+
+    abstract void readPacked(ByteBuffer buffer, int n) throws IOException;
+
+    abstract void parseValue(String token) throws IOException;
+
+    /**
+     * Reads into {@code values[from, to)}.
+     */
+    static ValueArray doubles(ValueType type, double[] values, int from, int to) {
+        return new ValueArray(type, to - from) {
+            private int index = from;
+
+            @Override
+            void readPacked(ByteBuffer buffer, int n) {
+                if (type == ValueType.Float64) {
+                    buffer.asDoubleBuffer().get(values, index, n);
+                    buffer.position(buffer.position() + n * Double.BYTES);
+                    index += n;
+                } else if (type.isFloatingPoint()) {
+                    for (int i = 0; i < n; i++) {
+                        values[index++] = type.getDouble(buffer);
+                    }
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        values[index++] = type.getLong(buffer);
+                    }
+                }
+            }
+
+            @Override
+            void parseValue(String token) {
+                // the shortest text of a Float32 value is not that of the double it equals
+                double value = parseDouble(token);
+                values[index++] = type == ValueType.Float32 ? (float) value : value;
+            }
+        };
+    }
+
+    /**
+     * Reads into {@code values[from, to)}.
+     */
+    static ValueArray ints(ValueType type, int[] values, int from, int to) throws IOException {
+        return new IntegerValueArray(type, to - from) {
+            private int index = from;
+
+            @Override
+            void readPacked(ByteBuffer buffer, int n) throws IOException {
+                if (type == ValueType.Int32) {
+                    buffer.asIntBuffer().get(values, index, n);
+                    buffer.position(buffer.position() + n * Integer.BYTES);
+                    index += n;
+                } else {
+                    super.readPacked(buffer, n);
+                }
+            }
+
+            @Override
+            void put(long value) throws IOException {
+                values[index++] = toInt(value);
+            }
+        };
+    }
+
+    static ValueArray unsignedBytes(ValueType type, byte[] values) throws IOException {
+        return new IntegerValueArray(type, values.length) {
+            private int index = 0;
+
+            @Override
+            void put(long value) throws IOException {
+                if (value < 0 || value > 0xFF) {
+                    throw new IOException("Value out of range: " + value);
+                }
+                values[index++] = (byte) value;
+            }
+        };
+    }
+
+    /**
+     * Reads cells of legacy files, where the number of points of every cell is followed
+     * by the point indices, into {@code offsets[1, n]} and {@code connectivity}.
+     */
+    static ValueArray legacyCells(ValueType type, int[] connectivity, int[] offsets) throws IOException {
+        return new IntegerValueArray(type, connectivity.length + offsets.length - 1L) {
+            private int cell = 0;
+            private int index = 0;
+            private int remainingPoints = 0;
+
+            @Override
+            void put(long value) throws IOException {
+                if (remainingPoints > 0) {
+                    connectivity[index++] = toInt(value);
+                    remainingPoints--;
+                    return;
+                }
+                int numberOfPoints = toInt(value);
+                if (cell == offsets.length - 1 || numberOfPoints < 0
+                        || numberOfPoints > connectivity.length - offsets[cell]) {
+                    throw new IOException("Cells do not match the size of the cell list");
+                }
+                offsets[cell + 1] = offsets[cell] + numberOfPoints;
+                cell++;
+                remainingPoints = numberOfPoints;
+            }
+        };
+    }
+
+    private abstract static class IntegerValueArray extends ValueArray {
+        IntegerValueArray(ValueType type, long length) throws IOException {
+            super(type, length);
+            if (type.isFloatingPoint()) {
+                throw new IOException("Integer data expected instead of " + type);
+            }
+        }
+
+        @Override
+        void readPacked(ByteBuffer buffer, int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                put(type.getLong(buffer));
+            }
+        }
+
+        @Override
+        void parseValue(String token) throws IOException {
+            put(Long.parseLong(token));
+        }
+
+        abstract void put(long value) throws IOException;
+    }
+
+    static int toInt(long value) throws IOException {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Also accepts the spellings of not-a-number and infinity of other writers.
+     */
+    static double parseDouble(String token) {
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            switch (token.toLowerCase()) {
+                case "nan":
+                case "-nan":
+                    return Double.NaN;
+                case "inf":
+                case "infinity":
+                    return Double.POSITIVE_INFINITY;
+                case "-inf":
+                case "-infinity":
+                    return Double.NEGATIVE_INFINITY;
+                default:
+                    throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package vatika.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Type of the values of a data array, as named by XML and legacy files.
+ */
+enum ValueType {
+    Int8(1, "char"),
+    UInt8(1, "unsigned_char"),
+    Int16(2, "short"),
+    UInt16(2, "unsigned_short"),
+    Int32(4, "int"),
+    UInt32(4, "unsigned_int"),
+    Int64(8, "long"),
+    UInt64(8, "unsigned_long"),
+    Float32(4, "float"),
+    Float64(8, "double");
+
+    final int bytes;
+    private final String legacyName;
+
+    ValueType(int bytes, String legacyName) {
+        this.bytes = bytes;
+        this.legacyName = legacyName;
+    }
+
+    boolean isFloatingPoint() {
+        return this == Float32 || this == Float64;
+    }
+
+    /**
+     * Reads a value of an integer type.
+     */
+    long getLong(ByteBuffer buffer) {
+        switch (this) {
+            case Int8:
+                return buffer.get();
+            case UInt8:
+                return buffer.get() & 0xFFL;
+            case Int16:
+                return buffer.getShort();
+            case UInt16:
+                return buffer.getShort() & 0xFFFFL;
+            case Int32:
+                return buffer.getInt();
+            case UInt32:
+                return buffer.getInt() & 0xFFFFFFFFL;
+            default:
+                // UInt64 values beyond Long.MAX_VALUE do not fit any array and are rejected as negative
+                return buffer.getLong();
+        }
+    }
+
+    /**
+     * Reads a value of a floating point type.
+     */
+    double getDouble(ByteBuffer buffer) {
+        return this == Float32 ? buffer.getFloat() : buffer.getDouble();
+    }
+
+    static ValueType of(String name) throws IOException {
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unsupported data type: " + name);
+        }
+    }
+
+    static ValueType ofLegacy(String name) throws IOException {
+        if (name.equals("vtkIdType")) {
+            return Int32;
+        }
+        for (ValueType type : values()) {
+            // fixed size types are named like vtktypeint64
+            if (type.legacyName.equals(name) || name.equalsIgnoreCase("vtktype" + type.name())) {
+                return type;
+            }
+        }
+        throw new IOException("Unsupported data type: " + name);
+    }
+}
@@ -0,0 +1,314 @@
+package vatika.reader;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.PackedVectorData;
+import vatika.data.ScalarData;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static vatika.reader.ValueArray.toInt;
+
+/**
+ * Markup of a VTK XML unstructured grid file, parsed up to the appended data, with an index
+ * of its data arrays. Only the markup is parsed: inline data is skipped over and appended
+ * data is not touched until an array is read.
+ */
+class XmlDocument {
+    /**
+     * A DataArray element and the position of its data.
+     */
+    static class DataArrayElement {
+        /**
+         * Name of the parent element: Points, Cells, PointData or CellData, or {@code null} for any other.
+         */
+        final String section;
+        final String name;
+        final ValueType type;
+        final int numberOfComponents;
+        final String format;
+        final long offset;
+        /**
+         * Position of the inline data, after the child elements when they precede it.
+         */
+        long contentPosition;
+
+        private DataArrayElement(String section, XmlReader xml) throws IOException {
+            this.section = section;
+            this.name = xml.attribute("Name");
+            this.type = ValueType.of(xml.requireAttribute("type"));
+            String numberOfComponents = xml.attribute("NumberOfComponents");
+            this.numberOfComponents = numberOfComponents == null ? 1 : parseInt(numberOfComponents);
+            this.format = xml.requireAttribute("format");
+            String offset = xml.attribute("offset");
+            this.offset = offset == null ? -1 : parseLong(offset);
+            this.contentPosition = xml.contentPosition();
+        }
+    }
+
+    private static final Set<String> SECTIONS = new HashSet<>(Arrays.asList("Points", "Cells", "PointData", "CellData"));
+
+    private final MappedFile in;
+    private final ByteOrder byteOrder;
+    private final DataArrayDecoder decoder;
+    private final List<DataArrayElement> dataArrays = new ArrayList<>();
+    private int numberOfPoints = 0;
+    private int numberOfCells = 0;
+    private boolean rawAppendedData = true;
+    private long appendedDataPosition = -1;
+
+    XmlDocument(MappedFile in) throws IOException {
+        this.in = in;
+        XmlReader xml = new XmlReader(in);
+        if (xml.next() != XmlReader.Event.START_ELEMENT || !xml.name().equals("VTKFile")) {
+            throw new IOException("Not a VTK XML file: " + xml.name());
+        }
+        if (!"UnstructuredGrid".equals(xml.attribute("type"))) {
+            throw new IOException("Not an unstructured grid file: " + xml.attribute("type"));
+        }
+        this.byteOrder = "BigEndian".equals(xml.attribute("byte_order")) ? BIG_ENDIAN : LITTLE_ENDIAN;
+        String headerType = xml.attribute("header_type");
+        ValueType sizeType = headerType == null ? ValueType.UInt32 : ValueType.of(headerType);
+        if (sizeType != ValueType.UInt32 && sizeType != ValueType.UInt64) {
+            throw new IOException("Unsupported header type: " + headerType);
+        }
+        String compressor = xml.attribute("compressor");
+        this.decoder = new DataArrayDecoder(sizeType, compressor == null ? null : Decompressor.of(compressor));
+
+        parse(xml);
+    }
+
+    private void parse(XmlReader xml) throws IOException {
+        int numberOfPieces = 0;
+        // the elements enclosing the current one, VTKFile excluded
+        Deque<String> elements = new ArrayDeque<>();
+        DataArrayElement dataArray = null;
+        for (XmlReader.Event event = xml.next(); event != XmlReader.Event.END_DOCUMENT; event = xml.next()) {
+            if (event == XmlReader.Event.END_ELEMENT) {
+                if (elements.isEmpty()) {
+                    return; // VTKFile
+                }
+                if (elements.pop().equals("DataArray")) {
+                    dataArray = null;
+                } else if (dataArray != null && "DataArray".equals(elements.peek())) {
+                    // the inline data follows the child elements, such as the InformationKey of ParaView
+                    dataArray.contentPosition = in.position();
+                }
+                continue;
+            }
+            String parent = elements.peek();
+            elements.push(xml.name());
+            if ("DataArray".equals(parent)) {
+                continue; // markup within the data array
+            }
+            switch (xml.name()) {
+                case "Piece":
+                    if (++numberOfPieces > 1) {
+                        throw new IOException("Files of more than one piece are not supported");
+                    }
+                    numberOfPoints = parseInt(xml.requireAttribute("NumberOfPoints"));
+                    numberOfCells = parseInt(xml.requireAttribute("NumberOfCells"));
+                    break;
+                case "DataArray":
+                    DataArrayElement element = new DataArrayElement(SECTIONS.contains(parent) ? parent : null, xml);
+                    dataArrays.add(element);
+                    // the inline data either precedes the child elements, or follows them
+                    dataArray = characterDataAt(xml.contentPosition()) ? null : element;
+                    break;
+                case "AppendedData":
+                    // the data starts after the '_', and is not XML
+                    rawAppendedData = "raw".equals(xml.attribute("encoding"));
+                    in.position(xml.contentPosition());
+                    in.skipWhitespace();
+                    if (in.read() != '_') {
+                        throw new IOException("Appended data does not start with '_'");
+                    }
+                    appendedDataPosition = in.position();
+                    return;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return whether character data other than whitespace starts at the position
+     */
+    private boolean characterDataAt(long position) throws IOException {
+        in.position(position);
+        in.skipWhitespace();
+        boolean characterData = in.peek() != '<';
+        in.position(position);
+        return characterData;
+    }
+
+    int numberOfPoints() {
+        return numberOfPoints;
+    }
+
+    int numberOfCells() {
+        return numberOfCells;
+    }
+
+    /**
+     * @return the data arrays of the section, such as PointData, in the order of the file
+     */
+    List<DataArrayElement> dataArrays(String section) {
+        List<DataArrayElement> sectionDataArrays = new ArrayList<>();
+        for (DataArrayElement array : dataArrays) {
+            if (section.equals(array.section)) {
+                sectionDataArrays.add(array);
+            }
+        }
+        return Collections.unmodifiableList(sectionDataArrays);
+    }
+
+    PackedUnstructuredGrid readGrid() throws IOException {
+        int[] offsets = readOffsets();
+        List<ScalarData> pointScalarData = new ArrayList<>();
+        List<PackedVectorData> pointVectorData = new ArrayList<>();
+        List<ScalarData> cellScalarData = new ArrayList<>();
+        List<PackedVectorData> cellVectorData = new ArrayList<>();
+        for (DataArrayElement array : dataArrays("PointData")) {
+            readFieldData(array, numberOfPoints, pointScalarData, pointVectorData);
+        }
+        for (DataArrayElement array : dataArrays("CellData")) {
+            readFieldData(array, numberOfCells, cellScalarData, cellVectorData);
+        }
+
+        return new PackedUnstructuredGrid(readPoints(), readConnectivity(offsets), offsets, readTypes(),
+                pointScalarData.toArray(new ScalarData[0]), pointVectorData.toArray(new PackedVectorData[0]),
+                cellScalarData.toArray(new ScalarData[0]), cellVectorData.toArray(new PackedVectorData[0]));
+    }
+
+    double[] readPoints() throws IOException {
+        double[] points = new double[3 * numberOfPoints];
+        List<DataArrayElement> pointsArrays = dataArrays("Points");
+        if (pointsArrays.isEmpty()) {
+            if (numberOfPoints > 0) {
+                throw new IOException("Missing Points data array");
+            }
+            return points;
+        }
+        DataArrayElement array = pointsArrays.get(0);
+        if (array.numberOfComponents != 3) {
+            throw new IOException("Points must have 3 components: " + array.numberOfComponents);
+        }
+        decode(array, ValueArray.doubles(array.type, points, 0, points.length));
+        return points;
+    }
+
+    /**
+     * @return offsets of the cells, starting with 0
+     */
+    int[] readOffsets() throws IOException {
+        int[] offsets = new int[numberOfCells + 1];
+        DataArrayElement array = requireCellsArray("offsets");
+        decode(array, ValueArray.ints(array.type, offsets, 1, offsets.length));
+        for (int i = 0; i < numberOfCells; i++) {
+            if (offsets[i + 1] < offsets[i]) {
+                throw new IOException("Offsets of the cells are decreasing at cell " + i);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * @param offsets offsets of the cells, the last of which is the length of the connectivity
+     */
+    int[] readConnectivity(int[] offsets) throws IOException {
+        int[] connectivity = new int[offsets[numberOfCells]];
+        DataArrayElement array = requireCellsArray("connectivity");
+        decode(array, ValueArray.ints(array.type, connectivity, 0, connectivity.length));
+        return connectivity;
+    }
+
+    byte[] readTypes() throws IOException {
+        byte[] types = new byte[numberOfCells];
+        DataArrayElement array = requireCellsArray("types");
+        decode(array, ValueArray.unsignedBytes(array.type, types));
+        return types;
+    }
+
+    ScalarData readScalarData(DataArrayElement array, int numberOfTuples) throws IOException {
+        double[] scalars = new double[numberOfTuples];
+        decode(array, ValueArray.doubles(array.type, scalars, 0, scalars.length));
+        return new ScalarData(array.name, scalars);
+    }
+
+    PackedVectorData readVectorData(DataArrayElement array, int numberOfTuples) throws IOException {
+        double[] components = new double[3 * numberOfTuples];
+        decode(array, ValueArray.doubles(array.type, components, 0, components.length));
+        return new PackedVectorData(array.name, components);
+    }
+
+    private void readFieldData(DataArrayElement array, int numberOfTuples,
+                               List<ScalarData> scalarData, List<PackedVectorData> vectorData) throws IOException {
+        if (array.numberOfComponents == 1) {
+            scalarData.add(readScalarData(array, numberOfTuples));
+        } else if (array.numberOfComponents == 3) {
+            vectorData.add(readVectorData(array, numberOfTuples));
+        } else {
+            throw new IOException("Unsupported number of components of data array " + array.name
+                    + ": " + array.numberOfComponents);
+        }
+    }
+
+    private DataArrayElement requireCellsArray(String name) throws IOException {
+        for (DataArrayElement array : dataArrays("Cells")) {
+            if (name.equals(array.name)) {
+                return array;
+            }
+        }
+        throw new IOException("Missing " + name + " data array of the cells");
+    }
+
+    private void decode(DataArrayElement array, ValueArray values) throws IOException {
+        switch (array.format) {
+            case "ascii":
+                in.position(array.contentPosition);
+                values.parse(in);
+                if (in.token() != null) {
+                    throw new IOException("More values than expected in data array " + array.name);
+                }
+                break;
+            case "binary":
+                in.position(array.contentPosition);
+                decoder.decode(ByteInput.base64(in, byteOrder), values);
+                break;
+            case "appended":
+                if (appendedDataPosition < 0 || array.offset < 0) {
+                    throw new IOException("Missing appended data of data array " + array.name);
+                }
+                in.position(appendedDataPosition + array.offset);
+                decoder.decode(rawAppendedData
+                        ? ByteInput.raw(in, byteOrder)
+                        : ByteInput.base64(in, byteOrder), values);
+                break;
+            default:
+                throw new IOException("Unsupported format of data array " + array.name + ": " + array.format);
+        }
+    }
+
+    private static int parseInt(String value) throws IOException {
+        return toInt(parseLong(value));
+    }
+
+    private static long parseLong(String value) throws IOException {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number: " + value);
+        }
+    }
+}
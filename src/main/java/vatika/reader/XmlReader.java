@@ -0,0 +1,206 @@
+package vatika.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal pull parser of XML markup, reading tags straight from the mapped file.
+ * Character data between tags is skipped unless read by the caller from
+ * {@link #contentPosition()}, so data arrays of any size are only scanned, never
+ * buffered. Raw data not valid as XML, such as appended data, can be read by the caller
+ * as long as the parser is not asked for any further tag.
+ */
+class XmlReader {
+    enum Event {
+        START_ELEMENT, END_ELEMENT, END_DOCUMENT
+    }
+
+    private final MappedFile in;
+    private String name;
+    private Map<String, String> attributes = new HashMap<>();
+    private boolean emptyElement = false;
+    private long contentPosition;
+
+    XmlReader(MappedFile in) {
+        this.in = in;
+    }
+
+    /**
+     * Moves to the next start or end tag, skipping character data, comments,
+     * processing instructions and declarations. An empty element tag is reported
+     * as a start tag followed by an end tag.
+     */
+    Event next() throws IOException {
+        if (emptyElement) {
+            emptyElement = false;
+            return Event.END_ELEMENT;
+        }
+        while (true) {
+            if (!in.skipTo('<')) {
+                return Event.END_DOCUMENT;
+            }
+            in.read();
+            int b = in.peek();
+            if (b == '?') {
+                skipPast("?>");
+            } else if (b == '!') {
+                in.read();
+                if (in.peek() == '-') {
+                    skipPast("-->");
+                } else {
+                    skipPast(">");
+                }
+            } else if (b == '/') {
+                in.read();
+                name = readName();
+                attributes = new HashMap<>();
+                in.skipWhitespace();
+                expect('>');
+                return Event.END_ELEMENT;
+            } else {
+                name = readName();
+                attributes = new HashMap<>();
+                readAttributes();
+                contentPosition = in.position();
+                return Event.START_ELEMENT;
+            }
+        }
+    }
+
+    /**
+     * @return name of the current element
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * @return value of the attribute of the current start tag, or {@code null} if missing
+     */
+    String attribute(String name) {
+        return attributes.get(name);
+    }
+
+    String requireAttribute(String name) throws IOException {
+        String value = attributes.get(name);
+        if (value == null) {
+            throw new IOException("Missing attribute " + name + " of element " + this.name);
+        }
+        return value;
+    }
+
+    /**
+     * @return position in the file just after the current start tag
+     */
+    long contentPosition() {
+        return contentPosition;
+    }
+
+    private void readAttributes() throws IOException {
+        while (true) {
+            in.skipWhitespace();
+            int b = in.read();
+            if (b == '>') {
+                return;
+            }
+            if (b == '/') {
+                expect('>');
+                emptyElement = true;
+                return;
+            }
+            if (b == -1) {
+                throw new EOFException("Unexpected end of file in tag " + name);
+            }
+            String attributeName = (char) b + readName();
+            in.skipWhitespace();
+            expect('=');
+            in.skipWhitespace();
+            int quote = in.read();
+            if (quote != '"' && quote != '\'') {
+                throw new IOException("Unquoted value of attribute " + attributeName + " at " + in.position());
+            }
+            ByteArrayOutputStream value = new ByteArrayOutputStream();
+            for (int c = in.read(); c != quote; c = in.read()) {
+                if (c == -1) {
+                    throw new EOFException("Unexpected end of file in tag " + name);
+                }
+                value.write(c);
+            }
+            attributes.put(attributeName, unescape(value.toString(StandardCharsets.UTF_8.name())));
+        }
+    }
+
+    private String readName() throws IOException {
+        StringBuilder name = new StringBuilder();
+        for (int b = in.peek(); b != -1 && b != '>' && b != '/' && b != '=' && !MappedFile.isWhitespace(b); b = in.peek()) {
+            name.append((char) in.read());
+        }
+        return name.toString();
+    }
+
+    private void expect(char expected) throws IOException {
+        int b = in.read();
+        if (b != expected) {
+            throw new IOException("Expected '" + expected + "' at " + (in.position() - 1) + " in tag " + name);
+        }
+    }
+
+    private void skipPast(String end) throws IOException {
+        for (int matched = 0; matched < end.length(); ) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Unexpected end of file, expected " + end);
+            }
+            matched = b == end.charAt(matched) ? matched + 1 : (b == end.charAt(0) ? 1 : 0);
+        }
+    }
+
+    private static String unescape(String value) throws IOException {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '&') {
+                unescaped.append(c);
+                continue;
+            }
+            int end = value.indexOf(';', i);
+            if (end < 0) {
+                throw new IOException("Unterminated entity in attribute value: " + value);
+            }
+            String entity = value.substring(i + 1, end);
+            switch (entity) {
+                case "amp":
+                    unescaped.append('&');
+                    break;
+                case "lt":
+                    unescaped.append('<');
+                    break;
+                case "gt":
+                    unescaped.append('>');
+                    break;
+                case "quot":
+                    unescaped.append('"');
+                    break;
+                case "apos":
+                    unescaped.append('\'');
+                    break;
+                default:
+                    if (!entity.startsWith("#")) {
+                        throw new IOException("Unknown entity in attribute value: &" + entity + ";");
+                    }
+                    unescaped.appendCodePoint(entity.startsWith("#x")
+                            ? Integer.parseInt(entity.substring(2), 16)
+                            : Integer.parseInt(entity.substring(1)));
+            }
+            i = end;
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package vatika.reader;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+class ZLibDecompressor implements Decompressor {
+    @Override
+    public int decompress(byte[] compressed, int compressedLength, byte[] block, int blockLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, 0, compressedLength);
+            return inflater.inflate(block, 0, blockLength);
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package vatika.writer;
+
+import vatika.writer.DataArray.ChunkConsumer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the time spent in every phase of writing a data array. Phases nest: time spent in a
+ * phase entered from another one counts for the inner phase only. Phases are entered and exited
+ * on the thread writing the file, only compression is recorded from other threads.
+ */
+class ArrayRecorder {
+    static final int PACK = 0;
+    static final int WAIT = 1;
+    static final int ENCODE = 2;
+    static final int WRITE = 3;
+
+    private final String name;
+    private final DataArray array;
+    private final long[] nanos = new long[4];
+    private final int[] phases = new int[8];
+    private int depth;
+    private long mark;
+    private long totalNanos;
+    private final AtomicLong compressNanos = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong(-1);
+    private long writtenBytes;
+
+    /**
+     * @param name name of the array in the metrics
+     * @param array array as written
+     */
+    ArrayRecorder(String name, DataArray array) {
+        this.name = name;
+        this.array = array;
+    }
+
+    void enter(int phase) {
+        long now = System.nanoTime();
+        if (depth > 0) {
+            nanos[phases[depth - 1]] += now - mark;
+        }
+        phases[depth++] = phase;
+        mark = now;
+    }
+
+    void exit() {
+        long now = System.nanoTime();
+        nanos[phases[--depth]] += now - mark;
+        mark = now;
+    }
+
+    void addTotalNanos(long nanos) {
+        totalNanos += nanos;
+    }
+
+    /**
+     * Records the compression of a block, on any thread.
+     */
+    void compressed(long nanos, int bytes) {
+        compressNanos.addAndGet(nanos);
+        compressedBytes.accumulateAndGet(bytes, (total, block) -> Math.max(total, 0) + block);
+    }
+
+    /**
+     * Sets the size of the array after compression, when it is known without compressing it.
+     */
+    void setCompressedBytes(long bytes) {
+        compressedBytes.set(bytes);
+    }
+
+    /**
+     * @return size of the array after compression, -1 if it was not compressed
+     */
+    long compressedBytes() {
+        return compressedBytes.get();
+    }
+
+    void addWrittenBytes(long bytes) {
+        writtenBytes += bytes;
+    }
+
+    /**
+     * @return the consumer with the time spent in it recorded for the phase
+     */
+    ChunkConsumer timed(int phase, ChunkConsumer consumer) {
+        return chunk -> {
+            enter(phase);
+            try {
+                consumer.accept(chunk);
+            } finally {
+                exit();
+            }
+        };
+    }
+
+    /**
+     * @return the stream with the bytes written to it counted, and the time spent writing them
+     * recorded for the {@link #WRITE} phase
+     */
+    OutputStream output(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                enter(WRITE);
+                try {
+                    out.write(b);
+                    writtenBytes++;
+                } finally {
+                    exit();
+                }
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                enter(WRITE);
+                try {
+                    out.write(bytes, offset, length);
+                    writtenBytes += length;
+                } finally {
+                    exit();
+                }
+            }
+
+            @Override
+            public void close() {
+                // the stream it writes to is left open
+            }
+        };
+    }
+
+    DataArrayMetrics metrics() {
+        long compressed = compressedBytes.get();
+        return new DataArrayMetrics(name, array.type, array.sizeInBytes(),
+                compressed < 0 ? array.sizeInBytes() : compressed, writtenBytes,
+                nanos[PACK], compressNanos.get(), nanos[WAIT], nanos[ENCODE], nanos[WRITE], totalNanos);
+    }
+}
@@ -0,0 +1,415 @@
+package vatika.writer;
+
+import java.math.BigInteger;
+
+/**
+ * Formats numbers as ASCII text directly into byte arrays, without creating any objects.
+ * <p>
+ * Doubles and floats are written with the shortest sequence of digits that parses back
+ * to exactly the same value, using the Ryu algorithm (Ulf Adams, "Ryu: fast float-to-string conversion",
+ * PLDI 2018). The layout is the one of {@link Double#toString(double)}: plain notation
+ * for magnitudes from 10<sup>-3</sup> up to 10<sup>7</sup>, and computerized scientific
+ * notation ({@code 1.25E-5}) otherwise, both understood by VTK and ParaView.
+ */
+final class AsciiFormatter {
+    /**
+     * Maximum number of characters of a formatted double, e.g. {@code -2.2250738585072014E-308}.
+     */
+    static final int MAX_DOUBLE_LENGTH = 24;
+
+    /**
+     * Maximum number of characters of a formatted long, e.g. {@code -9223372036854775808}.
+     */
+    static final int MAX_LONG_LENGTH = 20;
+
+    /**
+     * Maximum number of characters of a formatted float: a sign, 9 digits, a point and {@code E-38}.
+     */
+    static final int MAX_FLOAT_LENGTH = 15;
+
+    private static final int DOUBLE_MANTISSA_BITS = 52;
+    private static final int DOUBLE_EXPONENT_BITS = 11;
+    private static final int DOUBLE_BIAS = 1023;
+    private static final int FLOAT_MANTISSA_BITS = 23;
+    private static final int FLOAT_EXPONENT_BITS = 8;
+    private static final int FLOAT_BIAS = 127;
+
+    private static final int POW5_BITCOUNT = 125;
+    private static final int POW5_INV_BITCOUNT = 125;
+    private static final int POW5_TABLE_SIZE = 326;
+    private static final int POW5_INV_TABLE_SIZE = 342;
+
+    // 5^i and 2^k / 5^i, normalized to 125 bits and split in low and high 64 bit words
+    private static final long[] POW5_SPLIT_LOW = new long[POW5_TABLE_SIZE];
+    private static final long[] POW5_SPLIT_HIGH = new long[POW5_TABLE_SIZE];
+    private static final long[] POW5_INV_SPLIT_LOW = new long[POW5_INV_TABLE_SIZE];
+    private static final long[] POW5_INV_SPLIT_HIGH = new long[POW5_INV_TABLE_SIZE];
+
+    static {
+        BigInteger mask64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int i = 0; i < POW5_INV_TABLE_SIZE; i++) {
+            BigInteger pow5 = BigInteger.valueOf(5).pow(i);
+            int pow5Length = pow5.bitLength();
+
+            if (i < POW5_TABLE_SIZE) {
+                BigInteger pow5Split = pow5.shiftRight(pow5Length - POW5_BITCOUNT);
+                POW5_SPLIT_LOW[i] = pow5Split.and(mask64).longValue();
+                POW5_SPLIT_HIGH[i] = pow5Split.shiftRight(64).longValue();
+            }
+
+            BigInteger pow5InvSplit = BigInteger.ONE.shiftLeft(pow5Length - 1 + POW5_INV_BITCOUNT)
+                    .divide(pow5).add(BigInteger.ONE);
+            POW5_INV_SPLIT_LOW[i] = pow5InvSplit.and(mask64).longValue();
+            POW5_INV_SPLIT_HIGH[i] = pow5InvSplit.shiftRight(64).longValue();
+        }
+    }
+
+    private AsciiFormatter() {
+    }
+
+    /**
+     * Writes the value into {@code bytes} starting at {@code offset}, which must leave room
+     * for at least {@link #MAX_LONG_LENGTH} bytes.
+     *
+     * @return offset following the last written byte
+     */
+    static int format(long value, byte[] bytes, int offset) {
+        if (value == Long.MIN_VALUE) {
+            return formatAscii("-9223372036854775808", bytes, offset);
+        }
+        if (value < 0) {
+            bytes[offset++] = '-';
+            value = -value;
+        }
+
+        int length = decimalLength(value);
+        int end = offset + length;
+        for (int i = end - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Writes the value into {@code bytes} starting at {@code offset}, which must leave room
+     * for at least {@link #MAX_DOUBLE_LENGTH} bytes.
+     *
+     * @return offset following the last written byte
+     */
+    static int format(double value, byte[] bytes, int offset) {
+        if (Double.isNaN(value)) {
+            return formatAscii("NaN", bytes, offset);
+        }
+        if (value == Double.POSITIVE_INFINITY) {
+            return formatAscii("Infinity", bytes, offset);
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return formatAscii("-Infinity", bytes, offset);
+        }
+
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits < 0) {
+            bytes[offset++] = '-';
+        }
+        long ieeeMantissa = bits & ((1L << DOUBLE_MANTISSA_BITS) - 1);
+        int ieeeExponent = (int) ((bits >>> DOUBLE_MANTISSA_BITS) & ((1L << DOUBLE_EXPONENT_BITS) - 1));
+        if (ieeeExponent == 0 && ieeeMantissa == 0) {
+            return formatAscii("0.0", bytes, offset);
+        }
+
+        // Step 1: decode the floating point number, and unify normalized and subnormal cases.
+        int e2;
+        long m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+            m2 = ieeeMantissa | (1L << DOUBLE_MANTISSA_BITS);
+        }
+        int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+
+        return formatShortest(m2, e2, mmShift, bytes, offset);
+    }
+
+    /**
+     * Writes the value into {@code bytes} starting at {@code offset}, which must leave room
+     * for at least {@link #MAX_FLOAT_LENGTH} bytes. The digits are the shortest that parse back
+     * to the same float, so {@code 0.1f} is written {@code 0.1}, not as the double it equals.
+     *
+     * @return offset following the last written byte
+     */
+    static int format(float value, byte[] bytes, int offset) {
+        if (Float.isNaN(value)) {
+            return formatAscii("NaN", bytes, offset);
+        }
+        if (value == Float.POSITIVE_INFINITY) {
+            return formatAscii("Infinity", bytes, offset);
+        }
+        if (value == Float.NEGATIVE_INFINITY) {
+            return formatAscii("-Infinity", bytes, offset);
+        }
+
+        int bits = Float.floatToRawIntBits(value);
+        if (bits < 0) {
+            bytes[offset++] = '-';
+        }
+        int ieeeMantissa = bits & ((1 << FLOAT_MANTISSA_BITS) - 1);
+        int ieeeExponent = (bits >>> FLOAT_MANTISSA_BITS) & ((1 << FLOAT_EXPONENT_BITS) - 1);
+        if (ieeeExponent == 0 && ieeeMantissa == 0) {
+            return formatAscii("0.0", bytes, offset);
+        }
+
+        int e2;
+        long m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+            m2 = ieeeMantissa | (1L << FLOAT_MANTISSA_BITS);
+        }
+        int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+
+        // the tables of doubles cover the exponents of floats, and are exact for their shorter mantissas
+        return formatShortest(m2, e2, mmShift, bytes, offset);
+    }
+
+    /**
+     * Writes the shortest decimal in the interval of {@code m2 * 2^(e2 + 2)}, after the sign.
+     *
+     * @param mmShift 1 unless the lower bound of the interval is closer, at a power of 2
+     */
+    private static int formatShortest(long m2, int e2, int mmShift, byte[] bytes, int offset) {
+        boolean acceptBounds = (m2 & 1) == 0;
+
+        // Step 2: determine the interval of valid decimal representations.
+        long mv = 4 * m2;
+
+        // Step 3: convert to a decimal power base using 128-bit arithmetic.
+        long vr, vp, vm;
+        int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        if (e2 >= 0) {
+            int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+            e10 = q;
+            int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            vr = mulShift(4 * m2, POW5_INV_SPLIT_LOW[q], POW5_INV_SPLIT_HIGH[q], i);
+            vp = mulShift(4 * m2 + 2, POW5_INV_SPLIT_LOW[q], POW5_INV_SPLIT_HIGH[q], i);
+            vm = mulShift(4 * m2 - 1 - mmShift, POW5_INV_SPLIT_LOW[q], POW5_INV_SPLIT_HIGH[q], i);
+            if (q <= 21) {
+                // only one of mp, mv, and mm can be a multiple of 5, if any
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+                } else if (multipleOfPowerOf5(mv + 2, q)) {
+                    vp--;
+                }
+            }
+        } else {
+            int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int k = pow5bits(i) - POW5_BITCOUNT;
+            int j = q - k;
+            vr = mulShift(4 * m2, POW5_SPLIT_LOW[i], POW5_SPLIT_HIGH[i], j);
+            vp = mulShift(4 * m2 + 2, POW5_SPLIT_LOW[i], POW5_SPLIT_HIGH[i], j);
+            vm = mulShift(4 * m2 - 1 - mmShift, POW5_SPLIT_LOW[i], POW5_SPLIT_HIGH[i], j);
+            if (q <= 1) {
+                // mv has at least q trailing 0 bits, and so does the product
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    vp--;
+                }
+            } else if (q < 63) {
+                vrIsTrailingZeros = multipleOfPowerOf2(mv, q);
+            }
+        }
+
+        // Step 4: find the shortest decimal representation in the interval of valid representations.
+        int removed = 0;
+        int lastRemovedDigit = 0;
+        long output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            // general case, which happens rarely
+            while (vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                // round even if the exact number is .....50..0
+                lastRemovedDigit = 4;
+            }
+            output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+        } else {
+            // common case
+            boolean roundUp = false;
+            if (vp / 100 > vm / 100) {
+                roundUp = vr % 100 >= 50;
+                vr /= 100;
+                vp /= 100;
+                vm /= 100;
+                removed += 2;
+            }
+            while (vp / 10 > vm / 10) {
+                roundUp = vr % 10 >= 5;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            output = vr + (vr == vm || roundUp ? 1 : 0);
+        }
+
+        return formatDecimal(output, e10 + removed, bytes, offset);
+    }
+
+    /**
+     * Writes {@code digits * 10^exponent} in the layout of {@link Double#toString(double)}.
+     */
+    private static int formatDecimal(long digits, int exponent, byte[] bytes, int offset) {
+        int length = decimalLength(digits);
+        int scientificExponent = exponent + length - 1;
+
+        if (scientificExponent >= -3 && scientificExponent < 7) {
+            if (scientificExponent < 0) {
+                // 0.00ddd
+                bytes[offset++] = '0';
+                bytes[offset++] = '.';
+                for (int i = -1; i > scientificExponent; i--) {
+                    bytes[offset++] = '0';
+                }
+                writeDigits(digits, length, bytes, offset);
+                return offset + length;
+            }
+
+            int integerLength = scientificExponent + 1;
+            if (length <= integerLength) {
+                // ddd00.0
+                writeDigits(digits, length, bytes, offset);
+                offset += length;
+                for (int i = length; i < integerLength; i++) {
+                    bytes[offset++] = '0';
+                }
+                bytes[offset++] = '.';
+                bytes[offset++] = '0';
+                return offset;
+            }
+
+            // dd.ddd
+            writeDigits(digits, length, bytes, offset + 1);
+            System.arraycopy(bytes, offset + 1, bytes, offset, integerLength);
+            bytes[offset + integerLength] = '.';
+            return offset + length + 1;
+        }
+
+        // d.dddE-xx
+        writeDigits(digits, length, bytes, offset + 1);
+        bytes[offset] = bytes[offset + 1];
+        bytes[offset + 1] = '.';
+        if (length == 1) {
+            bytes[offset + 2] = '0';
+            offset += 3;
+        } else {
+            offset += length + 1;
+        }
+        bytes[offset++] = 'E';
+        return format(scientificExponent, bytes, offset);
+    }
+
+    private static void writeDigits(long digits, int length, byte[] bytes, int offset) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + digits % 10);
+            digits /= 10;
+        }
+    }
+
+    private static int formatAscii(String str, byte[] bytes, int offset) {
+        for (int i = 0; i < str.length(); i++) {
+            bytes[offset++] = (byte) str.charAt(i);
+        }
+        return offset;
+    }
+
+    private static int decimalLength(long value) {
+        int length = 1;
+        for (long threshold = 10; length < 19 && value >= threshold; threshold *= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * @return floor(log10(2^e)), for 0 <= e <= 1650
+     */
+    private static int log10Pow2(int e) {
+        return (int) ((e * 78913L) >>> 18);
+    }
+
+    /**
+     * @return floor(log10(5^e)), for 0 <= e <= 2620
+     */
+    private static int log10Pow5(int e) {
+        return (int) ((e * 732923L) >>> 20);
+    }
+
+    /**
+     * @return number of bits of 5^e, for 0 <= e <= 3528 (1 for e = 0)
+     */
+    private static int pow5bits(int e) {
+        return (int) (((e * 1217359L) >>> 19) + 1);
+    }
+
+    private static boolean multipleOfPowerOf5(long value, int p) {
+        int count = 0;
+        while (value % 5 == 0 && count < p) {
+            value /= 5;
+            count++;
+        }
+        return count >= p;
+    }
+
+    private static boolean multipleOfPowerOf2(long value, int p) {
+        return (value & ((1L << p) - 1)) == 0;
+    }
+
+    /**
+     * @return (m * (mulHigh * 2^64 + mulLow)) >> j, for a non-negative m of at most 55 bits and 64 < j < 128
+     */
+    private static long mulShift(long m, long mulLow, long mulHigh, int j) {
+        long high0 = unsignedMultiplyHigh(m, mulLow);
+        long low1 = m * mulHigh;
+        long high1 = unsignedMultiplyHigh(m, mulHigh);
+        long sum = high0 + low1;
+        if (Long.compareUnsigned(sum, high0) < 0) {
+            high1++;
+        }
+        int shift = j - 64;
+        return (high1 << (64 - shift)) | (sum >>> shift);
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+}
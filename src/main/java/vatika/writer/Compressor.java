@@ -0,0 +1,46 @@
+package vatika.writer;
+
+/**
+ * Compresses the blocks of binary data arrays in VTK XML files.
+ * Blocks are compressed concurrently, so implementations must be thread safe.
+ */
+public interface Compressor {
+    /**
+     * @return name of the VTK class able to decompress the data,
+     * written as the {@code compressor} attribute of the file
+     */
+    String vtkClassName();
+
+    /**
+     * Compresses the first {@code length} bytes of {@code data}.
+     *
+     * @param level compression level, from 1 (fastest) to 9 (smallest output)
+     */
+    byte[] compress(byte[] data, int length, int level);
+
+    /**
+     * Opens a session compressing the blocks of one file at the level. A session may keep
+     * resources between blocks, such as native zlib streams, until it is closed. By default
+     * every block is compressed by {@link #compress(byte[], int, int)}.
+     */
+    default Session open(int level) {
+        return (data, length) -> compress(data, length, level);
+    }
+
+    /**
+     * Compression of the blocks of one file, called concurrently.
+     */
+    interface Session extends AutoCloseable {
+        /**
+         * Compresses the first {@code length} bytes of {@code data}.
+         */
+        byte[] compress(byte[] data, int length);
+
+        /**
+         * Releases the resources of the session, once no more blocks are compressed.
+         */
+        @Override
+        default void close() {
+        }
+    }
+}
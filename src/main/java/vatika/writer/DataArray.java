@@ -0,0 +1,1200 @@
+package vatika.writer;
+
+import vatika.data.FieldView;
+import vatika.data.UnstructuredGridView;
+import vatika.data.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A named array of values to be written to a VTK file.
+ * The values are read from the grid only while they are being packed or printed,
+ * so no intermediate copy of the array is ever built.
+ */
+abstract class DataArray {
+    final String type;
+    final String name;
+    final int numberOfComponents;
+
+    private DataArray(String type, String name, int numberOfComponents) {
+        this.type = type;
+        this.name = name;
+        this.numberOfComponents = numberOfComponents;
+    }
+
+    /**
+     * @return total number of values (number of tuples times number of components)
+     */
+    abstract long size();
+
+    /**
+     * @return number of bytes used by a single packed value
+     */
+    abstract int valueBytes();
+
+    long sizeInBytes() {
+        return size() * valueBytes();
+    }
+
+    /**
+     * Packs all the values into the buffer, after the bytes it already holds,
+     * using the byte order of the buffer. Every time the buffer fills up it is
+     * flipped, handed to the consumer and cleared. The bytes packed after the last
+     * hand-over are left in the buffer, see {@link #flush(ByteBuffer, ChunkConsumer)}.
+     */
+    abstract void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException;
+
+    /**
+     * Prints all the values as ASCII text into the buffer, which must be backed by an array.
+     * Values of a tuple are separated by single spaces and tuples are separated by
+     * {@code tupleSeparator}. The buffer is handed to the consumer as in
+     * {@link #pack(ByteBuffer, ChunkConsumer)}.
+     */
+    abstract void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException;
+
+    /**
+     * @return the array with its floating point values written in the precision,
+     * or this array if its values are integers
+     */
+    DataArray withPrecision(Precision precision) {
+        return this;
+    }
+
+    /**
+     * @return the array with its values written as Int64, for arrays of indices
+     */
+    DataArray asInt64() {
+        throw new UnsupportedOperationException("Not an array of indices: " + type);
+    }
+
+    interface ChunkConsumer {
+        /**
+         * Consumes all the remaining bytes of the chunk.
+         */
+        void accept(ByteBuffer chunk) throws IOException;
+    }
+
+    /**
+     * Hands the bytes held by the buffer to the consumer and clears the buffer.
+     */
+    static void flush(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+        buffer.flip();
+        consumer.accept(buffer);
+        buffer.clear();
+    }
+
+    private static final char NO_SEPARATOR = 0;
+
+    /**
+     * @return separator to print before the value at the index
+     */
+    private static char separator(long index, int numberOfComponents, char tupleSeparator) {
+        if (index == 0) {
+            return NO_SEPARATOR;
+        }
+        return index % numberOfComponents == 0 ? tupleSeparator : ' ';
+    }
+
+    private static void printValue(ByteBuffer buffer, ChunkConsumer consumer, char separator, double value)
+            throws IOException {
+        if (buffer.remaining() < 1 + AsciiFormatter.MAX_DOUBLE_LENGTH) {
+            flush(buffer, consumer);
+        }
+        if (separator != NO_SEPARATOR) {
+            buffer.put((byte) separator);
+        }
+        int end = AsciiFormatter.format(value, buffer.array(), buffer.arrayOffset() + buffer.position());
+        buffer.position(end - buffer.arrayOffset());
+    }
+
+    private static void printValue(ByteBuffer buffer, ChunkConsumer consumer, char separator, double value,
+                                   Precision precision) throws IOException {
+        if (precision == Precision.FLOAT64) {
+            printValue(buffer, consumer, separator, value);
+            return;
+        }
+        if (buffer.remaining() < 1 + AsciiFormatter.MAX_FLOAT_LENGTH) {
+            flush(buffer, consumer);
+        }
+        if (separator != NO_SEPARATOR) {
+            buffer.put((byte) separator);
+        }
+        int end = AsciiFormatter.format((float) value, buffer.array(), buffer.arrayOffset() + buffer.position());
+        buffer.position(end - buffer.arrayOffset());
+    }
+
+    private static void putValue(ByteBuffer buffer, double value, Precision precision) {
+        if (precision == Precision.FLOAT64) {
+            buffer.putDouble(value);
+        } else {
+            buffer.putFloat((float) value);
+        }
+    }
+
+    /**
+     * Puts an index, which must fit in an int unless it is written as Int64.
+     */
+    private static void putIndex(ByteBuffer buffer, long index, boolean int64) {
+        if (int64) {
+            buffer.putLong(index);
+        } else {
+            buffer.putInt((int) index);
+        }
+    }
+
+    private static void printValue(ByteBuffer buffer, ChunkConsumer consumer, char separator, long value)
+            throws IOException {
+        if (buffer.remaining() < 1 + AsciiFormatter.MAX_LONG_LENGTH) {
+            flush(buffer, consumer);
+        }
+        if (separator != NO_SEPARATOR) {
+            buffer.put((byte) separator);
+        }
+        int end = AsciiFormatter.format(value, buffer.array(), buffer.arrayOffset() + buffer.position());
+        buffer.position(end - buffer.arrayOffset());
+    }
+
+    static DataArray float64(String name, double[] values) {
+        return float64(name, values, 1);
+    }
+
+    static DataArray float64(String name, double[] values, int numberOfComponents) {
+        return floats(name, values, numberOfComponents, Precision.FLOAT64);
+    }
+
+    private static DataArray floats(String name, double[] values, int numberOfComponents, Precision precision) {
+        return new DataArray(precision.type, name, numberOfComponents) {
+            @Override
+            long size() {
+                return values.length;
+            }
+
+            @Override
+            int valueBytes() {
+                return precision == Precision.FLOAT32 ? Float.BYTES : Double.BYTES;
+            }
+
+            @Override
+            DataArray withPrecision(Precision newPrecision) {
+                return newPrecision == precision ? this : floats(name, values, numberOfComponents, newPrecision);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int valueBytes = valueBytes();
+                int from = 0;
+                while (from < values.length) {
+                    if (buffer.remaining() < valueBytes) {
+                        flush(buffer, consumer);
+                    }
+                    int count = Math.min(buffer.remaining() / valueBytes, values.length - from);
+                    if (precision == Precision.FLOAT64) {
+                        buffer.asDoubleBuffer().put(values, from, count);
+                        buffer.position(buffer.position() + count * Double.BYTES);
+                    } else {
+                        Packing.putFloats(buffer, values, from, count);
+                    }
+                    from += count;
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = 0; i < values.length; i++) {
+                    printValue(buffer, consumer, separator(i, numberOfComponents, tupleSeparator), values[i],
+                            precision);
+                }
+            }
+        };
+    }
+
+    static DataArray float64(String name, Vector[] vectors) {
+        return floats(name, vectors, Precision.FLOAT64);
+    }
+
+    private static DataArray floats(String name, Vector[] vectors, Precision precision) {
+        return new DataArray(precision.type, name, 3) {
+            @Override
+            long size() {
+                return 3L * vectors.length;
+            }
+
+            @Override
+            int valueBytes() {
+                return precision == Precision.FLOAT32 ? Float.BYTES : Double.BYTES;
+            }
+
+            @Override
+            DataArray withPrecision(Precision newPrecision) {
+                return newPrecision == precision ? this : floats(name, vectors, newPrecision);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                for (Vector v : vectors) {
+                    if (buffer.remaining() < 3 * valueBytes()) {
+                        flush(buffer, consumer);
+                    }
+                    putValue(buffer, v.x, precision);
+                    putValue(buffer, v.y, precision);
+                    putValue(buffer, v.z, precision);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = 0; i < vectors.length; i++) {
+                    Vector v = vectors[i];
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), v.x, precision);
+                    printValue(buffer, consumer, ' ', v.y, precision);
+                    printValue(buffer, consumer, ' ', v.z, precision);
+                }
+            }
+        };
+    }
+
+    /**
+     * Values {@code values[from]} to {@code values[to - 1]} as Int32.
+     */
+    static DataArray int32(String name, int[] values, int from, int to) {
+        return ints(name, values, from, to, false);
+    }
+
+    private static DataArray ints(String name, int[] values, int from, int to, boolean int64) {
+        return new DataArray(int64 ? "Int64" : "Int32", name, 1) {
+            @Override
+            long size() {
+                return to - from;
+            }
+
+            @Override
+            int valueBytes() {
+                return int64 ? Long.BYTES : Integer.BYTES;
+            }
+
+            @Override
+            DataArray asInt64() {
+                return int64 ? this : ints(name, values, from, to, true);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int valueBytes = valueBytes();
+                int next = from;
+                while (next < to) {
+                    if (buffer.remaining() < valueBytes) {
+                        flush(buffer, consumer);
+                    }
+                    int count = Math.min(buffer.remaining() / valueBytes, to - next);
+                    if (int64) {
+                        Packing.putLongs(buffer, values, next, count);
+                    } else {
+                        buffer.asIntBuffer().put(values, next, count);
+                        buffer.position(buffer.position() + count * Integer.BYTES);
+                    }
+                    next += count;
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = from; i < to; i++) {
+                    printValue(buffer, consumer, separator(i - from, 1, tupleSeparator), values[i]);
+                }
+            }
+        };
+    }
+
+    static DataArray uint8(String name, byte[] values) {
+        return new DataArray("UInt8", name, 1) {
+            @Override
+            long size() {
+                return values.length;
+            }
+
+            @Override
+            int valueBytes() {
+                return Byte.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int from = 0;
+                while (from < values.length) {
+                    if (!buffer.hasRemaining()) {
+                        flush(buffer, consumer);
+                    }
+                    int count = Math.min(buffer.remaining(), values.length - from);
+                    buffer.put(values, from, count);
+                    from += count;
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = 0; i < values.length; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), values[i] & 0xFF);
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell list of the legacy format from the packed {@code connectivity} and {@code offsets} arrays.
+     */
+    static DataArray legacyCells(int[] connectivity, int[] offsets) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return offsets.length - 1L + connectivity.length;
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                for (int i = 0; i < offsets.length - 1; i++) {
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putInt(offsets[i + 1] - offsets[i]);
+                    // a cell may not fit in the buffer, its points are put as far as they fit
+                    int from = offsets[i];
+                    while (from < offsets[i + 1]) {
+                        if (buffer.remaining() < Integer.BYTES) {
+                            flush(buffer, consumer);
+                        }
+                        int count = Math.min(buffer.remaining() / Integer.BYTES, offsets[i + 1] - from);
+                        buffer.asIntBuffer().put(connectivity, from, count);
+                        buffer.position(buffer.position() + count * Integer.BYTES);
+                        from += count;
+                    }
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = 0; i < offsets.length - 1; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), offsets[i + 1] - offsets[i]);
+                    for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                        printValue(buffer, consumer, ' ', connectivity[j]);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell types of the legacy format from the packed {@code types} array, as Int32.
+     */
+    static DataArray legacyTypes(byte[] types) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return types.length;
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int from = 0;
+                while (from < types.length) {
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    int count = Math.min(buffer.remaining() / Integer.BYTES, types.length - from);
+                    Packing.putUnsignedBytesAsInts(buffer, types, from, count);
+                    from += count;
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = 0; i < types.length; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), types[i] & 0xFF);
+                }
+            }
+        };
+    }
+
+    /**
+     * Values of a buffer of doubles as Float64.
+     */
+    static DataArray float64(String name, SpillBuffer values, int numberOfComponents) {
+        return floats(name, values, numberOfComponents, Precision.FLOAT64);
+    }
+
+    private static DataArray floats(String name, SpillBuffer values, int numberOfComponents, Precision precision) {
+        return new DataArray(precision.type, name, numberOfComponents) {
+            @Override
+            long size() {
+                return values.size();
+            }
+
+            @Override
+            int valueBytes() {
+                return precision == Precision.FLOAT32 ? Float.BYTES : Double.BYTES;
+            }
+
+            @Override
+            DataArray withPrecision(Precision newPrecision) {
+                return newPrecision == precision ? this
+                        : DataArray.floats(name, values, numberOfComponents, newPrecision);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                if (precision == Precision.FLOAT64) {
+                    packSpilled(buffer, consumer, values);
+                    return;
+                }
+                SpillBuffer.Reader reader = values.reader();
+                for (long i = values.size(); i > 0; i--) {
+                    if (buffer.remaining() < Float.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putFloat((float) reader.getDouble());
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                SpillBuffer.Reader reader = values.reader();
+                long size = values.size();
+                for (long i = 0; i < size; i++) {
+                    printValue(buffer, consumer, separator(i, numberOfComponents, tupleSeparator),
+                            reader.getDouble(), precision);
+                }
+            }
+        };
+    }
+
+    /**
+     * Indices of a buffer of ints or longs as Int32, preceded by a zero if {@code leadingZero}.
+     */
+    static DataArray indices(String name, SpillBuffer values, boolean leadingZero) {
+        return indices(name, values, leadingZero, false);
+    }
+
+    private static DataArray indices(String name, SpillBuffer values, boolean leadingZero, boolean int64) {
+        return new DataArray(int64 ? "Int64" : "Int32", name, 1) {
+            @Override
+            long size() {
+                return leadingZero ? values.size() + 1 : values.size();
+            }
+
+            @Override
+            int valueBytes() {
+                return int64 ? Long.BYTES : Integer.BYTES;
+            }
+
+            @Override
+            DataArray asInt64() {
+                return int64 ? this : DataArray.indices(name, values, leadingZero, true);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int valueBytes = valueBytes();
+                if (leadingZero) {
+                    if (buffer.remaining() < valueBytes) {
+                        flush(buffer, consumer);
+                    }
+                    putIndex(buffer, 0, int64);
+                }
+                if (values.valueBytes == valueBytes) {
+                    packSpilled(buffer, consumer, values);
+                    return;
+                }
+                SpillBuffer.Reader reader = values.reader();
+                for (long i = values.size(); i > 0; i--) {
+                    if (buffer.remaining() < valueBytes) {
+                        flush(buffer, consumer);
+                    }
+                    putIndex(buffer, getIndex(reader, values), int64);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                SpillBuffer.Reader reader = values.reader();
+                long index = 0;
+                if (leadingZero) {
+                    printValue(buffer, consumer, NO_SEPARATOR, 0);
+                    index++;
+                }
+                for (long i = values.size(); i > 0; i--) {
+                    printValue(buffer, consumer, separator(index++, 1, tupleSeparator), getIndex(reader, values));
+                }
+            }
+        };
+    }
+
+    /**
+     * Packs the values of a buffer as they are, converted to the byte order of {@code buffer}.
+     */
+    private static void packSpilled(ByteBuffer buffer, ChunkConsumer consumer, SpillBuffer values)
+            throws IOException {
+        SpillBuffer.Reader reader = values.reader();
+        for (long remaining = values.size() * values.valueBytes; remaining > 0; ) {
+            if (buffer.remaining() < values.valueBytes) {
+                flush(buffer, consumer);
+            }
+            int bytes = (int) Math.min(remaining, buffer.remaining() / values.valueBytes * values.valueBytes);
+            ByteBuffer chunk = reader.next(bytes);
+            remaining -= chunk.remaining();
+            Packing.putBigEndian(buffer, chunk, values.valueBytes);
+        }
+    }
+
+    private static long getIndex(SpillBuffer.Reader reader, SpillBuffer values) throws IOException {
+        return values.valueBytes == Long.BYTES ? reader.getLong() : reader.getInt();
+    }
+
+    /**
+     * Values of a buffer of bytes as UInt8.
+     */
+    static DataArray uint8(String name, SpillBuffer values) {
+        return new DataArray("UInt8", name, 1) {
+            @Override
+            long size() {
+                return values.size();
+            }
+
+            @Override
+            int valueBytes() {
+                return Byte.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                packSpilled(buffer, consumer, values);
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                SpillBuffer.Reader reader = values.reader();
+                long size = values.size();
+                for (long i = 0; i < size; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), reader.get() & 0xFF);
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell list of the legacy format from buffers of the {@code connectivity} as ints and of the
+     * end of every cell in it as longs.
+     */
+    static DataArray legacyCells(SpillBuffer connectivity, SpillBuffer ends) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return ends.size() + connectivity.size();
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                SpillBuffer.Reader connectivityReader = connectivity.reader();
+                SpillBuffer.Reader endsReader = ends.reader();
+                long start = 0;
+                for (long i = ends.size(); i > 0; i--) {
+                    long end = endsReader.getLong();
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putInt((int) (end - start));
+                    for (long j = start; j < end; j++) {
+                        if (buffer.remaining() < Integer.BYTES) {
+                            flush(buffer, consumer);
+                        }
+                        buffer.putInt(connectivityReader.getInt());
+                    }
+                    start = end;
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                SpillBuffer.Reader connectivityReader = connectivity.reader();
+                SpillBuffer.Reader endsReader = ends.reader();
+                long start = 0;
+                for (long i = 0, size = ends.size(); i < size; i++) {
+                    long end = endsReader.getLong();
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), end - start);
+                    for (long j = start; j < end; j++) {
+                        printValue(buffer, consumer, ' ', connectivityReader.getInt());
+                    }
+                    start = end;
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell types of the legacy format from a buffer of bytes, as Int32.
+     */
+    static DataArray legacyTypes(SpillBuffer types) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return types.size();
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                SpillBuffer.Reader reader = types.reader();
+                for (long i = types.size(); i > 0; i--) {
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putInt(reader.get() & 0xFF);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                SpillBuffer.Reader reader = types.reader();
+                long size = types.size();
+                for (long i = 0; i < size; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), reader.get() & 0xFF);
+                }
+            }
+        };
+    }
+
+    /**
+     * Values of the field for {@code numberOfTuples} points or cells, as Float64.
+     */
+    static DataArray float64(FieldView field, int numberOfTuples) {
+        return floats(field, numberOfTuples, Precision.FLOAT64);
+    }
+
+    private static DataArray floats(FieldView field, int numberOfTuples, Precision precision) {
+        int numberOfComponents = field.numberOfComponents();
+        return new DataArray(precision.type, field.name(), numberOfComponents) {
+            @Override
+            long size() {
+                return (long) numberOfComponents * numberOfTuples;
+            }
+
+            @Override
+            int valueBytes() {
+                return precision == Precision.FLOAT32 ? Float.BYTES : Double.BYTES;
+            }
+
+            @Override
+            DataArray withPrecision(Precision newPrecision) {
+                return newPrecision == precision ? this : DataArray.floats(field, numberOfTuples, newPrecision);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                for (int i = 0; i < numberOfTuples; i++) {
+                    if (buffer.remaining() < numberOfComponents * valueBytes()) {
+                        flush(buffer, consumer);
+                    }
+                    for (int j = 0; j < numberOfComponents; j++) {
+                        putValue(buffer, field.value(i, j), precision);
+                    }
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = 0; i < numberOfTuples; i++) {
+                    for (int j = 0; j < numberOfComponents; j++) {
+                        printValue(buffer, consumer, separator((long) i * numberOfComponents + j,
+                                numberOfComponents, tupleSeparator), field.value(i, j), precision);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Connectivity of the cells of the grid, which has {@code size} entries.
+     */
+    static DataArray connectivity(UnstructuredGridView grid, long size) {
+        return connectivity(grid, size, false);
+    }
+
+    private static DataArray connectivity(UnstructuredGridView grid, long size, boolean int64) {
+        return new DataArray(int64 ? "Int64" : "Int32", "connectivity", 1) {
+            @Override
+            long size() {
+                return size;
+            }
+
+            @Override
+            int valueBytes() {
+                return int64 ? Long.BYTES : Integer.BYTES;
+            }
+
+            @Override
+            DataArray asInt64() {
+                return int64 ? this : DataArray.connectivity(grid, size, true);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    int numberOfPoints = grid.numberOfCellPoints(cell);
+                    for (int i = 0; i < numberOfPoints; i++) {
+                        if (buffer.remaining() < Long.BYTES) {
+                            flush(buffer, consumer);
+                        }
+                        putIndex(buffer, grid.cellPoint(cell, i), int64);
+                    }
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                long index = 0;
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    int numberOfPoints = grid.numberOfCellPoints(cell);
+                    for (int i = 0; i < numberOfPoints; i++) {
+                        printValue(buffer, consumer, separator(index++, 1, tupleSeparator), grid.cellPoint(cell, i));
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * End of every cell of the grid in the connectivity, preceded by a zero if {@code leadingZero}.
+     */
+    static DataArray offsets(String name, UnstructuredGridView grid, boolean leadingZero) {
+        return offsets(name, grid, leadingZero, false);
+    }
+
+    private static DataArray offsets(String name, UnstructuredGridView grid, boolean leadingZero, boolean int64) {
+        return new DataArray(int64 ? "Int64" : "Int32", name, 1) {
+            @Override
+            long size() {
+                return leadingZero ? grid.numberOfCells() + 1 : grid.numberOfCells();
+            }
+
+            @Override
+            int valueBytes() {
+                return int64 ? Long.BYTES : Integer.BYTES;
+            }
+
+            @Override
+            DataArray asInt64() {
+                return int64 ? this : DataArray.offsets(name, grid, leadingZero, true);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                long offset = 0;
+                if (leadingZero) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    putIndex(buffer, offset, int64);
+                }
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    offset += grid.numberOfCellPoints(cell);
+                    putIndex(buffer, offset, int64);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                long offset = 0;
+                if (leadingZero) {
+                    printValue(buffer, consumer, NO_SEPARATOR, offset);
+                }
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    offset += grid.numberOfCellPoints(cell);
+                    printValue(buffer, consumer, separator(leadingZero ? cell + 1 : cell, 1, tupleSeparator), offset);
+                }
+            }
+        };
+    }
+
+    static DataArray types(UnstructuredGridView grid) {
+        return new DataArray("UInt8", "types", 1) {
+            @Override
+            long size() {
+                return grid.numberOfCells();
+            }
+
+            @Override
+            int valueBytes() {
+                return Byte.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    if (!buffer.hasRemaining()) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.put((byte) grid.cellType(cell).ID);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    printValue(buffer, consumer, separator(cell, 1, tupleSeparator), grid.cellType(cell).ID);
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell types of the legacy format for the cells of the grid, as Int32.
+     */
+    static DataArray legacyTypes(UnstructuredGridView grid) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return grid.numberOfCells();
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putInt(grid.cellType(cell).ID);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    printValue(buffer, consumer, separator(cell, 1, tupleSeparator), grid.cellType(cell).ID);
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell list of the legacy format for the cells of the grid, whose connectivity has
+     * {@code connectivitySize} entries.
+     */
+    static DataArray legacyCells(UnstructuredGridView grid, long connectivitySize) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return grid.numberOfCells() + connectivitySize;
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    int numberOfPoints = grid.numberOfCellPoints(cell);
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putInt(numberOfPoints);
+                    for (int i = 0; i < numberOfPoints; i++) {
+                        if (buffer.remaining() < Integer.BYTES) {
+                            flush(buffer, consumer);
+                        }
+                        buffer.putInt(grid.cellPoint(cell, i));
+                    }
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int numberOfCells = grid.numberOfCells();
+                for (int cell = 0; cell < numberOfCells; cell++) {
+                    int numberOfPoints = grid.numberOfCellPoints(cell);
+                    printValue(buffer, consumer, separator(cell, 1, tupleSeparator), numberOfPoints);
+                    for (int i = 0; i < numberOfPoints; i++) {
+                        printValue(buffer, consumer, ' ', grid.cellPoint(cell, i));
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Values of a buffer of doubles, from index 0 to its limit, as Float64.
+     */
+    static DataArray float64(String name, DoubleBuffer values, int numberOfComponents) {
+        return floats(name, values, numberOfComponents, Precision.FLOAT64);
+    }
+
+    private static DataArray floats(String name, DoubleBuffer values, int numberOfComponents, Precision precision) {
+        return new DataArray(precision.type, name, numberOfComponents) {
+            @Override
+            long size() {
+                return values.limit();
+            }
+
+            @Override
+            int valueBytes() {
+                return precision == Precision.FLOAT32 ? Float.BYTES : Double.BYTES;
+            }
+
+            @Override
+            DataArray withPrecision(Precision newPrecision) {
+                return newPrecision == precision ? this
+                        : DataArray.floats(name, values, numberOfComponents, newPrecision);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int valueBytes = valueBytes();
+                DoubleBuffer source = values.duplicate().position(0);
+                while (source.hasRemaining()) {
+                    if (buffer.remaining() < valueBytes) {
+                        flush(buffer, consumer);
+                    }
+                    int count = Math.min(buffer.remaining() / valueBytes, source.remaining());
+                    if (precision == Precision.FLOAT64) {
+                        DoubleBuffer part = source.slice().limit(count);
+                        buffer.asDoubleBuffer().put(part);
+                        buffer.position(buffer.position() + count * Double.BYTES);
+                        source.position(source.position() + count);
+                    } else {
+                        for (int i = 0; i < count; i++) {
+                            buffer.putFloat((float) source.get());
+                        }
+                    }
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int size = values.limit();
+                for (int i = 0; i < size; i++) {
+                    printValue(buffer, consumer, separator(i, numberOfComponents, tupleSeparator), values.get(i),
+                            precision);
+                }
+            }
+        };
+    }
+
+    /**
+     * Values of a buffer of ints, from index 0 to its limit, as Int32.
+     */
+    static DataArray int32(String name, IntBuffer values) {
+        return ints(name, values, false);
+    }
+
+    private static DataArray ints(String name, IntBuffer values, boolean int64) {
+        return new DataArray(int64 ? "Int64" : "Int32", name, 1) {
+            @Override
+            long size() {
+                return values.limit();
+            }
+
+            @Override
+            int valueBytes() {
+                return int64 ? Long.BYTES : Integer.BYTES;
+            }
+
+            @Override
+            DataArray asInt64() {
+                return int64 ? this : DataArray.ints(name, values, true);
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int valueBytes = valueBytes();
+                IntBuffer source = values.duplicate().position(0);
+                while (source.hasRemaining()) {
+                    if (buffer.remaining() < valueBytes) {
+                        flush(buffer, consumer);
+                    }
+                    int count = Math.min(buffer.remaining() / valueBytes, source.remaining());
+                    if (int64) {
+                        for (int i = 0; i < count; i++) {
+                            buffer.putLong(source.get());
+                        }
+                    } else {
+                        IntBuffer part = source.slice().limit(count);
+                        buffer.asIntBuffer().put(part);
+                        buffer.position(buffer.position() + count * Integer.BYTES);
+                        source.position(source.position() + count);
+                    }
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int size = values.limit();
+                for (int i = 0; i < size; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), values.get(i));
+                }
+            }
+        };
+    }
+
+    /**
+     * Values of a buffer of bytes, from index 0 to its limit, as UInt8.
+     */
+    static DataArray uint8(String name, ByteBuffer values) {
+        return new DataArray("UInt8", name, 1) {
+            @Override
+            long size() {
+                return values.limit();
+            }
+
+            @Override
+            int valueBytes() {
+                return Byte.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                ByteBuffer source = values.duplicate().position(0);
+                while (source.hasRemaining()) {
+                    if (!buffer.hasRemaining()) {
+                        flush(buffer, consumer);
+                    }
+                    int count = Math.min(buffer.remaining(), source.remaining());
+                    buffer.put(source.slice().limit(count));
+                    source.position(source.position() + count);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int size = values.limit();
+                for (int i = 0; i < size; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), values.get(i) & 0xFF);
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell list of the legacy format from buffers of {@code connectivity} and {@code offsets}.
+     */
+    static DataArray legacyCells(IntBuffer connectivity, IntBuffer offsets) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return offsets.limit() - 1L + connectivity.limit();
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                IntBuffer source = connectivity.duplicate();
+                for (int i = 0; i < offsets.limit() - 1; i++) {
+                    int end = offsets.get(i + 1);
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putInt(end - offsets.get(i));
+                    // a cell may not fit in the buffer, its points are put as far as they fit
+                    int from = offsets.get(i);
+                    while (from < end) {
+                        if (buffer.remaining() < Integer.BYTES) {
+                            flush(buffer, consumer);
+                        }
+                        int count = Math.min(buffer.remaining() / Integer.BYTES, end - from);
+                        source.limit(from + count).position(from);
+                        buffer.asIntBuffer().put(source);
+                        buffer.position(buffer.position() + count * Integer.BYTES);
+                        from += count;
+                    }
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                for (int i = 0; i < offsets.limit() - 1; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), offsets.get(i + 1) - offsets.get(i));
+                    for (int j = offsets.get(i); j < offsets.get(i + 1); j++) {
+                        printValue(buffer, consumer, ' ', connectivity.get(j));
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Cell types of the legacy format from a buffer of bytes, from index 0 to its limit, as Int32.
+     */
+    static DataArray legacyTypes(ByteBuffer types) {
+        return new DataArray("Int32", null, 1) {
+            @Override
+            long size() {
+                return types.limit();
+            }
+
+            @Override
+            int valueBytes() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            void pack(ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+                int size = types.limit();
+                for (int i = 0; i < size; i++) {
+                    if (buffer.remaining() < Integer.BYTES) {
+                        flush(buffer, consumer);
+                    }
+                    buffer.putInt(types.get(i) & 0xFF);
+                }
+            }
+
+            @Override
+            void print(ByteBuffer buffer, ChunkConsumer consumer, char tupleSeparator) throws IOException {
+                int size = types.limit();
+                for (int i = 0; i < size; i++) {
+                    printValue(buffer, consumer, separator(i, 1, tupleSeparator), types.get(i) & 0xFF);
+                }
+            }
+        };
+    }
+}
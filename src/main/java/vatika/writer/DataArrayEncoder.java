@@ -0,0 +1,422 @@
+package vatika.writer;
+
+import vatika.writer.DataArray.ChunkConsumer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Encodes data arrays as the content of DataArray elements of VTK XML files.
+ * In the "binary" format the packed bytes, optionally compressed, are preceded
+ * by a header and written as Base64 text; in the "appended" format the header and
+ * the bytes are written raw to the appended data section; in the "ascii" format
+ * the values are printed as text.
+ * <p>
+ * Compressed data is split into blocks of a fixed size which are compressed
+ * concurrently on the given executor. At most a few blocks per available processor
+ * are waiting to be compressed at any time, so the uncompressed data of an array
+ * is never held in memory as a whole.
+ * <p>
+ * The sizes in the headers are UInt32 values, or UInt64 values for arrays of more than 4 GiB,
+ * as declared by the {@code header_type} attribute of the file.
+ * <p>
+ * An encoder is used for the arrays of one file: the compression session, the blocks and the
+ * Base64 buffers are reused from one array to the next, and released by {@link #close()}.
+ */
+class DataArrayEncoder implements AutoCloseable {
+    static final int DEFAULT_BLOCK_SIZE = 32 * 1024;
+    static final long MAX_UINT32 = 0xFFFFFFFFL;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PENDING_BLOCKS = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final ByteOrder byteOrder;
+    private final Compressor.Session compression;
+    private final int blockSize;
+    private final Executor executor;
+    private final boolean uint64Header;
+    private final ByteBuffer buffer;
+    private final Queue<ByteBuffer> freeBlocks = new ConcurrentLinkedQueue<>();
+    private final Base64Output base64Output = new Base64Output();
+
+    /**
+     * @param compressor   compressor of the data blocks, {@code null} to write uncompressed data
+     * @param uint64Header whether the sizes in the headers are UInt64 instead of UInt32 values
+     */
+    DataArrayEncoder(ByteOrder byteOrder, Compressor compressor, int compressionLevel,
+                     int blockSize, Executor executor, boolean uint64Header) {
+        this.byteOrder = byteOrder;
+        this.compression = compressor != null ? compressor.open(compressionLevel) : null;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.uint64Header = uint64Header;
+        this.buffer = newByteBuffer(BUFFER_SIZE);
+    }
+
+    void print(DataArray array, OutputStream out, ArrayRecorder recorder) throws IOException {
+        ChunkConsumer textOut = chunk -> out.write(chunk.array(), chunk.position(), chunk.remaining());
+        recorder.enter(ArrayRecorder.PACK);
+        try {
+            array.print(buffer, textOut, ' ');
+            DataArray.flush(buffer, textOut);
+        } finally {
+            recorder.exit();
+        }
+    }
+
+    void encode(DataArray array, OutputStream out, ArrayRecorder recorder) throws IOException {
+        if (compression != null) {
+            encodeCompressed(array, out, recorder);
+        } else {
+            encodeUncompressed(array, out, recorder);
+        }
+    }
+
+    private void encodeUncompressed(DataArray array, OutputStream out, ArrayRecorder recorder) throws IOException {
+        recorder.enter(ArrayRecorder.ENCODE);
+        try {
+            writeBase64(uncompressedHeader(array), out);
+
+            try (OutputStream base64 = base64Output.start(out)) {
+                ChunkConsumer base64Out = recorder.timed(ArrayRecorder.ENCODE,
+                        chunk -> base64.write(chunk.array(), chunk.position(), chunk.remaining()));
+                recorder.enter(ArrayRecorder.PACK);
+                try {
+                    array.pack(buffer, base64Out);
+                    DataArray.flush(buffer, base64Out);
+                } finally {
+                    recorder.exit();
+                }
+            }
+        } finally {
+            recorder.exit();
+        }
+    }
+
+    private void encodeCompressed(DataArray array, OutputStream out, ArrayRecorder recorder) throws IOException {
+        CompressedArray compressedArray = compress(array, recorder);
+        compressedArray.await(recorder);
+
+        recorder.enter(ArrayRecorder.ENCODE);
+        try {
+            writeBase64(compressedArray.header(), out);
+            try (OutputStream base64 = base64Output.start(out)) {
+                for (CompletableFuture<byte[]> compressedBlock : compressedArray.blocks) {
+                    base64.write(compressedBlock.join());
+                }
+            }
+        } finally {
+            recorder.exit();
+        }
+    }
+
+    /**
+     * Encodes the array for the raw appended data section, where the header is directly
+     * followed by the data. The size of the encoded array must be known before any of it
+     * is written, so compressed arrays are compressed right away and kept in memory until
+     * they are written; uncompressed arrays are packed only when written.
+     */
+    AppendedArray appended(DataArray array, ArrayRecorder recorder) throws IOException {
+        if (compression != null) {
+            CompressedArray compressedArray = compress(array, recorder);
+            compressedArray.await(recorder);
+            byte[] header = compressedArray.header();
+            long dataSize = 0;
+            for (CompletableFuture<byte[]> compressedBlock : compressedArray.blocks) {
+                dataSize += compressedBlock.join().length;
+            }
+            return new AppendedArray(header.length + dataSize, dataSize) {
+                @Override
+                void writeTo(ByteBuffer buffer, ChunkConsumer consumer, ArrayRecorder recorder) throws IOException {
+                    ChunkConsumer timedOut = recorder.timed(ArrayRecorder.WRITE, consumer);
+                    put(header, buffer, timedOut);
+                    for (CompletableFuture<byte[]> compressedBlock : compressedArray.blocks) {
+                        put(compressedBlock.join(), buffer, timedOut);
+                    }
+                }
+            };
+        }
+
+        byte[] header = uncompressedHeader(array);
+        return new AppendedArray(header.length + array.sizeInBytes(), array.sizeInBytes()) {
+            @Override
+            void writeTo(ByteBuffer buffer, ChunkConsumer consumer, ArrayRecorder recorder) throws IOException {
+                ChunkConsumer timedOut = recorder.timed(ArrayRecorder.WRITE, consumer);
+                put(header, buffer, timedOut);
+                recorder.enter(ArrayRecorder.PACK);
+                try {
+                    array.pack(buffer, timedOut);
+                } finally {
+                    recorder.exit();
+                }
+            }
+        };
+    }
+
+    /**
+     * An encoded array of the appended data section.
+     */
+    abstract static class AppendedArray {
+        /**
+         * Number of bytes of the header and the data.
+         */
+        final long size;
+
+        /**
+         * Number of bytes of the data, compressed or not.
+         */
+        final long dataSize;
+
+        private AppendedArray(long size, long dataSize) {
+            this.size = size;
+            this.dataSize = dataSize;
+        }
+
+        /**
+         * Writes the header and the data into the buffer, which must have the byte order
+         * of the encoder, handing it to the consumer as in
+         * {@link DataArray#pack(ByteBuffer, ChunkConsumer)}.
+         */
+        abstract void writeTo(ByteBuffer buffer, ChunkConsumer consumer, ArrayRecorder recorder) throws IOException;
+    }
+
+    private class CompressedArray {
+        final List<CompletableFuture<byte[]>> blocks;
+        final int lastBlockSize;
+
+        CompressedArray(List<CompletableFuture<byte[]>> blocks, int lastBlockSize) {
+            this.blocks = blocks;
+            this.lastBlockSize = lastBlockSize;
+        }
+
+        /**
+         * Waits for all the blocks to be compressed.
+         */
+        void await(ArrayRecorder recorder) {
+            recorder.enter(ArrayRecorder.WAIT);
+            try {
+                for (CompletableFuture<byte[]> compressedBlock : blocks) {
+                    compressedBlock.join();
+                }
+            } finally {
+                recorder.exit();
+            }
+        }
+
+        /**
+         * Number of blocks, block size, size of the last partial block (0 if it is full),
+         * followed by the compressed size of every block.
+         */
+        byte[] header() {
+            ByteBuffer headerByteBuffer = newByteBuffer((3 + blocks.size()) * headerValueBytes());
+            putHeaderValue(headerByteBuffer, blocks.size());
+            putHeaderValue(headerByteBuffer, blockSize);
+            putHeaderValue(headerByteBuffer, lastBlockSize);
+            for (CompletableFuture<byte[]> compressedBlock : blocks) {
+                putHeaderValue(headerByteBuffer, compressedBlock.join().length);
+            }
+            return headerByteBuffer.array();
+        }
+    }
+
+    private CompressedArray compress(DataArray array, ArrayRecorder recorder) throws IOException {
+        List<CompletableFuture<byte[]>> compressedBlocks = new ArrayList<>();
+        ByteBuffer[] block = {nextBlock()};
+        ChunkConsumer blockOut = chunk -> {
+            while (chunk.hasRemaining()) {
+                int count = Math.min(chunk.remaining(), block[0].remaining());
+                block[0].put(chunk.array(), chunk.position(), count);
+                chunk.position(chunk.position() + count);
+                if (!block[0].hasRemaining()) {
+                    compressedBlocks.add(compressAsync(block[0], compressedBlocks, recorder));
+                    block[0] = nextBlock();
+                }
+            }
+        };
+        recorder.enter(ArrayRecorder.PACK);
+        try {
+            array.pack(buffer, blockOut);
+            DataArray.flush(buffer, blockOut);
+        } finally {
+            recorder.exit();
+        }
+        int lastBlockSize = block[0].position();
+        if (lastBlockSize > 0) {
+            compressedBlocks.add(compressAsync(block[0], compressedBlocks, recorder));
+        } else {
+            freeBlocks.offer(block[0]);
+        }
+        return new CompressedArray(compressedBlocks, lastBlockSize);
+    }
+
+    private CompletableFuture<byte[]> compressAsync(ByteBuffer block, List<CompletableFuture<byte[]>> pending,
+                                                    ArrayRecorder recorder) {
+        // bound the memory held by blocks waiting to be compressed
+        if (pending.size() >= MAX_PENDING_BLOCKS) {
+            recorder.enter(ArrayRecorder.WAIT);
+            try {
+                pending.get(pending.size() - MAX_PENDING_BLOCKS).join();
+            } finally {
+                recorder.exit();
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            byte[] compressedBlock = compression.compress(block.array(), block.position());
+            recorder.compressed(System.nanoTime() - start, compressedBlock.length);
+            block.clear();
+            freeBlocks.offer(block);
+            return compressedBlock;
+        }, executor);
+    }
+
+    /**
+     * @return an empty block, one already compressed if any
+     */
+    private ByteBuffer nextBlock() {
+        ByteBuffer block = freeBlocks.poll();
+        return block != null ? block : ByteBuffer.allocate(blockSize);
+    }
+
+    /**
+     * Releases the compression session, once all the arrays are written.
+     */
+    @Override
+    public void close() {
+        if (compression != null) {
+            compression.close();
+        }
+        freeBlocks.clear();
+    }
+
+    private byte[] uncompressedHeader(DataArray array) {
+        ByteBuffer headerByteBuffer = newByteBuffer(headerValueBytes());
+        putHeaderValue(headerByteBuffer, array.sizeInBytes());
+        return headerByteBuffer.array();
+    }
+
+    private int headerValueBytes() {
+        return uint64Header ? Long.BYTES : Integer.BYTES;
+    }
+
+    private void putHeaderValue(ByteBuffer headerByteBuffer, long value) {
+        if (uint64Header) {
+            headerByteBuffer.putLong(value);
+        } else if (value > MAX_UINT32) {
+            throw new IllegalStateException("Size of " + value + " bytes does not fit a UInt32 header");
+        } else {
+            // the low 32 bits of an unsigned value
+            headerByteBuffer.putInt((int) value);
+        }
+    }
+
+    private ByteBuffer newByteBuffer(int size) {
+        return ByteBuffer.allocate(size).order(byteOrder);
+    }
+
+    private static void put(byte[] bytes, ByteBuffer buffer, ChunkConsumer consumer) throws IOException {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining()) {
+                DataArray.flush(buffer, consumer);
+            }
+            int count = Math.min(bytes.length - offset, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    private void writeBase64(byte[] bytes, OutputStream out) throws IOException {
+        try (OutputStream base64 = base64Output.start(out)) {
+            base64.write(bytes);
+        }
+    }
+
+    /**
+     * Base64 encoding through buffers reused for all the arrays. The bytes are encoded by
+     * the JDK in whole buffers; only the last few of an encoding are encoded here.
+     */
+    private static class Base64Output extends OutputStream {
+        private static final int INPUT_SIZE = 3 * 16 * 1024;
+        private static final byte[] ALPHABET =
+                "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+        private final Base64.Encoder encoder = Base64.getEncoder();
+        private final byte[] input = new byte[INPUT_SIZE];
+        private final byte[] output = new byte[INPUT_SIZE / 3 * 4];
+        private OutputStream out;
+        private int length;
+
+        /**
+         * Starts an encoding to the stream, ended by closing the returned stream,
+         * which leaves {@code out} open.
+         */
+        OutputStream start(OutputStream out) {
+            this.out = out;
+            this.length = 0;
+            return this;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == input.length) {
+                encodeInput();
+            }
+            input[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (length == input.length) {
+                    encodeInput();
+                }
+                int n = Math.min(count, input.length - length);
+                System.arraycopy(bytes, offset, input, length, n);
+                length += n;
+                offset += n;
+                count -= n;
+            }
+        }
+
+        private void encodeInput() throws IOException {
+            encoder.encode(input, output);
+            out.write(output);
+            length = 0;
+        }
+
+        /**
+         * Encodes the last bytes, with padding.
+         */
+        @Override
+        public void close() throws IOException {
+            int o = 0;
+            int i = 0;
+            for (; i + 3 <= length; i += 3) {
+                int bits = (input[i] & 0xFF) << 16 | (input[i + 1] & 0xFF) << 8 | input[i + 2] & 0xFF;
+                output[o++] = ALPHABET[bits >>> 18];
+                output[o++] = ALPHABET[bits >>> 12 & 0x3F];
+                output[o++] = ALPHABET[bits >>> 6 & 0x3F];
+                output[o++] = ALPHABET[bits & 0x3F];
+            }
+            if (i < length) {
+                int bits = (input[i] & 0xFF) << 16 | (i + 1 < length ? (input[i + 1] & 0xFF) << 8 : 0);
+                output[o++] = ALPHABET[bits >>> 18];
+                output[o++] = ALPHABET[bits >>> 12 & 0x3F];
+                output[o++] = i + 1 < length ? ALPHABET[bits >>> 6 & 0x3F] : (byte) '=';
+                output[o++] = '=';
+            }
+            out.write(output, 0, o);
+            length = 0;
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package vatika.writer;
+
+/**
+ * Measurements of the writing of a data array, see {@link WriteListener}. Times are in
+ * nanoseconds; apart from {@link #compressNanos}, they are measured on the thread writing the file
+ * and do not overlap.
+ */
+public class DataArrayMetrics {
+    /**
+     * Name of the array, or of the part of the grid it holds for arrays without a name,
+     * such as "Points".
+     */
+    public final String name;
+    /**
+     * Type of the values as written, such as "Float64".
+     */
+    public final String type;
+    /**
+     * Size of the packed values.
+     */
+    public final long rawBytes;
+    /**
+     * Size of the values after compression, without headers; equal to {@link #rawBytes}
+     * for uncompressed arrays and text.
+     */
+    public final long compressedBytes;
+    /**
+     * Number of bytes written to the file for the array, with headers, Base64 or text encoding.
+     */
+    public final long writtenBytes;
+    /**
+     * Time packing the values into bytes, or formatting them as text.
+     */
+    public final long packNanos;
+    /**
+     * Time compressing the values, summed over the threads compressing blocks in parallel.
+     */
+    public final long compressNanos;
+    /**
+     * Time waiting for blocks to be compressed.
+     */
+    public final long waitNanos;
+    /**
+     * Time encoding the bytes as Base64.
+     */
+    public final long encodeNanos;
+    /**
+     * Time writing to the output, including the file system.
+     */
+    public final long writeNanos;
+    /**
+     * Time spent on the array, by the thread writing the file.
+     */
+    public final long totalNanos;
+
+    DataArrayMetrics(String name, String type, long rawBytes, long compressedBytes, long writtenBytes,
+                     long packNanos, long compressNanos, long waitNanos, long encodeNanos, long writeNanos,
+                     long totalNanos) {
+        this.name = name;
+        this.type = type;
+        this.rawBytes = rawBytes;
+        this.compressedBytes = compressedBytes;
+        this.writtenBytes = writtenBytes;
+        this.packNanos = packNanos;
+        this.compressNanos = compressNanos;
+        this.waitNanos = waitNanos;
+        this.encodeNanos = encodeNanos;
+        this.writeNanos = writeNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @return raw size divided by compressed size, 1 for uncompressed arrays
+     */
+    public double compressionRatio() {
+        return compressedBytes == 0 ? 1 : (double) rawBytes / compressedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s): %d bytes, compressed %d (ratio %.2f), written %d; "
+                        + "pack %.3f ms, compress %.3f ms, wait %.3f ms, encode %.3f ms, write %.3f ms, total %.3f ms",
+                name, type, rawBytes, compressedBytes, compressionRatio(), writtenBytes,
+                packNanos / 1e6, compressNanos / 1e6, waitNanos / 1e6, encodeNanos / 1e6, writeNanos / 1e6,
+                totalNanos / 1e6);
+    }
+}
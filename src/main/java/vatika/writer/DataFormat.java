@@ -1,7 +1,11 @@
 package vatika.writer;
 
 public enum DataFormat {
-    ASCII, BINARY;
+    ASCII, BINARY,
+    /**
+     * Raw binary data in the appended data section of XML files; not available for legacy files.
+     */
+    APPENDED;
 
     @Override
     public String toString() {
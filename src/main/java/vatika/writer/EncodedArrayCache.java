@@ -0,0 +1,126 @@
+package vatika.writer;
+
+import vatika.writer.DataArrayEncoder.AppendedArray;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoded data arrays kept to be written again, such as the geometry shared by all the
+ * steps of a time series. Arrays are identified by the instance, and the cache is cleared
+ * whenever the settings they were encoded with change.
+ * <p>
+ * Encoded contents are kept in chunks of a fixed size, since the content of a large array
+ * can be longer than a single byte array can hold.
+ */
+class EncodedArrayCache {
+    interface Encoding {
+        void encode(OutputStream out) throws IOException;
+    }
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static class Content {
+        final List<byte[]> chunks;
+        final long compressedBytes;
+
+        Content(List<byte[]> chunks, long compressedBytes) {
+            this.chunks = chunks;
+            this.compressedBytes = compressedBytes;
+        }
+    }
+
+    private final Map<DataArray, Content> contents = new HashMap<>();
+    private final Map<DataArray, AppendedArray> appendedArrays = new HashMap<>();
+    private List<Object> settings;
+
+    /**
+     * Clears the cache unless the arrays were encoded with the same settings.
+     */
+    void useSettings(List<Object> settings) {
+        if (!settings.equals(this.settings)) {
+            contents.clear();
+            appendedArrays.clear();
+            this.settings = settings;
+        }
+    }
+
+    /**
+     * Writes the encoded content of the DataArray element of an array, encoding it first
+     * if it is not in the cache.
+     *
+     * @param key array of the grid, which the array written is converted from with the settings
+     */
+    void writeContent(DataArray key, Encoding encoding, OutputStream out, ArrayRecorder recorder)
+            throws IOException {
+        Content content = contents.get(key);
+        if (content == null) {
+            ChunkedOutputStream chunkedOut = new ChunkedOutputStream();
+            encoding.encode(chunkedOut);
+            content = new Content(chunkedOut.chunks(), recorder.compressedBytes());
+            contents.put(key, content);
+        } else {
+            recorder.setCompressedBytes(content.compressedBytes);
+        }
+        for (byte[] chunk : content.chunks) {
+            out.write(chunk);
+        }
+    }
+
+    /**
+     * @param key array of the grid, which {@code array} is converted from with the settings
+     */
+    AppendedArray appended(DataArray key, DataArray array, DataArrayEncoder encoder, ArrayRecorder recorder)
+            throws IOException {
+        AppendedArray appendedArray = appendedArrays.get(key);
+        if (appendedArray == null) {
+            appendedArray = encoder.appended(array, recorder);
+            appendedArrays.put(key, appendedArray);
+        }
+        return appendedArray;
+    }
+
+    private static class ChunkedOutputStream extends OutputStream {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            if (count == chunk.length) {
+                nextChunk();
+            }
+            chunk[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                if (count == chunk.length) {
+                    nextChunk();
+                }
+                int n = Math.min(length, chunk.length - count);
+                System.arraycopy(bytes, offset, chunk, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        private void nextChunk() {
+            chunks.add(chunk);
+            chunk = new byte[CHUNK_SIZE];
+            count = 0;
+        }
+
+        List<byte[]> chunks() {
+            chunks.add(Arrays.copyOf(chunk, count));
+            return chunks;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package vatika.writer;
+
+import vatika.data.*;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The arrays of an unstructured grid as they are written to VTK files,
+ * independent of how the grid itself is stored.
+ */
+class GridArrays {
+    final int numberOfPoints;
+    final int numberOfCells;
+    final DataArray points;
+    final DataArray connectivity;
+    final DataArray offsets;
+    final DataArray types;
+    final DataArray legacyCells;
+    final DataArray legacyOffsets;
+    final DataArray legacyTypes;
+    final List<DataArray> pointData;
+    final List<DataArray> cellData;
+
+    private GridArrays(int numberOfPoints, int numberOfCells, DataArray points,
+                       DataArray connectivity, DataArray offsets, DataArray types,
+                       DataArray legacyCells, DataArray legacyOffsets, DataArray legacyTypes,
+                       List<DataArray> pointData, List<DataArray> cellData) {
+        this.numberOfPoints = numberOfPoints;
+        this.numberOfCells = numberOfCells;
+        this.points = points;
+        this.connectivity = connectivity;
+        this.offsets = offsets;
+        this.types = types;
+        this.legacyCells = legacyCells;
+        this.legacyOffsets = legacyOffsets;
+        this.legacyTypes = legacyTypes;
+        this.pointData = pointData;
+        this.cellData = cellData;
+    }
+
+    static GridArrays of(UnstructuredGrid grid) {
+        return of((UnstructuredGridView) grid);
+    }
+
+    static GridArrays of(PackedUnstructuredGrid grid) {
+        return new GridArrays(grid.numberOfPoints(), grid.numberOfCells(),
+                DataArray.float64(null, grid.points, 3),
+                DataArray.int32("connectivity", grid.connectivity, 0, grid.connectivity.length),
+                DataArray.int32("offsets", grid.offsets, 1, grid.offsets.length),
+                DataArray.uint8("types", grid.types),
+                DataArray.legacyCells(grid.connectivity, grid.offsets),
+                DataArray.int32(null, grid.offsets, 0, grid.offsets.length),
+                DataArray.legacyTypes(grid.types),
+                fieldData(grid.pointScalarData, grid.pointVectorData),
+                fieldData(grid.cellScalarData, grid.cellVectorData));
+    }
+
+    static GridArrays of(OffHeapUnstructuredGrid grid) {
+        IntBuffer ends = grid.offsets.duplicate().position(1).slice();
+        return new GridArrays(grid.numberOfPoints(), grid.numberOfCells(),
+                DataArray.float64(null, grid.points, 3),
+                DataArray.int32("connectivity", grid.connectivity),
+                DataArray.int32("offsets", ends),
+                DataArray.uint8("types", grid.types),
+                DataArray.legacyCells(grid.connectivity, grid.offsets),
+                DataArray.int32(null, grid.offsets),
+                DataArray.legacyTypes(grid.types),
+                fieldData(grid.pointFieldData),
+                fieldData(grid.cellFieldData));
+    }
+
+    /**
+     * Arrays reading the values through the accessors of the view, while they are written.
+     */
+    static GridArrays of(UnstructuredGridView grid) {
+        int numberOfPoints = grid.numberOfPoints();
+        int numberOfCells = grid.numberOfCells();
+        long connectivitySize = 0;
+        for (int cell = 0; cell < numberOfCells; cell++) {
+            connectivitySize += grid.numberOfCellPoints(cell);
+        }
+        FieldView points = new FieldView() {
+            @Override
+            public String name() {
+                return null;
+            }
+
+            @Override
+            public int numberOfComponents() {
+                return 3;
+            }
+
+            @Override
+            public double value(int index, int component) {
+                return grid.coordinate(index, component);
+            }
+        };
+
+        return new GridArrays(numberOfPoints, numberOfCells,
+                DataArray.float64(points, numberOfPoints),
+                DataArray.connectivity(grid, connectivitySize),
+                DataArray.offsets("offsets", grid, false),
+                DataArray.types(grid),
+                DataArray.legacyCells(grid, connectivitySize),
+                DataArray.offsets(null, grid, true),
+                DataArray.legacyTypes(grid),
+                fieldData(grid.pointData(), numberOfPoints),
+                fieldData(grid.cellData(), numberOfCells));
+    }
+
+    /**
+     * @param points       buffer of the coordinates of the points, as doubles
+     * @param connectivity buffer of the point indices of the cells, as ints
+     * @param ends         buffer of the end of every cell in {@code connectivity}, as longs
+     * @param types        buffer of the {@link VTKType#ID} of every cell, as bytes
+     */
+    static GridArrays of(int numberOfPoints, int numberOfCells, SpillBuffer points, SpillBuffer connectivity,
+                         SpillBuffer ends, SpillBuffer types, List<DataArray> pointData, List<DataArray> cellData) {
+        return new GridArrays(numberOfPoints, numberOfCells,
+                DataArray.float64(null, points, 3),
+                DataArray.indices("connectivity", connectivity, false),
+                DataArray.indices("offsets", ends, false),
+                DataArray.uint8("types", types),
+                DataArray.legacyCells(connectivity, ends),
+                DataArray.indices(null, ends, true),
+                DataArray.legacyTypes(types),
+                pointData, cellData);
+    }
+
+    /**
+     * @return the same geometry with other point and cell data
+     */
+    GridArrays withFieldData(List<DataArray> pointData, List<DataArray> cellData) {
+        return new GridArrays(numberOfPoints, numberOfCells, points, connectivity, offsets, types,
+                legacyCells, legacyOffsets, legacyTypes, pointData, cellData);
+    }
+
+    static List<DataArray> fieldData(ScalarData[] allScalarsData, VectorData[] allVectorsData) {
+        List<DataArray> arrays = scalarFieldData(allScalarsData);
+        if (allVectorsData != null) {
+            for (VectorData vectorData : allVectorsData) {
+                arrays.add(DataArray.float64(vectorData.dataName, vectorData.vectors));
+            }
+        }
+        return arrays;
+    }
+
+    static List<DataArray> fieldData(ScalarData[] allScalarsData, PackedVectorData[] allVectorsData) {
+        List<DataArray> arrays = scalarFieldData(allScalarsData);
+        if (allVectorsData != null) {
+            for (PackedVectorData vectorData : allVectorsData) {
+                arrays.add(DataArray.float64(vectorData.dataName, vectorData.components, 3));
+            }
+        }
+        return arrays;
+    }
+
+    private static List<DataArray> fieldData(OffHeapFieldData[] allFieldData) {
+        List<DataArray> arrays = new ArrayList<>();
+        if (allFieldData != null) {
+            for (OffHeapFieldData fieldData : allFieldData) {
+                arrays.add(DataArray.float64(fieldData.dataName, fieldData.values, fieldData.numberOfComponents));
+            }
+        }
+        return arrays;
+    }
+
+    private static List<DataArray> fieldData(List<FieldView> fields, int numberOfTuples) {
+        List<DataArray> arrays = new ArrayList<>();
+        for (FieldView field : fields) {
+            // fields held in arrays are packed in bulk, the others value by value
+            if (field instanceof ScalarData) {
+                arrays.add(DataArray.float64(field.name(), ((ScalarData) field).scalars));
+            } else if (field instanceof VectorData) {
+                arrays.add(DataArray.float64(field.name(), ((VectorData) field).vectors));
+            } else if (field instanceof PackedVectorData) {
+                arrays.add(DataArray.float64(field.name(), ((PackedVectorData) field).components, 3));
+            } else {
+                arrays.add(DataArray.float64(field, numberOfTuples));
+            }
+        }
+        return arrays;
+    }
+
+    private static List<DataArray> scalarFieldData(ScalarData[] allScalarsData) {
+        List<DataArray> arrays = new ArrayList<>();
+        if (allScalarsData != null) {
+            for (ScalarData scalarData : allScalarsData) {
+                arrays.add(DataArray.float64(scalarData.dataName, scalarData.scalars));
+            }
+        }
+        return arrays;
+    }
+}
@@ -0,0 +1,67 @@
+package vatika.writer;
+
+import vatika.data.ImageData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes image data to a VTK XML (.vti) file. The points and cells are implied by the
+ * dimensions, origin and spacing of the image, so only the point and cell data are written.
+ *
+ * @see XmlVtkWriter
+ */
+public class ImageDataXmlVtkWriter extends XmlVtkWriter<ImageDataXmlVtkWriter> {
+    private final ImageData image;
+    private final List<DataArray> pointData;
+    private final List<DataArray> cellData;
+
+    public ImageDataXmlVtkWriter(ImageData data) {
+        this.image = data;
+        this.pointData = GridArrays.fieldData(data.pointScalarData, data.pointVectorData);
+        this.cellData = GridArrays.fieldData(data.cellScalarData, data.cellVectorData);
+    }
+
+    @Override
+    DataSet dataSet() {
+        return new DataSet("ImageData") {
+            @Override
+            List<DataArray> arrays() {
+                List<DataArray> arrays = new ArrayList<>();
+                for (DataArray array : pointData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                for (DataArray array : cellData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                return arrays;
+            }
+
+            @Override
+            void write(Document document) throws IOException {
+                XmlWriter xml = document.xml;
+                String extent = extent(image.dimensions);
+                xml.attribute("Origin", tuple(image.origin));
+                xml.attribute("Spacing", tuple(image.spacing));
+                xml.attribute("WholeExtent", extent);
+
+                // <Piece Extent="x1 x2 y1 y2 z1 z2">
+                xml.startElement("Piece");
+                xml.attribute("Extent", extent);
+
+                // <PointData>...</PointData>
+                xml.startElement("PointData");
+                document.writeDataArrays(pointData);
+                xml.endElement();
+
+                // <CellData>...</CellData>
+                xml.startElement("CellData");
+                document.writeDataArrays(cellData);
+                xml.endElement();
+
+                xml.endElement(); // Piece
+            }
+        };
+    }
+}
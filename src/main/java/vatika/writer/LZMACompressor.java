@@ -0,0 +1,44 @@
+package vatika.writer;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZ;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * LZMA compression in the .xz container: smallest output, slowest to write.
+ * <p>
+ * Requires {@code org.tukaani:xz} on the class path, and VTK 8.1 or newer for reading.
+ */
+public class LZMACompressor implements Compressor {
+    @Override
+    public String vtkClassName() {
+        return "vtkLZMADataCompressor";
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int length, int level) {
+        ByteArrayOutputStream compressedData = new ByteArrayOutputStream(length / 2 + 64);
+        try (XZOutputStream xz = new XZOutputStream(compressedData, options(level, length), XZ.CHECK_CRC32)) {
+            xz.write(data, 0, length);
+        } catch (IOException e) { // only thrown for invalid options, as we are writing to RAM
+            throw new UncheckedIOException(e);
+        }
+        return compressedData.toByteArray();
+    }
+
+    private static LZMA2Options options(int level, int length) {
+        try {
+            LZMA2Options options = new LZMA2Options(level);
+            // a dictionary larger than the block is never used, but still allocated
+            options.setDictSize(Math.max(LZMA2Options.DICT_SIZE_MIN, Math.min(options.getDictSize(), length)));
+            return options;
+        } catch (UnsupportedOptionsException e) {
+            throw new IllegalArgumentException("Unsupported compression level: " + level, e);
+        }
+    }
+}
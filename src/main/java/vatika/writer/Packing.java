@@ -0,0 +1,112 @@
+package vatika.writer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bulk transfers of values converted to another type into a buffer, in the byte order of the
+ * buffer. Values of the same type are transferred by the views of the buffer, which copy whole
+ * ranges at once; those converted are written through a view of the backing array of heap
+ * buffers, which the compiler turns into plain stores without bound checks per value.
+ * Direct buffers are written value by value, which measured at least as fast as their views.
+ */
+final class Packing {
+    private static final VarHandle FLOATS_LE = MethodHandles.byteArrayViewVarHandle(float[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle FLOATS_BE = MethodHandles.byteArrayViewVarHandle(float[].class,
+            ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONGS_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONGS_BE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INTS_LE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS_BE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.BIG_ENDIAN);
+
+    private Packing() {
+    }
+
+    /**
+     * Puts {@code values[from]} to {@code values[from + count - 1]} as floats, the buffer
+     * having room for them.
+     */
+    static void putFloats(ByteBuffer buffer, double[] values, int from, int count) {
+        if (!buffer.hasArray()) {
+            for (int i = from; i < from + count; i++) {
+                buffer.putFloat((float) values[i]);
+            }
+            return;
+        }
+        VarHandle floats = buffer.order() == ByteOrder.LITTLE_ENDIAN ? FLOATS_LE : FLOATS_BE;
+        byte[] bytes = buffer.array();
+        int offset = buffer.arrayOffset() + buffer.position();
+        for (int i = 0; i < count; i++) {
+            floats.set(bytes, offset + i * Float.BYTES, (float) values[from + i]);
+        }
+        buffer.position(buffer.position() + count * Float.BYTES);
+    }
+
+    /**
+     * Puts {@code values[from]} to {@code values[from + count - 1]} as longs, the buffer
+     * having room for them.
+     */
+    static void putLongs(ByteBuffer buffer, int[] values, int from, int count) {
+        if (!buffer.hasArray()) {
+            for (int i = from; i < from + count; i++) {
+                buffer.putLong(values[i]);
+            }
+            return;
+        }
+        VarHandle longs = buffer.order() == ByteOrder.LITTLE_ENDIAN ? LONGS_LE : LONGS_BE;
+        byte[] bytes = buffer.array();
+        int offset = buffer.arrayOffset() + buffer.position();
+        for (int i = 0; i < count; i++) {
+            longs.set(bytes, offset + i * Long.BYTES, (long) values[from + i]);
+        }
+        buffer.position(buffer.position() + count * Long.BYTES);
+    }
+
+    /**
+     * Puts the unsigned bytes {@code values[from]} to {@code values[from + count - 1]} as ints,
+     * the buffer having room for them.
+     */
+    static void putUnsignedBytesAsInts(ByteBuffer buffer, byte[] values, int from, int count) {
+        if (!buffer.hasArray()) {
+            for (int i = from; i < from + count; i++) {
+                buffer.putInt(values[i] & 0xFF);
+            }
+            return;
+        }
+        VarHandle ints = buffer.order() == ByteOrder.LITTLE_ENDIAN ? INTS_LE : INTS_BE;
+        byte[] bytes = buffer.array();
+        int offset = buffer.arrayOffset() + buffer.position();
+        for (int i = 0; i < count; i++) {
+            ints.set(bytes, offset + i * Integer.BYTES, values[from + i] & 0xFF);
+        }
+        buffer.position(buffer.position() + count * Integer.BYTES);
+    }
+
+    /**
+     * Puts the remaining values of {@code values}, big-endian values of {@code valueBytes}
+     * bytes each, the buffer having room for them. Both buffers are advanced.
+     */
+    static void putBigEndian(ByteBuffer buffer, ByteBuffer values, int valueBytes) {
+        int count = values.remaining() / valueBytes;
+        if (buffer.order() == ByteOrder.BIG_ENDIAN || valueBytes == 1) {
+            buffer.put(values);
+            return;
+        }
+        if (valueBytes == Long.BYTES) {
+            buffer.asLongBuffer().put(values.asLongBuffer());
+        } else if (valueBytes == Integer.BYTES) {
+            buffer.asIntBuffer().put(values.asIntBuffer());
+        } else {
+            throw new IllegalArgumentException("Unsupported value size: " + valueBytes);
+        }
+        buffer.position(buffer.position() + count * valueBytes);
+        values.position(values.limit());
+    }
+}
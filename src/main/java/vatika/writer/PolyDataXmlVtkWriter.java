@@ -0,0 +1,109 @@
+package vatika.writer;
+
+import vatika.data.PolyData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes poly data to a VTK XML (.vtp) file. Kinds of cells without cells are left out.
+ *
+ * @see XmlVtkWriter
+ */
+public class PolyDataXmlVtkWriter extends XmlVtkWriter<PolyDataXmlVtkWriter> {
+    // elements of the kinds of cells, in the order of the cell data
+    private static final String[] CELL_ELEMENTS = {"Verts", "Lines", "Strips", "Polys"};
+
+    private final PolyData polyData;
+    private final DataArray points;
+    private final PolyData.Cells[] cells;
+    private final List<DataArray> pointData;
+    private final List<DataArray> cellData;
+
+    public PolyDataXmlVtkWriter(PolyData data) {
+        this.polyData = data;
+        this.points = DataArray.float64(null, data.points, 3);
+        this.cells = new PolyData.Cells[]{data.vertices, data.lines, data.strips, data.polygons};
+        this.pointData = GridArrays.fieldData(data.pointScalarData, data.pointVectorData);
+        this.cellData = GridArrays.fieldData(data.cellScalarData, data.cellVectorData);
+    }
+
+    private static DataArray connectivity(PolyData.Cells cells) {
+        return DataArray.int32("connectivity", cells.connectivity, 0, cells.connectivity.length);
+    }
+
+    private static DataArray offsets(PolyData.Cells cells) {
+        return DataArray.int32("offsets", cells.offsets, 1, cells.offsets.length);
+    }
+
+    private static int numberOfCells(PolyData.Cells cells) {
+        return cells == null ? 0 : cells.numberOfCells();
+    }
+
+    @Override
+    DataSet dataSet() {
+        return new DataSet("PolyData") {
+            @Override
+            List<DataArray> arrays() {
+                List<DataArray> arrays = new ArrayList<>();
+                arrays.add(points.withPrecision(pointsPrecision));
+                for (PolyData.Cells kind : cells) {
+                    if (kind != null) {
+                        arrays.add(connectivity(kind));
+                        arrays.add(offsets(kind));
+                    }
+                }
+                for (DataArray array : pointData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                for (DataArray array : cellData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                return arrays;
+            }
+
+            @Override
+            void write(Document document) throws IOException {
+                XmlWriter xml = document.xml;
+
+                // <Piece NumberOfPoints="#" NumberOfVerts="#" NumberOfLines="#" ...>
+                xml.startElement("Piece");
+                xml.attribute("NumberOfLines", numberOfCells(polyData.lines) + "");
+                xml.attribute("NumberOfPoints", polyData.numberOfPoints() + "");
+                xml.attribute("NumberOfPolys", numberOfCells(polyData.polygons) + "");
+                xml.attribute("NumberOfStrips", numberOfCells(polyData.strips) + "");
+                xml.attribute("NumberOfVerts", numberOfCells(polyData.vertices) + "");
+
+                // <PointData>...</PointData>
+                xml.startElement("PointData");
+                document.writeDataArrays(pointData);
+                xml.endElement();
+
+                // <CellData>...</CellData>
+                xml.startElement("CellData");
+                document.writeDataArrays(cellData);
+                xml.endElement();
+
+                // <Points>...</Points>
+                xml.startElement("Points");
+                document.writeDataArray(points, points.withPrecision(pointsPrecision), false);
+                xml.endElement();
+
+                // <Verts>...</Verts>, <Lines>...</Lines>, <Strips>...</Strips>, <Polys>...</Polys>
+                for (int i = 0; i < cells.length; i++) {
+                    if (cells[i] != null) {
+                        xml.startElement(CELL_ELEMENTS[i]);
+                        DataArray connectivity = connectivity(cells[i]);
+                        DataArray offsets = offsets(cells[i]);
+                        document.writeDataArray(connectivity, connectivity, false);
+                        document.writeDataArray(offsets, offsets, false);
+                        xml.endElement();
+                    }
+                }
+
+                xml.endElement(); // Piece
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package vatika.writer;
+
+/**
+ * Precision floating point values are written with. Values are converted while they are
+ * packed or printed, so writing in single precision needs no copy of the arrays.
+ */
+public enum Precision {
+    /**
+     * Single precision, about 7 significant digits, in half the size.
+     */
+    FLOAT32("Float32", "float"),
+    FLOAT64("Float64", "double");
+
+    /**
+     * Name of the type in XML files.
+     */
+    final String type;
+
+    /**
+     * Name of the type in legacy files.
+     */
+    final String legacyType;
+
+    Precision(String type, String legacyType) {
+        this.type = type;
+        this.legacyType = legacyType;
+    }
+}
@@ -0,0 +1,82 @@
+package vatika.writer;
+
+import vatika.data.RectilinearGrid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a rectilinear grid to a VTK XML (.vtr) file. The points are written as their
+ * coordinates along each axis, and the cells are implied by them.
+ *
+ * @see XmlVtkWriter
+ */
+public class RectilinearGridXmlVtkWriter extends XmlVtkWriter<RectilinearGridXmlVtkWriter> {
+    private final RectilinearGrid grid;
+    private final DataArray xCoordinates;
+    private final DataArray yCoordinates;
+    private final DataArray zCoordinates;
+    private final List<DataArray> pointData;
+    private final List<DataArray> cellData;
+
+    public RectilinearGridXmlVtkWriter(RectilinearGrid data) {
+        this.grid = data;
+        this.xCoordinates = DataArray.float64("x_coordinates", data.xCoordinates);
+        this.yCoordinates = DataArray.float64("y_coordinates", data.yCoordinates);
+        this.zCoordinates = DataArray.float64("z_coordinates", data.zCoordinates);
+        this.pointData = GridArrays.fieldData(data.pointScalarData, data.pointVectorData);
+        this.cellData = GridArrays.fieldData(data.cellScalarData, data.cellVectorData);
+    }
+
+    @Override
+    DataSet dataSet() {
+        return new DataSet("RectilinearGrid") {
+            @Override
+            List<DataArray> arrays() {
+                List<DataArray> arrays = new ArrayList<>();
+                arrays.add(xCoordinates.withPrecision(pointsPrecision));
+                arrays.add(yCoordinates.withPrecision(pointsPrecision));
+                arrays.add(zCoordinates.withPrecision(pointsPrecision));
+                for (DataArray array : pointData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                for (DataArray array : cellData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                return arrays;
+            }
+
+            @Override
+            void write(Document document) throws IOException {
+                XmlWriter xml = document.xml;
+                String extent = extent(grid.dimensions());
+                xml.attribute("WholeExtent", extent);
+
+                // <Piece Extent="x1 x2 y1 y2 z1 z2">
+                xml.startElement("Piece");
+                xml.attribute("Extent", extent);
+
+                // <PointData>...</PointData>
+                xml.startElement("PointData");
+                document.writeDataArrays(pointData);
+                xml.endElement();
+
+                // <CellData>...</CellData>
+                xml.startElement("CellData");
+                document.writeDataArrays(cellData);
+                xml.endElement();
+
+                // <Coordinates>...</Coordinates>
+                xml.startElement("Coordinates");
+                // <DataArray type="Float64" Name="x_coordinates" .../>
+                document.writeDataArray(xCoordinates, xCoordinates.withPrecision(pointsPrecision), false);
+                document.writeDataArray(yCoordinates, yCoordinates.withPrecision(pointsPrecision), false);
+                document.writeDataArray(zCoordinates, zCoordinates.withPrecision(pointsPrecision), false);
+                xml.endElement();
+
+                xml.endElement(); // Piece
+            }
+        };
+    }
+}
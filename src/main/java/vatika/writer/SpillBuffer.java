@@ -0,0 +1,204 @@
+package vatika.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A growable array of primitive values of a single type, held in chunks of a fixed size.
+ * Full chunks are kept in memory while the shared {@link Budget} allows it; after that they
+ * are written to a temporary file, which is deleted when the buffer is closed.
+ */
+class SpillBuffer implements Closeable {
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Number of bytes of full chunks that may still be kept in memory, shared by buffers.
+     */
+    static class Budget {
+        private final File directory;
+        private long remaining;
+
+        /**
+         * @param directory directory of the temporary files, {@code null} for the default one
+         */
+        Budget(long bytes, File directory) {
+            this.directory = directory;
+            this.remaining = bytes;
+        }
+
+        private boolean reserve(long bytes) {
+            if (remaining < bytes) {
+                return false;
+            }
+            remaining -= bytes;
+            return true;
+        }
+    }
+
+    final int valueBytes;
+    private final Budget budget;
+    private final List<ByteBuffer> memoryChunks = new ArrayList<>();
+    private ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    private FileChannel file;
+    private long fileChunks;
+
+    /**
+     * @param valueBytes number of bytes of a value, which must divide {@link #CHUNK_SIZE}
+     */
+    SpillBuffer(int valueBytes, Budget budget) {
+        this.valueBytes = valueBytes;
+        this.budget = budget;
+    }
+
+    /**
+     * @return number of values in the buffer
+     */
+    long size() {
+        long bytes = (memoryChunks.size() + fileChunks) * CHUNK_SIZE + chunk.position();
+        return bytes / valueBytes;
+    }
+
+    void put(byte value) throws IOException {
+        nextChunkIfFull().put(value);
+    }
+
+    void putInt(int value) throws IOException {
+        nextChunkIfFull().putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        nextChunkIfFull().putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        nextChunkIfFull().putDouble(value);
+    }
+
+    private ByteBuffer nextChunkIfFull() throws IOException {
+        if (!chunk.hasRemaining()) {
+            chunk.flip();
+            if (file == null && budget.reserve(CHUNK_SIZE)) {
+                memoryChunks.add(chunk);
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            } else {
+                // once spilling, keep spilling, so that the chunks in memory all come first
+                spill(chunk);
+                chunk.clear();
+            }
+        }
+        return chunk;
+    }
+
+    private void spill(ByteBuffer fullChunk) throws IOException {
+        if (file == null) {
+            Path path = budget.directory == null
+                    ? Files.createTempFile("vatika-", ".tmp")
+                    : Files.createTempFile(budget.directory.toPath(), "vatika-", ".tmp");
+            file = FileChannel.open(path, READ, WRITE, DELETE_ON_CLOSE);
+        }
+        long position = fileChunks * CHUNK_SIZE;
+        while (fullChunk.hasRemaining()) {
+            position += file.write(fullChunk, position);
+        }
+        fileChunks++;
+    }
+
+    /**
+     * @return a reader of the values from the first one, which must not be used after
+     * values are added
+     */
+    Reader reader() {
+        return new Reader();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads the values of the buffer in order. The chunks written to the file are read
+     * one at a time into a buffer of the reader.
+     */
+    class Reader {
+        private long nextChunk;
+        private ByteBuffer current = ByteBuffer.allocate(0);
+        private ByteBuffer fileChunk;
+
+        byte get() throws IOException {
+            return current().get();
+        }
+
+        int getInt() throws IOException {
+            return current().getInt();
+        }
+
+        long getLong() throws IOException {
+            return current().getLong();
+        }
+
+        double getDouble() throws IOException {
+            return current().getDouble();
+        }
+
+        /**
+         * @return the next values, big-endian, up to {@code maxBytes} bytes but none of another
+         * chunk, in a buffer only valid until the reader is used again
+         */
+        ByteBuffer next(int maxBytes) throws IOException {
+            ByteBuffer source = current();
+            ByteBuffer next = source.slice();
+            next.limit(Math.min(maxBytes, next.remaining()));
+            source.position(source.position() + next.limit());
+            return next;
+        }
+
+        private ByteBuffer current() throws IOException {
+            if (!current.hasRemaining()) {
+                current = chunk(nextChunk++);
+            }
+            return current;
+        }
+
+        private ByteBuffer chunk(long index) throws IOException {
+            if (index < memoryChunks.size()) {
+                return memoryChunks.get((int) index).duplicate();
+            }
+            index -= memoryChunks.size();
+            if (index < fileChunks) {
+                if (fileChunk == null) {
+                    fileChunk = ByteBuffer.allocate(CHUNK_SIZE);
+                }
+                fileChunk.clear();
+                long position = index * CHUNK_SIZE;
+                while (fileChunk.hasRemaining()) {
+                    int read = file.read(fileChunk, position + fileChunk.position());
+                    if (read < 0) {
+                        throw new IOException("Temporary file truncated");
+                    }
+                }
+                fileChunk.flip();
+                return fileChunk;
+            }
+            if (index == fileChunks) {
+                ByteBuffer last = chunk.duplicate();
+                last.flip();
+                return last;
+            }
+            throw new IllegalStateException("No more values in the buffer");
+        }
+    }
+}
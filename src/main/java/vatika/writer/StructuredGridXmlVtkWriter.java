@@ -0,0 +1,73 @@
+package vatika.writer;
+
+import vatika.data.StructuredGrid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a structured grid to a VTK XML (.vts) file. The points are written with their
+ * coordinates, and the cells are implied by their order.
+ *
+ * @see XmlVtkWriter
+ */
+public class StructuredGridXmlVtkWriter extends XmlVtkWriter<StructuredGridXmlVtkWriter> {
+    private final StructuredGrid grid;
+    private final DataArray points;
+    private final List<DataArray> pointData;
+    private final List<DataArray> cellData;
+
+    public StructuredGridXmlVtkWriter(StructuredGrid data) {
+        this.grid = data;
+        this.points = DataArray.float64(null, data.points, 3);
+        this.pointData = GridArrays.fieldData(data.pointScalarData, data.pointVectorData);
+        this.cellData = GridArrays.fieldData(data.cellScalarData, data.cellVectorData);
+    }
+
+    @Override
+    DataSet dataSet() {
+        return new DataSet("StructuredGrid") {
+            @Override
+            List<DataArray> arrays() {
+                List<DataArray> arrays = new ArrayList<>();
+                arrays.add(points.withPrecision(pointsPrecision));
+                for (DataArray array : pointData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                for (DataArray array : cellData) {
+                    arrays.add(withDataPrecision(array));
+                }
+                return arrays;
+            }
+
+            @Override
+            void write(Document document) throws IOException {
+                XmlWriter xml = document.xml;
+                String extent = extent(grid.dimensions);
+                xml.attribute("WholeExtent", extent);
+
+                // <Piece Extent="x1 x2 y1 y2 z1 z2">
+                xml.startElement("Piece");
+                xml.attribute("Extent", extent);
+
+                // <PointData>...</PointData>
+                xml.startElement("PointData");
+                document.writeDataArrays(pointData);
+                xml.endElement();
+
+                // <CellData>...</CellData>
+                xml.startElement("CellData");
+                document.writeDataArrays(cellData);
+                xml.endElement();
+
+                // <Points>...</Points>
+                xml.startElement("Points");
+                document.writeDataArray(points, points.withPrecision(pointsPrecision), false);
+                xml.endElement();
+
+                xml.endElement(); // Piece
+            }
+        };
+    }
+}
@@ -0,0 +1,180 @@
+package vatika.writer;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.PackedVectorData;
+import vatika.data.ScalarData;
+import vatika.data.UnstructuredGrid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Writes grids on background threads, so that a solver can go on computing while its output
+ * is encoded, compressed and written to disk.
+ * <p>
+ * A grid is copied when it is submitted, and the write works on the copy: once
+ * {@link #submit} returns, the grid may be changed. At most a given number of writes are
+ * pending at a time; submitting more blocks until one of them is done, which bounds the
+ * memory held by the copies.
+ * <pre>
+ * try (UnstructuredGridAsyncWriter asyncWriter = new UnstructuredGridAsyncWriter(1, 2)) {
+ *     for (int step = 0; ...; step++) {
+ *         ... // compute the step
+ *         File file = new File("step_" + step + ".vtu");
+ *         asyncWriter.submit(grid, snapshot -&gt; new UnstructuredGridXmlVtKWriter(snapshot).write(file));
+ *     }
+ * }
+ * </pre>
+ */
+public class UnstructuredGridAsyncWriter implements Closeable {
+    /**
+     * Writes the copy of a grid.
+     */
+    public interface GridWrite {
+        void write(PackedUnstructuredGrid grid) throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore pendingWrites;
+    private boolean copyGeometry = true;
+
+    /**
+     * @param numberOfThreads  number of background threads writing grids at the same time
+     * @param maxPendingWrites number of writes submitted and not done above which submitting blocks
+     */
+    public UnstructuredGridAsyncWriter(int numberOfThreads, int maxPendingWrites) {
+        if (numberOfThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + numberOfThreads);
+        }
+        if (maxPendingWrites <= 0) {
+            throw new IllegalArgumentException("Maximum number of pending writes must be positive: "
+                    + maxPendingWrites);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "vtk-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingWrites = new Semaphore(maxPendingWrites);
+    }
+
+    /**
+     * Sets whether the points and cells are copied with the point and cell data; default: true.
+     * When the geometry does not change between writes, as in most time-stepping solvers,
+     * only the data needs copying.
+     */
+    public UnstructuredGridAsyncWriter setCopyGeometry(boolean copyGeometry) {
+        this.copyGeometry = copyGeometry;
+        return this;
+    }
+
+    /**
+     * Copies the grid and submits its write, blocking while too many writes are pending.
+     *
+     * @return a future completed when the grid is written, or exceptionally if writing failed
+     */
+    public CompletableFuture<Void> submit(PackedUnstructuredGrid grid, GridWrite write) throws InterruptedException {
+        return submit(() -> snapshot(grid, copyGeometry), write);
+    }
+
+    /**
+     * Copies the grid and submits its write, blocking while too many writes are pending.
+     *
+     * @return a future completed when the grid is written, or exceptionally if writing failed
+     */
+    public CompletableFuture<Void> submit(UnstructuredGrid grid, GridWrite write) throws InterruptedException {
+        return submit(() -> {
+            // packing already copies the points, the cells and the vectors, but not the scalars
+            PackedUnstructuredGrid packed = PackedUnstructuredGrid.of(grid);
+            return new PackedUnstructuredGrid(packed.points, packed.connectivity, packed.offsets, packed.types,
+                    copy(packed.pointScalarData), packed.pointVectorData,
+                    copy(packed.cellScalarData), packed.cellVectorData);
+        }, write);
+    }
+
+    /**
+     * Copies the grid once a write may be pending, so that blocked submits hold no copy.
+     */
+    private CompletableFuture<Void> submit(Supplier<PackedUnstructuredGrid> copy, GridWrite write)
+            throws InterruptedException {
+        pendingWrites.acquire();
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        try {
+            PackedUnstructuredGrid snapshot = copy.get();
+            executor.execute(() -> {
+                try {
+                    write.write(snapshot);
+                    written.complete(null);
+                } catch (Throwable e) {
+                    written.completeExceptionally(e);
+                } finally {
+                    pendingWrites.release();
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            pendingWrites.release();
+            throw e;
+        }
+        return written;
+    }
+
+    /**
+     * Waits for the writes submitted to be done, and stops the background threads.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the writes", e);
+        }
+    }
+
+    private static PackedUnstructuredGrid snapshot(PackedUnstructuredGrid grid, boolean copyGeometry) {
+        return new PackedUnstructuredGrid(
+                copyGeometry ? grid.points.clone() : grid.points,
+                copyGeometry ? grid.connectivity.clone() : grid.connectivity,
+                copyGeometry ? grid.offsets.clone() : grid.offsets,
+                copyGeometry ? grid.types.clone() : grid.types,
+                copy(grid.pointScalarData), copy(grid.pointVectorData),
+                copy(grid.cellScalarData), copy(grid.cellVectorData));
+    }
+
+    private static ScalarData[] copy(ScalarData[] allScalarsData) {
+        if (allScalarsData == null) {
+            return null;
+        }
+
+        ScalarData[] copies = new ScalarData[allScalarsData.length];
+        for (int i = 0; i < allScalarsData.length; i++) {
+            copies[i] = new ScalarData(allScalarsData[i].dataName, allScalarsData[i].scalars.clone());
+        }
+        return copies;
+    }
+
+    private static PackedVectorData[] copy(PackedVectorData[] allVectorsData) {
+        if (allVectorsData == null) {
+            return null;
+        }
+
+        PackedVectorData[] copies = new PackedVectorData[allVectorsData.length];
+        for (int i = 0; i < allVectorsData.length; i++) {
+            copies[i] = new PackedVectorData(allVectorsData[i].dataName, allVectorsData[i].components.clone());
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,258 @@
+package vatika.writer;
+
+import vatika.data.VTKType;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds an unstructured grid point by point and cell by cell, for grids generated procedurally,
+ * and writes it without ever holding it in memory as objects or whole arrays.
+ * <p>
+ * Points, cells and the values of the point and cell data are appended to growable primitive
+ * buffers. Once the buffers hold more than the memory budget, their contents are written to
+ * temporary files, which are read back while the grid is written and deleted when the builder
+ * is closed. Grids larger than the heap can be written this way.
+ * <pre>
+ * try (UnstructuredGridBuilder builder = new UnstructuredGridBuilder()) {
+ *     int temperature = builder.addPointField("Temperature", 1);
+ *     for (...) {
+ *         builder.addPoint(x, y, z);
+ *         builder.addField(temperature, t);
+ *     }
+ *     for (...) {
+ *         builder.addCell(VTKType.VTK_TETRA, a, b, c, d);
+ *     }
+ *     builder.xmlWriter().write(new File("grid.vtu"));
+ * }
+ * </pre>
+ */
+public class UnstructuredGridBuilder implements Closeable {
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    private static class Field {
+        final String name;
+        final int numberOfComponents;
+        final boolean pointData;
+        final SpillBuffer values;
+
+        Field(String name, int numberOfComponents, boolean pointData, SpillBuffer values) {
+            this.name = name;
+            this.numberOfComponents = numberOfComponents;
+            this.pointData = pointData;
+            this.values = values;
+        }
+    }
+
+    private final SpillBuffer.Budget budget;
+    private final SpillBuffer points;
+    private final SpillBuffer connectivity;
+    private final SpillBuffer ends;
+    private final SpillBuffer types;
+    private final List<Field> fields = new ArrayList<>();
+    private int numberOfPoints;
+    private int numberOfCells;
+    private long connectivitySize;
+    private int maxPointIndex = -1;
+    private boolean built;
+
+    public UnstructuredGridBuilder() {
+        this(DEFAULT_MEMORY_BUDGET, null);
+    }
+
+    /**
+     * @param memoryBudget       number of bytes of the buffers kept in memory before they are written
+     *                           to temporary files
+     * @param temporaryDirectory directory of the temporary files, {@code null} for the default one
+     */
+    public UnstructuredGridBuilder(long memoryBudget, File temporaryDirectory) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative: " + memoryBudget);
+        }
+        this.budget = new SpillBuffer.Budget(memoryBudget, temporaryDirectory);
+        this.points = new SpillBuffer(Double.BYTES, budget);
+        this.connectivity = new SpillBuffer(Integer.BYTES, budget);
+        this.ends = new SpillBuffer(Long.BYTES, budget);
+        this.types = new SpillBuffer(Byte.BYTES, budget);
+    }
+
+    /**
+     * @return the index of the point
+     */
+    public int addPoint(double x, double y, double z) throws IOException {
+        checkNotBuilt();
+        if (numberOfPoints == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many points");
+        }
+        points.putDouble(x);
+        points.putDouble(y);
+        points.putDouble(z);
+        return numberOfPoints++;
+    }
+
+    /**
+     * @param connectivity indices of the points of the cell, which may be added after the cell
+     * @return the index of the cell
+     * @throws IllegalArgumentException if the number of points is not one of the type
+     */
+    public int addCell(VTKType type, int... connectivity) throws IOException {
+        checkNotBuilt();
+        if (numberOfCells == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many cells");
+        }
+        if (!type.isValidNumberOfPoints(connectivity.length)) {
+            throw new IllegalArgumentException("Cell of type " + type + " with " + connectivity.length + " points");
+        }
+        for (int index : connectivity) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Negative point index: " + index);
+            }
+        }
+        for (int index : connectivity) {
+            this.connectivity.putInt(index);
+            maxPointIndex = Math.max(maxPointIndex, index);
+        }
+        connectivitySize += connectivity.length;
+        ends.putLong(connectivitySize);
+        types.put((byte) type.ID);
+        return numberOfCells++;
+    }
+
+    /**
+     * Declares point data, whose values are given by {@link #addField} for every point in order.
+     *
+     * @param numberOfComponents 1 for scalars, 3 for vectors
+     * @return the field to give to {@link #addField}
+     */
+    public int addPointField(String name, int numberOfComponents) {
+        return addField(name, numberOfComponents, true);
+    }
+
+    /**
+     * Declares cell data, whose values are given by {@link #addField} for every cell in order.
+     *
+     * @param numberOfComponents 1 for scalars, 3 for vectors
+     * @return the field to give to {@link #addField}
+     */
+    public int addCellField(String name, int numberOfComponents) {
+        return addField(name, numberOfComponents, false);
+    }
+
+    private int addField(String name, int numberOfComponents, boolean pointData) {
+        checkNotBuilt();
+        if (numberOfComponents != 1 && numberOfComponents != 3) {
+            throw new IllegalArgumentException("Number of components must be 1 or 3: " + numberOfComponents);
+        }
+        fields.add(new Field(name, numberOfComponents, pointData, new SpillBuffer(Double.BYTES, budget)));
+        return fields.size() - 1;
+    }
+
+    /**
+     * Adds the value of a scalar field for the next point or cell.
+     */
+    public UnstructuredGridBuilder addField(int field, double value) throws IOException {
+        Field f = field(field);
+        if (f.numberOfComponents != 1) {
+            throw new IllegalArgumentException("Field " + f.name + " has " + f.numberOfComponents + " components");
+        }
+        f.values.putDouble(value);
+        return this;
+    }
+
+    /**
+     * Adds the values of a field for the next points or cells, all the components of every one.
+     */
+    public UnstructuredGridBuilder addField(int field, double... values) throws IOException {
+        Field f = field(field);
+        if (values.length % f.numberOfComponents != 0) {
+            throw new IllegalArgumentException("Field " + f.name + " has " + f.numberOfComponents
+                    + " components, not a multiple of " + values.length + " values");
+        }
+        for (double value : values) {
+            f.values.putDouble(value);
+        }
+        return this;
+    }
+
+    private Field field(int field) {
+        checkNotBuilt();
+        if (field < 0 || field >= fields.size()) {
+            throw new IllegalArgumentException("No such field: " + field);
+        }
+        return fields.get(field);
+    }
+
+    /**
+     * Ends the building of the grid.
+     *
+     * @return a writer of the grid to a VTK XML (.vtu) file
+     * @throws IllegalStateException if a cell refers to a point that was not added, or a field
+     *                               does not have a value for every point or cell
+     */
+    public UnstructuredGridXmlVtKWriter xmlWriter() {
+        return new UnstructuredGridXmlVtKWriter(build());
+    }
+
+    /**
+     * Ends the building of the grid.
+     *
+     * @return a writer of the grid to a legacy VTK file
+     * @throws IllegalStateException if a cell refers to a point that was not added, or a field
+     *                               does not have a value for every point or cell
+     */
+    public UnstructuredGridLegacyVtkWriter legacyWriter(String title) {
+        return new UnstructuredGridLegacyVtkWriter(build(), title);
+    }
+
+    private GridArrays build() {
+        if (maxPointIndex >= numberOfPoints) {
+            throw new IllegalStateException("Cell refers to point " + maxPointIndex + " of " + numberOfPoints);
+        }
+        List<DataArray> pointData = new ArrayList<>();
+        List<DataArray> cellData = new ArrayList<>();
+        for (Field field : fields) {
+            long expected = (long) field.numberOfComponents * (field.pointData ? numberOfPoints : numberOfCells);
+            if (field.values.size() != expected) {
+                throw new IllegalStateException("Field " + field.name + " has " + field.values.size()
+                        + " values instead of " + expected);
+            }
+            DataArray array = DataArray.float64(field.name, field.values, field.numberOfComponents);
+            (field.pointData ? pointData : cellData).add(array);
+        }
+        built = true;
+        return GridArrays.of(numberOfPoints, numberOfCells, points, connectivity, ends, types, pointData, cellData);
+    }
+
+    private void checkNotBuilt() {
+        if (built) {
+            throw new IllegalStateException("The grid was already built");
+        }
+    }
+
+    /**
+     * Deletes the temporary files. The writers of the grid must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        List<SpillBuffer> buffers = new ArrayList<>(List.of(points, connectivity, ends, types));
+        for (Field field : fields) {
+            buffers.add(field.values);
+        }
+        for (SpillBuffer buffer : buffers) {
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
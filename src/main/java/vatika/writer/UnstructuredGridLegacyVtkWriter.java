@@ -1,187 +1,243 @@
 package vatika.writer;
 
 import vatika.data.*;
+import vatika.writer.DataArray.ChunkConsumer;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.stream.Collectors;
-
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static vatika.writer.DataFormat.APPENDED;
 import static vatika.writer.DataFormat.ASCII;
 import static vatika.writer.DataFormat.BINARY;
 
 public class UnstructuredGridLegacyVtkWriter {
-    private final UnstructuredGrid data;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final GridArrays data;
     private final String title;
     private DataFormat dataFormat = BINARY;  // default: BINARY
+    private Precision pointsPrecision = Precision.FLOAT64;
+    private Precision dataPrecision = Precision.FLOAT64;
+    private final Map<String, Precision> dataPrecisions = new HashMap<>();
+    private boolean int64Connectivity = false;
+    private WriteListener listener;
 
     public UnstructuredGridLegacyVtkWriter(UnstructuredGrid data, String title) {
+        this(GridArrays.of(data), title);
+    }
+
+    public UnstructuredGridLegacyVtkWriter(PackedUnstructuredGrid data, String title) {
+        this(GridArrays.of(data), title);
+    }
+
+    public UnstructuredGridLegacyVtkWriter(OffHeapUnstructuredGrid data, String title) {
+        this(GridArrays.of(data), title);
+    }
+
+    /**
+     * Writes the grid through its accessors, without copying it.
+     */
+    public UnstructuredGridLegacyVtkWriter(UnstructuredGridView data, String title) {
+        this(GridArrays.of(data), title);
+    }
+
+    UnstructuredGridLegacyVtkWriter(GridArrays data, String title) {
         this.data = data;
         this.title = title.substring(0, Math.min(title.length(), 255));
     }
 
     public UnstructuredGridLegacyVtkWriter setDataFormat(DataFormat dataFormat) {
+        if (dataFormat == APPENDED) {
+            throw new IllegalArgumentException("Appended data is not supported by legacy files");
+        }
         this.dataFormat = dataFormat;
         return this;
     }
 
-    public void write(File file) throws IOException {
-        if (dataFormat == ASCII) {
-            writeASCII(file);
-        } else {
-            writeBINARY(file);
-        }
+    /**
+     * Sets the precision of the coordinates of the points; default: {@link Precision#FLOAT64}.
+     */
+    public UnstructuredGridLegacyVtkWriter setPointsPrecision(Precision pointsPrecision) {
+        this.pointsPrecision = pointsPrecision;
+        return this;
     }
 
-    private void writeASCII(File file) throws IOException {
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write("# vtk DataFile Version 2.0\n");
-            writer.write(title + "\n");
-            writer.write("ASCII\n");
-            writer.write("DATASET UNSTRUCTURED_GRID\n");
-            writer.write("POINTS");
-            writer.write(" " + data.points.length);
-            writer.write(" double\n");
-
-            for (Point point : data.points) {
-                writer.write(String.format("%-20.15f %-20.15f %-20.15f\n", point.x, point.y, point.z));
-            }
-
-            int listSize = data.cells.length
-                    + Arrays.stream(data.cells)
-                    .mapToInt(c -> c.connectivity.length)
-                    .sum();
-
-            writer.write(String.format("CELLS %d %d\n", data.cells.length, listSize));
-            for (Cell cell : data.cells) {
-                writer.write(cellConnectivityString(cell) + "\n");
-            }
-
-            writer.write(String.format("CELL_TYPES %d\n", data.cells.length));
-            for (Cell cell : data.cells) {
-                writer.write(cell.vtkType.ID + "\n");
-            }
-
-            writer.write(String.format("POINT_DATA %d\n", data.points.length));
-            writeScalarData(writer, data.pointScalarData);
-            writeVectorData(writer, data.pointVectorData);
+    /**
+     * Sets the precision of the point and cell data arrays without a precision of their own;
+     * default: {@link Precision#FLOAT64}.
+     */
+    public UnstructuredGridLegacyVtkWriter setDataPrecision(Precision dataPrecision) {
+        this.dataPrecision = dataPrecision;
+        return this;
+    }
 
-            writer.write(String.format("CELL_DATA %d\n", data.cells.length));
-            writeScalarData(writer, data.cellScalarData);
-            writeVectorData(writer, data.cellVectorData);
-        }
+    /**
+     * Sets the precision of the point and cell data arrays of the name.
+     */
+    public UnstructuredGridLegacyVtkWriter setDataPrecision(String dataName, Precision dataPrecision) {
+        dataPrecisions.put(dataName, dataPrecision);
+        return this;
     }
 
-    private void writeBINARY(File file) throws IOException {
-        try (DataOutputStream fileStream = new DataOutputStream(new FileOutputStream(file))) {
-            fileStream.writeBytes("# vtk DataFile Version 2.0\n");
-            fileStream.writeBytes(title + "\n");
-            fileStream.writeBytes("BINARY\n");
-            fileStream.writeBytes("DATASET UNSTRUCTURED_GRID\n");
-            fileStream.writeBytes("POINTS");
-            fileStream.writeBytes(" " + data.points.length);
-            fileStream.writeBytes(" double\n");
-
-            for (Point point : data.points) {
-                fileStream.writeDouble(point.x);
-                fileStream.writeDouble(point.y);
-                fileStream.writeDouble(point.z);
-            }
+    /**
+     * Sets whether the cells are written as Int64 offsets and connectivity arrays, in the format of
+     * version 5.1 files, instead of the cell list of version 2.0 files; default: false. They are
+     * always written as Int64 when the cell list has more entries than an Int32 can count.
+     */
+    public UnstructuredGridLegacyVtkWriter setInt64Connectivity(boolean int64Connectivity) {
+        this.int64Connectivity = int64Connectivity;
+        return this;
+    }
 
-            int listSize = data.cells.length
-                    + Arrays.stream(data.cells)
-                    .mapToInt(c -> c.connectivity.length)
-                    .sum();
+    /**
+     * Sets the listener receiving the measurements of every file written, {@code null} for none;
+     * default: none.
+     */
+    public UnstructuredGridLegacyVtkWriter setListener(WriteListener listener) {
+        this.listener = listener;
+        return this;
+    }
 
-            fileStream.writeBytes(String.format("CELLS %d %d\n", data.cells.length, listSize));
-            for (Cell cell : data.cells) {
-                fileStream.write(cellConnectivityBytes(cell));
+    public void write(File file) throws IOException {
+        long start = System.nanoTime();
+        List<ArrayRecorder> recorders = new ArrayList<>();
+        long writtenBytes;
+        try (FileChannel channel = FileChannel.open(file.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
+            // Legacy binary files are always big-endian, the default order of ByteBuffer.
+            // Text and arrays share the buffer, which is written only when it fills up.
+            // ASCII values are formatted in place, which needs a buffer backed by an array.
+            ByteBuffer buffer = dataFormat == ASCII
+                    ? ByteBuffer.allocate(BUFFER_SIZE)
+                    : ByteBuffer.allocateDirect(BUFFER_SIZE);
+            ChannelOutput fileChannel = new ChannelOutput(channel);
+
+            boolean int64 = int64Connectivity || data.legacyCells.size() > Integer.MAX_VALUE;
+            writeText(buffer, fileChannel, int64 ? "# vtk DataFile Version 5.1\n" : "# vtk DataFile Version 2.0\n");
+            writeText(buffer, fileChannel, title + "\n");
+            writeText(buffer, fileChannel, dataFormat.name() + "\n");
+            writeText(buffer, fileChannel, "DATASET UNSTRUCTURED_GRID\n");
+            writeText(buffer, fileChannel, "POINTS " + data.numberOfPoints + " " + pointsPrecision.legacyType + "\n");
+            writeDataArray(buffer, fileChannel, data.points.withPrecision(pointsPrecision), '\n', "Points", recorders);
+
+            if (int64) {
+                writeText(buffer, fileChannel,
+                        String.format("CELLS %d %d\n", data.numberOfCells + 1, data.connectivity.size()));
+                writeText(buffer, fileChannel, "OFFSETS vtktypeint64\n");
+                writeDataArray(buffer, fileChannel, data.legacyOffsets.asInt64(), '\n', "Offsets", recorders);
+                writeText(buffer, fileChannel, "CONNECTIVITY vtktypeint64\n");
+                writeDataArray(buffer, fileChannel, data.connectivity.asInt64(), '\n', "Connectivity", recorders);
+            } else {
+                writeText(buffer, fileChannel,
+                        String.format("CELLS %d %d\n", data.numberOfCells, data.legacyCells.size()));
+                writeDataArray(buffer, fileChannel, data.legacyCells, '\n', "Cells", recorders);
             }
 
-            fileStream.writeBytes(String.format("CELL_TYPES %d\n", data.cells.length));
-            for (Cell cell : data.cells) {
-                fileStream.writeInt(cell.vtkType.ID);
-            }
+            writeText(buffer, fileChannel, String.format("CELL_TYPES %d\n", data.numberOfCells));
+            writeDataArray(buffer, fileChannel, data.legacyTypes, '\n', "Cell types", recorders);
 
-            fileStream.writeBytes(String.format("POINT_DATA %d\n", data.points.length));
-            writeScalarData(fileStream, data.pointScalarData);
-            writeVectorData(fileStream, data.pointVectorData);
+            writeText(buffer, fileChannel, String.format("POINT_DATA %d\n", data.numberOfPoints));
+            writeFieldData(buffer, fileChannel, data.pointData, recorders);
 
-            fileStream.writeBytes(String.format("CELL_DATA %d\n", data.cells.length));
-            writeScalarData(fileStream, data.cellScalarData);
-            writeVectorData(fileStream, data.cellVectorData);
-        }
-    }
+            writeText(buffer, fileChannel, String.format("CELL_DATA %d\n", data.numberOfCells));
+            writeFieldData(buffer, fileChannel, data.cellData, recorders);
 
-    private void writeScalarData(FileWriter writer, ScalarData[] allScalarsData) throws IOException {
-        if (allScalarsData == null) {
-            return;
+            DataArray.flush(buffer, fileChannel);
+            writtenBytes = fileChannel.writtenBytes;
         }
 
-        for (ScalarData scalarData : allScalarsData) {
-            writer.write(String.format("SCALARS %s double 1\n", scalarData.dataName));
-            writer.write("LOOKUP_TABLE default\n");
-            for (double scalar : scalarData.scalars) {
-                writer.write(String.format("%1.15f ", scalar));
+        if (listener != null) {
+            List<DataArrayMetrics> arrays = new ArrayList<>();
+            for (ArrayRecorder recorder : recorders) {
+                arrays.add(recorder.metrics());
             }
-            writer.write("\n");
+            listener.written(new WriteMetrics(file, arrays, writtenBytes, System.nanoTime() - start));
         }
     }
 
-    private void writeVectorData(FileWriter writer, VectorData[] allVectorsData) throws IOException {
-        if (allVectorsData == null) {
-            return;
+    private void writeFieldData(ByteBuffer buffer, ChannelOutput fileChannel, List<DataArray> allFieldData,
+                                List<ArrayRecorder> recorders) throws IOException {
+        for (DataArray array : allFieldData) {
+            Precision precision = dataPrecisions.getOrDefault(array.name, dataPrecision);
+            DataArray fieldData = array.withPrecision(precision);
+            writeText(buffer, fileChannel, fieldDataHeader(fieldData, precision));
+            // scalars on one line, vectors one per line
+            writeDataArray(buffer, fileChannel, fieldData, fieldData.numberOfComponents == 1 ? ' ' : '\n',
+                    fieldData.name, recorders);
         }
+    }
 
-        for (VectorData vectorData : allVectorsData) {
-            writer.write(String.format("VECTORS %s double\n", vectorData.dataName));
-            for (Vector vector : vectorData.vectors) {
-                writer.write(String.format("%1.15f %1.15f %1.15f\n", vector.x, vector.y, vector.z));
+    private void writeDataArray(ByteBuffer buffer, ChannelOutput fileChannel, DataArray array, char tupleSeparator,
+                                String name, List<ArrayRecorder> recorders) throws IOException {
+        long start = System.nanoTime();
+        long startPosition = fileChannel.writtenBytes + buffer.position();
+        ArrayRecorder recorder = new ArrayRecorder(name, array);
+        recorders.add(recorder);
+        ChunkConsumer timedOut = recorder.timed(ArrayRecorder.WRITE, fileChannel);
+
+        recorder.enter(ArrayRecorder.PACK);
+        try {
+            if (dataFormat == ASCII) {
+                array.print(buffer, timedOut, tupleSeparator);
+                writeText(buffer, timedOut, "\n");
+            } else {
+                array.pack(buffer, timedOut);
             }
+        } finally {
+            recorder.exit();
         }
-    }
 
-    private String cellConnectivityString(Cell cell) {
-        return cell.connectivity.length + " "
-                + Arrays.stream(cell.connectivity)
-                .mapToObj(i -> "" + i)
-                .collect(Collectors.joining(" "));
+        recorder.addWrittenBytes(fileChannel.writtenBytes + buffer.position() - startPosition);
+        recorder.addTotalNanos(System.nanoTime() - start);
     }
 
-    private void writeScalarData(DataOutputStream stream, ScalarData[] allScalarsData) throws IOException {
-        if (allScalarsData == null) {
-            return;
+    private String fieldDataHeader(DataArray fieldData, Precision precision) {
+        if (fieldData.numberOfComponents == 1) {
+            return String.format("SCALARS %s %s 1\n", fieldData.name, precision.legacyType)
+                    + "LOOKUP_TABLE default\n";
+        } else {
+            return String.format("VECTORS %s %s\n", fieldData.name, precision.legacyType);
         }
+    }
 
-        for (ScalarData scalarData : allScalarsData) {
-            stream.writeBytes(String.format("SCALARS %s double 1\n", scalarData.dataName));
-            stream.writeBytes("LOOKUP_TABLE default\n");
-            for (double scalar : scalarData.scalars) {
-                stream.writeDouble(scalar);
+    private void writeText(ByteBuffer buffer, ChunkConsumer fileChannel, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        if (buffer.remaining() < bytes.length) {
+            DataArray.flush(buffer, fileChannel);
+        }
+        // text longer than the buffer, such as a header with a long title or name, is written in slices
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining()) {
+                DataArray.flush(buffer, fileChannel);
             }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
         }
     }
 
-    private void writeVectorData(DataOutputStream stream, VectorData[] allVectorsData) throws IOException {
-        if (allVectorsData == null) {
-            return;
+    private static class ChannelOutput implements ChunkConsumer {
+        private final FileChannel channel;
+        long writtenBytes;
+
+        ChannelOutput(FileChannel channel) {
+            this.channel = channel;
         }
 
-        for (VectorData vectorData : allVectorsData) {
-            stream.writeBytes(String.format("VECTORS %s double\n", vectorData.dataName));
-            for (Vector vector : vectorData.vectors) {
-                stream.writeDouble(vector.x);
-                stream.writeDouble(vector.y);
-                stream.writeDouble(vector.z);
+        @Override
+        public void accept(ByteBuffer chunk) throws IOException {
+            while (chunk.hasRemaining()) {
+                writtenBytes += channel.write(chunk);
             }
         }
     }
-
-    private byte[] cellConnectivityBytes(Cell cell) {
-        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES * (1 + cell.connectivity.length));
-        bytes.putInt(cell.connectivity.length);
-        Arrays.stream(cell.connectivity).forEach(bytes::putInt);
-
-        return bytes.array();
-    }
 }
@@ -0,0 +1,254 @@
+package vatika.writer;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.UnstructuredGrid;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * Writes an unstructured grid as pieces: one VTK XML (.vtu) file per piece, and a parallel
+ * (.pvtu) file declaring the data arrays and listing the pieces, which ParaView can load in
+ * parallel. The pieces are written concurrently, each on one thread of the executor.
+ * <p>
+ * The grid is either split into pieces of consecutive cells, each with only the points its
+ * cells use, so points shared by several pieces are written in each of them and points used
+ * by no cell are left out; or it is given already split, with the same data arrays in every piece.
+ * <p>
+ * The pieces are written with the settings of this writer, which are those of {@link UnstructuredGridXmlVtKWriter}.
+ */
+public class UnstructuredGridParallelXmlVtkWriter extends XmlVtkWriterSettings<UnstructuredGridParallelXmlVtkWriter> {
+    private final GridArrays declaration;
+    private final List<Supplier<GridArrays>> pieces = new ArrayList<>();
+
+    /**
+     * @param numberOfPieces number of pieces to split the cells of the grid into
+     */
+    public UnstructuredGridParallelXmlVtkWriter(UnstructuredGrid data, int numberOfPieces) {
+        this(PackedUnstructuredGrid.of(data), numberOfPieces);
+    }
+
+    /**
+     * @param numberOfPieces number of pieces to split the cells of the grid into
+     */
+    public UnstructuredGridParallelXmlVtkWriter(PackedUnstructuredGrid data, int numberOfPieces) {
+        if (numberOfPieces <= 0) {
+            throw new IllegalArgumentException("Number of pieces must be positive: " + numberOfPieces);
+        }
+        this.declaration = GridArrays.of(data);
+        long numberOfCells = data.numberOfCells();
+        for (int i = 0; i < numberOfPieces; i++) {
+            int fromCell = (int) (i * numberOfCells / numberOfPieces);
+            int toCell = (int) ((i + 1) * numberOfCells / numberOfPieces);
+            pieces.add(() -> GridArrays.of(data.piece(fromCell, toCell)));
+        }
+    }
+
+    /**
+     * @param pieces pieces of the grid, with the same point and cell data arrays
+     */
+    public UnstructuredGridParallelXmlVtkWriter(UnstructuredGrid[] pieces) {
+        this(pieceArrays(pieces));
+    }
+
+    /**
+     * @param pieces pieces of the grid, with the same point and cell data arrays
+     */
+    public UnstructuredGridParallelXmlVtkWriter(PackedUnstructuredGrid[] pieces) {
+        this(pieceArrays(pieces));
+    }
+
+    private UnstructuredGridParallelXmlVtkWriter(List<GridArrays> pieces) {
+        if (pieces.isEmpty()) {
+            throw new IllegalArgumentException("No pieces");
+        }
+        this.declaration = pieces.get(0);
+        for (GridArrays piece : pieces) {
+            if (!sameDeclarations(declaration.pointData, piece.pointData)
+                    || !sameDeclarations(declaration.cellData, piece.cellData)) {
+                throw new IllegalArgumentException("Pieces have different point or cell data arrays");
+            }
+            this.pieces.add(() -> piece);
+        }
+    }
+
+    /**
+     * Sets the executor the pieces are written on; default: {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     * The blocks of a piece are compressed on the thread writing the piece, so the executor
+     * is never waited on by its own tasks.
+     */
+    @Override
+    public UnstructuredGridParallelXmlVtkWriter setExecutor(Executor executor) {
+        return super.setExecutor(executor);
+    }
+
+    /**
+     * Sets whether the connectivity and offsets of the cells are written as Int64; default: false.
+     */
+    public UnstructuredGridParallelXmlVtkWriter setInt64Connectivity(boolean int64Connectivity) {
+        this.int64Connectivity = int64Connectivity;
+        return this;
+    }
+
+    /**
+     * Writes the pieces next to the parallel file, named after it with the number of the piece,
+     * then the parallel file itself.
+     *
+     * @param file parallel (.pvtu) file
+     * @return the files of the pieces
+     */
+    public List<File> write(File file) throws IOException {
+        List<File> pieceFiles = new ArrayList<>();
+        List<CompletableFuture<Void>> writtenPieces = new ArrayList<>();
+        for (int i = 0; i < pieces.size(); i++) {
+            File pieceFile = new File(file.getAbsoluteFile().getParentFile(), pieceFileName(file, i));
+            Supplier<GridArrays> piece = pieces.get(i);
+            pieceFiles.add(pieceFile);
+            writtenPieces.add(CompletableFuture.runAsync(() -> writePiece(piece.get(), pieceFile), executor));
+        }
+
+        // wait for all the pieces, even when one fails, so no file is still being written on return
+        Throwable failure = null;
+        for (CompletableFuture<Void> writtenPiece : writtenPieces) {
+            try {
+                writtenPiece.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+
+        writeParallelFile(file, pieceFiles);
+        return pieceFiles;
+    }
+
+    private void writePiece(GridArrays piece, File pieceFile) {
+        try {
+            new UnstructuredGridXmlVtKWriter(piece)
+                    .copySettings(this)
+                    .setExecutor(Runnable::run)
+                    .write(pieceFile);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void writeParallelFile(File file, List<File> pieceFiles) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            XmlWriter xml = new XmlWriter(out);
+            xml.declaration();
+
+            // <VTKFile type="PUnstructuredGrid" ...>
+            xml.startElement("VTKFile");
+            xml.attribute("byte_order", byteOrder == LITTLE_ENDIAN ? "LittleEndian" : "BigEndian");
+            xml.attribute("type", "PUnstructuredGrid");
+            xml.attribute("version", "0.1");
+
+            // <PUnstructuredGrid GhostLevel="0">
+            xml.startElement("PUnstructuredGrid");
+            xml.attribute("GhostLevel", "0");
+
+            // <PPointData>...</PPointData>
+            xml.startElement("PPointData");
+            writeDataArrayDeclarations(xml, declaration.pointData);
+            xml.endElement();
+
+            // <PCellData>...</PCellData>
+            xml.startElement("PCellData");
+            writeDataArrayDeclarations(xml, declaration.cellData);
+            xml.endElement();
+
+            // <PPoints><PDataArray type="Float64" NumberOfComponents="3"/></PPoints>
+            xml.startElement("PPoints");
+            writeDataArrayDeclaration(xml, declaration.points.withPrecision(pointsPrecision));
+            xml.endElement();
+
+            // <Piece Source="..."/>
+            for (File pieceFile : pieceFiles) {
+                xml.startElement("Piece");
+                xml.attribute("Source", pieceFile.getName());
+                xml.endElement();
+            }
+
+            xml.endElement(); // PUnstructuredGrid
+            xml.endElement(); // VTKFile
+        }
+    }
+
+    private void writeDataArrayDeclarations(XmlWriter xml, List<DataArray> arrays) throws IOException {
+        for (DataArray array : arrays) {
+            writeDataArrayDeclaration(xml, withDataPrecision(array));
+        }
+    }
+
+    private static void writeDataArrayDeclaration(XmlWriter xml, DataArray array) throws IOException {
+        xml.startElement("PDataArray");
+        if (array.name != null) {
+            xml.attribute("Name", array.name);
+        }
+        if (array.numberOfComponents != 1) {
+            xml.attribute("NumberOfComponents", array.numberOfComponents + "");
+        }
+        xml.attribute("type", array.type);
+        xml.endElement();
+    }
+
+    private static String pieceFileName(File file, int piece) {
+        String name = file.getName();
+        if (name.endsWith(".pvtu")) {
+            name = name.substring(0, name.length() - ".pvtu".length());
+        }
+        return name + "_" + piece + ".vtu";
+    }
+
+    private static boolean sameDeclarations(List<DataArray> arrays, List<DataArray> otherArrays) {
+        if (arrays.size() != otherArrays.size()) {
+            return false;
+        }
+        for (int i = 0; i < arrays.size(); i++) {
+            DataArray array = arrays.get(i);
+            DataArray otherArray = otherArrays.get(i);
+            if (!Objects.equals(array.name, otherArray.name) || !array.type.equals(otherArray.type)
+                    || array.numberOfComponents != otherArray.numberOfComponents) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<GridArrays> pieceArrays(UnstructuredGrid[] pieces) {
+        List<GridArrays> pieceArrays = new ArrayList<>();
+        for (UnstructuredGrid piece : pieces) {
+            pieceArrays.add(GridArrays.of(piece));
+        }
+        return pieceArrays;
+    }
+
+    private static List<GridArrays> pieceArrays(PackedUnstructuredGrid[] pieces) {
+        List<GridArrays> pieceArrays = new ArrayList<>();
+        for (PackedUnstructuredGrid piece : pieces) {
+            pieceArrays.add(GridArrays.of(piece));
+        }
+        return pieceArrays;
+    }
+}
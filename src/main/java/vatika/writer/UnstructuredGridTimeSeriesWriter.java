@@ -0,0 +1,107 @@
+package vatika.writer;
+
+import vatika.data.PackedVectorData;
+import vatika.data.ScalarData;
+import vatika.data.VectorData;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes a time series of an unstructured grid whose geometry does not change: one VTK XML
+ * (.vtu) file per time step, and a ParaView collection (.pvd) file listing the steps.
+ * <p>
+ * The geometry and the settings are those of the given {@link UnstructuredGridXmlVtKWriter};
+ * only the point and cell data passed for every step is written with it. The points and
+ * cells are packed, compressed and encoded for the first step only, and the encoded bytes
+ * are written again for the following steps, as long as the settings of the writer are not
+ * changed. The .pvd file is rewritten after every step, so it always lists the steps written.
+ */
+public class UnstructuredGridTimeSeriesWriter {
+    private final UnstructuredGridXmlVtKWriter writer;
+    private final File pvdFile;
+    private final EncodedArrayCache geometry = new EncodedArrayCache();
+    private final List<Double> times = new ArrayList<>();
+    private final List<String> fileNames = new ArrayList<>();
+
+    /**
+     * @param writer  writer of the grid, whose own point and cell data is not written
+     * @param pvdFile collection file; the step files are written next to it, named after it
+     */
+    public UnstructuredGridTimeSeriesWriter(UnstructuredGridXmlVtKWriter writer, File pvdFile) {
+        this.writer = writer;
+        this.pvdFile = pvdFile;
+    }
+
+    /**
+     * Writes the grid with the data of a time step, and adds the step to the collection.
+     *
+     * @return the file of the step
+     */
+    public File writeStep(double time, ScalarData[] pointScalarData, VectorData[] pointVectorData,
+                          ScalarData[] cellScalarData, VectorData[] cellVectorData) throws IOException {
+        return writeStep(time, GridArrays.fieldData(pointScalarData, pointVectorData),
+                GridArrays.fieldData(cellScalarData, cellVectorData));
+    }
+
+    /**
+     * Writes the grid with the data of a time step, and adds the step to the collection.
+     *
+     * @return the file of the step
+     */
+    public File writePackedStep(double time, ScalarData[] pointScalarData, PackedVectorData[] pointVectorData,
+                                ScalarData[] cellScalarData, PackedVectorData[] cellVectorData) throws IOException {
+        return writeStep(time, GridArrays.fieldData(pointScalarData, pointVectorData),
+                GridArrays.fieldData(cellScalarData, cellVectorData));
+    }
+
+    private File writeStep(double time, List<DataArray> pointData, List<DataArray> cellData) throws IOException {
+        File stepFile = new File(pvdFile.getAbsoluteFile().getParentFile(), stepFileName(times.size()));
+        writer.write(stepFile, writer.grid().withFieldData(pointData, cellData), geometry);
+        times.add(time);
+        fileNames.add(stepFile.getName());
+        writeCollection();
+        return stepFile;
+    }
+
+    private String stepFileName(int step) {
+        String name = pvdFile.getName();
+        if (name.endsWith(".pvd")) {
+            name = name.substring(0, name.length() - ".pvd".length());
+        }
+        return String.format(Locale.ROOT, "%s_%06d.vtu", name, step);
+    }
+
+    private void writeCollection() throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(pvdFile))) {
+            XmlWriter xml = new XmlWriter(out);
+            xml.declaration();
+
+            // <VTKFile type="Collection" ...>
+            xml.startElement("VTKFile");
+            xml.attribute("byte_order", "LittleEndian");
+            xml.attribute("type", "Collection");
+            xml.attribute("version", "0.1");
+
+            // <Collection><DataSet timestep="#" file="..."/>...</Collection>
+            xml.startElement("Collection");
+            for (int i = 0; i < times.size(); i++) {
+                xml.startElement("DataSet");
+                xml.attribute("file", fileNames.get(i));
+                xml.attribute("group", "");
+                xml.attribute("part", "0");
+                xml.attribute("timestep", times.get(i).toString());
+                xml.endElement();
+            }
+            xml.endElement();
+
+            xml.endElement(); // VTKFile
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package vatika.writer;
+
+/**
+ * Receives the measurements of every file written by a writer it is set on, to find where the
+ * time of writing goes and how well the data compresses. Writers that write several files at
+ * once call it from several threads.
+ *
+ * @see WriteStatistics
+ */
+public interface WriteListener {
+    void written(WriteMetrics metrics);
+}
@@ -0,0 +1,79 @@
+package vatika.writer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Measurements of the writing of a file, see {@link WriteListener}.
+ */
+public class WriteMetrics {
+    /**
+     * File written, {@code null} when written to a stream.
+     */
+    public final File file;
+    /**
+     * Data arrays in the order they are declared in the file.
+     */
+    public final List<DataArrayMetrics> arrays;
+    /**
+     * Size of the file.
+     */
+    public final long writtenBytes;
+    /**
+     * Time writing the file, in nanoseconds.
+     */
+    public final long totalNanos;
+
+    WriteMetrics(File file, List<DataArrayMetrics> arrays, long writtenBytes, long totalNanos) {
+        this.file = file;
+        this.arrays = arrays;
+        this.writtenBytes = writtenBytes;
+        this.totalNanos = totalNanos;
+    }
+
+    public long rawBytes() {
+        return arrays.stream().mapToLong(array -> array.rawBytes).sum();
+    }
+
+    public long compressedBytes() {
+        return arrays.stream().mapToLong(array -> array.compressedBytes).sum();
+    }
+
+    /**
+     * @return raw size of all the arrays divided by their compressed size
+     */
+    public double compressionRatio() {
+        long compressedBytes = compressedBytes();
+        return compressedBytes == 0 ? 1 : (double) rawBytes() / compressedBytes;
+    }
+
+    public long packNanos() {
+        return arrays.stream().mapToLong(array -> array.packNanos).sum();
+    }
+
+    public long compressNanos() {
+        return arrays.stream().mapToLong(array -> array.compressNanos).sum();
+    }
+
+    public long waitNanos() {
+        return arrays.stream().mapToLong(array -> array.waitNanos).sum();
+    }
+
+    public long encodeNanos() {
+        return arrays.stream().mapToLong(array -> array.encodeNanos).sum();
+    }
+
+    public long writeNanos() {
+        return arrays.stream().mapToLong(array -> array.writeNanos).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("%s: %d bytes in %.3f ms%n",
+                file == null ? "stream" : file.getName(), writtenBytes, totalNanos / 1e6));
+        for (DataArrayMetrics array : arrays) {
+            text.append("  ").append(array).append(String.format("%n"));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package vatika.writer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A listener adding up the measurements of all the files written. It can be shared by writers
+ * and registered as an MXBean:
+ * <pre>
+ * WriteStatistics statistics = new WriteStatistics();
+ * ManagementFactory.getPlatformMBeanServer()
+ *         .registerMBean(statistics, new ObjectName("vatika:type=WriteStatistics"));
+ * writer.setListener(statistics);
+ * </pre>
+ */
+public class WriteStatistics implements WriteListener, WriteStatisticsMXBean {
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder packNanos = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    @Override
+    public void written(WriteMetrics metrics) {
+        filesWritten.increment();
+        writtenBytes.add(metrics.writtenBytes);
+        totalNanos.add(metrics.totalNanos);
+        for (DataArrayMetrics array : metrics.arrays) {
+            rawBytes.add(array.rawBytes);
+            compressedBytes.add(array.compressedBytes);
+            packNanos.add(array.packNanos);
+            compressNanos.add(array.compressNanos);
+            waitNanos.add(array.waitNanos);
+            encodeNanos.add(array.encodeNanos);
+            writeNanos.add(array.writeNanos);
+        }
+    }
+
+    @Override
+    public long getFilesWritten() {
+        return filesWritten.sum();
+    }
+
+    @Override
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    @Override
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        long compressed = compressedBytes.sum();
+        return compressed == 0 ? 1 : (double) rawBytes.sum() / compressed;
+    }
+
+    @Override
+    public long getPackNanos() {
+        return packNanos.sum();
+    }
+
+    @Override
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    @Override
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    @Override
+    public long getEncodeNanos() {
+        return encodeNanos.sum();
+    }
+
+    @Override
+    public long getWriteNanos() {
+        return writeNanos.sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[]{filesWritten, rawBytes, compressedBytes, writtenBytes,
+                packNanos, compressNanos, waitNanos, encodeNanos, writeNanos, totalNanos}) {
+            adder.reset();
+        }
+    }
+}
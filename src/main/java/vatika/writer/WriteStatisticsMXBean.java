@@ -0,0 +1,31 @@
+package vatika.writer;
+
+/**
+ * Totals of the files written, for monitoring through JMX, see {@link WriteStatistics}.
+ * Times are in nanoseconds.
+ */
+public interface WriteStatisticsMXBean {
+    long getFilesWritten();
+
+    long getRawBytes();
+
+    long getCompressedBytes();
+
+    long getWrittenBytes();
+
+    double getCompressionRatio();
+
+    long getPackNanos();
+
+    long getCompressNanos();
+
+    long getWaitNanos();
+
+    long getEncodeNanos();
+
+    long getWriteNanos();
+
+    long getTotalNanos();
+
+    void reset();
+}
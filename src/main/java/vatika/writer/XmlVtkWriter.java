@@ -0,0 +1,352 @@
+package vatika.writer;
+
+import vatika.writer.DataArray.ChunkConsumer;
+import vatika.writer.DataArrayEncoder.AppendedArray;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static vatika.writer.DataFormat.APPENDED;
+import static vatika.writer.DataFormat.ASCII;
+
+/**
+ * Writes a data set to a VTK XML file; subclasses write the data sets of every type.
+ * The document is streamed to the output as it is produced, and every data array is
+ * packed and encoded through fixed size buffers, so uncompressed arrays are written
+ * without memory growing with the size of the data set. Compressed arrays are split
+ * into blocks which are compressed in parallel; since the header of an array holds the
+ * compressed size of every block, the compressed blocks of an array are held in memory
+ * until it is written.
+ * <p>
+ * In the {@link DataFormat#APPENDED appended} format the arrays are written as raw bytes
+ * after the XML markup, avoiding the Base64 encoding of the binary format. When written
+ * to a file, uncompressed arrays are packed into a direct buffer and written straight
+ * to the file channel. The offsets of the arrays in the markup depend on their compressed
+ * sizes, so the compressed blocks of all the arrays are held in memory until the appended
+ * data is written: about the size of the compressed file.
+ * <p>
+ * The settings are those of {@link XmlVtkWriterSettings}, shared with
+ * {@link UnstructuredGridParallelXmlVtkWriter}, so every XML writer has the same settings.
+ *
+ * @param <W> type of the writer, returned by the setters
+ */
+public abstract class XmlVtkWriter<W extends XmlVtkWriter<W>> extends XmlVtkWriterSettings<W> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHANNEL_BUFFER_SIZE = 1024 * 1024;
+
+    XmlVtkWriter() {
+    }
+
+    public void write(File file) throws IOException {
+        write(file, dataSet(), null);
+    }
+
+    /**
+     * Writes the data set to the stream. The stream is flushed, but not closed.
+     */
+    public void write(OutputStream out) throws IOException {
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+        long start = System.nanoTime();
+        List<ArrayRecorder> recorders = write(dataSet(), null, countingOut, null);
+        written(null, recorders, countingOut.count, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the data set of the writer
+     */
+    abstract DataSet dataSet();
+
+    /**
+     * @return the settings the encoding of the arrays depends on, for the arrays to be cached
+     */
+    List<Object> settings() {
+        return new ArrayList<>(Arrays.asList(format, byteOrder, compressed, compressor, compressionLevel,
+                blockSize, pointsPrecision));
+    }
+
+    /**
+     * Writes a data set with the settings of the writer.
+     *
+     * @param cache encoded geometry arrays to reuse, {@code null} to encode all the arrays
+     */
+    void write(File file, DataSet dataSet, EncodedArrayCache cache) throws IOException {
+        long start = System.nanoTime();
+        List<ArrayRecorder> recorders;
+        long writtenBytes;
+        try (FileChannel channel = FileChannel.open(file.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
+            recorders = write(dataSet, cache, Channels.newOutputStream(channel), channel);
+            writtenBytes = channel.position();
+        }
+        written(file, recorders, writtenBytes, System.nanoTime() - start);
+    }
+
+    private void written(File file, List<ArrayRecorder> recorders, long writtenBytes, long nanos) {
+        if (listener != null) {
+            List<DataArrayMetrics> arrays = new ArrayList<>();
+            for (ArrayRecorder recorder : recorders) {
+                arrays.add(recorder.metrics());
+            }
+            listener.written(new WriteMetrics(file, arrays, writtenBytes, nanos));
+        }
+    }
+
+    /**
+     * @param channel channel written by the stream, to write appended data to directly;
+     *                {@code null} to write everything through the stream
+     * @return the recordings of the arrays written
+     */
+    private List<ArrayRecorder> write(DataSet dataSet, EncodedArrayCache cache, OutputStream out,
+                                      FileChannel channel) throws IOException {
+        boolean uint64 = uint64Header || format != ASCII && hasArrayOver4GiB(dataSet);
+        if (cache != null) {
+            List<Object> settings = settings();
+            settings.add(uint64);
+            cache.useSettings(settings);
+        }
+        BufferedOutputStream bufferedOut = new BufferedOutputStream(out, BUFFER_SIZE);
+        // the compression session and the buffers of the encoder are shared by all the arrays
+        try (DataArrayEncoder encoder = new DataArrayEncoder(byteOrder, compressed ? compressor : null,
+                compressionLevel, blockSize, executor, uint64)) {
+            Document document = new Document(bufferedOut, encoder, cache);
+            writeDocument(dataSet, document, uint64, bufferedOut, channel);
+            return document.recorders;
+        }
+    }
+
+    private void writeDocument(DataSet dataSet, Document document, boolean uint64, OutputStream bufferedOut,
+                               FileChannel channel) throws IOException {
+        XmlWriter xml = document.xml;
+        xml.declaration();
+
+        // <VTKFile type=”UnstructuredGrid” ...>
+        xml.startElement("VTKFile");
+        xml.attribute("byte_order", byteOrder == LITTLE_ENDIAN ? "LittleEndian" : "BigEndian");
+        if (compressed) {
+            xml.attribute("compressor", compressor.vtkClassName());
+        }
+        if (uint64) {
+            xml.attribute("header_type", "UInt64");
+        }
+        xml.attribute("type", dataSet.type);
+        xml.attribute("version", "0.1");
+
+        // <UnstructuredGrid>
+        xml.startElement(dataSet.type);
+        dataSet.write(document);
+        xml.endElement();
+
+        if (format == APPENDED) {
+            // <AppendedData encoding="raw">_...</AppendedData>
+            xml.startElement("AppendedData");
+            xml.attribute("encoding", "raw");
+            xml.content().write('_');
+            writeAppendedData(document.appendedArrays, document.recorders, bufferedOut, channel);
+            xml.endElement();
+        }
+
+        xml.endElement(); // VTKFile
+        bufferedOut.flush();
+    }
+
+    private boolean hasArrayOver4GiB(DataSet dataSet) {
+        for (DataArray array : dataSet.arrays()) {
+            if (array.sizeInBytes() > DataArrayEncoder.MAX_UINT32) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the extent of a structured data set with the numbers of points along its axes,
+     * as the first and the last index of the points along each of them
+     */
+    static String extent(int[] dimensions) {
+        return "0 " + (dimensions[0] - 1) + " 0 " + (dimensions[1] - 1) + " 0 " + (dimensions[2] - 1);
+    }
+
+    /**
+     * @return the values separated by spaces
+     */
+    static String tuple(double[] values) {
+        StringBuilder tuple = new StringBuilder();
+        for (double value : values) {
+            if (tuple.length() > 0) {
+                tuple.append(' ');
+            }
+            tuple.append(value);
+        }
+        return tuple.toString();
+    }
+
+    /**
+     * A data set as written to the file, by type.
+     */
+    abstract class DataSet {
+        /**
+         * Type of the data set, also the name of its element.
+         */
+        final String type;
+
+        DataSet(String type) {
+            this.type = type;
+        }
+
+        /**
+         * @return all the arrays as they are written, to size the headers of the binary arrays
+         */
+        abstract List<DataArray> arrays();
+
+        /**
+         * Writes the attributes and the content of the element of the data set.
+         */
+        abstract void write(Document document) throws IOException;
+    }
+
+    /**
+     * The document being written, to which the data sets write their elements.
+     */
+    final class Document {
+        final XmlWriter xml;
+        private final DataArrayEncoder encoder;
+        private final EncodedArrayCache cache;
+        private final List<AppendedArray> appendedArrays = new ArrayList<>();
+        private final List<ArrayRecorder> recorders = new ArrayList<>();
+
+        private Document(OutputStream out, DataArrayEncoder encoder, EncodedArrayCache cache) {
+            this.xml = new XmlWriter(out);
+            this.encoder = encoder;
+            this.cache = cache;
+        }
+
+        /**
+         * Writes the point or cell data arrays, with their precision.
+         */
+        void writeDataArrays(List<DataArray> arrays) throws IOException {
+            for (DataArray array : arrays) {
+                writeDataArray(array, withDataPrecision(array), false);
+            }
+        }
+
+        /**
+         * @param source array of the data set, which {@code array} is converted from with the settings
+         * @param cached whether the array is part of the geometry, encoded once for all the data sets
+         *               written with the same cache
+         */
+        void writeDataArray(DataArray source, DataArray array, boolean cached) throws IOException {
+            EncodedArrayCache cache = cached ? this.cache : null;
+            long start = System.nanoTime();
+            ArrayRecorder recorder = new ArrayRecorder(array.name != null ? array.name : "Points", array);
+            recorders.add(recorder);
+            xml.startElement("DataArray");
+            if (array.name != null) {
+                xml.attribute("Name", array.name);
+            }
+            if (array.numberOfComponents != 1) {
+                xml.attribute("NumberOfComponents", array.numberOfComponents + "");
+            }
+            xml.attribute("format", format.toString());
+            if (format == APPENDED) {
+                // offset from the start of the appended data, just after the '_'
+                long offset = 0;
+                for (AppendedArray appendedArray : appendedArrays) {
+                    offset += appendedArray.size;
+                }
+                xml.attribute("offset", offset + "");
+            }
+            xml.attribute("type", array.type);
+
+            if (format == APPENDED) {
+                AppendedArray appendedArray = cache == null
+                        ? encoder.appended(array, recorder)
+                        : cache.appended(source, array, encoder, recorder);
+                appendedArrays.add(appendedArray);
+                recorder.setCompressedBytes(appendedArray.dataSize);
+                recorder.addWrittenBytes(appendedArray.size);
+            } else {
+                OutputStream content = recorder.output(xml.content());
+                if (cache != null) {
+                    cache.writeContent(source, out -> encodeContent(array, out, recorder), content, recorder);
+                } else {
+                    encodeContent(array, content, recorder);
+                }
+            }
+
+            xml.endElement();
+            recorder.addTotalNanos(System.nanoTime() - start);
+        }
+
+        private void encodeContent(DataArray array, OutputStream out, ArrayRecorder recorder) throws IOException {
+            if (format == ASCII) {
+                encoder.print(array, out, recorder);
+            } else {
+                encoder.encode(array, out, recorder);
+            }
+        }
+    }
+
+    /**
+     * @param recorders recorders of all the arrays, which include the appended ones in the same order
+     */
+    private void writeAppendedData(List<AppendedArray> appendedArrays, List<ArrayRecorder> recorders,
+                                   OutputStream bufferedOut, FileChannel channel) throws IOException {
+        ByteBuffer buffer;
+        ChunkConsumer rawOut;
+        if (channel != null) {
+            // bypass the stream, packing straight into a buffer the channel can write without copying
+            bufferedOut.flush();
+            buffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+            rawOut = chunk -> {
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            };
+        } else {
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            rawOut = chunk -> bufferedOut.write(chunk.array(), chunk.position(), chunk.remaining());
+        }
+        buffer.order(byteOrder);
+
+        for (int i = 0; i < appendedArrays.size(); i++) {
+            ArrayRecorder recorder = recorders.get(i);
+            long start = System.nanoTime();
+            appendedArrays.get(i).writeTo(buffer, rawOut, recorder);
+            recorder.addTotalNanos(System.nanoTime() - start);
+        }
+        DataArray.flush(buffer, rawOut);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+}
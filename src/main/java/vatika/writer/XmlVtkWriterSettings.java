@@ -0,0 +1,173 @@
+package vatika.writer;
+
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static vatika.writer.DataFormat.BINARY;
+
+/**
+ * The settings of the VTK XML writers, shared by the writers of single files and of parallel files,
+ * so that every writer has the same settings with the same defaults.
+ *
+ * @param <W> type of the writer, returned by the setters
+ */
+public abstract class XmlVtkWriterSettings<W extends XmlVtkWriterSettings<W>> {
+    DataFormat format = BINARY;          // default: BINARY
+    ByteOrder byteOrder = LITTLE_ENDIAN; // default: LittleEndian
+    boolean compressed = true;           // default: compressed
+    Compressor compressor = new ZLibCompressor();
+    int compressionLevel = 9;
+    int blockSize = DataArrayEncoder.DEFAULT_BLOCK_SIZE;
+    Executor executor = ForkJoinPool.commonPool();
+    Precision pointsPrecision = Precision.FLOAT64;
+    Precision dataPrecision = Precision.FLOAT64;
+    final Map<String, Precision> dataPrecisions = new HashMap<>();
+    boolean uint64Header = false;
+    WriteListener listener;
+
+    /**
+     * Whether the connectivity and offsets of cells are written as Int64, set by the writers of cells.
+     */
+    boolean int64Connectivity = false;
+
+    XmlVtkWriterSettings() {
+    }
+
+    @SuppressWarnings("unchecked")
+    W self() {
+        return (W) this;
+    }
+
+    public W setByteOrder(ByteOrder byteOrder) {
+        this.byteOrder = byteOrder;
+        return self();
+    }
+
+    public W setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return self();
+    }
+
+    public W setFormat(DataFormat format) {
+        this.format = format;
+        return self();
+    }
+
+    /**
+     * Sets the compressor used for compressed output; default: {@link ZLibCompressor}.
+     */
+    public W setCompressor(Compressor compressor) {
+        this.compressor = compressor;
+        return self();
+    }
+
+    /**
+     * Sets the compression level, from 1 (fastest) to 9 (smallest output); default: 9.
+     * On floating point data the lowest levels are usually several times faster,
+     * for a few percent larger output.
+     */
+    public W setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 1 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Compression level must be from 1 to 9: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        return self();
+    }
+
+    /**
+     * Sets the size in bytes of the blocks that compressed data arrays are split into.
+     * Every block is compressed independently; default: 32 KiB.
+     */
+    public W setBlockSize(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        return self();
+    }
+
+    /**
+     * Sets the executor used to compress the blocks of data arrays concurrently;
+     * default: {@link ForkJoinPool#commonPool()}.
+     */
+    public W setExecutor(Executor executor) {
+        this.executor = executor;
+        return self();
+    }
+
+    /**
+     * Sets the precision of the coordinates of the points; default: {@link Precision#FLOAT64}.
+     */
+    public W setPointsPrecision(Precision pointsPrecision) {
+        this.pointsPrecision = pointsPrecision;
+        return self();
+    }
+
+    /**
+     * Sets the precision of the point and cell data arrays without a precision of their own;
+     * default: {@link Precision#FLOAT64}.
+     */
+    public W setDataPrecision(Precision dataPrecision) {
+        this.dataPrecision = dataPrecision;
+        return self();
+    }
+
+    /**
+     * Sets the precision of the point and cell data arrays of the name.
+     */
+    public W setDataPrecision(String dataName, Precision dataPrecision) {
+        dataPrecisions.put(dataName, dataPrecision);
+        return self();
+    }
+
+    /**
+     * Sets whether the sizes in the headers of the binary arrays are UInt64 instead of UInt32
+     * values, declared by {@code header_type="UInt64"}; default: false. They are always UInt64
+     * when an array has more than 4 GiB of data.
+     */
+    public W setUInt64Header(boolean uint64Header) {
+        this.uint64Header = uint64Header;
+        return self();
+    }
+
+    /**
+     * Sets the listener receiving the measurements of every file written, {@code null} for none;
+     * default: none.
+     */
+    public W setListener(WriteListener listener) {
+        this.listener = listener;
+        return self();
+    }
+
+    /**
+     * Copies all the settings of the other writer to this one.
+     */
+    W copySettings(XmlVtkWriterSettings<?> other) {
+        this.format = other.format;
+        this.byteOrder = other.byteOrder;
+        this.compressed = other.compressed;
+        this.compressor = other.compressor;
+        this.compressionLevel = other.compressionLevel;
+        this.blockSize = other.blockSize;
+        this.executor = other.executor;
+        this.pointsPrecision = other.pointsPrecision;
+        this.dataPrecision = other.dataPrecision;
+        this.dataPrecisions.clear();
+        this.dataPrecisions.putAll(other.dataPrecisions);
+        this.int64Connectivity = other.int64Connectivity;
+        this.uint64Header = other.uint64Header;
+        this.listener = other.listener;
+        return self();
+    }
+
+    /**
+     * @return the point or cell data array as written, with its precision
+     */
+    DataArray withDataPrecision(DataArray array) {
+        return array.withPrecision(dataPrecisions.getOrDefault(array.name, dataPrecision));
+    }
+}
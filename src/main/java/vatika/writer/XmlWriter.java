@@ -0,0 +1,111 @@
+package vatika.writer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming XML writer: markup is written straight to the underlying stream
+ * as it is produced, so the size of a document is never limited by the heap.
+ * Character content is written as raw bytes, which allows large data arrays
+ * to be encoded chunk-by-chunk directly into the output.
+ */
+class XmlWriter {
+    private final OutputStream out;
+    private final Deque<String> openElements = new ArrayDeque<>();
+    private boolean startTagOpen = false;
+
+    XmlWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    XmlWriter declaration() throws IOException {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        return this;
+    }
+
+    XmlWriter startElement(String name) throws IOException {
+        closeStartTag();
+        write("<" + name);
+        openElements.push(name);
+        startTagOpen = true;
+        return this;
+    }
+
+    XmlWriter attribute(String name, String value) throws IOException {
+        if (!startTagOpen) {
+            throw new IllegalStateException("Attribute '" + name + "' written outside of a start tag");
+        }
+        write(" " + name + "=\"" + escape(value) + "\"");
+        return this;
+    }
+
+    XmlWriter endElement() throws IOException {
+        String name = openElements.pop();
+        if (startTagOpen) {
+            write("/>");
+            startTagOpen = false;
+        } else {
+            write("</" + name + ">");
+        }
+        return this;
+    }
+
+    /**
+     * Returns a stream writing raw bytes as content of the current element.
+     * The caller is responsible for writing only valid character data.
+     * Closing the returned stream does not close the document.
+     */
+    OutputStream content() throws IOException {
+        closeStartTag();
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                // keep the document open
+            }
+        };
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            out.write('>');
+            startTagOpen = false;
+        }
+    }
+
+    private void write(String str) throws IOException {
+        out.write(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
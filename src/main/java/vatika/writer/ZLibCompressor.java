@@ -0,0 +1,99 @@
+package vatika.writer;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+
+/**
+ * zlib (deflate) compression, readable by every VTK version.
+ * <p>
+ * Within a {@link #open(int) session} the deflaters and their output buffers are pooled and
+ * reset between blocks instead of being allocated for every block, and the native memory
+ * of the deflaters is released when the session is closed.
+ */
+public class ZLibCompressor implements Compressor {
+    @Override
+    public String vtkClassName() {
+        return "vtkZLibDataCompressor";
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int length, int level) {
+        Stream stream = new Stream(level);
+        try {
+            return stream.deflate(data, length);
+        } finally {
+            stream.deflater.end();
+        }
+    }
+
+    @Override
+    public Session open(int level) {
+        return new Session() {
+            private final Queue<Stream> streams = new ConcurrentLinkedQueue<>();
+            private volatile boolean closed;
+
+            @Override
+            public byte[] compress(byte[] data, int length) {
+                Stream stream = streams.poll();
+                if (stream == null) {
+                    stream = new Stream(level);
+                }
+                try {
+                    return stream.deflate(data, length);
+                } finally {
+                    stream.deflater.reset();
+                    streams.offer(stream);
+                    if (closed) {
+                        // a block compressed after the session was closed
+                        endAll();
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+                endAll();
+            }
+
+            private void endAll() {
+                for (Stream stream; (stream = streams.poll()) != null; ) {
+                    stream.deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * A deflater with a buffer for its output, reused for blocks of the same size.
+     */
+    private static class Stream {
+        final Deflater deflater;
+        private byte[] output = new byte[0];
+
+        Stream(int level) {
+            this.deflater = new Deflater(level);
+        }
+
+        byte[] deflate(byte[] data, int length) {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            // zlib's compressBound(), enough for a single deflate() call
+            int bound = length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+            if (output.length < bound) {
+                output = new byte[bound];
+            }
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == output.length) {
+                    output = Arrays.copyOf(output, 2 * output.length);
+                }
+                compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+            }
+            return Arrays.copyOf(output, compressedLength);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package vatika.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static vatika.data.SpaceFillingCurve.HILBERT;
+import static vatika.data.SpaceFillingCurve.MORTON;
+import static vatika.data.VTKType.VTK_TETRA;
+
+public class GridOrderTest {
+
+    @Test
+    public void morton() {
+        assertEquals(0b100, MORTON.key(1, 0, 0));
+        assertEquals(0b010, MORTON.key(0, 1, 0));
+        assertEquals(0b001, MORTON.key(0, 0, 1));
+        assertEquals(0b100_000, MORTON.key(2, 0, 0));
+        assertEquals(Long.MAX_VALUE, MORTON.key(0x1FFFFF, 0x1FFFFF, 0x1FFFFF));
+    }
+
+    @Test
+    public void hilbert() {
+        // every position of an 8 x 8 x 8 lattice once, each a neighbor of the one before
+        int bits = 3;
+        int[][] positions = new int[512][];
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                for (int z = 0; z < 8; z++) {
+                    long key = SpaceFillingCurve.hilbert(x, y, z, bits);
+                    assertNull(positions[(int) key]);
+                    positions[(int) key] = new int[]{x, y, z};
+                }
+            }
+        }
+        for (int i = 1; i < positions.length; i++) {
+            int distance = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                distance += Math.abs(positions[i][axis] - positions[i - 1][axis]);
+            }
+            assertEquals(1, distance);
+        }
+        assertEquals(0, HILBERT.key(0, 0, 0));
+    }
+
+    @Test
+    public void radixSort() {
+        Random random = new Random(25);
+        for (int size : new int[]{0, 1, 1000, 300_000}) {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                // few distinct keys, some with the sign bit
+                keys[i] = random.nextInt(500) * 0x0101_0000_0001L + (random.nextInt(10) == 0 ? Long.MIN_VALUE : 0);
+            }
+            Integer[] expected = IntStream.range(0, size).boxed().toArray(Integer[]::new);
+            Arrays.sort(expected, Comparator.comparing(i -> keys[i], Long::compareUnsigned));
+
+            assertArrayEquals(Arrays.stream(expected).mapToInt(i -> i).toArray(), RadixSort.sortedIndices(keys));
+        }
+    }
+
+    @Test
+    public void reorder() {
+        Random random = new Random(26);
+        int numberOfPoints = 2000;
+        Point[] points = new Point[numberOfPoints];
+        Arrays.setAll(points, i -> new Point(random.nextDouble(), 2 * random.nextDouble(), random.nextDouble()));
+        Cell[] cells = new Cell[500];
+        Arrays.setAll(cells, i -> new Cell(random.ints(4, 0, numberOfPoints).toArray(), VTK_TETRA));
+        double[] temperatures = new double[numberOfPoints];
+        Arrays.setAll(temperatures, i -> i);
+        Vector[] velocities = new Vector[cells.length];
+        Arrays.setAll(velocities, i -> new Vector(i, 0, 0));
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells,
+                new ScalarData[]{new ScalarData("T", temperatures)}, null,
+                null, new VectorData[]{new VectorData("V", velocities)});
+
+        for (SpaceFillingCurve curve : SpaceFillingCurve.values()) {
+            GridOrder order = GridOrder.of(grid, curve);
+            UnstructuredGrid reordered = grid.reorder(order).validate();
+            for (int i = 0; i < numberOfPoints; i++) {
+                assertSame(points[order.points[i]], reordered.points[i]);
+                assertEquals(order.points[i], reordered.pointScalarData[0].scalars[i], 0);
+            }
+            for (int i = 0; i < cells.length; i++) {
+                Cell cell = cells[order.cells[i]];
+                for (int j = 0; j < 4; j++) {
+                    assertSame(points[cell.connectivity[j]], reordered.points[reordered.cells[i].connectivity[j]]);
+                }
+                assertSame(velocities[order.cells[i]], reordered.cellVectorData[0].vectors[i]);
+            }
+
+            // consecutive points closer than in the original order
+            assertTrue(meanStep(reordered.points) < meanStep(points) / 5);
+
+            PackedUnstructuredGrid expected = PackedUnstructuredGrid.of(reordered);
+            PackedUnstructuredGrid packed = PackedUnstructuredGrid.of(grid).reorder(order).validate();
+            assertArrayEquals(expected.points, packed.points, 0);
+            assertArrayEquals(expected.connectivity, packed.connectivity);
+            assertArrayEquals(expected.offsets, packed.offsets);
+            assertArrayEquals(expected.types, packed.types);
+            assertArrayEquals(expected.pointScalarData[0].scalars, packed.pointScalarData[0].scalars, 0);
+            assertArrayEquals(expected.cellVectorData[0].components, packed.cellVectorData[0].components, 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reorder_wrongLength() {
+        Point[] points = {new Point(0, 0, 0), new Point(1, 0, 0)};
+        new UnstructuredGrid(points, new Cell[0], null, null, null, null)
+                .reorder(new GridOrder(new int[]{0}, new int[0]));
+    }
+
+    private static double meanStep(Point[] points) {
+        double sum = 0;
+        for (int i = 1; i < points.length; i++) {
+            sum += points[i].distance(points[i - 1]);
+        }
+        return sum / (points.length - 1);
+    }
+}
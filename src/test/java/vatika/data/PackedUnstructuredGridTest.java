@@ -0,0 +1,178 @@
+package vatika.data;
+
+import org.junit.Test;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static vatika.data.VTKType.VTK_QUAD;
+import static vatika.data.VTKType.VTK_TRIANGLE;
+
+public class PackedUnstructuredGridTest {
+
+    @Test
+    public void piece() {
+        PackedUnstructuredGrid grid = new PackedUnstructuredGrid(
+                new double[]{0, 0, 0, 1, 0, 0, 2, 0, 0, 3, 0, 0, 4, 0, 0},
+                new int[]{0, 1, 4, 4, 3, 1, 2}, new int[]{0, 3, 7},
+                new byte[]{(byte) VTK_TRIANGLE.ID, (byte) VTK_QUAD.ID},
+                new ScalarData[]{new ScalarData("T", new double[]{10, 11, 12, 13, 14})},
+                new PackedVectorData[]{new PackedVectorData("V", new double[]{
+                        0, 1, 2, 10, 11, 12, 20, 21, 22, 30, 31, 32, 40, 41, 42})},
+                new ScalarData[]{new ScalarData("C", new double[]{5, 6})},
+                new PackedVectorData[0]);
+
+        PackedUnstructuredGrid piece = grid.piece(1, 2);
+        assertArrayEquals(new double[]{1, 0, 0, 2, 0, 0, 3, 0, 0, 4, 0, 0}, piece.points, 0);
+        assertArrayEquals(new int[]{3, 2, 0, 1}, piece.connectivity);
+        assertArrayEquals(new int[]{0, 4}, piece.offsets);
+        assertArrayEquals(new byte[]{(byte) VTK_QUAD.ID}, piece.types);
+        assertArrayEquals(new double[]{11, 12, 13, 14}, piece.pointScalarData[0].scalars, 0);
+        assertArrayEquals(new double[]{10, 11, 12, 20, 21, 22, 30, 31, 32, 40, 41, 42},
+                piece.pointVectorData[0].components, 0);
+        assertArrayEquals(new double[]{6}, piece.cellScalarData[0].scalars, 0);
+        assertEquals(0, piece.cellVectorData.length);
+
+        PackedUnstructuredGrid empty = grid.piece(1, 1);
+        assertEquals(0, empty.numberOfPoints());
+        assertEquals(0, empty.numberOfCells());
+        assertArrayEquals(new int[]{0}, empty.offsets);
+    }
+
+    @Test
+    public void fieldView_indexBeyondInt() {
+        // 3 * index wraps around to 2 in int arithmetic
+        int index = 1431655766;
+        double[] components = {1, 2, 3, 4, 5, 6};
+        FieldView[] fields = {
+                new PackedVectorData("V", components),
+                FieldView.of("V", components, 3),
+                FieldView.of("V", DoubleBuffer.wrap(components), 3),
+                new OffHeapFieldData("V", DoubleBuffer.wrap(components), 3)
+        };
+        for (FieldView field : fields) {
+            try {
+                field.value(index, 0);
+                fail("Expected the index to overflow");
+            } catch (ArithmeticException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void piece_invalidRange() {
+        PackedUnstructuredGrid grid = new PackedUnstructuredGrid(new double[0], new int[0], new int[]{0},
+                new byte[0], null, null, null, null);
+        grid.piece(0, 1);
+    }
+
+    @Test
+    public void validate() {
+        PackedUnstructuredGrid valid = grid(new int[]{0, 1, 4, 4, 3, 1, 2}, new int[]{0, 3, 7});
+        assertSame(valid, valid.validate());
+
+        assertInvalid("Cell 1 of type VTK_QUAD has 3 points", grid(new int[]{0, 1, 4, 3, 1, 2}, new int[]{0, 3, 6}));
+        assertInvalid("Cell 1 refers to point 5 of 5", grid(new int[]{0, 1, 4, 5, 3, 1, 2}, new int[]{0, 3, 7}));
+        assertInvalid("Cell 0 refers to point -1 of 5", grid(new int[]{0, -1, 4, 4, 3, 1, 2}, new int[]{0, 3, 7}));
+        assertInvalid("Offsets must go from 0 to 7: 0 to 6", grid(new int[]{0, 1, 4, 4, 3, 1, 2}, new int[]{0, 3, 6}));
+        assertInvalid("Offsets has 2 values instead of 3", grid(new int[]{0, 1, 4}, new int[]{0, 3}));
+        assertInvalid("Cell 0 has no type", new PackedUnstructuredGrid(new double[3], new int[]{0}, new int[]{0, 1},
+                new byte[]{99}, null, null, null, null));
+        assertInvalid("T has 4 values instead of 5", new PackedUnstructuredGrid(new double[15], new int[]{0, 1, 4},
+                new int[]{0, 3}, new byte[]{(byte) VTK_TRIANGLE.ID},
+                new ScalarData[]{new ScalarData("T", new double[4])}, null, null, null));
+    }
+
+    @Test
+    public void compact() {
+        PackedUnstructuredGrid grid = new PackedUnstructuredGrid(
+                new double[]{0, 0, 0, 1, 0, 0, 2, 0, 0, 3, 0, 0, 4, 0, 0, 5, 0, 0},
+                new int[]{5, 1, 3, 1, 5, 3, 4}, new int[]{0, 3, 7},
+                new byte[]{(byte) VTK_TRIANGLE.ID, (byte) VTK_QUAD.ID},
+                new ScalarData[]{new ScalarData("T", new double[]{10, 11, 12, 13, 14, 15})},
+                new PackedVectorData[]{new PackedVectorData("V", new double[]{
+                        0, 1, 2, 10, 11, 12, 20, 21, 22, 30, 31, 32, 40, 41, 42, 50, 51, 52})},
+                new ScalarData[]{new ScalarData("C", new double[]{5, 6})},
+                null);
+
+        PackedUnstructuredGrid compact = grid.compact().validate();
+        assertArrayEquals(new double[]{1, 0, 0, 3, 0, 0, 4, 0, 0, 5, 0, 0}, compact.points, 0);
+        assertArrayEquals(new int[]{3, 0, 1, 0, 3, 1, 2}, compact.connectivity);
+        assertArrayEquals(grid.offsets, compact.offsets);
+        assertArrayEquals(grid.types, compact.types);
+        assertArrayEquals(new double[]{11, 13, 14, 15}, compact.pointScalarData[0].scalars, 0);
+        assertArrayEquals(new double[]{10, 11, 12, 30, 31, 32, 40, 41, 42, 50, 51, 52},
+                compact.pointVectorData[0].components, 0);
+        assertArrayEquals(new double[]{5, 6}, compact.cellScalarData[0].scalars, 0);
+
+        assertSame(compact, compact.compact());
+    }
+
+    private static PackedUnstructuredGrid grid(int[] connectivity, int[] offsets) {
+        return new PackedUnstructuredGrid(new double[]{0, 0, 0, 1, 0, 0, 2, 0, 0, 3, 0, 0, 4, 0, 0},
+                connectivity, offsets, new byte[]{(byte) VTK_TRIANGLE.ID, (byte) VTK_QUAD.ID},
+                null, null, null, null);
+    }
+
+    private static void assertInvalid(String message, PackedUnstructuredGrid grid) {
+        try {
+            grid.validate();
+            fail("Valid grid");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    @Test
+    public void mergePoints() {
+        // jittered points of a coarse lattice, many of them within the tolerance of each other
+        Random random = new Random(24);
+        int numberOfPoints = 3000;
+        double tolerance = 0.05;
+        double[] points = new double[3 * numberOfPoints];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextInt(8) * 0.1 + random.nextDouble() * 0.04 - 1;
+        }
+        int[] connectivity = new int[numberOfPoints];
+        Arrays.setAll(connectivity, i -> numberOfPoints - 1 - i);
+        byte[] types = new byte[numberOfPoints];
+        Arrays.fill(types, (byte) VTKType.VTK_VERTEX.ID);
+        int[] offsets = new int[numberOfPoints + 1];
+        Arrays.setAll(offsets, i -> i);
+        double[] scalars = new double[numberOfPoints];
+        Arrays.setAll(scalars, i -> i);
+        PackedUnstructuredGrid grid = new PackedUnstructuredGrid(points, connectivity, offsets, types,
+                new ScalarData[]{new ScalarData("T", scalars)}, null, null, null);
+
+        // the lowest point within the tolerance, then its own representative
+        int[] expected = new int[numberOfPoints];
+        for (int i = 0; i < numberOfPoints; i++) {
+            expected[i] = i;
+            for (int j = 0; j < i; j++) {
+                double dx = points[3 * i] - points[3 * j];
+                double dy = points[3 * i + 1] - points[3 * j + 1];
+                double dz = points[3 * i + 2] - points[3 * j + 2];
+                if (dx * dx + dy * dy + dz * dz <= tolerance * tolerance) {
+                    expected[i] = expected[j];
+                    break;
+                }
+            }
+        }
+        assertArrayEquals(expected, PointMerging.representatives(grid, tolerance));
+
+        PackedUnstructuredGrid merged = grid.mergePoints(tolerance).validate();
+        assertEquals(Arrays.stream(expected).distinct().count(), merged.numberOfPoints());
+        for (int cell = 0; cell < numberOfPoints; cell++) {
+            int point = merged.connectivity[cell];
+            int representative = expected[connectivity[cell]];
+            assertEquals(representative, merged.pointScalarData[0].scalars[point], 0);
+            assertEquals(points[3 * representative], merged.points[3 * point], 0);
+        }
+    }
+}
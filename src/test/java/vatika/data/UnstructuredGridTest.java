@@ -0,0 +1,95 @@
+package vatika.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static vatika.data.VTKType.VTK_HEXAHEDRON;
+import static vatika.data.VTKType.VTK_LINE;
+import static vatika.data.VTKType.VTK_TRIANGLE;
+
+public class UnstructuredGridTest {
+    private final Point[] points = {
+            new Point(0, 0, 0), new Point(1, 0, 0), new Point(2, 0, 0), new Point(3, 0, 0)
+    };
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validate_numberOfPoints() {
+        new UnstructuredGrid(points, new Cell[]{new Cell(new int[]{0, 1, 2, 3}, VTK_HEXAHEDRON)},
+                null, null, null, null).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validate_pointIndex() {
+        new UnstructuredGrid(points, new Cell[]{new Cell(new int[]{0, 4}, VTK_LINE)},
+                null, null, null, null).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validate_dataLength() {
+        new UnstructuredGrid(points, new Cell[]{new Cell(new int[]{0, 1}, VTK_LINE)},
+                null, null, null, new VectorData[]{new VectorData("V", new Vector[2])}).validate();
+    }
+
+    @Test
+    public void compact() {
+        UnstructuredGrid grid = new UnstructuredGrid(points,
+                new Cell[]{new Cell(new int[]{3, 1}, VTK_LINE)},
+                new ScalarData[]{new ScalarData("T", new double[]{10, 11, 12, 13})},
+                new VectorData[]{new VectorData("V", new Vector[]{
+                        new Vector(0, 0, 0), new Vector(1, 1, 1), new Vector(2, 2, 2), new Vector(3, 3, 3)})},
+                null, null);
+
+        UnstructuredGrid compact = grid.validate().compact().validate();
+        assertArrayEquals(new Point[]{points[1], points[3]}, compact.points);
+        assertArrayEquals(new int[]{1, 0}, compact.cells[0].connectivity);
+        assertEquals(VTK_LINE, compact.cells[0].vtkType);
+        assertArrayEquals(new double[]{11, 13}, compact.pointScalarData[0].scalars, 0);
+        assertSame(grid.pointVectorData[0].vectors[3], compact.pointVectorData[0].vectors[1]);
+
+        UnstructuredGrid full = new UnstructuredGrid(points,
+                new Cell[]{new Cell(new int[]{0, 1, 2}, VTK_TRIANGLE), new Cell(new int[]{2, 3}, VTK_LINE)},
+                null, null, null, null);
+        assertSame(full, full.compact());
+    }
+
+    @Test
+    public void mergePoints() {
+        // two triangles built from their own points, sharing an edge up to rounding
+        Point[] blockPoints = {
+                new Point(0, 0, 0), new Point(1, 0, 0), new Point(0, 1, 0),
+                new Point(1 + 1e-9, 0, 0), new Point(1, 1, 0), new Point(0, 1 - 1e-9, 0)
+        };
+        UnstructuredGrid grid = new UnstructuredGrid(blockPoints,
+                new Cell[]{new Cell(new int[]{0, 1, 2}, VTK_TRIANGLE), new Cell(new int[]{3, 4, 5}, VTK_TRIANGLE)},
+                new ScalarData[]{new ScalarData("T", new double[]{10, 11, 12, 13, 14, 15})},
+                null, new ScalarData[]{new ScalarData("C", new double[]{1, 2})}, null);
+
+        UnstructuredGrid merged = grid.mergePoints(1e-6).validate();
+        assertArrayEquals(new Point[]{blockPoints[0], blockPoints[1], blockPoints[2], blockPoints[4]}, merged.points);
+        assertArrayEquals(new int[]{0, 1, 2}, merged.cells[0].connectivity);
+        assertArrayEquals(new int[]{1, 3, 2}, merged.cells[1].connectivity);
+        assertArrayEquals(new double[]{10, 11, 12, 14}, merged.pointScalarData[0].scalars, 0);
+        assertSame(grid.cellScalarData, merged.cellScalarData);
+
+        assertSame(grid, grid.mergePoints(0));
+        assertSame(grid, grid.mergePoints(1e-10));
+    }
+
+    @Test
+    public void mergePoints_identical() {
+        UnstructuredGrid grid = new UnstructuredGrid(
+                new Point[]{new Point(0.0, 1, 2), new Point(-0.0, 1, 2), new Point(0, 1, 2.5)},
+                new Cell[]{new Cell(new int[]{1, 2}, VTK_LINE)}, null, null, null, null);
+
+        UnstructuredGrid merged = grid.mergePoints(0);
+        assertEquals(2, merged.points.length);
+        assertArrayEquals(new int[]{0, 1}, merged.cells[0].connectivity);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergePoints_negativeTolerance() {
+        new UnstructuredGrid(points, new Cell[0], null, null, null, null).mergePoints(-1);
+    }
+}
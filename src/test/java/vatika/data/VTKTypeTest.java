@@ -2,6 +2,8 @@ package vatika.data;
 
 import org.junit.Test;
 
+import java.util.NoSuchElementException;
+
 import static vatika.data.VTKType.*;
 import static org.junit.Assert.*;
 
@@ -29,4 +31,19 @@ public class VTKTypeTest {
         assertEquals(VTK_QUADRATIC_TETRA, VTKType.get(24));
         assertEquals(VTK_QUADRATIC_HEXAHEDRON, VTKType.get(25));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void isValidNumberOfPoints() {
+        assertTrue(VTK_TETRA.isValidNumberOfPoints(4));
+        assertFalse(VTK_TETRA.isValidNumberOfPoints(5));
+        assertTrue(VTK_QUADRATIC_HEXAHEDRON.isValidNumberOfPoints(20));
+        assertFalse(VTK_POLYGON.isValidNumberOfPoints(2));
+        assertTrue(VTK_POLYGON.isValidNumberOfPoints(12));
+        assertFalse(VTK_POLY_VERTEX.isValidNumberOfPoints(0));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void get_unknown() {
+        VTKType.get(15);
+    }
+}
@@ -0,0 +1,169 @@
+package vatika.reader;
+
+import org.junit.Test;
+import vatika.data.*;
+import vatika.writer.DataFormat;
+import vatika.writer.Precision;
+import vatika.writer.UnstructuredGridLegacyVtkWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static vatika.data.VTKType.VTK_QUAD;
+import static vatika.data.VTKType.VTK_TRIANGLE;
+import static vatika.reader.UnstructuredGridXmlVtkReaderTest.assertGridEquals;
+import static vatika.reader.UnstructuredGridXmlVtkReaderTest.toFloat;
+import static vatika.writer.DataFormat.ASCII;
+import static vatika.writer.DataFormat.BINARY;
+
+public class UnstructuredGridLegacyVtkReaderTest {
+
+    private Point[] points = {
+            new Point(2, 3, 0.0),
+            new Point(5, 3, 0),
+            new Point(6, 4, 0),
+            new Point(5.5, 5.2, 0),
+            new Point(4, 5, 0)
+    };
+    private Cell[] cells = {
+            new Cell(new int[]{0, 1, 4}, VTK_TRIANGLE),
+            new Cell(new int[]{1, 2, 3, 4}, VTK_QUAD)
+    };
+    private ScalarData[] pointScalarData = {
+            new ScalarData("Temperature", new double[]{200, 300, 250, 230, 400}),
+            new ScalarData("Pressure", new double[]{126920.01, 133028.18, 83980.67, 85415.18, Double.NaN})
+    };
+    private VectorData[] pointVectorData = {
+            new VectorData("Velocity", new Vector[]{
+                    new Vector(4.12, -0.68, 2.67),
+                    new Vector(-2.65, 0.00, 1.14),
+                    new Vector(-0.00, 2.09, 0.15),
+                    new Vector(-0.73, 0.39, 0.64),
+                    new Vector(-0.75, 1.22, -0.33)
+            })
+    };
+    private ScalarData[] cellScalarData = {
+            new ScalarData("speed", new double[]{1.5, 20.8})
+    };
+    private VectorData[] cellVectorData = {
+            new VectorData("Vorticity", new Vector[]{
+                    new Vector(-6.23, 8.87, -6.28),
+                    new Vector(15.79, -14.54, -2.30)
+            })
+    };
+
+    @Test
+    public void read() throws IOException {
+        PackedUnstructuredGrid grid = PackedUnstructuredGrid.of(new UnstructuredGrid(points, cells,
+                pointScalarData, pointVectorData, cellScalarData, cellVectorData));
+        File file = File.createTempFile("unstructuredTest", ".vtk");
+        file.deleteOnExit();
+
+        for (vatika.writer.DataFormat format : new vatika.writer.DataFormat[]{ASCII, BINARY}) {
+            new UnstructuredGridLegacyVtkWriter(grid, "Test data").setDataFormat(format).write(file);
+
+            for (long windowSize : new long[]{5, MappedFile.DEFAULT_WINDOW_SIZE}) {
+                assertGridEquals(grid, new UnstructuredGridLegacyVtkReader(file)
+                        .setWindowSize(windowSize)
+                        .readPacked());
+            }
+        }
+    }
+
+    @Test
+    public void read_float32AndInt64() throws IOException {
+        PackedUnstructuredGrid grid = PackedUnstructuredGrid.of(new UnstructuredGrid(points, cells,
+                pointScalarData, pointVectorData, cellScalarData, cellVectorData));
+        PackedUnstructuredGrid expected = new PackedUnstructuredGrid(
+                toFloat(grid.points), grid.connectivity, grid.offsets, grid.types,
+                grid.pointScalarData, grid.pointVectorData,
+                new ScalarData[]{new ScalarData(grid.cellScalarData[0].dataName,
+                        toFloat(grid.cellScalarData[0].scalars))},
+                grid.cellVectorData);
+        File file = File.createTempFile("unstructuredTest_float32", ".vtk");
+        file.deleteOnExit();
+
+        for (DataFormat format : new DataFormat[]{ASCII, BINARY}) {
+            new UnstructuredGridLegacyVtkWriter(grid, "float32")
+                    .setDataFormat(format)
+                    .setPointsPrecision(Precision.FLOAT32)
+                    .setDataPrecision(grid.cellScalarData[0].dataName, Precision.FLOAT32)
+                    .setInt64Connectivity(true)
+                    .write(file);
+
+            assertGridEquals(expected, new UnstructuredGridLegacyVtkReader(file).readPacked());
+        }
+    }
+
+    @Test
+    public void read_resources() throws IOException {
+        for (String format : new String[]{"ASCII", "BINARY"}) {
+            UnstructuredGrid read = new UnstructuredGridLegacyVtkReader(
+                    new File("src/test/resources/unstructuredTest" + format + ".vtk")).read();
+            assertEquals(points.length, read.points.length);
+            assertEquals(0, points[3].distance(read.points[3]), 0);
+            assertEquals(cells.length, read.cells.length);
+            assertArrayEquals(cells[1].connectivity, read.cells[1].connectivity);
+            assertEquals(VTK_QUAD, read.cells[1].vtkType);
+        }
+    }
+
+    @Test
+    public void read_version5() throws IOException {
+        // as written by VTK 9, with float points, cell arrays, field data and metadata
+        String vtk = "# vtk DataFile Version 5.1\n"
+                + "vtk output\n"
+                + "ASCII\n"
+                + "DATASET UNSTRUCTURED_GRID\n"
+                + "FIELD FieldData 1\n"
+                + "TimeValue 1 1 double\n"
+                + "0.5 \n"
+                + "POINTS 4 float\n"
+                + "0 0 0 1 0 0 1 1 0 \n"
+                + "0 1 0 \n"
+                + "CELLS 3 6\n"
+                + "OFFSETS vtktypeint64\n"
+                + "0 3 6 \n"
+                + "CONNECTIVITY vtktypeint64\n"
+                + "0 1 2 0 2 3 \n"
+                + "CELL_TYPES 2\n"
+                + "5\n"
+                + "5\n"
+                + "\n"
+                + "POINT_DATA 4\n"
+                + "FIELD FieldData 2\n"
+                + "p 1 4 double\n"
+                + "1 2 3 nan \n"
+                + "METADATA\n"
+                + "INFORMATION 0\n"
+                + "\n"
+                + "u 3 4 float\n"
+                + "1 0 0 0 1 0 0 0 1 1 1 1 \n"
+                + "CELL_DATA 2\n"
+                + "NORMALS n float\n"
+                + "0 0 1 0 0 -1 \n";
+        File file = File.createTempFile("unstructuredTest_version5", ".vtk");
+        file.deleteOnExit();
+        Files.write(file.toPath(), vtk.getBytes(StandardCharsets.US_ASCII));
+
+        PackedUnstructuredGrid read = new UnstructuredGridLegacyVtkReader(file).readPacked();
+        assertArrayEquals(new double[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0}, read.points, 0);
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, read.connectivity);
+
+        // versions are compared as numbers, not as text
+        Files.write(file.toPath(), vtk.replace("Version 5.1", "Version 10.0").getBytes(StandardCharsets.US_ASCII));
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, new UnstructuredGridLegacyVtkReader(file).readPacked().connectivity);
+        assertArrayEquals(new int[]{0, 3, 6}, read.offsets);
+        assertArrayEquals(new byte[]{5, 5}, read.types);
+        assertEquals("p", read.pointScalarData[0].dataName);
+        assertArrayEquals(new double[]{1, 2, 3, Double.NaN}, read.pointScalarData[0].scalars, 0);
+        assertEquals("u", read.pointVectorData[0].dataName);
+        assertEquals(1, read.pointVectorData[0].components[11], 0);
+        assertEquals("n", read.cellVectorData[0].dataName);
+        assertArrayEquals(new double[]{0, 0, 1, 0, 0, -1}, read.cellVectorData[0].components, 0);
+    }
+}
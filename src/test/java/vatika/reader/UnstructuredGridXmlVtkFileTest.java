@@ -0,0 +1,100 @@
+package vatika.reader;
+
+import org.junit.Test;
+import vatika.data.*;
+import vatika.writer.DataFormat;
+import vatika.writer.UnstructuredGridXmlVtKWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static vatika.data.VTKType.VTK_QUAD;
+import static vatika.data.VTKType.VTK_TRIANGLE;
+
+public class UnstructuredGridXmlVtkFileTest {
+
+    private Point[] points = {
+            new Point(2, 3, 0.0),
+            new Point(5, 3, 0),
+            new Point(6, 4, 0),
+            new Point(5.5, 5.2, 0),
+            new Point(4, 5, 0)
+    };
+    private Cell[] cells = {
+            new Cell(new int[]{0, 1, 4}, VTK_TRIANGLE),
+            new Cell(new int[]{1, 2, 3, 4}, VTK_QUAD)
+    };
+    private ScalarData[] pointScalarData = {
+            new ScalarData("Temperature", new double[]{200, 300, 250, 230, 400}),
+            new ScalarData("Pressure", new double[]{126920.01, 133028.18, 83980.67, 85415.18, 62601.26})
+    };
+    private VectorData[] pointVectorData = {
+            new VectorData("Velocity", new Vector[]{
+                    new Vector(4.12, -0.68, 2.67),
+                    new Vector(-2.65, 0.00, 1.14),
+                    new Vector(-0.00, 2.09, 0.15),
+                    new Vector(-0.73, 0.39, 0.64),
+                    new Vector(-0.75, 1.22, -0.33)
+            })
+    };
+    private ScalarData[] cellScalarData = {
+            new ScalarData("speed", new double[]{1.5, 20.8})
+    };
+    private VectorData[] cellVectorData = {
+            new VectorData("Vorticity", new Vector[]{
+                    new Vector(-6.23, 8.87, -6.28),
+                    new Vector(15.79, -14.54, -2.30)
+            })
+    };
+    private PackedUnstructuredGrid grid = PackedUnstructuredGrid.of(new UnstructuredGrid(points, cells,
+            pointScalarData, pointVectorData, cellScalarData, cellVectorData));
+
+    @Test
+    public void readSelected() throws IOException {
+        File file = File.createTempFile("unstructuredTestXML_lazy", ".vtu");
+        file.deleteOnExit();
+
+        for (DataFormat format : DataFormat.values()) {
+            new UnstructuredGridXmlVtKWriter(grid).setFormat(format).write(file);
+
+            try (UnstructuredGridXmlVtkFile vtkFile = new UnstructuredGridXmlVtkFile(file)) {
+                assertEquals(5, vtkFile.numberOfPoints());
+                assertEquals(2, vtkFile.numberOfCells());
+                assertEquals(Arrays.asList("Temperature", "Pressure", "Velocity"), vtkFile.pointDataNames());
+                assertEquals(Arrays.asList("speed", "Vorticity"), vtkFile.cellDataNames());
+                assertEquals(3, vtkFile.pointDataComponents("Velocity"));
+
+                ScalarData pressure = vtkFile.pointScalarData("Pressure");
+                assertArrayEquals(grid.pointScalarData[1].scalars, pressure.scalars, 0);
+                assertSame(pressure, vtkFile.pointScalarData("Pressure"));
+                assertArrayEquals(grid.cellVectorData[0].components,
+                        vtkFile.cellVectorData("Vorticity").components, 0);
+
+                PackedUnstructuredGrid selected = vtkFile.readPacked(
+                        Collections.singletonList("Velocity"), Collections.singletonList("speed"));
+                assertArrayEquals(grid.points, selected.points, 0);
+                assertArrayEquals(grid.connectivity, selected.connectivity);
+                assertArrayEquals(grid.offsets, selected.offsets);
+                assertArrayEquals(grid.types, selected.types);
+                assertEquals(0, selected.pointScalarData.length);
+                assertArrayEquals(grid.pointVectorData[0].components, selected.pointVectorData[0].components, 0);
+                assertArrayEquals(grid.cellScalarData[0].scalars, selected.cellScalarData[0].scalars, 0);
+                assertEquals(0, selected.cellVectorData.length);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readSelected_notScalar() throws IOException {
+        File file = File.createTempFile("unstructuredTestXML_lazy", ".vtu");
+        file.deleteOnExit();
+        new UnstructuredGridXmlVtKWriter(grid).write(file);
+
+        try (UnstructuredGridXmlVtkFile vtkFile = new UnstructuredGridXmlVtkFile(file)) {
+            vtkFile.pointScalarData("Velocity");
+        }
+    }
+}
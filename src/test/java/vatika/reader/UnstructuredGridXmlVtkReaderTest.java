@@ -0,0 +1,284 @@
+package vatika.reader;
+
+import org.junit.Test;
+import vatika.data.*;
+import vatika.writer.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static vatika.data.VTKType.VTK_QUAD;
+import static vatika.data.VTKType.VTK_TRIANGLE;
+
+public class UnstructuredGridXmlVtkReaderTest {
+
+    private Point[] points = {
+            new Point(2, 3, 0.0),
+            new Point(5, 3, 0),
+            new Point(6, 4, 0),
+            new Point(5.5, 5.2, 0),
+            new Point(4, 5, 0)
+    };
+    private Cell[] cells = {
+            new Cell(new int[]{0, 1, 4}, VTK_TRIANGLE),
+            new Cell(new int[]{1, 2, 3, 4}, VTK_QUAD)
+    };
+    private ScalarData[] pointScalarData = {
+            new ScalarData("Temperature", new double[]{200, 300, 250, 230, 400}),
+            new ScalarData("Pressure", new double[]{126920.01, 133028.18, 83980.67, 85415.18, Double.NaN})
+    };
+    private VectorData[] pointVectorData = {
+            new VectorData("Velocity", new Vector[]{
+                    new Vector(4.12, -0.68, 2.67),
+                    new Vector(-2.65, 0.00, 1.14),
+                    new Vector(-0.00, 2.09, 0.15),
+                    new Vector(-0.73, 0.39, 0.64),
+                    new Vector(-0.75, 1.22, -0.33)
+            })
+    };
+    private ScalarData[] cellScalarData = {
+            new ScalarData("speed & <size>", new double[]{1.5, 20.8})
+    };
+    private VectorData[] cellVectorData = {
+            new VectorData("Vorticity", new Vector[]{
+                    new Vector(-6.23, 8.87, -6.28),
+                    new Vector(15.79, -14.54, -2.30)
+            })
+    };
+    private PackedUnstructuredGrid grid = PackedUnstructuredGrid.of(new UnstructuredGrid(points, cells,
+            pointScalarData, pointVectorData, cellScalarData, cellVectorData));
+
+    @Test
+    public void read() throws IOException {
+        File file = File.createTempFile("unstructuredTestXML", ".vtu");
+        file.deleteOnExit();
+        Compressor[] compressors = {new ZLibCompressor(), new LZ4Compressor(), new LZMACompressor()};
+
+        for (DataFormat format : DataFormat.values()) {
+            for (ByteOrder byteOrder : new ByteOrder[]{LITTLE_ENDIAN, BIG_ENDIAN}) {
+                for (Compressor compressor : compressors) {
+                    for (boolean compressed : new boolean[]{true, false}) {
+                        new UnstructuredGridXmlVtKWriter(grid)
+                                .setFormat(format)
+                                .setByteOrder(byteOrder)
+                                .setCompressed(compressed)
+                                .setCompressor(compressor)
+                                .setBlockSize(20)
+                                .write(file);
+
+                        for (long windowSize : new long[]{7, MappedFile.DEFAULT_WINDOW_SIZE}) {
+                            assertGridEquals(grid, new UnstructuredGridXmlVtkReader(file)
+                                    .setWindowSize(windowSize)
+                                    .readPacked());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void read_resources() throws IOException {
+        File[] files = {
+                new File("src/test/resources/unstructuredTestXML_withData_ASCII.vtu"),
+                new File("src/test/resources/unstructuredTestXML_withData_BINARY.vtu"),
+                new File("src/test/resources/unstructuredTestXML_withData_BINARY_BigEndian.vtu"),
+                new File("src/test/resources/unstructuredTestXML_withData_BINARY_UnCompressed.vtu")
+        };
+        for (File file : files) {
+            UnstructuredGrid read = new UnstructuredGridXmlVtkReader(file).read();
+            assertEquals(points.length, read.points.length);
+            assertEquals(0, points[3].distance(read.points[3]), 0);
+            assertEquals(cells.length, read.cells.length);
+            assertArrayEquals(cells[1].connectivity, read.cells[1].connectivity);
+            assertEquals(VTK_QUAD, read.cells[1].vtkType);
+            assertEquals("Pressure", read.pointScalarData[1].dataName);
+            assertEquals("Acceleration", read.cellVectorData[1].dataName);
+        }
+    }
+
+    @Test
+    public void read_appendedBase64() throws IOException {
+        // as written by VTK, with whitespace around the data and the header encoded with the data
+        String xml = "<?xml version=\"1.0\"?>\n"
+                + "<!-- comment -->\n"
+                + "<VTKFile type=\"UnstructuredGrid\" version=\"1.0\" byte_order=\"LittleEndian\" header_type=\"UInt64\">\n"
+                + "  <UnstructuredGrid>\n"
+                + "    <Piece NumberOfPoints=\"1\" NumberOfCells=\"1\">\n"
+                + "      <Points>\n"
+                + "        <DataArray type=\"Float32\" NumberOfComponents=\"3\" format=\"appended\" offset=\"0\"/>\n"
+                + "      </Points>\n"
+                + "      <Cells>\n"
+                + "        <DataArray type=\"Int64\" Name=\"connectivity\" format=\"ascii\"> 0 </DataArray>\n"
+                + "        <DataArray type=\"Int64\" Name=\"offsets\" format=\"ascii\">1</DataArray>\n"
+                + "        <DataArray type=\"UInt8\" Name=\"types\" format=\"ascii\">\n 1\n </DataArray>\n"
+                + "      </Cells>\n"
+                + "    </Piece>\n"
+                + "  </UnstructuredGrid>\n"
+                + "  <AppendedData encoding=\"base64\">\n"
+                + "   _DAAAAAAAAAAAAIA/AAAAQAAAQEA=\n"
+                + "  </AppendedData>\n"
+                + "</VTKFile>\n";
+        File file = File.createTempFile("unstructuredTestXML_appendedBase64", ".vtu");
+        file.deleteOnExit();
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        PackedUnstructuredGrid read = new UnstructuredGridXmlVtkReader(file).readPacked();
+        assertArrayEquals(new double[]{1, 2, 3}, read.points, 0);
+        assertArrayEquals(new int[]{0}, read.connectivity);
+        assertArrayEquals(new int[]{0, 1}, read.offsets);
+        assertArrayEquals(new byte[]{1}, read.types);
+    }
+
+    @Test
+    public void read_informationKeys() throws IOException {
+        // as written by ParaView, with child elements in the data arrays, before or after the data
+        String xml = "<?xml version=\"1.0\"?>\n"
+                + "<VTKFile type=\"UnstructuredGrid\" version=\"1.0\" byte_order=\"LittleEndian\">\n"
+                + "  <UnstructuredGrid>\n"
+                + "    <FieldData>\n"
+                + "      <DataArray type=\"Float64\" Name=\"TimeValue\" NumberOfTuples=\"1\" format=\"ascii\">0.5</DataArray>\n"
+                + "    </FieldData>\n"
+                + "    <Piece NumberOfPoints=\"3\" NumberOfCells=\"1\">\n"
+                + "      <PointData Scalars=\"T\">\n"
+                + "        <DataArray type=\"Float64\" Name=\"T\" format=\"ascii\" RangeMin=\"1\" RangeMax=\"3\">\n"
+                + "          <InformationKey name=\"L2_NORM_RANGE\" location=\"vtkDataArray\" length=\"2\">\n"
+                + "            <Value index=\"0\">\n              1\n            </Value>\n"
+                + "            <Value index=\"1\">\n              3\n            </Value>\n"
+                + "          </InformationKey>\n"
+                + "          1 2 3\n"
+                + "        </DataArray>\n"
+                + "        <DataArray type=\"Float64\" Name=\"P\" format=\"ascii\">\n"
+                + "          4 5 6\n"
+                + "          <InformationKey name=\"UNITS\" location=\"vtkDataArray\"/>\n"
+                + "        </DataArray>\n"
+                + "      </PointData>\n"
+                + "      <CellData>\n"
+                + "        <DataArray type=\"Float64\" Name=\"C\" format=\"ascii\">7</DataArray>\n"
+                + "      </CellData>\n"
+                + "      <Points>\n"
+                + "        <DataArray type=\"Float64\" NumberOfComponents=\"3\" format=\"ascii\">\n"
+                + "          <InformationKey name=\"L2_NORM_RANGE\" location=\"vtkDataArray\" length=\"2\">\n"
+                + "            <Value index=\"0\">0</Value><Value index=\"1\">1</Value>\n"
+                + "          </InformationKey>\n"
+                + "          0 0 0 1 0 0 0 1 0\n"
+                + "        </DataArray>\n"
+                + "      </Points>\n"
+                + "      <Cells>\n"
+                + "        <DataArray type=\"Int64\" Name=\"connectivity\" format=\"ascii\">0 1 2</DataArray>\n"
+                + "        <DataArray type=\"Int64\" Name=\"offsets\" format=\"ascii\">3</DataArray>\n"
+                + "        <DataArray type=\"UInt8\" Name=\"types\" format=\"ascii\">5</DataArray>\n"
+                + "      </Cells>\n"
+                + "    </Piece>\n"
+                + "  </UnstructuredGrid>\n"
+                + "</VTKFile>\n";
+        File file = File.createTempFile("unstructuredTestXML_informationKeys", ".vtu");
+        file.deleteOnExit();
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        PackedUnstructuredGrid read = new UnstructuredGridXmlVtkReader(file).readPacked();
+        assertArrayEquals(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, read.points, 0);
+        assertArrayEquals(new int[]{0, 1, 2}, read.connectivity);
+        assertArrayEquals(new byte[]{5}, read.types);
+        assertEquals(2, read.pointScalarData.length);
+        assertArrayEquals(new double[]{1, 2, 3}, read.pointScalarData[0].scalars, 0);
+        assertArrayEquals(new double[]{4, 5, 6}, read.pointScalarData[1].scalars, 0);
+        assertEquals(1, read.cellScalarData.length);
+        assertArrayEquals(new double[]{7}, read.cellScalarData[0].scalars, 0);
+    }
+
+    @Test
+    public void read_float32AndInt64() throws IOException {
+        File file = File.createTempFile("unstructuredTestXML_float32", ".vtu");
+        file.deleteOnExit();
+        // Pressure keeps its double precision
+        PackedUnstructuredGrid expected = new PackedUnstructuredGrid(toFloat(grid.points),
+                grid.connectivity, grid.offsets, grid.types,
+                new ScalarData[]{new ScalarData("Temperature", toFloat(grid.pointScalarData[0].scalars)),
+                        grid.pointScalarData[1]},
+                new PackedVectorData[]{new PackedVectorData("Velocity", toFloat(grid.pointVectorData[0].components))},
+                new ScalarData[]{new ScalarData("speed & <size>", toFloat(grid.cellScalarData[0].scalars))},
+                new PackedVectorData[]{new PackedVectorData("Vorticity", toFloat(grid.cellVectorData[0].components))});
+
+        for (DataFormat format : DataFormat.values()) {
+            for (boolean compressed : new boolean[]{true, false}) {
+                new UnstructuredGridXmlVtKWriter(grid)
+                        .setFormat(format)
+                        .setCompressed(compressed)
+                        .setPointsPrecision(Precision.FLOAT32)
+                        .setDataPrecision(Precision.FLOAT32)
+                        .setDataPrecision("Pressure", Precision.FLOAT64)
+                        .setInt64Connectivity(true)
+                        .write(file);
+                String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+                assertTrue(content.contains("type=\"Int64\""));
+                assertTrue(content.contains("type=\"Float32\""));
+
+                assertGridEquals(expected, new UnstructuredGridXmlVtkReader(file).readPacked());
+            }
+        }
+    }
+
+    @Test
+    public void read_uint64Header() throws IOException {
+        File file = File.createTempFile("unstructuredTestXML_uint64", ".vtu");
+        file.deleteOnExit();
+
+        for (DataFormat format : new DataFormat[]{DataFormat.BINARY, DataFormat.APPENDED}) {
+            for (boolean compressed : new boolean[]{true, false}) {
+                new UnstructuredGridXmlVtKWriter(grid)
+                        .setFormat(format)
+                        .setCompressed(compressed)
+                        .setUInt64Header(true)
+                        .write(file);
+                String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+                assertTrue(content.contains("header_type=\"UInt64\""));
+
+                assertGridEquals(grid, new UnstructuredGridXmlVtkReader(file).readPacked());
+            }
+        }
+    }
+
+    static double[] toFloat(double[] values) {
+        double[] floats = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    static void assertGridEquals(PackedUnstructuredGrid expected, PackedUnstructuredGrid actual) {
+        assertArrayEquals(expected.points, actual.points, 0);
+        assertArrayEquals(expected.connectivity, actual.connectivity);
+        assertArrayEquals(expected.offsets, actual.offsets);
+        assertArrayEquals(expected.types, actual.types);
+        assertScalarDataEquals(expected.pointScalarData, actual.pointScalarData);
+        assertScalarDataEquals(expected.cellScalarData, actual.cellScalarData);
+        assertVectorDataEquals(expected.pointVectorData, actual.pointVectorData);
+        assertVectorDataEquals(expected.cellVectorData, actual.cellVectorData);
+    }
+
+    private static void assertScalarDataEquals(ScalarData[] expected, ScalarData[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].dataName, actual[i].dataName);
+            assertArrayEquals(expected[i].scalars, actual[i].scalars, 0);
+        }
+    }
+
+    private static void assertVectorDataEquals(PackedVectorData[] expected, PackedVectorData[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].dataName, actual[i].dataName);
+            assertArrayEquals(expected[i].components, actual[i].components, 0);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package vatika.writer;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AsciiFormatterTest {
+
+    @Test
+    public void formatLong() {
+        assertEquals("0", format(0L));
+        assertEquals("-42", format(-42L));
+        assertEquals("9223372036854775807", format(Long.MAX_VALUE));
+        assertEquals("-9223372036854775808", format(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void formatDouble() {
+        assertEquals("0.0", format(0.0));
+        assertEquals("-0.0", format(-0.0));
+        assertEquals("NaN", format(Double.NaN));
+        assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY));
+        assertEquals("5.2", format(5.2));
+        assertEquals("126920.01", format(126920.01));
+        assertEquals("0.001", format(1e-3));
+        assertEquals("1.0E-4", format(1e-4));
+        assertEquals("1.0E7", format(1e7));
+        assertEquals("5.0E-324", format(Double.MIN_VALUE));
+        assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+    }
+
+    @Test
+    public void formatDouble_roundTrip() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            String text = format(value);
+            assertEquals(text, value, Double.parseDouble(text), 0);
+            assertTrue(text, text.length() <= Double.toString(value).length());
+        }
+    }
+
+    @Test
+    public void formatFloat() {
+        assertEquals("0.0", format(0.0f));
+        assertEquals("-0.0", format(-0.0f));
+        assertEquals("NaN", format(Float.NaN));
+        assertEquals("0.1", format(0.1f));
+        assertEquals("5.2", format(5.2f));
+        assertEquals("126920.01", format(126920.01f));
+        assertEquals("1.0E-4", format(1e-4f));
+        assertEquals("1.0E7", format(1e7f));
+        assertEquals("1.0E-45", format(Float.MIN_VALUE));
+        assertEquals("-1.1754944E-38", format(-Float.MIN_NORMAL));
+        assertEquals("3.4028235E38", format(Float.MAX_VALUE));
+    }
+
+    @Test
+    public void formatFloat_roundTrip() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            float value = Float.intBitsToFloat(random.nextInt());
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            String text = format(value);
+            assertEquals(text, value, Float.parseFloat(text), 0);
+            assertTrue(text, text.length() <= Float.toString(value).length());
+        }
+    }
+
+    private static String format(long value) {
+        byte[] bytes = new byte[AsciiFormatter.MAX_LONG_LENGTH];
+        int end = AsciiFormatter.format(value, bytes, 0);
+        return new String(bytes, 0, end, StandardCharsets.US_ASCII);
+    }
+
+    private static String format(float value) {
+        byte[] bytes = new byte[AsciiFormatter.MAX_FLOAT_LENGTH];
+        int end = AsciiFormatter.format(value, bytes, 0);
+        return new String(bytes, 0, end, StandardCharsets.US_ASCII);
+    }
+
+    private static String format(double value) {
+        byte[] bytes = new byte[AsciiFormatter.MAX_DOUBLE_LENGTH];
+        int end = AsciiFormatter.format(value, bytes, 0);
+        return new String(bytes, 0, end, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,97 @@
+package vatika.writer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DataArrayEncoderTest {
+
+    @Test
+    public void encode_base64() throws Exception {
+        Random random = new Random(5);
+        try (DataArrayEncoder encoder = new DataArrayEncoder(ByteOrder.LITTLE_ENDIAN, null, 9,
+                DataArrayEncoder.DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool(), false)) {
+            // around the size of the Base64 buffers, with every length of the last group
+            for (int length : new int[]{0, 1, 2, 3, 4, 5, 3 * 16 * 1024 - 5, 3 * 16 * 1024 - 4, 3 * 16 * 1024 - 3,
+                    3 * 16 * 1024 + 1, 100_000}) {
+                byte[] values = new byte[length];
+                random.nextBytes(values);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                DataArray array = DataArray.uint8("values", values);
+                encoder.encode(array, out, new ArrayRecorder("values", array));
+
+                ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, length);
+                String expected = Base64.getEncoder().encodeToString(header.array())
+                        + Base64.getEncoder().encodeToString(values);
+                assertEquals(expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    @Test
+    public void encode_pooledDeflaters() throws Exception {
+        Random random = new Random(6);
+        int blockSize = 1000;
+        try (DataArrayEncoder encoder = new DataArrayEncoder(ByteOrder.LITTLE_ENDIAN, new ZLibCompressor(), 6,
+                blockSize, ForkJoinPool.commonPool(), false)) {
+            // blocks and deflaters reused from one array to the next
+            for (int length : new int[]{12_345, 0, 999, 1000, 54_321}) {
+                byte[] values = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = (byte) random.nextInt(8);
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                DataArray array = DataArray.uint8("values", values);
+                encoder.encode(array, out, new ArrayRecorder("values", array));
+
+                String text = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+                int numberOfBlocks = (length + blockSize - 1) / blockSize;
+                int headerLength = (3 + numberOfBlocks) * 4;
+                int headerTextLength = (headerLength + 2) / 3 * 4;
+                ByteBuffer header = ByteBuffer.wrap(Base64.getDecoder().decode(text.substring(0, headerTextLength)))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                assertEquals(numberOfBlocks, header.getInt());
+                assertEquals(blockSize, header.getInt());
+                assertEquals(length % blockSize, header.getInt());
+                ByteBuffer data = ByteBuffer.wrap(Base64.getDecoder().decode(text.substring(headerTextLength)));
+
+                byte[] decompressed = new byte[length];
+                Inflater inflater = new Inflater();
+                for (int block = 0, offset = 0; block < numberOfBlocks; block++) {
+                    byte[] compressedBlock = new byte[header.getInt()];
+                    data.get(compressedBlock);
+                    inflater.reset();
+                    inflater.setInput(compressedBlock);
+                    offset += inflater.inflate(decompressed, offset, Math.min(blockSize, length - offset));
+                }
+                inflater.end();
+                assertArrayEquals(values, decompressed);
+            }
+        }
+    }
+
+    @Test
+    public void zlibSession_closed() {
+        ZLibCompressor compressor = new ZLibCompressor();
+        byte[] data = new byte[4096];
+        Arrays.fill(data, (byte) 7);
+        Compressor.Session session = compressor.open(1);
+        byte[] compressed = session.compress(data, data.length);
+        session.close();
+
+        // blocks still compressed after the session is closed release their deflater
+        assertArrayEquals(compressed, session.compress(data, data.length));
+        assertArrayEquals(compressed, compressor.compress(data, data.length, 1));
+    }
+}
@@ -0,0 +1,53 @@
+package vatika.writer;
+
+import vatika.data.ImageData;
+import vatika.data.PackedVectorData;
+import vatika.data.ScalarData;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static vatika.writer.DataFormat.ASCII;
+import static vatika.writer.DataFormat.BINARY;
+
+public class ImageDataXmlVtkWriterTest {
+    private final ImageData image = new ImageData(new int[]{3, 2, 1}, new double[]{1, 2, 0}, new double[]{0.5, 1, 1},
+            new ScalarData[]{new ScalarData("Temperature", new double[]{200, 300, 250, 230, 400, 310})}, null,
+            new ScalarData[]{new ScalarData("Pressure", new double[]{1.5, 2.5})},
+            new PackedVectorData[]{new PackedVectorData("Velocity", new double[]{1, 0, 0, 0, 1, 0})});
+
+    @Test
+    public void writeASCII() throws Exception {
+        assertEquals(6, image.numberOfPoints());
+        assertEquals(2, image.numberOfCells());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ImageDataXmlVtkWriter(image).setFormat(ASCII).setCompressed(false).write(out);
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<VTKFile byte_order=\"LittleEndian\" type=\"ImageData\" version=\"0.1\">"
+                + "<ImageData Origin=\"1.0 2.0 0.0\" Spacing=\"0.5 1.0 1.0\" WholeExtent=\"0 2 0 1 0 0\">"
+                + "<Piece Extent=\"0 2 0 1 0 0\">"
+                + "<PointData><DataArray Name=\"Temperature\" format=\"ascii\" type=\"Float64\">"
+                + "200.0 300.0 250.0 230.0 400.0 310.0</DataArray></PointData>"
+                + "<CellData><DataArray Name=\"Pressure\" format=\"ascii\" type=\"Float64\">1.5 2.5</DataArray>"
+                + "<DataArray Name=\"Velocity\" NumberOfComponents=\"3\" format=\"ascii\" type=\"Float64\">"
+                + "1.0 0.0 0.0 0.0 1.0 0.0</DataArray></CellData>"
+                + "</Piece></ImageData></VTKFile>", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeBINARY() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ImageDataXmlVtkWriter(image).setFormat(BINARY).setDataPrecision(Precision.FLOAT32).write(out);
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(text.contains("compressor=\"vtkZLibDataCompressor\""));
+        assertTrue(text.contains("<DataArray Name=\"Temperature\" format=\"binary\" type=\"Float32\">"));
+        assertFalse(text.contains("<Points>"));
+    }
+}
@@ -0,0 +1,103 @@
+package vatika.writer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PackingTest {
+    private static final ByteOrder[] ORDERS = {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN};
+
+    @Test
+    public void putFloats() {
+        Random random = new Random(3);
+        double[] values = new double[101];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 1e6;
+        }
+        for (ByteBuffer buffer : buffers(4 * values.length + 3)) {
+            ByteBuffer expected = ByteBuffer.allocate(buffer.capacity()).order(buffer.order());
+            expected.position(3);
+            buffer.position(3);
+            for (int i = 1; i < 100; i++) {
+                expected.putFloat((float) values[i]);
+            }
+            Packing.putFloats(buffer, values, 1, 99);
+            assertSameBytes(expected, buffer);
+        }
+    }
+
+    @Test
+    public void putLongs() {
+        int[] values = {0, -1, 7, Integer.MAX_VALUE, Integer.MIN_VALUE, 123456789};
+        for (ByteBuffer buffer : buffers(8 * values.length + 5)) {
+            ByteBuffer expected = ByteBuffer.allocate(buffer.capacity()).order(buffer.order());
+            expected.position(5);
+            buffer.position(5);
+            for (int value : values) {
+                expected.putLong(value);
+            }
+            Packing.putLongs(buffer, values, 0, values.length);
+            assertSameBytes(expected, buffer);
+        }
+    }
+
+    @Test
+    public void putUnsignedBytesAsInts() {
+        byte[] values = {0, 1, 12, (byte) 200, (byte) 255};
+        for (ByteBuffer buffer : buffers(4 * values.length)) {
+            ByteBuffer expected = ByteBuffer.allocate(buffer.capacity()).order(buffer.order());
+            for (byte value : values) {
+                expected.putInt(value & 0xFF);
+            }
+            Packing.putUnsignedBytesAsInts(buffer, values, 0, values.length);
+            assertSameBytes(expected, buffer);
+        }
+    }
+
+    @Test
+    public void putBigEndian() {
+        for (int valueBytes : new int[]{1, 4, 8}) {
+            ByteBuffer values = ByteBuffer.allocate(8 * valueBytes);
+            for (int i = 0; i < values.capacity(); i++) {
+                values.put((byte) i);
+            }
+            for (ByteBuffer buffer : buffers(values.capacity())) {
+                ByteBuffer expected = ByteBuffer.allocate(buffer.capacity()).order(buffer.order());
+                values.clear();
+                for (int i = 0; i < 8; i++) {
+                    if (valueBytes == 8) {
+                        expected.putLong(values.getLong());
+                    } else if (valueBytes == 4) {
+                        expected.putInt(values.getInt());
+                    } else {
+                        expected.put(values.get());
+                    }
+                }
+                values.clear();
+                Packing.putBigEndian(buffer, values, valueBytes);
+                assertFalse(values.hasRemaining());
+                assertSameBytes(expected, buffer);
+            }
+        }
+    }
+
+    private static ByteBuffer[] buffers(int capacity) {
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < ORDERS.length; i++) {
+            buffers[2 * i] = ByteBuffer.allocate(capacity).order(ORDERS[i]);
+            buffers[2 * i + 1] = ByteBuffer.allocateDirect(capacity).order(ORDERS[i]);
+        }
+        return buffers;
+    }
+
+    private static void assertSameBytes(ByteBuffer expected, ByteBuffer actual) {
+        assertEquals(expected.position(), actual.position());
+        for (int i = 0; i < expected.capacity(); i++) {
+            assertEquals("byte " + i + " " + actual, expected.get(i), actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package vatika.writer;
+
+import vatika.data.PolyData;
+import vatika.data.ScalarData;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static vatika.writer.DataFormat.ASCII;
+
+public class PolyDataXmlVtkWriterTest {
+
+    @Test
+    public void writeASCII() throws Exception {
+        // a square split into two triangles, with one of its diagonals as a line
+        PolyData polyData = new PolyData(new double[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0},
+                null,
+                new PolyData.Cells(new int[]{0, 2}, new int[]{0, 2}),
+                null,
+                new PolyData.Cells(new int[]{0, 1, 2, 0, 2, 3}, new int[]{0, 3, 6}),
+                null, null, new ScalarData[]{new ScalarData("Id", new double[]{0, 1, 2})}, null);
+        assertEquals(4, polyData.numberOfPoints());
+        assertEquals(3, polyData.numberOfCells());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PolyDataXmlVtkWriter(polyData).setFormat(ASCII).setCompressed(false).write(out);
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<VTKFile byte_order=\"LittleEndian\" type=\"PolyData\" version=\"0.1\"><PolyData>"
+                + "<Piece NumberOfLines=\"1\" NumberOfPoints=\"4\" NumberOfPolys=\"2\" NumberOfStrips=\"0\" "
+                + "NumberOfVerts=\"0\"><PointData/>"
+                + "<CellData><DataArray Name=\"Id\" format=\"ascii\" type=\"Float64\">0.0 1.0 2.0</DataArray>"
+                + "</CellData>"
+                + "<Points><DataArray NumberOfComponents=\"3\" format=\"ascii\" type=\"Float64\">"
+                + "0.0 0.0 0.0 1.0 0.0 0.0 1.0 1.0 0.0 0.0 1.0 0.0</DataArray></Points>"
+                + "<Lines><DataArray Name=\"connectivity\" format=\"ascii\" type=\"Int32\">0 2</DataArray>"
+                + "<DataArray Name=\"offsets\" format=\"ascii\" type=\"Int32\">2</DataArray></Lines>"
+                + "<Polys><DataArray Name=\"connectivity\" format=\"ascii\" type=\"Int32\">0 1 2 0 2 3</DataArray>"
+                + "<DataArray Name=\"offsets\" format=\"ascii\" type=\"Int32\">3 6</DataArray></Polys>"
+                + "</Piece></PolyData></VTKFile>", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,65 @@
+package vatika.writer;
+
+import vatika.data.RectilinearGrid;
+import vatika.data.ScalarData;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static vatika.writer.DataFormat.APPENDED;
+import static vatika.writer.DataFormat.ASCII;
+
+public class RectilinearGridXmlVtkWriterTest {
+    private final RectilinearGrid grid = new RectilinearGrid(new double[]{0, 1, 3}, new double[]{0, 2},
+            new double[]{-1}, new ScalarData[]{new ScalarData("Temperature", new double[]{1, 2, 3, 4, 5, 6})}, null,
+            null, null);
+
+    @Test
+    public void writeASCII() throws Exception {
+        assertEquals(6, grid.numberOfPoints());
+        assertEquals(2, grid.numberOfCells());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RectilinearGridXmlVtkWriter(grid).setFormat(ASCII).setCompressed(false).write(out);
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<VTKFile byte_order=\"LittleEndian\" type=\"RectilinearGrid\" version=\"0.1\">"
+                + "<RectilinearGrid WholeExtent=\"0 2 0 1 0 0\"><Piece Extent=\"0 2 0 1 0 0\">"
+                + "<PointData><DataArray Name=\"Temperature\" format=\"ascii\" type=\"Float64\">"
+                + "1.0 2.0 3.0 4.0 5.0 6.0</DataArray></PointData><CellData/>"
+                + "<Coordinates>"
+                + "<DataArray Name=\"x_coordinates\" format=\"ascii\" type=\"Float64\">0.0 1.0 3.0</DataArray>"
+                + "<DataArray Name=\"y_coordinates\" format=\"ascii\" type=\"Float64\">0.0 2.0</DataArray>"
+                + "<DataArray Name=\"z_coordinates\" format=\"ascii\" type=\"Float64\">-1.0</DataArray>"
+                + "</Coordinates></Piece></RectilinearGrid></VTKFile>",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeAPPENDED() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RectilinearGridXmlVtkWriter(grid).setFormat(APPENDED).setCompressed(false)
+                .setPointsPrecision(Precision.FLOAT32).write(out);
+        byte[] bytes = out.toByteArray();
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+
+        Matcher xCoordinates = Pattern.compile("<DataArray Name=\"x_coordinates\" format=\"appended\" "
+                + "offset=\"(\\d+)\" type=\"Float32\"/>").matcher(text);
+        assertTrue(xCoordinates.find());
+        String appendedDataStart = "<AppendedData encoding=\"raw\">_";
+        ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        data.position(text.indexOf(appendedDataStart) + appendedDataStart.length()
+                + Integer.parseInt(xCoordinates.group(1)));
+        assertEquals(3 * Float.BYTES, data.getInt());
+        assertEquals(0, data.getFloat(), 0);
+        assertEquals(1, data.getFloat(), 0);
+        assertEquals(3, data.getFloat(), 0);
+    }
+}
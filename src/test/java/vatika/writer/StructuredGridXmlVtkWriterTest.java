@@ -0,0 +1,85 @@
+package vatika.writer;
+
+import vatika.data.PackedUnstructuredGrid;
+import vatika.data.ScalarData;
+import vatika.data.StructuredGrid;
+import vatika.data.VTKType;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static vatika.writer.DataFormat.ASCII;
+import static vatika.writer.DataFormat.BINARY;
+
+public class StructuredGridXmlVtkWriterTest {
+
+    @Test
+    public void writeASCII() throws Exception {
+        // a quarter of an annulus, curved along i
+        StructuredGrid grid = new StructuredGrid(new int[]{3, 2, 1}, new double[]{
+                1, 0, 0, 0.7071, 0.7071, 0, 0, 1, 0,
+                2, 0, 0, 1.4142, 1.4142, 0, 0, 2, 0
+        }, null, null, new ScalarData[]{new ScalarData("Pressure", new double[]{1, 2})}, null);
+        assertEquals(6, grid.numberOfPoints());
+        assertEquals(2, grid.numberOfCells());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StructuredGridXmlVtkWriter(grid).setFormat(ASCII).setCompressed(false).write(out);
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<VTKFile byte_order=\"LittleEndian\" type=\"StructuredGrid\" version=\"0.1\">"
+                + "<StructuredGrid WholeExtent=\"0 2 0 1 0 0\"><Piece Extent=\"0 2 0 1 0 0\">"
+                + "<PointData/><CellData><DataArray Name=\"Pressure\" format=\"ascii\" type=\"Float64\">"
+                + "1.0 2.0</DataArray></CellData>"
+                + "<Points><DataArray NumberOfComponents=\"3\" format=\"ascii\" type=\"Float64\">"
+                + "1.0 0.0 0.0 0.7071 0.7071 0.0 0.0 1.0 0.0 2.0 0.0 0.0 1.4142 1.4142 0.0 0.0 2.0 0.0"
+                + "</DataArray></Points></Piece></StructuredGrid></VTKFile>",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeBINARY_smallerThanUnstructured() throws Exception {
+        int n = 20;
+        int[] dimensions = {n + 1, n + 1, n + 1};
+        double[] points = new double[3 * (n + 1) * (n + 1) * (n + 1)];
+        for (int k = 0, p = 0; k <= n; k++) {
+            for (int j = 0; j <= n; j++) {
+                for (int i = 0; i <= n; i++, p += 3) {
+                    points[p] = i + 0.1 * Math.sin(j);
+                    points[p + 1] = j + 0.1 * Math.sin(k);
+                    points[p + 2] = k + 0.1 * Math.sin(i);
+                }
+            }
+        }
+        int[] connectivity = new int[8 * n * n * n];
+        int[] offsets = new int[n * n * n + 1];
+        byte[] types = new byte[n * n * n];
+        int c = 0;
+        for (int k = 0; k < n; k++) {
+            for (int j = 0; j < n; j++) {
+                for (int i = 0; i < n; i++, c++) {
+                    int p = (k * (n + 1) + j) * (n + 1) + i;
+                    int[] corners = {p, p + 1, p + n + 2, p + n + 1};
+                    for (int v = 0; v < 4; v++) {
+                        connectivity[8 * c + v] = corners[v];
+                        connectivity[8 * c + 4 + v] = corners[v] + (n + 1) * (n + 1);
+                    }
+                    offsets[c + 1] = offsets[c] + 8;
+                    types[c] = (byte) VTKType.VTK_HEXAHEDRON.ID;
+                }
+            }
+        }
+
+        ByteArrayOutputStream structured = new ByteArrayOutputStream();
+        new StructuredGridXmlVtkWriter(new StructuredGrid(dimensions, points, null, null, null, null))
+                .setFormat(BINARY).write(structured);
+        ByteArrayOutputStream unstructured = new ByteArrayOutputStream();
+        new UnstructuredGridXmlVtKWriter(new PackedUnstructuredGrid(points, connectivity, offsets, types,
+                null, null, null, null)).setFormat(BINARY).write(unstructured);
+
+        assertTrue(structured.size() + " < " + unstructured.size(), structured.size() < unstructured.size());
+    }
+}
@@ -0,0 +1,160 @@
+package vatika.writer;
+
+import vatika.data.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static vatika.data.VTKType.VTK_TRIANGLE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnstructuredGridAsyncWriterTest {
+
+    private PackedUnstructuredGrid grid() {
+        return new PackedUnstructuredGrid(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0},
+                new int[]{0, 1, 2}, new int[]{0, 3}, new byte[]{(byte) VTK_TRIANGLE.ID},
+                new ScalarData[]{new ScalarData("T", new double[]{1, 2, 3})}, null,
+                null, new PackedVectorData[]{new PackedVectorData("V", new double[]{4, 5, 6})});
+    }
+
+    @Test
+    public void submit_snapshot() throws Exception {
+        PackedUnstructuredGrid grid = grid();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new UnstructuredGridXmlVtKWriter(grid).write(expected);
+
+        CountDownLatch changed = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> written;
+        try (UnstructuredGridAsyncWriter asyncWriter = new UnstructuredGridAsyncWriter(1, 1)) {
+            written = asyncWriter.submit(grid, snapshot -> {
+                await(changed);
+                new UnstructuredGridXmlVtKWriter(snapshot).write(out);
+            });
+            // the write must see the grid as it was submitted
+            grid.pointScalarData[0].scalars[0] = -1;
+            grid.cellVectorData[0].components[2] = -1;
+            grid.points[0] = -1;
+            changed.countDown();
+        }
+
+        assertTrue(written.isDone());
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void submit_shareGeometry() throws Exception {
+        PackedUnstructuredGrid grid = grid();
+        List<PackedUnstructuredGrid> snapshots = new ArrayList<>();
+        try (UnstructuredGridAsyncWriter asyncWriter = new UnstructuredGridAsyncWriter(1, 1)
+                .setCopyGeometry(false)) {
+            asyncWriter.submit(grid, snapshots::add).get();
+        }
+
+        assertTrue(grid.points == snapshots.get(0).points);
+        assertTrue(grid.connectivity == snapshots.get(0).connectivity);
+        assertFalse(grid.pointScalarData[0].scalars == snapshots.get(0).pointScalarData[0].scalars);
+    }
+
+    @Test
+    public void submit_backPressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger submitted = new AtomicInteger();
+        try (UnstructuredGridAsyncWriter asyncWriter = new UnstructuredGridAsyncWriter(1, 2)) {
+            Thread submitter = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 3; i++) {
+                        asyncWriter.submit(grid(), snapshot -> await(release));
+                        submitted.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            submitter.start();
+
+            // the third write waits for one of the first two to be done
+            submitter.join(200);
+            assertEquals(2, submitted.get());
+            release.countDown();
+            submitter.join(TimeUnit.SECONDS.toMillis(10));
+            assertEquals(3, submitted.get());
+        }
+    }
+
+    @Test
+    public void submit_failure() throws Exception {
+        try (UnstructuredGridAsyncWriter asyncWriter = new UnstructuredGridAsyncWriter(2, 4)) {
+            CompletableFuture<Void> written = asyncWriter.submit(grid(), snapshot -> {
+                throw new IOException("disk full");
+            });
+            try {
+                written.get();
+                fail("Expected the write to fail");
+            } catch (ExecutionException e) {
+                assertEquals("disk full", e.getCause().getMessage());
+            }
+            // a failed write releases its place
+            for (int i = 0; i < 8; i++) {
+                asyncWriter.submit(grid(), snapshot -> {
+                }).get();
+            }
+        }
+    }
+
+    @Test
+    public void submit_copyFailure() throws Exception {
+        PackedUnstructuredGrid broken = new PackedUnstructuredGrid(null, null, null, null, null, null, null, null);
+        try (UnstructuredGridAsyncWriter asyncWriter = new UnstructuredGridAsyncWriter(1, 1)) {
+            try {
+                asyncWriter.submit(broken, snapshot -> {
+                });
+                fail("Expected the copy to fail");
+            } catch (NullPointerException e) {
+                // expected
+            }
+            // a failed copy releases its place
+            asyncWriter.submit(grid(), snapshot -> {
+            }).get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void submit_unstructuredGrid() throws Exception {
+        UnstructuredGrid grid = grid().toUnstructuredGrid();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new UnstructuredGridXmlVtKWriter(grid).write(expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (UnstructuredGridAsyncWriter asyncWriter = new UnstructuredGridAsyncWriter(1, 1)) {
+            PackedUnstructuredGrid[] snapshots = new PackedUnstructuredGrid[1];
+            asyncWriter.submit(grid, snapshot -> {
+                snapshots[0] = snapshot;
+                new UnstructuredGridXmlVtKWriter(snapshot).write(out);
+            }).get();
+            assertFalse(grid.pointScalarData[0].scalars == snapshots[0].pointScalarData[0].scalars);
+        }
+
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
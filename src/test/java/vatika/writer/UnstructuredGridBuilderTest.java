@@ -0,0 +1,182 @@
+package vatika.writer;
+
+import vatika.data.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static vatika.data.VTKType.VTK_HEXAHEDRON;
+import static vatika.data.VTKType.VTK_TETRA;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class UnstructuredGridBuilderTest {
+    // large enough for the points and the connectivity to take several chunks
+    private static final int N = 40;
+
+    @Test
+    public void write_sameAsPackedGrid() throws IOException {
+        File directory = Files.createTempDirectory("builder").toFile();
+        directory.deleteOnExit();
+        PackedUnstructuredGrid expected = hexahedra();
+
+        for (long memoryBudget : new long[]{0, UnstructuredGridBuilder.DEFAULT_MEMORY_BUDGET}) {
+            try (UnstructuredGridBuilder builder = new UnstructuredGridBuilder(memoryBudget, directory)) {
+                build(builder);
+
+                for (DataFormat format : DataFormat.values()) {
+                    assertSameContent(
+                            file -> new UnstructuredGridXmlVtKWriter(expected).setFormat(format)
+                                    .setCompressionLevel(1).write(file),
+                            file -> builder.xmlWriter().setFormat(format).setCompressionLevel(1).write(file));
+                    assertSameContent(
+                            file -> new UnstructuredGridXmlVtKWriter(expected).setFormat(format)
+                                    .setCompressionLevel(1).setInt64Connectivity(true).write(file),
+                            file -> builder.xmlWriter().setFormat(format)
+                                    .setCompressionLevel(1).setInt64Connectivity(true).write(file));
+                }
+                for (DataFormat format : new DataFormat[]{DataFormat.ASCII, DataFormat.BINARY}) {
+                    assertSameContent(
+                            file -> new UnstructuredGridLegacyVtkWriter(expected, "grid").setDataFormat(format)
+                                    .write(file),
+                            file -> builder.legacyWriter("grid").setDataFormat(format).write(file));
+                    assertSameContent(
+                            file -> new UnstructuredGridLegacyVtkWriter(expected, "grid").setDataFormat(format)
+                                    .setInt64Connectivity(true).write(file),
+                            file -> builder.legacyWriter("grid").setDataFormat(format)
+                                    .setInt64Connectivity(true).write(file));
+                }
+            }
+            assertEquals(0, directory.list().length);
+        }
+    }
+
+    @Test
+    public void build_invalid() throws IOException {
+        try (UnstructuredGridBuilder builder = new UnstructuredGridBuilder()) {
+            builder.addPoint(0, 0, 0);
+            builder.addCell(VTK_TETRA, 0, 1, 2, 3);
+            try {
+                builder.xmlWriter();
+                fail();
+            } catch (IllegalStateException expected) {
+                // points 1 to 3 are missing
+            }
+        }
+
+        try (UnstructuredGridBuilder builder = new UnstructuredGridBuilder()) {
+            int velocity = builder.addPointField("Velocity", 3);
+            builder.addPoint(0, 0, 0);
+            builder.addPoint(1, 0, 0);
+            builder.addField(velocity, 1, 2, 3);
+            try {
+                builder.legacyWriter("grid");
+                fail();
+            } catch (IllegalStateException expected) {
+                // the second point has no velocity
+            }
+            try {
+                builder.addField(velocity, 1);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // a scalar value for a vector field
+            }
+        }
+    }
+
+    private interface FileWrite {
+        void write(File file) throws IOException;
+    }
+
+    private static void assertSameContent(FileWrite expected, FileWrite actual) throws IOException {
+        File expectedFile = File.createTempFile("expected", ".vtk");
+        expectedFile.deleteOnExit();
+        File actualFile = File.createTempFile("actual", ".vtk");
+        actualFile.deleteOnExit();
+        expected.write(expectedFile);
+        actual.write(actualFile);
+        assertArrayEquals(Files.readAllBytes(expectedFile.toPath()), Files.readAllBytes(actualFile.toPath()));
+    }
+
+    private static int pointIndex(int i, int j, int k) {
+        return (k * (N + 1) + j) * (N + 1) + i;
+    }
+
+    private static void build(UnstructuredGridBuilder builder) throws IOException {
+        int temperature = builder.addPointField("Temperature", 1);
+        int velocity = builder.addPointField("Velocity", 3);
+        int pressure = builder.addCellField("Pressure", 1);
+        for (int k = 0; k <= N; k++) {
+            for (int j = 0; j <= N; j++) {
+                for (int i = 0; i <= N; i++) {
+                    builder.addPoint(i, j * 0.5, k * 0.25);
+                    builder.addField(temperature, i + j + k);
+                    builder.addField(velocity, i, -j, k / 3.0);
+                }
+            }
+        }
+        for (int k = 0; k < N; k++) {
+            for (int j = 0; j < N; j++) {
+                for (int i = 0; i < N; i++) {
+                    builder.addCell(VTK_HEXAHEDRON, hexahedron(i, j, k));
+                    builder.addField(pressure, i * j * 0.1 - k);
+                }
+            }
+        }
+    }
+
+    private static int[] hexahedron(int i, int j, int k) {
+        return new int[]{
+                pointIndex(i, j, k), pointIndex(i + 1, j, k), pointIndex(i + 1, j + 1, k), pointIndex(i, j + 1, k),
+                pointIndex(i, j, k + 1), pointIndex(i + 1, j, k + 1), pointIndex(i + 1, j + 1, k + 1),
+                pointIndex(i, j + 1, k + 1)};
+    }
+
+    private static PackedUnstructuredGrid hexahedra() {
+        int numberOfPoints = (N + 1) * (N + 1) * (N + 1);
+        int numberOfCells = N * N * N;
+        double[] points = new double[3 * numberOfPoints];
+        double[] temperature = new double[numberOfPoints];
+        double[] velocity = new double[3 * numberOfPoints];
+        for (int k = 0; k <= N; k++) {
+            for (int j = 0; j <= N; j++) {
+                for (int i = 0; i <= N; i++) {
+                    int p = pointIndex(i, j, k);
+                    points[3 * p] = i;
+                    points[3 * p + 1] = j * 0.5;
+                    points[3 * p + 2] = k * 0.25;
+                    temperature[p] = i + j + k;
+                    velocity[3 * p] = i;
+                    velocity[3 * p + 1] = -j;
+                    velocity[3 * p + 2] = k / 3.0;
+                }
+            }
+        }
+
+        int[] connectivity = new int[8 * numberOfCells];
+        int[] offsets = new int[numberOfCells + 1];
+        byte[] types = new byte[numberOfCells];
+        double[] pressure = new double[numberOfCells];
+        int c = 0;
+        for (int k = 0; k < N; k++) {
+            for (int j = 0; j < N; j++) {
+                for (int i = 0; i < N; i++) {
+                    System.arraycopy(hexahedron(i, j, k), 0, connectivity, 8 * c, 8);
+                    offsets[c + 1] = 8 * (c + 1);
+                    types[c] = (byte) VTK_HEXAHEDRON.ID;
+                    pressure[c] = i * j * 0.1 - k;
+                    c++;
+                }
+            }
+        }
+
+        return new PackedUnstructuredGrid(points, connectivity, offsets, types,
+                new ScalarData[]{new ScalarData("Temperature", temperature)},
+                new PackedVectorData[]{new PackedVectorData("Velocity", velocity)},
+                new ScalarData[]{new ScalarData("Pressure", pressure)},
+                null);
+    }
+}
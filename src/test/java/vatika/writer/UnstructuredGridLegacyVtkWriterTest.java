@@ -3,6 +3,12 @@ package vatika.writer;
 import vatika.data.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 import static vatika.data.VTKType.VTK_QUAD;
@@ -10,8 +16,11 @@ import static vatika.data.VTKType.VTK_TRIANGLE;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static vatika.writer.DataFormat.ASCII;
+import static vatika.writer.DataFormat.BINARY;
 
 public class UnstructuredGridLegacyVtkWriterTest {
 
@@ -303,4 +312,210 @@ public class UnstructuredGridLegacyVtkWriterTest {
         }
         return str.toString();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void write_nameLongerThanBuffer() throws IOException {
+        char[] name = new char[3 * 1024 * 1024 / 2];
+        Arrays.fill(name, 'n');
+        ScalarData[] longNamed = {new ScalarData(new String(name), new double[]{200, 300, 250, 230, 400})};
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells, longNamed, null, null, null);
+
+        for (DataFormat format : new DataFormat[]{ASCII, BINARY}) {
+            File file = File.createTempFile("unstructuredTestLongName", ".vtk");
+            file.deleteOnExit();
+            new UnstructuredGridLegacyVtkWriter(grid, "long name").setDataFormat(format).write(file);
+
+            String written = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+            assertTrue(written.contains("SCALARS " + new String(name) + " double 1\nLOOKUP_TABLE default\n"));
+        }
+    }
+
+    @Test
+    public void writePacked() throws IOException {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells,
+                pointScalarData, pointVectorData,
+                cellScalarData, cellVectorData);
+        PackedUnstructuredGrid packedGrid = PackedUnstructuredGrid.of(grid);
+        String title = "Test data for packed unstructured grid";
+
+        for (DataFormat format : new DataFormat[]{ASCII, BINARY}) {
+            File expected = File.createTempFile("unstructuredTest", ".vtk");
+            File actual = File.createTempFile("unstructuredTestPacked", ".vtk");
+            expected.deleteOnExit();
+            actual.deleteOnExit();
+
+            new UnstructuredGridLegacyVtkWriter(grid, title).setDataFormat(format).write(expected);
+            new UnstructuredGridLegacyVtkWriter(packedGrid, title).setDataFormat(format).write(actual);
+
+            assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+        }
+    }
+
+    @Test
+    public void writeOffHeap() throws IOException {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells,
+                pointScalarData, pointVectorData,
+                cellScalarData, cellVectorData);
+        String title = "Test data for off-heap grids";
+
+        try (OffHeapStorage storage = OffHeapStorage.mapped(null)) {
+            OffHeapUnstructuredGrid offHeapGrid = OffHeapUnstructuredGrid.of(PackedUnstructuredGrid.of(grid), storage);
+            for (DataFormat format : new DataFormat[]{ASCII, BINARY}) {
+                for (boolean int64 : new boolean[]{false, true}) {
+                    File expected = File.createTempFile("unstructuredTest", ".vtk");
+                    File actual = File.createTempFile("unstructuredTestOffHeap", ".vtk");
+                    expected.deleteOnExit();
+                    actual.deleteOnExit();
+
+                    new UnstructuredGridLegacyVtkWriter(grid, title).setDataFormat(format)
+                            .setInt64Connectivity(int64).write(expected);
+                    new UnstructuredGridLegacyVtkWriter(offHeapGrid, title).setDataFormat(format)
+                            .setInt64Connectivity(int64).write(actual);
+
+                    assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void writeView() throws IOException {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells,
+                pointScalarData, pointVectorData,
+                cellScalarData, cellVectorData);
+        String title = "Test data for grid views";
+
+        for (DataFormat format : new DataFormat[]{ASCII, BINARY}) {
+            for (boolean int64 : new boolean[]{false, true}) {
+                File expected = File.createTempFile("unstructuredTest", ".vtk");
+                expected.deleteOnExit();
+                new UnstructuredGridLegacyVtkWriter(grid, title).setDataFormat(format).setInt64Connectivity(int64)
+                        .write(expected);
+
+                for (UnstructuredGridView view : new UnstructuredGridView[]{grid, PackedUnstructuredGrid.of(grid)}) {
+                    File actual = File.createTempFile("unstructuredTestView", ".vtk");
+                    actual.deleteOnExit();
+                    new UnstructuredGridLegacyVtkWriter(view, title).setDataFormat(format)
+                            .setInt64Connectivity(int64).write(actual);
+                    assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void writeBINARY_cellLargerThanBuffer() throws IOException {
+        // 300K point indices take more than the 1 MiB buffer of the writer
+        int numberOfPoints = 300_000;
+        Point[] manyPoints = new Point[numberOfPoints];
+        int[] connectivity = new int[numberOfPoints];
+        for (int i = 0; i < numberOfPoints; i++) {
+            manyPoints[i] = new Point(i, 0, 0);
+            connectivity[i] = numberOfPoints - 1 - i;
+        }
+        UnstructuredGrid grid = new UnstructuredGrid(manyPoints,
+                new Cell[]{new Cell(connectivity, VTKType.VTK_POLY_VERTEX)}, null, null, null, null);
+
+        List<byte[]> files = new ArrayList<>();
+        try (OffHeapStorage storage = OffHeapStorage.direct()) {
+            for (UnstructuredGridLegacyVtkWriter writer : new UnstructuredGridLegacyVtkWriter[]{
+                    new UnstructuredGridLegacyVtkWriter(grid, "Large cell"),
+                    new UnstructuredGridLegacyVtkWriter(PackedUnstructuredGrid.of(grid), "Large cell"),
+                    new UnstructuredGridLegacyVtkWriter(
+                            OffHeapUnstructuredGrid.of(PackedUnstructuredGrid.of(grid), storage), "Large cell")}) {
+                File file = File.createTempFile("unstructuredTestLargeCell", ".vtk");
+                file.deleteOnExit();
+                writer.setDataFormat(BINARY).write(file);
+                files.add(Files.readAllBytes(file.toPath()));
+            }
+        }
+
+        byte[] bytes = files.get(0);
+        String header = String.format("CELLS 1 %d\n", numberOfPoints + 1);
+        int start = new String(bytes, StandardCharsets.US_ASCII).indexOf(header) + header.length();
+        ByteBuffer cells = ByteBuffer.wrap(bytes, start, Integer.BYTES * (numberOfPoints + 1));
+        assertEquals(numberOfPoints, cells.getInt());
+        for (int i = 0; i < numberOfPoints; i++) {
+            assertEquals(connectivity[i], cells.getInt());
+        }
+        assertArrayEquals(bytes, files.get(1));
+        assertArrayEquals(bytes, files.get(2));
+    }
+
+    @Test
+    public void write_listener() throws IOException {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells,
+                pointScalarData, pointVectorData,
+                cellScalarData, cellVectorData);
+        File file = File.createTempFile("unstructuredTest_listener", ".vtk");
+        file.deleteOnExit();
+
+        for (DataFormat format : new DataFormat[]{ASCII, BINARY}) {
+            WriteMetrics[] written = new WriteMetrics[1];
+            new UnstructuredGridLegacyVtkWriter(grid, "listener").setDataFormat(format)
+                    .setListener(metrics -> written[0] = metrics)
+                    .write(file);
+
+            WriteMetrics metrics = written[0];
+            assertEquals(file, metrics.file);
+            assertEquals(file.length(), metrics.writtenBytes);
+            String[] names = {"Points", "Cells", "Cell types", "Temperature", "Pressure", "Velocity",
+                    "speed", "Vorticity", "Acceleration"};
+            assertEquals(names.length, metrics.arrays.size());
+            long arraysBytes = 0;
+            for (int i = 0; i < names.length; i++) {
+                DataArrayMetrics array = metrics.arrays.get(i);
+                assertEquals(names[i], array.name);
+                assertEquals(array.rawBytes, array.compressedBytes);
+                if (format == BINARY) {
+                    assertEquals(array.rawBytes, array.writtenBytes);
+                }
+                arraysBytes += array.writtenBytes;
+            }
+            assertEquals(5 * 3 * Double.BYTES, metrics.arrays.get(0).rawBytes);
+            assertEquals((2 + 3 + 4) * Integer.BYTES, metrics.arrays.get(1).rawBytes);
+            assertTrue(arraysBytes < metrics.writtenBytes);
+        }
+    }
+
+    @Test
+    public void writeASCII_float32AndInt64() throws IOException {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells, pointScalarData, null, null, cellVectorData);
+        File file = File.createTempFile("unstructuredTest_float32", ".vtk");
+        file.deleteOnExit();
+        new UnstructuredGridLegacyVtkWriter(grid, "float32")
+                .setDataFormat(ASCII)
+                .setPointsPrecision(Precision.FLOAT32)
+                .setDataPrecision(Precision.FLOAT32)
+                .setDataPrecision("Pressure", Precision.FLOAT64)
+                .setInt64Connectivity(true)
+                .write(file);
+
+        String expected = "# vtk DataFile Version 5.1\n"
+                + "float32\n"
+                + "ASCII\n"
+                + "DATASET UNSTRUCTURED_GRID\n"
+                + "POINTS 5 float\n"
+                + "2.0 3.0 0.0\n5.0 3.0 0.0\n6.0 4.0 0.0\n5.5 5.2 0.0\n4.0 5.0 0.0\n"
+                + "CELLS 3 7\n"
+                + "OFFSETS vtktypeint64\n"
+                + "0\n3\n7\n"
+                + "CONNECTIVITY vtktypeint64\n"
+                + "0\n1\n4\n1\n2\n3\n4\n"
+                + "CELL_TYPES 2\n"
+                + VTK_TRIANGLE.ID + "\n" + VTK_QUAD.ID + "\n"
+                + "POINT_DATA 5\n"
+                + "SCALARS Temperature float 1\n"
+                + "LOOKUP_TABLE default\n"
+                + "200.0 300.0 250.0 230.0 400.0\n"
+                + "SCALARS Pressure double 1\n"
+                + "LOOKUP_TABLE default\n"
+                + "126920.01 133028.18 83980.67 85415.18 62601.26\n"
+                + "CELL_DATA 2\n"
+                + "VECTORS Vorticity float\n"
+                + "-6.23 8.87 -6.28\n15.79 -14.54 -2.3\n"
+                + "VECTORS Acceleration float\n"
+                + "0.34 -1.7 0.72\n0.33 -1.55 -0.0\n";
+        assertEquals(expected, new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+    }
+}
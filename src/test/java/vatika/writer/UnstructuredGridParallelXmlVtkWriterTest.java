@@ -0,0 +1,152 @@
+package vatika.writer;
+
+import vatika.data.*;
+import vatika.reader.UnstructuredGridXmlVtkReader;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static vatika.data.VTKType.VTK_QUAD;
+import static vatika.data.VTKType.VTK_TRIANGLE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static vatika.writer.DataFormat.APPENDED;
+
+public class UnstructuredGridParallelXmlVtkWriterTest {
+
+    private Point[] points = {
+            new Point(2, 3, 0.0),
+            new Point(5, 3, 0),
+            new Point(6, 4, 0),
+            new Point(5.5, 5.2, 0),
+            new Point(4, 5, 0)
+    };
+    private Cell[] cells = {
+            new Cell(new int[]{0, 1, 4}, VTK_TRIANGLE),
+            new Cell(new int[]{1, 2, 3, 4}, VTK_QUAD),
+            new Cell(new int[]{3, 4, 0}, VTK_TRIANGLE)
+    };
+    private ScalarData[] pointScalarData = {
+            new ScalarData("Temperature", new double[]{200, 300, 250, 230, 400})
+    };
+    private VectorData[] cellVectorData = {
+            new VectorData("Vorticity", new Vector[]{
+                    new Vector(-6.23, 8.87, -6.28),
+                    new Vector(15.79, -14.54, -2.30),
+                    new Vector(0.34, -1.70, 0.72)
+            })
+    };
+    private PackedUnstructuredGrid grid = PackedUnstructuredGrid.of(
+            new UnstructuredGrid(points, cells, pointScalarData, null, null, cellVectorData));
+
+    @Test
+    public void write() throws Exception {
+        File directory = Files.createTempDirectory("parallel").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, "grid.pvtu");
+        file.deleteOnExit();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<File> pieceFiles = new UnstructuredGridParallelXmlVtkWriter(grid, 3)
+                    .setFormat(APPENDED)
+                    .setExecutor(executor)
+                    .write(file);
+
+            assertEquals(3, pieceFiles.size());
+            for (int i = 0; i < pieceFiles.size(); i++) {
+                pieceFiles.get(i).deleteOnExit();
+                assertEquals("grid_" + i + ".vtu", pieceFiles.get(i).getName());
+                PackedUnstructuredGrid expected = grid.piece(i, i + 1);
+                PackedUnstructuredGrid piece = new UnstructuredGridXmlVtkReader(pieceFiles.get(i)).readPacked();
+                assertArrayEquals(expected.points, piece.points, 0);
+                assertArrayEquals(expected.connectivity, piece.connectivity);
+                assertArrayEquals(expected.offsets, piece.offsets);
+                assertArrayEquals(expected.types, piece.types);
+                assertArrayEquals(expected.pointScalarData[0].scalars, piece.pointScalarData[0].scalars, 0);
+                assertArrayEquals(expected.cellVectorData[0].components, piece.cellVectorData[0].components, 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        String expected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<VTKFile byte_order=\"LittleEndian\" type=\"PUnstructuredGrid\" version=\"0.1\">"
+                + "<PUnstructuredGrid GhostLevel=\"0\">"
+                + "<PPointData><PDataArray Name=\"Temperature\" type=\"Float64\"/></PPointData>"
+                + "<PCellData><PDataArray Name=\"Vorticity\" NumberOfComponents=\"3\" type=\"Float64\"/></PCellData>"
+                + "<PPoints><PDataArray NumberOfComponents=\"3\" type=\"Float64\"/></PPoints>"
+                + "<Piece Source=\"grid_0.vtu\"/><Piece Source=\"grid_1.vtu\"/><Piece Source=\"grid_2.vtu\"/>"
+                + "</PUnstructuredGrid></VTKFile>";
+        assertEquals(expected, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void write_pieces() throws Exception {
+        File directory = Files.createTempDirectory("parallel").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, "pieces.pvtu");
+        file.deleteOnExit();
+        PackedUnstructuredGrid[] pieces = {grid.piece(0, 2), grid.piece(2, 3)};
+
+        List<File> pieceFiles = new UnstructuredGridParallelXmlVtkWriter(pieces).write(file);
+
+        assertEquals(2, pieceFiles.size());
+        for (int i = 0; i < pieces.length; i++) {
+            pieceFiles.get(i).deleteOnExit();
+            PackedUnstructuredGrid piece = new UnstructuredGridXmlVtkReader(pieceFiles.get(i)).readPacked();
+            assertArrayEquals(pieces[i].connectivity, piece.connectivity);
+            assertArrayEquals(pieces[i].points, piece.points, 0);
+        }
+    }
+
+    @Test
+    public void write_settings() throws Exception {
+        File directory = Files.createTempDirectory("parallel").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, "settings.pvtu");
+        file.deleteOnExit();
+
+        List<File> pieceFiles = new UnstructuredGridParallelXmlVtkWriter(new PackedUnstructuredGrid[]{grid})
+                .setFormat(APPENDED)
+                .setByteOrder(BIG_ENDIAN)
+                .setCompressionLevel(1)
+                .setBlockSize(16)
+                .setPointsPrecision(Precision.FLOAT32)
+                .setDataPrecision("Temperature", Precision.FLOAT32)
+                .setInt64Connectivity(true)
+                .setUInt64Header(true)
+                .write(file);
+        pieceFiles.get(0).deleteOnExit();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new UnstructuredGridXmlVtKWriter(grid)
+                .setFormat(APPENDED)
+                .setByteOrder(BIG_ENDIAN)
+                .setCompressionLevel(1)
+                .setBlockSize(16)
+                .setPointsPrecision(Precision.FLOAT32)
+                .setDataPrecision("Temperature", Precision.FLOAT32)
+                .setInt64Connectivity(true)
+                .setUInt64Header(true)
+                .write(expected);
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(pieceFiles.get(0).toPath()));
+        String parallel = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(parallel.contains("byte_order=\"BigEndian\""));
+        assertTrue(parallel.contains("<PDataArray Name=\"Temperature\" type=\"Float32\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void write_differentPieces() {
+        PackedUnstructuredGrid other = new PackedUnstructuredGrid(grid.points, grid.connectivity, grid.offsets,
+                grid.types, null, null, null, null);
+        new UnstructuredGridParallelXmlVtkWriter(new PackedUnstructuredGrid[]{grid, other});
+    }
+}
@@ -0,0 +1,103 @@
+package vatika.writer;
+
+import vatika.data.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static vatika.data.VTKType.VTK_QUAD;
+import static vatika.data.VTKType.VTK_TRIANGLE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static vatika.writer.DataFormat.APPENDED;
+import static vatika.writer.DataFormat.ASCII;
+import static vatika.writer.DataFormat.BINARY;
+
+public class UnstructuredGridTimeSeriesWriterTest {
+
+    private Point[] points = {
+            new Point(2, 3, 0.0),
+            new Point(5, 3, 0),
+            new Point(6, 4, 0),
+            new Point(5.5, 5.2, 0),
+            new Point(4, 5, 0)
+    };
+    private Cell[] cells = {
+            new Cell(new int[]{0, 1, 4}, VTK_TRIANGLE),
+            new Cell(new int[]{1, 2, 3, 4}, VTK_QUAD)
+    };
+
+    @Test
+    public void writeStep() throws Exception {
+        for (DataFormat format : new DataFormat[]{ASCII, BINARY, APPENDED}) {
+            for (boolean compressed : new boolean[]{false, true}) {
+                File directory = Files.createTempDirectory("timeSeries").toFile();
+                File pvdFile = new File(directory, "series.pvd");
+                UnstructuredGridXmlVtKWriter writer = new UnstructuredGridXmlVtKWriter(
+                        new UnstructuredGrid(points, cells, null, null, null, null))
+                        .setFormat(format)
+                        .setCompressed(compressed);
+                UnstructuredGridTimeSeriesWriter timeSeriesWriter = new UnstructuredGridTimeSeriesWriter(writer, pvdFile);
+
+                for (int step = 0; step < 3; step++) {
+                    ScalarData[] pointScalarData = {
+                            new ScalarData("Temperature", new double[]{200 + step, 300, 250, 230, 400})
+                    };
+                    VectorData[] cellVectorData = {
+                            new VectorData("Vorticity", new Vector[]{
+                                    new Vector(-6.23, 8.87, step),
+                                    new Vector(15.79, -14.54, -2.30)
+                            })
+                    };
+                    File stepFile = timeSeriesWriter.writeStep(0.5 * step, pointScalarData, null, null, cellVectorData);
+                    stepFile.deleteOnExit();
+                    assertEquals(String.format("series_%06d.vtu", step), stepFile.getName());
+
+                    // the same file as the grid with the data of the step written on its own
+                    File expectedFile = new File(directory, "expected.vtu");
+                    expectedFile.deleteOnExit();
+                    new UnstructuredGridXmlVtKWriter(
+                            new UnstructuredGrid(points, cells, pointScalarData, null, null, cellVectorData))
+                            .setFormat(format)
+                            .setCompressed(compressed)
+                            .write(expectedFile);
+                    assertArrayEquals(format + " " + compressed + " step " + step,
+                            Files.readAllBytes(expectedFile.toPath()), Files.readAllBytes(stepFile.toPath()));
+                }
+
+                pvdFile.deleteOnExit();
+                directory.deleteOnExit();
+                String expectedPvd = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<VTKFile byte_order=\"LittleEndian\" type=\"Collection\" version=\"0.1\"><Collection>"
+                        + "<DataSet file=\"series_000000.vtu\" group=\"\" part=\"0\" timestep=\"0.0\"/>"
+                        + "<DataSet file=\"series_000001.vtu\" group=\"\" part=\"0\" timestep=\"0.5\"/>"
+                        + "<DataSet file=\"series_000002.vtu\" group=\"\" part=\"0\" timestep=\"1.0\"/>"
+                        + "</Collection></VTKFile>";
+                assertEquals(expectedPvd, new String(Files.readAllBytes(pvdFile.toPath()), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void writeStep_settingsChanged() throws Exception {
+        File directory = Files.createTempDirectory("timeSeries").toFile();
+        directory.deleteOnExit();
+        File pvdFile = new File(directory, "series.pvd");
+        pvdFile.deleteOnExit();
+        UnstructuredGridXmlVtKWriter writer = new UnstructuredGridXmlVtKWriter(
+                new UnstructuredGrid(points, cells, null, null, null, null));
+        UnstructuredGridTimeSeriesWriter timeSeriesWriter = new UnstructuredGridTimeSeriesWriter(writer, pvdFile);
+        timeSeriesWriter.writeStep(0, null, null, null, null).deleteOnExit();
+
+        // the geometry cached for the binary format must not be reused in the ascii one
+        writer.setFormat(ASCII);
+        File stepFile = timeSeriesWriter.writeStep(1, null, null, null, null);
+        stepFile.deleteOnExit();
+        File expectedFile = new File(directory, "expected.vtu");
+        expectedFile.deleteOnExit();
+        writer.write(expectedFile);
+        assertArrayEquals(Files.readAllBytes(expectedFile.toPath()), Files.readAllBytes(stepFile.toPath()));
+    }
+}
@@ -3,14 +3,36 @@ package vatika.writer;
 import vatika.data.*;
 import org.junit.Test;
 
+import net.jpountz.lz4.LZ4Factory;
+import org.tukaani.xz.XZInputStream;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.Inflater;
 
 import static vatika.data.VTKType.VTK_QUAD;
 import static vatika.data.VTKType.VTK_TRIANGLE;
 import static java.nio.ByteOrder.BIG_ENDIAN;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static vatika.writer.DataFormat.APPENDED;
 import static vatika.writer.DataFormat.ASCII;
 import static vatika.writer.DataFormat.BINARY;
 
@@ -113,4 +135,345 @@ public class UnstructuredGridXmlVtKWriterTest {
                 .map(s -> "    " + s)
                 .collect(Collectors.joining("\n")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void writePacked() throws Exception {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells, pointScalarData, pointVectorData, cellScalarData, cellVectorData);
+        PackedUnstructuredGrid packedGrid = PackedUnstructuredGrid.of(grid);
+
+        for (DataFormat format : DataFormat.values()) {
+            for (boolean compressed : new boolean[]{true, false}) {
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                new UnstructuredGridXmlVtKWriter(grid).setFormat(format).setCompressed(compressed).write(expected);
+
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                new UnstructuredGridXmlVtKWriter(packedGrid).setFormat(format).setCompressed(compressed).write(actual);
+
+                assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void writeOffHeap() throws Exception {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells, pointScalarData, pointVectorData, cellScalarData, cellVectorData);
+        PackedUnstructuredGrid packedGrid = PackedUnstructuredGrid.of(grid);
+
+        for (OffHeapStorage storage : new OffHeapStorage[]{OffHeapStorage.direct(), OffHeapStorage.mapped(null)}) {
+            try (OffHeapStorage closing = storage) {
+                OffHeapUnstructuredGrid offHeapGrid = OffHeapUnstructuredGrid.of(packedGrid, closing);
+                for (DataFormat format : DataFormat.values()) {
+                    for (ByteOrder byteOrder : new ByteOrder[]{LITTLE_ENDIAN, BIG_ENDIAN}) {
+                        for (Precision precision : Precision.values()) {
+                            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                            new UnstructuredGridXmlVtKWriter(grid).setFormat(format).setByteOrder(byteOrder)
+                                    .setPointsPrecision(precision).setInt64Connectivity(precision == Precision.FLOAT32)
+                                    .write(expected);
+
+                            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                            new UnstructuredGridXmlVtKWriter(offHeapGrid).setFormat(format).setByteOrder(byteOrder)
+                                    .setPointsPrecision(precision).setInt64Connectivity(precision == Precision.FLOAT32)
+                                    .write(actual);
+
+                            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void writeView() throws Exception {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells, pointScalarData, pointVectorData, cellScalarData, cellVectorData);
+        PackedUnstructuredGrid packedGrid = PackedUnstructuredGrid.of(grid);
+        // solver memory: off-heap coordinates and data, connectivity in its own arrays
+        DoubleBuffer coordinates = directDoubles(packedGrid.points);
+        List<FieldView> pointData = Arrays.asList(
+                FieldView.of("Temperature", directDoubles(pointScalarData[0].scalars), 1),
+                FieldView.of("Pressure", directDoubles(pointScalarData[1].scalars), 1),
+                FieldView.of("Velocity", directDoubles(packedGrid.pointVectorData[0].components), 3));
+        List<FieldView> cellData = Arrays.asList(cellScalarData[0],
+                FieldView.of("Vorticity", packedGrid.cellVectorData[0].components, 3),
+                FieldView.of("Acceleration", packedGrid.cellVectorData[1].components, 3));
+        UnstructuredGridView view = new UnstructuredGridView() {
+            @Override
+            public int numberOfPoints() {
+                return coordinates.capacity() / 3;
+            }
+
+            @Override
+            public double coordinate(int point, int axis) {
+                return coordinates.get(3 * point + axis);
+            }
+
+            @Override
+            public int numberOfCells() {
+                return packedGrid.types.length;
+            }
+
+            @Override
+            public VTKType cellType(int cell) {
+                return VTKType.get(packedGrid.types[cell]);
+            }
+
+            @Override
+            public int numberOfCellPoints(int cell) {
+                return packedGrid.offsets[cell + 1] - packedGrid.offsets[cell];
+            }
+
+            @Override
+            public int cellPoint(int cell, int i) {
+                return packedGrid.connectivity[packedGrid.offsets[cell] + i];
+            }
+
+            @Override
+            public List<FieldView> pointData() {
+                return pointData;
+            }
+
+            @Override
+            public List<FieldView> cellData() {
+                return cellData;
+            }
+        };
+
+        for (DataFormat format : DataFormat.values()) {
+            for (boolean compressed : new boolean[]{true, false}) {
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                new UnstructuredGridXmlVtKWriter(grid).setFormat(format).setCompressed(compressed).write(expected);
+
+                for (UnstructuredGridView actualView : new UnstructuredGridView[]{view, grid, packedGrid}) {
+                    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                    new UnstructuredGridXmlVtKWriter(actualView).setFormat(format).setCompressed(compressed)
+                            .write(actual);
+                    assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+                }
+            }
+        }
+    }
+
+    private static DoubleBuffer directDoubles(double[] values) {
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(values.length * Double.BYTES)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        buffer.put(values).flip();
+        return buffer;
+    }
+
+    @Test
+    public void writeBINARY_multipleBlocks() throws Exception {
+        for (ByteOrder byteOrder : new ByteOrder[]{LITTLE_ENDIAN, BIG_ENDIAN}) {
+            UnstructuredGridXmlVtKWriter writer = new UnstructuredGridXmlVtKWriter(
+                    new UnstructuredGrid(points, cells, pointScalarData, pointVectorData, cellScalarData, cellVectorData))
+                    .setByteOrder(byteOrder)
+                    .setBlockSize(16);
+
+            assertPointsCompressed(writer, byteOrder, 16, UnstructuredGridXmlVtKWriterTest::inflate);
+        }
+    }
+
+    @Test
+    public void writeBINARY_compressors() throws Exception {
+        for (int level : new int[]{1, 9}) {
+            UnstructuredGridXmlVtKWriter writer = new UnstructuredGridXmlVtKWriter(
+                    new UnstructuredGrid(points, cells, pointScalarData, pointVectorData, cellScalarData, cellVectorData))
+                    .setBlockSize(32)
+                    .setCompressionLevel(level);
+
+            writer.setCompressor(new ZLibCompressor());
+            assertPointsCompressed(writer, LITTLE_ENDIAN, 32, UnstructuredGridXmlVtKWriterTest::inflate);
+
+            writer.setCompressor(new LZ4Compressor());
+            assertPointsCompressed(writer, LITTLE_ENDIAN, 32, (compressedBlock, blockSize) ->
+                    LZ4Factory.fastestInstance().safeDecompressor().decompress(compressedBlock, blockSize));
+
+            writer.setCompressor(new LZMACompressor());
+            assertPointsCompressed(writer, LITTLE_ENDIAN, 32, (compressedBlock, blockSize) -> {
+                try (XZInputStream xz = new XZInputStream(new ByteArrayInputStream(compressedBlock))) {
+                    byte[] block = new byte[blockSize];
+                    int length = 0;
+                    for (int count; length < blockSize && (count = xz.read(block, length, blockSize - length)) > 0; ) {
+                        length += count;
+                    }
+                    return Arrays.copyOf(block, length);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void write_listener() throws Exception {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells, pointScalarData, pointVectorData, cellScalarData, cellVectorData);
+        File file = File.createTempFile("unstructuredTestXML_listener", ".vtu");
+        file.deleteOnExit();
+        List<WriteMetrics> allMetrics = new ArrayList<>();
+        WriteStatistics statistics = new WriteStatistics();
+
+        for (DataFormat format : DataFormat.values()) {
+            for (boolean compressed : new boolean[]{true, false}) {
+                UnstructuredGridXmlVtKWriter writer = new UnstructuredGridXmlVtKWriter(grid)
+                        .setFormat(format)
+                        .setCompressed(compressed)
+                        .setBlockSize(64)
+                        .setListener(metrics -> {
+                            allMetrics.add(metrics);
+                            statistics.written(metrics);
+                        });
+                writer.write(file);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                writer.write(out);
+
+                assertEquals(2, allMetrics.size());
+                WriteMetrics fileMetrics = allMetrics.get(0);
+                WriteMetrics streamMetrics = allMetrics.get(1);
+                allMetrics.clear();
+                assertEquals(file, fileMetrics.file);
+                assertEquals(file.length(), fileMetrics.writtenBytes);
+                assertEquals(null, streamMetrics.file);
+                assertEquals(out.size(), streamMetrics.writtenBytes);
+
+                assertEquals(Arrays.asList("Temperature", "Pressure", "Velocity", "speed", "Vorticity",
+                        "Acceleration", "Points", "connectivity", "offsets", "types"),
+                        fileMetrics.arrays.stream().map(array -> array.name).collect(Collectors.toList()));
+                DataArrayMetrics pointsMetrics = fileMetrics.arrays.get(6);
+                assertEquals("Float64", pointsMetrics.type);
+                assertEquals(5 * 3 * Double.BYTES, pointsMetrics.rawBytes);
+
+                long arraysBytes = 0;
+                for (DataArrayMetrics array : fileMetrics.arrays) {
+                    assertTrue(array.writtenBytes > 0);
+                    assertTrue(array.totalNanos >= array.packNanos + array.waitNanos + array.encodeNanos
+                            + array.writeNanos);
+                    if (compressed && format != ASCII) {
+                        assertTrue(array.compressedBytes > 0);
+                    } else {
+                        assertEquals(array.rawBytes, array.compressedBytes);
+                        assertEquals(0, array.compressNanos);
+                    }
+                    arraysBytes += array.writtenBytes;
+                }
+                assertTrue(arraysBytes < fileMetrics.writtenBytes);
+            }
+        }
+        assertEquals(12, statistics.getFilesWritten());
+    }
+
+    @Test
+    public void writeAPPENDED() throws Exception {
+        UnstructuredGrid grid = new UnstructuredGrid(points, cells, pointScalarData, pointVectorData, cellScalarData, cellVectorData);
+        File file = File.createTempFile("unstructuredTestXML_APPENDED", ".vtu");
+        file.deleteOnExit();
+
+        for (ByteOrder byteOrder : new ByteOrder[]{LITTLE_ENDIAN, BIG_ENDIAN}) {
+            for (boolean compressed : new boolean[]{true, false}) {
+                UnstructuredGridXmlVtKWriter writer = new UnstructuredGridXmlVtKWriter(grid)
+                        .setFormat(APPENDED)
+                        .setByteOrder(byteOrder)
+                        .setCompressed(compressed)
+                        .setBlockSize(16);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                writer.write(out);
+                writer.write(file);
+                byte[] bytes = out.toByteArray();
+                assertArrayEquals(bytes, Files.readAllBytes(file.toPath()));
+
+                String text = new String(bytes, StandardCharsets.ISO_8859_1);
+                String appendedDataStart = "<AppendedData encoding=\"raw\">_";
+                int appendedData = text.indexOf(appendedDataStart) + appendedDataStart.length();
+                assertTrue(text.endsWith("</AppendedData></VTKFile>"));
+
+                Matcher pointsDataArray = Pattern.compile("<Points><DataArray NumberOfComponents=\"3\" "
+                        + "format=\"appended\" offset=\"(\\d+)\" type=\"Float64\"/>").matcher(text);
+                assertTrue(pointsDataArray.find());
+                ByteBuffer pointsData = ByteBuffer.wrap(bytes).order(byteOrder);
+                pointsData.position(appendedData + Integer.parseInt(pointsDataArray.group(1)));
+
+                ByteBuffer pointBytes;
+                if (compressed) {
+                    pointBytes = decodeCompressed(pointsData, pointsData, byteOrder, 16,
+                            UnstructuredGridXmlVtKWriterTest::inflate);
+                } else {
+                    assertEquals(points.length * 3 * Double.BYTES, pointsData.getInt());
+                    pointBytes = pointsData;
+                }
+                for (Point point : points) {
+                    assertEquals(0, point.distance(new Point(
+                            pointBytes.getDouble(), pointBytes.getDouble(), pointBytes.getDouble())), 1e-15);
+                }
+            }
+        }
+    }
+
+    private interface Decompressor {
+        byte[] decompress(byte[] compressedBlock, int blockSize) throws Exception;
+    }
+
+    private static byte[] inflate(byte[] compressedBlock, int blockSize) throws Exception {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressedBlock);
+        byte[] block = new byte[blockSize];
+        int length = inflater.inflate(block);
+        inflater.end();
+        return Arrays.copyOf(block, length);
+    }
+
+    private void assertPointsCompressed(UnstructuredGridXmlVtKWriter writer, ByteOrder byteOrder,
+                                        int expectedBlockSize, Decompressor decompressor) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out);
+
+        Element pointsDataArray = (Element) DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(out.toByteArray()))
+                .getElementsByTagName("Points").item(0).getFirstChild();
+        ByteBuffer pointBytes = decodeCompressed(pointsDataArray.getTextContent(), byteOrder,
+                expectedBlockSize, decompressor);
+
+        for (Point point : points) {
+            assertEquals(0, point.distance(new Point(
+                    pointBytes.getDouble(), pointBytes.getDouble(), pointBytes.getDouble())), 1e-15);
+        }
+        assertEquals(0, pointBytes.remaining());
+    }
+
+    private ByteBuffer decodeCompressed(String text, ByteOrder byteOrder, int expectedBlockSize,
+                                       Decompressor decompressor) throws Exception {
+        int numBlocks = ByteBuffer.wrap(Base64.getDecoder().decode(text.substring(0, 8)))
+                .order(byteOrder).getInt();
+        int headerChars = 4 * (((3 + numBlocks) * Integer.BYTES + 2) / 3);
+        ByteBuffer header = ByteBuffer.wrap(Base64.getDecoder().decode(text.substring(0, headerChars)))
+                .order(byteOrder);
+        ByteBuffer compressedData = ByteBuffer.wrap(Base64.getDecoder().decode(text.substring(headerChars)));
+
+        ByteBuffer data = decodeCompressed(header, compressedData, byteOrder, expectedBlockSize, decompressor);
+        assertEquals(0, compressedData.remaining());
+        return data;
+    }
+
+    /**
+     * The header and the compressed data may be the same buffer, as in appended data.
+     */
+    private ByteBuffer decodeCompressed(ByteBuffer header, ByteBuffer compressedData, ByteOrder byteOrder,
+                                        int expectedBlockSize, Decompressor decompressor) throws Exception {
+        int numBlocks = header.getInt();
+        int blockSize = header.getInt();
+        int lastBlockSize = header.getInt();
+        assertEquals(expectedBlockSize, blockSize);
+        int[] compressedBlockSizes = new int[numBlocks];
+        for (int i = 0; i < numBlocks; i++) {
+            compressedBlockSizes[i] = header.getInt();
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((numBlocks - 1) * blockSize + (lastBlockSize == 0 ? blockSize : lastBlockSize))
+                .order(byteOrder);
+        for (int i = 0; i < numBlocks; i++) {
+            byte[] compressedBlock = new byte[compressedBlockSizes[i]];
+            compressedData.get(compressedBlock);
+            int uncompressedSize = (i == numBlocks - 1 && lastBlockSize != 0) ? lastBlockSize : blockSize;
+            byte[] block = decompressor.decompress(compressedBlock, uncompressedSize);
+            assertEquals(uncompressedSize, block.length);
+            data.put(block);
+        }
+
+        return data.flip();
+    }
+}